@@ -21,6 +21,7 @@
 package edu.cmu.tetradapp.app;
 
 import edu.cmu.tetrad.util.JOptionUtils;
+import edu.cmu.tetrad.util.SessionArchive;
 import edu.cmu.tetradapp.model.SessionWrapper;
 import edu.cmu.tetradapp.model.TetradMetadata;
 import edu.cmu.tetradapp.util.DesktopController;
@@ -31,7 +32,6 @@ import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.io.IOException;
 import java.io.NotSerializableException;
-import java.io.ObjectOutputStream;
 import java.io.Serial;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -103,10 +103,9 @@ public final class SaveSessionAction extends AbstractAction {
 
             @Override
             public void watch() {
-                try (ObjectOutputStream objOut = new ObjectOutputStream(Files.newOutputStream(outputFile))) {
+                try {
                     sessionWrapper.setNewSession(false);
-                    objOut.writeObject(metadata);
-                    objOut.writeObject(sessionWrapper);
+                    SessionArchive.write(outputFile, metadata, sessionWrapper);
                 } catch (NotSerializableException exception) {
                     exception.printStackTrace(System.err);
                     JOptionPane.showMessageDialog(
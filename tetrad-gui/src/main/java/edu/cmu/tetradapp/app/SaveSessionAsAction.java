@@ -21,6 +21,7 @@
 package edu.cmu.tetradapp.app;
 
 import edu.cmu.tetrad.util.JOptionUtils;
+import edu.cmu.tetrad.util.SessionArchive;
 import edu.cmu.tetradapp.model.EditorUtils;
 import edu.cmu.tetradapp.model.SessionWrapper;
 import edu.cmu.tetradapp.model.TetradMetadata;
@@ -32,9 +33,7 @@ import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.io.File;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.Serial;
-import java.nio.file.Files;
 import java.util.prefs.Preferences;
 
 /**
@@ -103,10 +102,9 @@ public final class SaveSessionAsAction extends AbstractAction {
 
             @Override
             public void watch() {
-                try (ObjectOutputStream objOut = new ObjectOutputStream(Files.newOutputStream(file.toPath()))) {
+                try {
                     saved = false;
-                    objOut.writeObject(metadata);
-                    objOut.writeObject(sessionWrapper);
+                    SessionArchive.write(file.toPath(), metadata, sessionWrapper);
 
                     sessionWrapper.setSessionChanged(false);
                     sessionWrapper.setNewSession(false);
@@ -158,6 +158,15 @@ public class BayesUpdaterEditor extends JPanel implements DelegatesEditing {
         this((UpdaterWrapper) wrapper);
     }
 
+    /**
+     * <p>Constructor for BayesUpdaterEditor.</p>
+     *
+     * @param wrapper a {@link edu.cmu.tetradapp.model.VariableEliminationWrapper} object
+     */
+    public BayesUpdaterEditor(VariableEliminationWrapper wrapper) {
+        this((UpdaterWrapper) wrapper);
+    }
+
     //================================PUBLIC METHODS========================//
 
     /**
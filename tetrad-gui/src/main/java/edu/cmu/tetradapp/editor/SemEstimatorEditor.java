@@ -152,6 +152,7 @@ public final class SemEstimatorEditor extends JPanel {
         optimizerCombo.addItem("Powell");
         optimizerCombo.addItem("Random Search");
         optimizerCombo.addItem("RICF");
+        optimizerCombo.addItem("L-BFGS");
 
         optimizerCombo.addActionListener((e) -> {
             JComboBox box = (JComboBox) e.getSource();
@@ -371,6 +372,9 @@ public final class SemEstimatorEditor extends JPanel {
             case "RICF":
                 optimizer = new SemOptimizerRicf();
                 break;
+            case "L-BFGS":
+                optimizer = new SemOptimizerLbfgs();
+                break;
             default:
                 throw new IllegalArgumentException("Unexpected optimizer type: "
                                                    + type);
@@ -326,6 +326,8 @@ public class SemEstimatorWrapper implements SessionModel {
             optimizer = new SemOptimizerScattershot();
         } else if ("RICF".equals(type)) {
             optimizer = new SemOptimizerRicf();
+        } else if ("L-BFGS".equals(type)) {
+            optimizer = new SemOptimizerLbfgs();
         } else {
             if (this.semPm != null) {
                 optimizer = getDefaultOptimization();
@@ -356,6 +358,8 @@ public class SemEstimatorWrapper implements SessionModel {
             _type = "Random Search";
         } else if (optimizer instanceof SemOptimizerRicf) {
             _type = "RICF";
+        } else if (optimizer instanceof SemOptimizerLbfgs) {
+            _type = "L-BFGS";
         }
 
         return _type;
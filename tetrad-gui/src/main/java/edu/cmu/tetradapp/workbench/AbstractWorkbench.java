@@ -72,6 +72,14 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
     public static final int ADD_EDGE = 2;
     @Serial
     private static final long serialVersionUID = 6718395673225983249L;
+    /**
+     * The smallest zoom allowed when the graph is drawn on a canvas.
+     */
+    private static final double MIN_CANVAS_SCALE = 0.02;
+    /**
+     * The largest zoom allowed when the graph is drawn on a canvas.
+     */
+    private static final double MAX_CANVAS_SCALE = 4.0;
 
     // =========================PRIVATE FIELDS=============================//
     /**
@@ -94,6 +102,10 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
      * Handler for PropertyChangeEvents.
      */
     private final PropertyChangeHandler propChangeHandler = new PropertyChangeHandler(this);
+    /**
+     * Handler for MouseWheelEvents; zooms when the graph is drawn on a canvas.
+     */
+    private final MouseWheelHandler mouseWheelHandler = new MouseWheelHandler(this);
     /**
      * This variable represents a stack of Graph objects.
      */
@@ -202,6 +214,24 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
      * The knowledge.
      */
     private Knowledge knowledge = new Knowledge();
+    /**
+     * True iff the graph is drawn directly onto the workbench, rather than with a component per node and edge.
+     *
+     * @see #isCanvasRendered(Graph)
+     */
+    private boolean canvasRendered;
+    /**
+     * Draws the graph when it is canvas rendered; rebuilt as needed.
+     */
+    private transient GraphCanvas canvas;
+    /**
+     * True iff the graph has changed since the canvas was built.
+     */
+    private transient boolean canvasStale;
+    /**
+     * For dragging nodes on the canvas, the indices of the nodes being dragged; null if none are.
+     */
+    private transient int[] canvasDragNodes;
 
     // ==============================CONSTRUCTOR============================//
 
@@ -262,6 +292,11 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
      * process.
      */
     public final void deleteSelectedObjects() {
+        if (this.canvasRendered) {
+            deleteSelectedCanvasObjects();
+            return;
+        }
+
         Component[] components = getComponents();
         List<DisplayNode> graphNodes = new ArrayList<>();
         List<IDisplayEdge> graphEdges = new ArrayList<>();
@@ -305,6 +340,11 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
      * Deselects all edges and nodes in the workbench.
      */
     public final void deselectAll() {
+        if (this.canvasRendered) {
+            getCanvas().clearSelection();
+            repaint();
+        }
+
         Component[] components = getComponents();
 
         for (Component comp : components) {
@@ -804,6 +844,17 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
             return;
         }
 
+        if (this.canvasRendered) {
+            int i = getCanvas().indexOf(modelNode);
+
+            if (i != -1) {
+                getCanvas().setSelected(i, true);
+                repaint();
+            }
+
+            return;
+        }
+
         DisplayNode graphNode = (DisplayNode) getModelNodesToDisplay().get(modelNode);
 
         if (graphNode != null) {
@@ -817,6 +868,12 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
      * @param modelEdge a {@link edu.cmu.tetrad.graph.Edge} object
      */
     public final void selectEdge(Edge modelEdge) {
+        if (this.canvasRendered) {
+            getCanvas().selectEdge(modelEdge);
+            repaint();
+            return;
+        }
+
         IDisplayEdge graphEdge = (IDisplayEdge) getModelEdgesToDisplay().get(modelEdge);
         graphEdge.setSelected(true);
     }
@@ -830,6 +887,12 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
             return;
         }
 
+        if (this.canvasRendered) {
+            getCanvas().selectConnectingEdges();
+            repaint();
+            return;
+        }
+
         Component[] components = getComponents();
 
         for (Component comp : components) {
@@ -888,12 +951,52 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
         super.paint(g);
     }
 
+    /**
+     * Paints the graph, if it is drawn on a canvas; otherwise, the display nodes and edges paint themselves.
+     *
+     * @param g the Graphics context in which to paint
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+
+        if (!this.canvasRendered) {
+            return;
+        }
+
+        Rectangle clip = g.getClipBounds();
+
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        getCanvas().paint((Graphics2D) g, clip);
+    }
+
     /**
      * Scrolls the workbench image so that the given node is in view, then selects that node.
      *
      * @param modelNode the model node to show.
      */
     public final void scrollWorkbenchToNode(Node modelNode) {
+        if (this.canvasRendered) {
+            GraphCanvas canvas = getCanvas();
+            int i = canvas.indexOf(modelNode);
+
+            if (i != -1) {
+                scrollRectToVisible(canvas.toScreen(canvas.getNodeBounds(i)));
+                deselectAll();
+
+                if (isAllowNodeEdgeSelection()) {
+                    canvas.setSelected(i, true);
+                }
+            }
+
+            return;
+        }
+
         Object o = getModelNodesToDisplay().get(modelNode);
         DisplayNode displayNode = (DisplayNode) o;
 
@@ -935,6 +1038,11 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
     public void layoutByGraph(Graph layoutGraph) {
         LayoutUtil.arrangeBySourceGraph(this.graph, layoutGraph);
 
+        if (this.canvasRendered) {
+            reloadCanvasPositions();
+            return;
+        }
+
         for (Node modelNode : this.graph.getNodes()) {
             DisplayNode displayNode = (DisplayNode) getModelNodesToDisplay().get(modelNode);
 
@@ -986,6 +1094,11 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
      */
     public void layoutByKnowledge() {
         GraphSearchUtils.arrangeByKnowledgeTiers(this.graph, getKnowledge());
+
+        if (this.canvasRendered) {
+            reloadCanvasPositions();
+        }
+
         revalidate();
         repaint();
     }
@@ -1002,6 +1115,10 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
             return new Rectangle();
         }
 
+        if (this.canvasRendered) {
+            return getCanvas().toScreen(getCanvas().getBounds()).union(super.getVisibleRect());
+        }
+
         DisplayNode displayNode = (DisplayNode) getModelNodesToDisplay().get(nodes.get(0));
         Rectangle rect = displayNode.getBounds();
 
@@ -1027,6 +1144,26 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
             return;
         }
 
+        if (this.canvasRendered) {
+            GraphCanvas canvas = getCanvas();
+            Rectangle rect = null;
+
+            for (Node node : nodes) {
+                int i = canvas.indexOf(node);
+
+                if (i != -1) {
+                    rect = rect == null ? canvas.getNodeBounds(i) : rect.union(canvas.getNodeBounds(i));
+                }
+            }
+
+            if (rect != null) {
+                adjustPreferredSize();
+                scrollRectToVisible(canvas.toScreen(rect));
+            }
+
+            return;
+        }
+
         DisplayNode displayNode = (DisplayNode) getModelNodesToDisplay().get(nodes.get(0));
         Rectangle rect = displayNode.getBounds();
 
@@ -1129,6 +1266,19 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
         removeAll();
         graph.addPropertyChangeListener(this.propChangeHandler);
 
+        this.canvasRendered = isCanvasRendered(graph);
+        this.canvas = null;
+        this.canvasDragNodes = null;
+        removeMouseWheelListener(this.mouseWheelHandler);
+
+        if (this.canvasRendered) {
+            addMouseWheelListener(this.mouseWheelHandler);
+            adjustPreferredSize();
+            revalidate();
+            repaint();
+            return;
+        }
+
         // extract the current contents from the model...
         List<Node> nodes = graph.getNodes();
         for (Node node : nodes) {
@@ -1212,6 +1362,10 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
             r = r.union(component1.getBounds());
         }
 
+        if (this.canvasRendered) {
+            r = r.union(getCanvas().toScreen(getCanvas().getBounds()));
+        }
+
         // Apparently both of these are required to get the scrollbars to reset.
         // I'm
         // guessing the scrollbars pay attention to preferred size but the
@@ -1248,6 +1402,11 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
      * @param modelNode the model node.
      */
     private void addNode(Node modelNode) {
+        if (this.canvasRendered) {
+            markCanvasStale();
+            return;
+        }
+
         if (getModelNodesToDisplay().containsKey(modelNode)) {
             return;
         }
@@ -1372,6 +1531,11 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
             return;
         }
 
+        if (this.canvasRendered) {
+            markCanvasStale();
+            return;
+        }
+
         if (modelEdge.isNull()) {
             return;
         }
@@ -1592,6 +1756,10 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
         Component[] components = getComponents();
         List<Node> selection = new LinkedList<>();
 
+        if (this.canvasRendered) {
+            selection.addAll(getCanvas().getSelectedNodes());
+        }
+
         for (Component component : components) {
             if (component instanceof DisplayNode displayNode) {
 
@@ -1705,6 +1873,11 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
             throw new NullPointerException("Attempt to remove a null model node.");
         }
 
+        if (this.canvasRendered) {
+            markCanvasStale();
+            return;
+        }
+
         DisplayNode displayNode = (DisplayNode) (getModelNodesToDisplay().get(modelNode));
 
         if (displayNode == null) {
@@ -1762,6 +1935,11 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
             return;
         }
 
+        if (this.canvasRendered) {
+            markCanvasStale();
+            return;
+        }
+
         IDisplayEdge displayEdge = (IDisplayEdge) (getModelEdgesToDisplay().get(modelEdge));
 
         if (displayEdge == null) {
@@ -1814,6 +1992,13 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
             deselectAll();
         }
 
+        if (this.canvasRendered) {
+            GraphCanvas canvas = getCanvas();
+            canvas.select(canvas.toCanvas(rubberband.getBounds()), edgesOnly);
+            repaint();
+            return;
+        }
+
         Shape rubberShape = rubberband.getShape();
         Point rubberLoc = rubberband.getLocation();
         Component[] components = getComponents();
@@ -1925,6 +2110,200 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
         node.setLocation(x - node.getSize().width / 2, y - node.getSize().height / 2);
     }
 
+    /**
+     * Returns whether the given graph should be drawn directly onto the workbench rather than with a component per node
+     * and edge. Drawing directly scales to far larger graphs, but only selecting, moving, and zooming are supported; by
+     * default, no graph is drawn this way.
+     *
+     * @param graph The graph about to be displayed.
+     * @return True, if the graph should be drawn on a canvas.
+     */
+    protected boolean isCanvasRendered(Graph graph) {
+        return false;
+    }
+
+    /**
+     * Returns the canvas for the graph, rebuilding it if the graph has changed since it was built. The zoom is kept
+     * across rebuilds.
+     */
+    private GraphCanvas getCanvas() {
+        if (this.canvas == null || this.canvasStale) {
+            double scale = this.canvas == null ? 1.0 : this.canvas.getScale();
+            this.canvas = new GraphCanvas(this.graph, getFontMetrics(DisplayNodeUtils.getFont()), scale);
+            this.canvasStale = false;
+        }
+
+        return this.canvas;
+    }
+
+    /**
+     * Notes that the graph has changed, so that the canvas is rebuilt the next time it is needed.
+     */
+    private void markCanvasStale() {
+        this.canvasStale = true;
+        this.canvasDragNodes = null;
+        repaint();
+    }
+
+    /**
+     * Rereads the node positions into the canvas after the model nodes have been laid out.
+     */
+    private void reloadCanvasPositions() {
+        getCanvas().reloadPositions();
+        adjustPreferredSize();
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Deletes the selected nodes and edges from the graph; the canvas is rebuilt from the ensuing graph events.
+     */
+    private void deleteSelectedCanvasObjects() {
+        GraphCanvas canvas = getCanvas();
+        List<Node> nodes = isDeleteVariablesAllowed() ? canvas.getSelectedNodes() : new ArrayList<>();
+        List<Edge> edges = canvas.getSelectedEdges();
+
+        for (Edge edge : edges) {
+            try {
+                getGraph().removeEdge(edge);
+            } catch (Exception e) {
+                if (isNodeEdgeErrorsReported()) {
+                    JOptionPane.showMessageDialog(JOptionUtils.centeringComp(), e.getMessage());
+                }
+            }
+        }
+
+        for (Node node : nodes) {
+
+            // Error nodes cannot be removed explicitly, as above.
+            if (node.getNodeType() != NodeType.ERROR) {
+                getGraph().removeNode(node);
+            }
+        }
+
+        firePropertyChange("modelChanged", null, null);
+    }
+
+    /**
+     * Starts dragging the node under the mouse on the canvas (with the rest of the selection, if it is selected) or
+     * else starts a rubberband.
+     */
+    private void canvasPressed(MouseEvent e) {
+        if (this.workbenchMode != AbstractWorkbench.SELECT_MOVE) {
+            return;
+        }
+
+        GraphCanvas canvas = getCanvas();
+        Point p = canvas.toCanvas(e.getPoint());
+        int i = canvas.nodeAt(p);
+        this.canvasDragNodes = null;
+
+        if (i == -1) {
+            startRubberband(e.getPoint());
+        } else if (isAllowNodeDragging()) {
+            this.clickPoint = p;
+            this.canvasDragNodes = canvas.isSelected(i) ? canvas.getSelectedIndices() : new int[]{i};
+        }
+    }
+
+    /**
+     * Moves the nodes being dragged on the canvas, repainting only the area they and their edges cover, or else
+     * extends the rubberband.
+     */
+    private void canvasDragged(Point newPoint, boolean edgesOnly) {
+        if (this.workbenchMode != AbstractWorkbench.SELECT_MOVE) {
+            return;
+        }
+
+        if (this.canvasDragNodes != null) {
+            GraphCanvas canvas = getCanvas();
+            Point p = canvas.toCanvas(newPoint);
+            int deltaX = p.x - this.clickPoint.x;
+            int deltaY = p.y - this.clickPoint.y;
+
+            if (deltaX != 0 || deltaY != 0) {
+                Rectangle dirty = canvas.moveNodes(this.canvasDragNodes, deltaX, deltaY);
+                this.clickPoint = p;
+                repaint(canvas.toScreen(dirty));
+            }
+        } else if (this.rubberband != null) {
+            this.rubberband.updateTrackPoint(newPoint);
+            selectAllInRubberband(this.rubberband, edgesOnly);
+        }
+    }
+
+    /**
+     * Finishes a drag or rubberband on the canvas.
+     */
+    private void canvasReleased() {
+        if (this.canvasDragNodes != null) {
+            this.canvasDragNodes = null;
+            adjustPreferredSize();
+            revalidate();
+        } else if (this.rubberband != null) {
+            finishRubberband();
+            fireNodeSelection();
+        }
+    }
+
+    /**
+     * Toggles the selection of the node clicked on the canvas, as for display nodes, or deselects everything if the
+     * background was clicked.
+     */
+    private void canvasClicked(MouseEvent e) {
+        GraphCanvas canvas = getCanvas();
+        int i = canvas.nodeAt(canvas.toCanvas(e.getPoint()));
+
+        if (i == -1) {
+            deselectAll();
+            return;
+        }
+
+        if (e.getClickCount() == 2) {
+            return;
+        }
+
+        if (canvas.isSelected(i)) {
+            canvas.setSelected(i, false);
+        } else {
+            if (!e.isShiftDown()) {
+                canvas.clearSelection();
+            }
+
+            canvas.setSelected(i, true);
+        }
+
+        selectConnectingEdges();
+        fireNodeSelection();
+    }
+
+    /**
+     * Zooms the canvas by the given factor, keeping the point under the mouse fixed.
+     */
+    private void zoomCanvas(Point mouse, double factor) {
+        GraphCanvas canvas = getCanvas();
+        double oldScale = canvas.getScale();
+        double scale = FastMath.max(MIN_CANVAS_SCALE, FastMath.min(MAX_CANVAS_SCALE, oldScale * factor));
+
+        if (scale == oldScale) {
+            return;
+        }
+
+        Point anchor = canvas.toCanvas(mouse);
+        canvas.setScale(scale);
+        adjustPreferredSize();
+        revalidate();
+
+        if (getParent() instanceof JViewport viewport) {
+            Point view = viewport.getViewPosition();
+            int x = (int) FastMath.round(anchor.x * scale) - (mouse.x - view.x);
+            int y = (int) FastMath.round(anchor.y * scale) - (mouse.y - view.y);
+            viewport.setViewPosition(new Point(FastMath.max(0, x), FastMath.max(0, y)));
+        }
+
+        repaint();
+    }
+
     private void handleMouseClicked(MouseEvent e) {
         Object source = e.getSource();
 
@@ -1932,6 +2311,11 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
             return;
         }
 
+        if (this.canvasRendered) {
+            canvasClicked(e);
+            return;
+        }
+
         if (source instanceof DisplayNode) {
             nodeClicked(source, e);
         } else if (source instanceof IDisplayEdge) {
@@ -2043,6 +2427,11 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
             return;
         }
 
+        if (this.canvasRendered) {
+            canvasPressed(e);
+            return;
+        }
+
         switch (this.workbenchMode) {
             case AbstractWorkbench.SELECT_MOVE:
                 if (source == this) {
@@ -2096,6 +2485,11 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
     private void handleMouseReleased(MouseEvent e) {
         Object source = e.getSource();
 
+        if (this.canvasRendered) {
+            canvasReleased();
+            return;
+        }
+
         switch (this.workbenchMode) {
             case AbstractWorkbench.SELECT_MOVE:
                 if (source == this) {
@@ -2134,6 +2528,11 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
         Object source = e.getSource();
         Point newPoint = e.getPoint();
 
+        if (this.canvasRendered) {
+            canvasDragged(newPoint, e.isShiftDown());
+            return;
+        }
+
         switch (this.workbenchMode) {
             case AbstractWorkbench.SELECT_MOVE:
                 dragNodes(source, newPoint, e.isShiftDown());
@@ -2899,6 +3298,29 @@ public abstract class AbstractWorkbench extends JComponent implements WorkbenchM
         }
     }
 
+    /**
+     * Zooms the canvas on control-wheel (command-wheel on a Mac) and otherwise passes the wheel on, so that the
+     * enclosing scroll pane still scrolls.
+     */
+    private static final class MouseWheelHandler implements MouseWheelListener {
+
+        private final AbstractWorkbench workbench;
+
+        public MouseWheelHandler(AbstractWorkbench workbench) {
+            this.workbench = workbench;
+        }
+
+        @Override
+        public void mouseWheelMoved(MouseWheelEvent e) {
+            if (e.isControlDown() || e.isMetaDown()) {
+                this.workbench.zoomCanvas(e.getPoint(), FastMath.pow(1.1, -e.getPreciseWheelRotation()));
+            } else if (this.workbench.getParent() != null) {
+                Container parent = this.workbench.getParent();
+                parent.dispatchEvent(SwingUtilities.convertMouseEvent(this.workbench, e, parent));
+            }
+        }
+    }
+
     /**
      * Handles mouse events and mouse motion events.
      */
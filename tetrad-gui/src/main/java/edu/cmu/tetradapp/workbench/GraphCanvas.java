@@ -0,0 +1,859 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+package edu.cmu.tetradapp.workbench;
+
+import edu.cmu.tetrad.graph.*;
+import org.apache.commons.math3.util.FastMath;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.RoundRectangle2D;
+import java.util.List;
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * Draws a graph directly onto the workbench, for graphs too large to give every node and edge its own component. Node
+ * positions are kept in arrays and indexed by a quadtree, which is used both for hit-testing and for finding the nodes
+ * in the area being repainted. When zoomed out, labels and endpoints are dropped, and then nodes are drawn as plain
+ * boxes and edges too short to see are skipped.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ * @see AbstractWorkbench
+ */
+final class GraphCanvas {
+
+    /**
+     * The smallest scale at which node labels and edge endpoints are drawn.
+     */
+    private static final double DETAIL_SCALE = 0.5;
+
+    /**
+     * The smallest scale at which nodes are drawn with their outlines.
+     */
+    private static final double SHAPE_SCALE = 0.15;
+
+    /**
+     * How far arrowheads and circle endpoints may reach past the end of an edge, in canvas units.
+     */
+    private static final int ENDPOINT_MARGIN = 20;
+
+    /**
+     * The color of unselected edges; the same as for display edges.
+     */
+    private static final Color EDGE_COLOR = new Color(26, 113, 169);
+
+    /**
+     * The color of selected edges.
+     */
+    private static final Color SELECTED_EDGE_COLOR = new Color(244, 0, 20);
+
+    /**
+     * The color of highlighted edges.
+     */
+    private static final Color HIGHLIGHTED_EDGE_COLOR = new Color(238, 180, 34);
+
+    /**
+     * The nodes, in drawing order.
+     */
+    private final List<Node> nodes;
+
+    /**
+     * The index of each node.
+     */
+    private final Map<Node, Integer> indices = new HashMap<>();
+
+    /**
+     * The center of each node.
+     */
+    private final int[] x, y;
+
+    /**
+     * Half the width and height of each node.
+     */
+    private final int[] halfWidth, halfHeight;
+
+    /**
+     * Whether each node is drawn as an oval (for latents) rather than a rounded rectangle.
+     */
+    private final boolean[] oval;
+
+    /**
+     * The edges.
+     */
+    private final List<Edge> edges;
+
+    /**
+     * The indices of the nodes at the two ends of each edge.
+     */
+    private final int[] from, to;
+
+    /**
+     * The indices of the edges incident to each node.
+     */
+    private final int[][] incident;
+
+    /**
+     * The largest half width and half height over all nodes, for padding quadtree queries.
+     */
+    private int maxHalfWidth, maxHalfHeight;
+
+    /**
+     * The selected nodes.
+     */
+    private final BitSet selectedNodes = new BitSet();
+
+    /**
+     * The selected edges.
+     */
+    private final BitSet selectedEdges = new BitSet();
+
+    /**
+     * The index of node positions.
+     */
+    private QuadTree index;
+
+    /**
+     * The zoom; screen distance per canvas distance.
+     */
+    private double scale;
+
+    /**
+     * Lays out the given graph for drawing, reading node positions from the graph.
+     *
+     * @param graph       The graph.
+     * @param fontMetrics The metrics of the node font, for sizing the nodes.
+     * @param scale       The initial zoom.
+     */
+    GraphCanvas(Graph graph, FontMetrics fontMetrics, double scale) {
+        this.nodes = new ArrayList<>(graph.getNodes());
+        this.scale = scale;
+
+        int n = this.nodes.size();
+        this.x = new int[n];
+        this.y = new int[n];
+        this.halfWidth = new int[n];
+        this.halfHeight = new int[n];
+        this.oval = new boolean[n];
+
+        // Same sizes as MeasuredDisplayComp and LatentDisplayComp.
+        int height = 2 * DisplayNodeUtils.getPixelGap() + fontMetrics.getAscent() + 3;
+
+        for (int i = 0; i < n; i++) {
+            Node node = this.nodes.get(i);
+            this.indices.put(node, i);
+            int width = FastMath.max(60, fontMetrics.stringWidth(node.getName()) + fontMetrics.getMaxAdvance());
+            this.halfWidth[i] = width / 2;
+            this.halfHeight[i] = height / 2;
+            this.oval[i] = node.getNodeType() == NodeType.LATENT;
+            this.maxHalfWidth = FastMath.max(this.maxHalfWidth, this.halfWidth[i]);
+            this.maxHalfHeight = FastMath.max(this.maxHalfHeight, this.halfHeight[i]);
+        }
+
+        this.edges = new ArrayList<>();
+        List<Integer> from = new ArrayList<>();
+        List<Integer> to = new ArrayList<>();
+        int[] degrees = new int[n];
+
+        for (Edge edge : graph.getEdges()) {
+            Integer i = this.indices.get(edge.getNode1());
+            Integer j = this.indices.get(edge.getNode2());
+
+            if (edge.isNull() || i == null || j == null || i.equals(j)) {
+                continue;
+            }
+
+            this.edges.add(edge);
+            from.add(i);
+            to.add(j);
+            degrees[i]++;
+            degrees[j]++;
+        }
+
+        this.from = from.stream().mapToInt(Integer::intValue).toArray();
+        this.to = to.stream().mapToInt(Integer::intValue).toArray();
+        this.incident = new int[n][];
+
+        for (int i = 0; i < n; i++) {
+            this.incident[i] = new int[degrees[i]];
+        }
+
+        int[] filled = new int[n];
+
+        for (int e = 0; e < this.from.length; e++) {
+            this.incident[this.from[e]][filled[this.from[e]]++] = e;
+            this.incident[this.to[e]][filled[this.to[e]]++] = e;
+        }
+
+        reloadPositions();
+    }
+
+    /**
+     * Rereads the node positions from the model nodes, e.g., after a layout.
+     */
+    void reloadPositions() {
+        for (int i = 0; i < this.nodes.size(); i++) {
+            this.x[i] = this.nodes.get(i).getCenterX();
+            this.y[i] = this.nodes.get(i).getCenterY();
+        }
+
+        rebuildIndex();
+    }
+
+    /**
+     * Returns the zoom.
+     *
+     * @return The screen distance per canvas distance.
+     */
+    double getScale() {
+        return this.scale;
+    }
+
+    /**
+     * Sets the zoom.
+     *
+     * @param scale The screen distance per canvas distance.
+     */
+    void setScale(double scale) {
+        this.scale = scale;
+    }
+
+    /**
+     * Converts a point on the screen to canvas coordinates.
+     *
+     * @param p The point on the screen.
+     * @return The point on the canvas.
+     */
+    Point toCanvas(Point p) {
+        return new Point((int) FastMath.floor(p.x / this.scale), (int) FastMath.floor(p.y / this.scale));
+    }
+
+    /**
+     * Converts a rectangle on the screen to canvas coordinates.
+     *
+     * @param r The rectangle on the screen.
+     * @return The smallest rectangle on the canvas covering it.
+     */
+    Rectangle toCanvas(Rectangle r) {
+        int x0 = (int) FastMath.floor(r.x / this.scale);
+        int y0 = (int) FastMath.floor(r.y / this.scale);
+        int x1 = (int) FastMath.ceil((r.x + r.width) / this.scale);
+        int y1 = (int) FastMath.ceil((r.y + r.height) / this.scale);
+        return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    /**
+     * Converts a rectangle on the canvas to screen coordinates.
+     *
+     * @param r The rectangle on the canvas.
+     * @return The smallest rectangle on the screen covering it.
+     */
+    Rectangle toScreen(Rectangle r) {
+        int x0 = (int) FastMath.floor(r.x * this.scale);
+        int y0 = (int) FastMath.floor(r.y * this.scale);
+        int x1 = (int) FastMath.ceil((r.x + r.width) * this.scale);
+        int y1 = (int) FastMath.ceil((r.y + r.height) * this.scale);
+        return new Rectangle(x0, y0, x1 - x0 + 1, y1 - y0 + 1);
+    }
+
+    /**
+     * Returns the bounds of all nodes, in canvas coordinates.
+     *
+     * @return These bounds; empty if there are no nodes.
+     */
+    Rectangle getBounds() {
+        Rectangle r = null;
+
+        for (int i = 0; i < this.nodes.size(); i++) {
+            r = r == null ? getNodeBounds(i) : r.union(getNodeBounds(i));
+        }
+
+        return r == null ? new Rectangle() : r;
+    }
+
+    /**
+     * Returns the bounds of the given node, in canvas coordinates.
+     *
+     * @param i The index of the node.
+     * @return Its bounds.
+     */
+    Rectangle getNodeBounds(int i) {
+        return new Rectangle(this.x[i] - this.halfWidth[i], this.y[i] - this.halfHeight[i],
+                2 * this.halfWidth[i], 2 * this.halfHeight[i]);
+    }
+
+    /**
+     * Returns the index of the given model node.
+     *
+     * @param node The node.
+     * @return Its index, or -1 if it is not drawn.
+     */
+    int indexOf(Node node) {
+        Integer i = this.indices.get(node);
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * Returns the topmost node containing the given point.
+     *
+     * @param p The point, in canvas coordinates.
+     * @return The index of the node, or -1 if there is none.
+     */
+    int nodeAt(Point p) {
+        int[] hit = {-1};
+
+        this.index.query(p.x - this.maxHalfWidth, p.y - this.maxHalfHeight, p.x + this.maxHalfWidth,
+                p.y + this.maxHalfHeight, i -> {
+                    if (i > hit[0] && contains(i, p.x, p.y)) {
+                        hit[0] = i;
+                    }
+                });
+
+        return hit[0];
+    }
+
+    /**
+     * Selects the nodes meeting the given rectangle, and the edges among them.
+     *
+     * @param r         The rectangle, in canvas coordinates.
+     * @param edgesOnly If true, the node selection is left alone, and exactly the edges among the nodes meeting the
+     *                  rectangle are selected.
+     */
+    void select(Rectangle r, boolean edgesOnly) {
+        BitSet inside = new BitSet();
+
+        this.index.query(r.x - this.maxHalfWidth, r.y - this.maxHalfHeight, r.x + r.width + this.maxHalfWidth,
+                r.y + r.height + this.maxHalfHeight, i -> {
+                    if (r.intersects(getNodeBounds(i))) {
+                        inside.set(i);
+                    }
+                });
+
+        if (edgesOnly) {
+            selectConnectingEdges(inside);
+        } else {
+            this.selectedNodes.clear();
+            this.selectedNodes.or(inside);
+            selectConnectingEdges(this.selectedNodes);
+        }
+    }
+
+    /**
+     * Returns whether the given node is selected.
+     *
+     * @param i The index of the node.
+     * @return True, if so.
+     */
+    boolean isSelected(int i) {
+        return this.selectedNodes.get(i);
+    }
+
+    /**
+     * Selects or deselects the given node.
+     *
+     * @param i        The index of the node.
+     * @param selected True to select it.
+     */
+    void setSelected(int i, boolean selected) {
+        this.selectedNodes.set(i, selected);
+    }
+
+    /**
+     * Selects all and only those edges connecting selected nodes.
+     */
+    void selectConnectingEdges() {
+        selectConnectingEdges(this.selectedNodes);
+    }
+
+    /**
+     * Selects the given edge.
+     *
+     * @param edge The edge.
+     */
+    void selectEdge(Edge edge) {
+        int e = this.edges.indexOf(edge);
+
+        if (e != -1) {
+            this.selectedEdges.set(e);
+        }
+    }
+
+    /**
+     * Deselects all nodes and edges.
+     */
+    void clearSelection() {
+        this.selectedNodes.clear();
+        this.selectedEdges.clear();
+    }
+
+    /**
+     * Returns the indices of the selected nodes.
+     *
+     * @return These indices, in order.
+     */
+    int[] getSelectedIndices() {
+        return this.selectedNodes.stream().toArray();
+    }
+
+    /**
+     * Returns the selected model nodes.
+     *
+     * @return These nodes.
+     */
+    List<Node> getSelectedNodes() {
+        List<Node> selected = new ArrayList<>();
+        this.selectedNodes.stream().forEach(i -> selected.add(this.nodes.get(i)));
+        return selected;
+    }
+
+    /**
+     * Returns the selected model edges.
+     *
+     * @return These edges.
+     */
+    List<Edge> getSelectedEdges() {
+        List<Edge> selected = new ArrayList<>();
+        this.selectedEdges.stream().forEach(e -> selected.add(this.edges.get(e)));
+        return selected;
+    }
+
+    /**
+     * Moves the given nodes, updating their model nodes, and returns the area that needs to be repainted.
+     *
+     * @param moved The indices of the nodes to move.
+     * @param dx    The distance to move them right.
+     * @param dy    The distance to move them down.
+     * @return The area, in canvas coordinates, covering the nodes and their edges before and after the move.
+     */
+    Rectangle moveNodes(int[] moved, int dx, int dy) {
+        Rectangle dirty = getDirtyBounds(moved);
+
+        for (int i : moved) {
+            this.index.remove(i);
+            this.x[i] += dx;
+            this.y[i] += dy;
+            this.nodes.get(i).setCenter(this.x[i], this.y[i]);
+        }
+
+        boolean outside = false;
+
+        for (int i : moved) {
+            if (this.index.contains(this.x[i], this.y[i])) {
+                this.index.insert(i);
+            } else {
+                outside = true;
+            }
+        }
+
+        if (outside) {
+            rebuildIndex();
+        }
+
+        return dirty.union(getDirtyBounds(moved));
+    }
+
+    /**
+     * Paints the part of the graph in the given clip.
+     *
+     * @param g    The graphics context, in screen coordinates.
+     * @param clip The area to paint, in screen coordinates.
+     */
+    void paint(Graphics2D g, Rectangle clip) {
+        AffineTransform transform = g.getTransform();
+        Object antialiasing = g.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+
+        boolean detail = this.scale >= DETAIL_SCALE;
+        Rectangle view = toCanvas(clip);
+        view.grow(ENDPOINT_MARGIN, ENDPOINT_MARGIN);
+
+        g.scale(this.scale, this.scale);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                detail ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+        g.setStroke(new BasicStroke(1.1f));
+
+        // Selected edges are drawn last so that they show on top.
+        for (int pass = 0; pass < 2; pass++) {
+            for (int e = 0; e < this.from.length; e++) {
+                if (this.selectedEdges.get(e) != (pass == 1)) continue;
+                paintEdge(g, e, view, detail);
+            }
+        }
+
+        List<Integer> visible = new ArrayList<>();
+
+        this.index.query(view.x - this.maxHalfWidth, view.y - this.maxHalfHeight,
+                view.x + view.width + this.maxHalfWidth, view.y + view.height + this.maxHalfHeight, visible::add);
+
+        // Later nodes are drawn on top, as for nodeAt.
+        Collections.sort(visible);
+
+        if (detail) {
+            g.setFont(DisplayNodeUtils.getFont());
+        }
+
+        FontMetrics fontMetrics = g.getFontMetrics();
+
+        for (int i : visible) {
+            paintNode(g, i, detail, fontMetrics);
+        }
+
+        g.setTransform(transform);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
+    }
+
+    /**
+     * Paints one edge, unless it lies outside the view or is too short to see.
+     */
+    private void paintEdge(Graphics2D g, int e, Rectangle view, boolean detail) {
+        int i = this.from[e];
+        int j = this.to[e];
+
+        int minX = FastMath.min(this.x[i], this.x[j]);
+        int minY = FastMath.min(this.y[i], this.y[j]);
+        int maxX = FastMath.max(this.x[i], this.x[j]);
+        int maxY = FastMath.max(this.y[i], this.y[j]);
+
+        if (maxX < view.x || minX > view.x + view.width || maxY < view.y || minY > view.y + view.height) {
+            return;
+        }
+
+        if ((maxX - minX) * this.scale < 1 && (maxY - minY) * this.scale < 1) {
+            return;
+        }
+
+        Edge edge = this.edges.get(e);
+
+        if (this.selectedEdges.get(e)) {
+            g.setColor(SELECTED_EDGE_COLOR);
+        } else if (edge.isHighlighted()) {
+            g.setColor(HIGHLIGHTED_EDGE_COLOR);
+        } else {
+            g.setColor(EDGE_COLOR);
+        }
+
+        if (!detail) {
+            g.drawLine(this.x[i], this.y[i], this.x[j], this.y[j]);
+            return;
+        }
+
+        Point a = boundaryPoint(i, this.x[j], this.y[j]);
+        Point b = boundaryPoint(j, this.x[i], this.y[i]);
+        g.drawLine(a.x, a.y, b.x, b.y);
+
+        paintEndpoint(g, edge.getEndpoint1(), b, a);
+        paintEndpoint(g, edge.getEndpoint2(), a, b);
+    }
+
+    /**
+     * Paints the endpoint at 'to' of an edge coming from 'from', as DisplayEdge does.
+     */
+    private void paintEndpoint(Graphics2D g, Endpoint endpoint, Point from, Point to) {
+        double theta = FastMath.atan2(from.y - to.y, to.x - from.x);
+
+        if (endpoint == Endpoint.ARROW) {
+            int itheta = (int) ((theta * 360.0) / (2.0 * FastMath.PI) + 180);
+            g.fillArc(to.x - 17, to.y - 17, 34, 34, itheta - 17, 35);
+        } else if (endpoint == Endpoint.CIRCLE) {
+            final int diameter = 13;
+            int xminus = (int) (FastMath.cos(theta) * diameter / 2);
+            int yplus = (int) (FastMath.sin(theta) * diameter / 2);
+            g.fillOval(to.x - xminus - diameter / 2, to.y + yplus - diameter / 2, diameter, diameter);
+
+            Color color = g.getColor();
+            g.setColor(Color.white);
+            g.fillOval(to.x - xminus - diameter / 4 - 1, to.y + yplus - diameter / 4 - 1,
+                    (int) (diameter / 1.4), (int) (diameter / 1.4));
+            g.setColor(color);
+        }
+    }
+
+    /**
+     * Paints one node: its shape and label in detail, its shape alone when zoomed out, and a plain box when zoomed
+     * out further.
+     */
+    private void paintNode(Graphics2D g, int i, boolean detail, FontMetrics fontMetrics) {
+        boolean selected = this.selectedNodes.get(i);
+        int left = this.x[i] - this.halfWidth[i];
+        int top = this.y[i] - this.halfHeight[i];
+        int width = 2 * this.halfWidth[i];
+        int height = 2 * this.halfHeight[i];
+
+        g.setColor(selected ? DisplayNodeUtils.getNodeSelectedFillColor() : DisplayNodeUtils.getNodeFillColor());
+
+        if (this.scale < SHAPE_SCALE) {
+            g.fillRect(left, top, width, height);
+            return;
+        }
+
+        Shape shape = this.oval[i]
+                ? new Ellipse2D.Double(left, top, width - 1, height - 1)
+                : new RoundRectangle2D.Double(left, top, width - 1, height - 1, 4, 3);
+
+        g.fill(shape);
+        g.setColor(selected ? DisplayNodeUtils.getNodeSelectedEdgeColor() : DisplayNodeUtils.getNodeEdgeColor());
+        g.draw(shape);
+
+        if (detail) {
+            String name = this.nodes.get(i).getName();
+            g.setColor(DisplayNodeUtils.getNodeTextColor());
+            g.drawString(name, this.x[i] - fontMetrics.stringWidth(name) / 2,
+                    top + fontMetrics.getAscent() + DisplayNodeUtils.getPixelGap());
+        }
+    }
+
+    /**
+     * Returns where the segment from the center of the given node toward the given point leaves the node's shape.
+     */
+    private Point boundaryPoint(int i, int towardX, int towardY) {
+        double dx = towardX - this.x[i];
+        double dy = towardY - this.y[i];
+
+        if (dx == 0 && dy == 0) {
+            return new Point(this.x[i], this.y[i]);
+        }
+
+        double a = this.halfWidth[i];
+        double b = this.halfHeight[i];
+        double t;
+
+        if (this.oval[i]) {
+            t = 1.0 / FastMath.sqrt((dx / a) * (dx / a) + (dy / b) * (dy / b));
+        } else {
+            t = FastMath.min(dx == 0 ? Double.POSITIVE_INFINITY : a / FastMath.abs(dx),
+                    dy == 0 ? Double.POSITIVE_INFINITY : b / FastMath.abs(dy));
+        }
+
+        t = FastMath.min(t, 1.0);
+        return new Point((int) FastMath.round(this.x[i] + t * dx), (int) FastMath.round(this.y[i] + t * dy));
+    }
+
+    /**
+     * Returns whether the given node's shape contains the given point.
+     */
+    private boolean contains(int i, int px, int py) {
+        double dx = px - this.x[i];
+        double dy = py - this.y[i];
+        double a = this.halfWidth[i];
+        double b = this.halfHeight[i];
+
+        if (this.oval[i]) {
+            return (dx / a) * (dx / a) + (dy / b) * (dy / b) <= 1.0;
+        } else {
+            return FastMath.abs(dx) <= a && FastMath.abs(dy) <= b;
+        }
+    }
+
+    /**
+     * Returns the area covering the given nodes and all of their edges, with room for endpoints.
+     */
+    private Rectangle getDirtyBounds(int[] nodes) {
+        Rectangle dirty = null;
+
+        for (int i : nodes) {
+            Rectangle r = getNodeBounds(i);
+
+            for (int e : this.incident[i]) {
+                int j = this.from[e] == i ? this.to[e] : this.from[e];
+                r.add(this.x[j], this.y[j]);
+            }
+
+            dirty = dirty == null ? r : dirty.union(r);
+        }
+
+        if (dirty == null) {
+            return new Rectangle();
+        }
+
+        dirty.grow(ENDPOINT_MARGIN, ENDPOINT_MARGIN);
+        return dirty;
+    }
+
+    /**
+     * Sets the edges selected to be exactly those with both nodes in the given set.
+     */
+    private void selectConnectingEdges(BitSet nodes) {
+        this.selectedEdges.clear();
+
+        nodes.stream().forEach(i -> {
+            for (int e : this.incident[i]) {
+                if (nodes.get(this.from[e]) && nodes.get(this.to[e])) {
+                    this.selectedEdges.set(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Rebuilds the quadtree over the current node positions.
+     */
+    private void rebuildIndex() {
+        int minX = 0, minY = 0, maxX = 0, maxY = 0;
+
+        for (int i = 0; i < this.nodes.size(); i++) {
+            minX = i == 0 ? this.x[i] : FastMath.min(minX, this.x[i]);
+            minY = i == 0 ? this.y[i] : FastMath.min(minY, this.y[i]);
+            maxX = i == 0 ? this.x[i] : FastMath.max(maxX, this.x[i]);
+            maxY = i == 0 ? this.y[i] : FastMath.max(maxY, this.y[i]);
+        }
+
+        // Leave room for nodes to be dragged a little without a rebuild.
+        int pad = 1000;
+        this.index = new QuadTree(minX - pad, minY - pad, maxX + pad, maxY + pad, 0);
+
+        for (int i = 0; i < this.nodes.size(); i++) {
+            this.index.insert(i);
+        }
+    }
+
+    /**
+     * A point quadtree over the node centers. Leaves hold up to CAPACITY nodes before splitting.
+     */
+    private final class QuadTree {
+
+        /**
+         * The number of nodes a leaf holds before it splits.
+         */
+        private static final int CAPACITY = 16;
+
+        /**
+         * The depth below which leaves no longer split.
+         */
+        private static final int MAX_DEPTH = 24;
+
+        /**
+         * The bounds of this quadrant, inclusive.
+         */
+        private final int minX, minY, maxX, maxY;
+
+        /**
+         * The depth of this quadrant.
+         */
+        private final int depth;
+
+        /**
+         * The nodes in this leaf; null once split.
+         */
+        private int[] items = new int[CAPACITY];
+
+        /**
+         * The number of nodes in this leaf.
+         */
+        private int size = 0;
+
+        /**
+         * The four subquadrants, once split.
+         */
+        private QuadTree[] children;
+
+        private QuadTree(int minX, int minY, int maxX, int maxY, int depth) {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.depth = depth;
+        }
+
+        private boolean contains(int px, int py) {
+            return px >= this.minX && px <= this.maxX && py >= this.minY && py <= this.maxY;
+        }
+
+        private void insert(int i) {
+            if (this.children != null) {
+                child(x[i], y[i]).insert(i);
+                return;
+            }
+
+            if (this.size == this.items.length) {
+                if (this.depth < MAX_DEPTH && this.maxX > this.minX && this.maxY > this.minY) {
+                    split();
+                    insert(i);
+                    return;
+                }
+
+                this.items = Arrays.copyOf(this.items, 2 * this.size);
+            }
+
+            this.items[this.size++] = i;
+        }
+
+        private void remove(int i) {
+            if (this.children != null) {
+                child(x[i], y[i]).remove(i);
+                return;
+            }
+
+            for (int k = 0; k < this.size; k++) {
+                if (this.items[k] == i) {
+                    this.items[k] = this.items[--this.size];
+                    return;
+                }
+            }
+        }
+
+        private void query(int qMinX, int qMinY, int qMaxX, int qMaxY, IntConsumer action) {
+            if (qMaxX < this.minX || qMinX > this.maxX || qMaxY < this.minY || qMinY > this.maxY) {
+                return;
+            }
+
+            if (this.children != null) {
+                for (QuadTree child : this.children) {
+                    child.query(qMinX, qMinY, qMaxX, qMaxY, action);
+                }
+
+                return;
+            }
+
+            for (int k = 0; k < this.size; k++) {
+                int i = this.items[k];
+
+                if (x[i] >= qMinX && x[i] <= qMaxX && y[i] >= qMinY && y[i] <= qMaxY) {
+                    action.accept(i);
+                }
+            }
+        }
+
+        private void split() {
+            int midX = (int) (((long) this.minX + this.maxX) >> 1);
+            int midY = (int) (((long) this.minY + this.maxY) >> 1);
+
+            this.children = new QuadTree[]{
+                    new QuadTree(this.minX, this.minY, midX, midY, this.depth + 1),
+                    new QuadTree(midX + 1, this.minY, this.maxX, midY, this.depth + 1),
+                    new QuadTree(this.minX, midY + 1, midX, this.maxY, this.depth + 1),
+                    new QuadTree(midX + 1, midY + 1, this.maxX, this.maxY, this.depth + 1)};
+
+            for (int k = 0; k < this.size; k++) {
+                child(x[this.items[k]], y[this.items[k]]).insert(this.items[k]);
+            }
+
+            this.items = null;
+            this.size = 0;
+        }
+
+        private QuadTree child(int px, int py) {
+            int midX = (int) (((long) this.minX + this.maxX) >> 1);
+            int midY = (int) (((long) this.minY + this.maxY) >> 1);
+            return this.children[(px > midX ? 1 : 0) + (py > midY ? 2 : 0)];
+        }
+    }
+}
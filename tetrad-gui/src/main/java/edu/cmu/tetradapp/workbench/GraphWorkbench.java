@@ -67,6 +67,14 @@ public class GraphWorkbench extends AbstractWorkbench implements TripleClassifie
      * Constant <code>UNDIRECTED_EDGE=5</code>
      */
     public static final int UNDIRECTED_EDGE = 5;
+    /**
+     * Graphs with more nodes than this are drawn on a canvas rather than with a component per node and edge.
+     */
+    public static final int CANVAS_NODE_THRESHOLD = 1000;
+    /**
+     * Graphs with more edges than this are drawn on a canvas rather than with a component per node and edge.
+     */
+    public static final int CANVAS_EDGE_THRESHOLD = 5000;
     @Serial
     private static final long serialVersionUID = 938742592547332849L;
     //====================PRIVATE FIELDS=================================//
@@ -102,6 +110,16 @@ public class GraphWorkbench extends AbstractWorkbench implements TripleClassifie
 
     //========================PUBLIC METHODS==============================//
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Graphs larger than CANVAS_NODE_THRESHOLD nodes or CANVAS_EDGE_THRESHOLD edges are drawn on a canvas.
+     */
+    @Override
+    protected boolean isCanvasRendered(Graph graph) {
+        return graph.getNumNodes() > CANVAS_NODE_THRESHOLD || graph.getNumEdges() > CANVAS_EDGE_THRESHOLD;
+    }
+
     private static boolean containsName(List<Node> nodes, String name) {
         for (Node node : nodes) {
             if (name.equals(node.getName())) {
@@ -154,6 +154,16 @@ public class LayoutMenu extends JMenu {
             LayoutMenu.this.getCopyLayoutAction().actionPerformed(null);
         });
 
+        JMenuItem barnesHut = new JMenuItem("Barnes-Hut (Large Graphs)");
+        this.add(barnesHut);
+
+        barnesHut.addActionListener(e -> {
+            LayoutUtils.barnesHutLayout(LayoutMenu.this.getLayoutEditable());
+
+            // Copy the laid out graph to the clipboard.
+            LayoutMenu.this.getCopyLayoutAction().actionPerformed(null);
+        });
+
         JMenuItem kamadaKawai = new JMenuItem("Kamada-Kawai");
         this.add(kamadaKawai);
 
@@ -664,6 +664,26 @@ public class LayoutUtils {
         LayoutUtils.layout = Layout.fruchtermReingold;
     }
 
+    /**
+     * Lays out the graph with a multilevel Barnes-Hut force-directed layout, which scales to graphs with many
+     * thousands of nodes.
+     *
+     * @param layoutEditable a {@link edu.cmu.tetradapp.util.LayoutEditable} object
+     */
+    public static void barnesHutLayout(LayoutEditable layoutEditable) {
+        Graph graph = layoutEditable.getGraph();
+
+        for (Node node : new ArrayList<>(graph.getNodes())) {
+            if (node.getNodeType() == NodeType.ERROR) {
+                ((SemGraph) graph).setShowErrorTerms(false);
+            }
+        }
+
+        LayoutUtil.barnesHutLayout(graph);
+        layoutEditable.layoutByGraph(graph);
+        LayoutUtils.layout = Layout.barnesHut;
+    }
+
     /**
      * <p>distanceFromSelectedLayout.</p>
      *
@@ -733,6 +753,9 @@ public class LayoutUtils {
             case fruchtermReingold:
                 LayoutUtils.fruchtermanReingoldLayout(layoutEditable);
                 break;
+            case barnesHut:
+                LayoutUtils.barnesHutLayout(layoutEditable);
+                break;
             default:
         }
     }
@@ -832,6 +855,11 @@ public class LayoutUtils {
          */
         fruchtermReingold,
 
+        /**
+         * barnesHut
+         */
+        barnesHut,
+
         /**
          * distanceFromSelected
          */
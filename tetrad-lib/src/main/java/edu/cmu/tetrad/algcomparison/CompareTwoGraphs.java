@@ -1,6 +1,7 @@
 package edu.cmu.tetrad.algcomparison;
 
 import edu.cmu.tetrad.algcomparison.statistic.*;
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.search.utils.GraphSearchUtils;
@@ -261,12 +262,16 @@ public class CompareTwoGraphs {
         List<String> desc = new ArrayList<>();
         List<Double> values = new ArrayList<>();
 
-        for (Statistic statistic : statistics) {
-            try {
-                values.add(statistic.getValue(trueGraph, _targetGraph, dataModel));
-                abbr.add(statistic.getAbbreviation());
-                desc.add(statistic.getDescription());
-            } catch (Exception ignored) {
+        GraphComparison.Scope scope = GraphComparison.open(trueGraph, _targetGraph);
+
+        try (scope) {
+            for (Statistic statistic : statistics) {
+                try {
+                    values.add(statistic.getValue(trueGraph, _targetGraph, dataModel));
+                    abbr.add(statistic.getAbbreviation());
+                    desc.add(statistic.getDescription());
+                } catch (Exception ignored) {
+                }
             }
         }
 
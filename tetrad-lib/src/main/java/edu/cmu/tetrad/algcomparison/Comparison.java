@@ -35,6 +35,7 @@ import edu.cmu.tetrad.algcomparison.statistic.ElapsedCpuTime;
 import edu.cmu.tetrad.algcomparison.statistic.ParameterColumn;
 import edu.cmu.tetrad.algcomparison.statistic.Statistic;
 import edu.cmu.tetrad.algcomparison.statistic.Statistics;
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.algcomparison.utils.HasKnowledge;
 import edu.cmu.tetrad.algcomparison.utils.HasParameterValues;
 import edu.cmu.tetrad.algcomparison.utils.HasParameters;
@@ -150,6 +151,15 @@ public class Comparison implements TetradSerializable {
      * True if knowledge should be set on the algorithms (if supplied).
      */
     private boolean setAlgorithmKnowledge = false;
+    /**
+     * True if finished tasks should be checkpointed under the results path and skipped when the comparison is run
+     * again.
+     */
+    private boolean resumable = false;
+    /**
+     * The checkpoint store for the current comparison, or null if the comparison is not resumable.
+     */
+    private transient ComparisonResultStore resultStore = null;
 
     /**
      * Initializes a new instance of the Comparison class.
@@ -1103,6 +1113,9 @@ public class Comparison implements TetradSerializable {
 
         double[][][][] allStats = new double[4][algorithmSimulationWrappers.size()][statistics.size() + 1][numRuns];
 
+        this.resultStore = this.resumable && this.resultsPath != null
+                ? new ComparisonResultStore(new File(this.resultsPath, "checkpoints")) : null;
+
         List<Callable<Boolean>> tasks = new ArrayList<>();
 
         for (int algSimIndex = 0; algSimIndex < algorithmSimulationWrappers.size(); algSimIndex++) {
@@ -1313,6 +1326,22 @@ public class Comparison implements TetradSerializable {
         AlgorithmWrapper algorithmWrapper = algorithmSimulationWrapper.getAlgorithmWrapper();
         SimulationWrapper simulationWrapper = algorithmSimulationWrapper.getSimulationWrapper();
 
+        String taskKey = ComparisonResultStore.taskKey(algorithmWrapper.getDescription(),
+                algorithmWrapper.getParameters(), algorithmWrapper.getAlgorithmSpecificParameters(),
+                simulationWrapper.getDescription(), simulationWrapper.getParameters(),
+                simulationWrapper.getSimulationSpecificParameters(), this.comparisonGraph, statistics, run.runIndex());
+        ComparisonResultStore.TaskResult restored = this.resultStore == null ? null : this.resultStore.load(taskKey);
+
+        if (restored != null) {
+            synchronized (this) {
+                restored.copyTo(allStats, this.graphTypeUsed, run.algSimIndex(), run.runIndex());
+            }
+
+            stdout.println((run.algSimIndex() + 1) + ". " + algorithmWrapper.getDescription()
+                    + " simulationWrapper: " + simulationWrapper.getDescription() + " (restored from checkpoint)");
+            return;
+        }
+
         DataModel data = simulationWrapper.getDataModel(run.runIndex());
         Graph trueGraph = simulationWrapper.getTrueGraph(run.runIndex());
 
@@ -1382,6 +1411,23 @@ public class Comparison implements TetradSerializable {
 
         saveGraph(this.resultsPath, graphOut, run.runIndex(), simIndex, algIndex, taskCpuTime, stdout);
 
+        try (ComparisonResultStore.TaskWriter writer = this.resultStore == null ? null
+                : this.resultStore.begin(taskKey)) {
+            if (writer != null) writer.writeGraph(graphOut);
+            recordStatistics(simulationWrappers, algorithmWrapper, simulationWrapper, statistics, numGraphTypes,
+                    allStats, run, data, trueGraph, graphOut, taskCpuTime, writer);
+            if (writer != null) writer.complete();
+        }
+    }
+
+    /**
+     * Calculates the statistics for the graph found in one run, putting them in allStats and, if the comparison is
+     * resumable, recording them with the given writer.
+     */
+    private void recordStatistics(List<SimulationWrapper> simulationWrappers, AlgorithmWrapper algorithmWrapper,
+                                  SimulationWrapper simulationWrapper, Statistics statistics, int numGraphTypes,
+                                  double[][][][] allStats, Run run, DataModel data, Graph trueGraph, Graph graphOut,
+                                  long taskCpuTime, ComparisonResultStore.TaskWriter writer) {
         if (trueGraph != null) {
             graphOut = GraphUtils.replaceNodes(graphOut, trueGraph.getNodes());
 
@@ -1416,7 +1462,7 @@ public class Comparison implements TetradSerializable {
 
             truth[0] = new EdgeListGraph(comparisonGraph);
 
-                if (data.isMixed()) {
+            if (data.isMixed()) {
                 truth[1] = getSubgraph(comparisonGraph, true, true, simulationWrapper.getDataModel(run.runIndex()));
                 truth[2] = getSubgraph(comparisonGraph, true, false, simulationWrapper.getDataModel(run.runIndex()));
                 truth[3] = getSubgraph(comparisonGraph, false, false, simulationWrapper.getDataModel(run.runIndex()));
@@ -1429,36 +1475,43 @@ public class Comparison implements TetradSerializable {
 
                 int statIndex = -1;
 
-                for (Statistic _stat : statistics.getStatistics()) {
-                    statIndex++;
+                // The statistics for this pair of graphs share one comparison.
+                GraphComparison.Scope scope = GraphComparison.open(truth[u], est[u]);
 
-                    if (_stat instanceof ParameterColumn) {
-                        continue;
-                    }
+                try {
+                    for (Statistic _stat : statistics.getStatistics()) {
+                        statIndex++;
 
-                    if (_stat instanceof HasKnowledge) {
-                        ((HasKnowledge) _stat).setKnowledge(knowledge);
-                    }
+                        if (_stat instanceof ParameterColumn) {
+                            continue;
+                        }
 
-                    double stat;
+                        if (_stat instanceof HasKnowledge) {
+                            ((HasKnowledge) _stat).setKnowledge(knowledge);
+                        }
 
-                    if (_stat instanceof ElapsedCpuTime) {
-                        stat = taskCpuTime / 1000.0;
-                    } else {
-                        stat = _stat.getValue(truth[u], est[u], data);
-                    }
+                        double stat;
+
+                        if (_stat instanceof ElapsedCpuTime) {
+                            stat = taskCpuTime / 1000.0;
+                        } else {
+                            stat = _stat.getValue(truth[u], est[u], data);
+                        }
+
+                        synchronized (this) {
+                            allStats[u][run.algSimIndex()][statIndex][run.runIndex()] = stat;
+                        }
 
-                    synchronized (this) {
-                        allStats[u][run.algSimIndex()][statIndex][run.runIndex()] = stat;
+                        if (writer != null) writer.writeStat(u, statIndex, stat);
                     }
+                } finally {
+                    scope.close();
                 }
             }
         } else {
             int statIndex = -1;
             this.graphTypeUsed[0] = true;
 
-//            graphOut = GraphUtils.replaceNodes(graphOut, trueGraph.getNodes());
-
             Graph[] est = new Graph[numGraphTypes];
 
             for (Statistic _stat : statistics.getStatistics()) {
@@ -1487,6 +1540,8 @@ public class Comparison implements TetradSerializable {
                 synchronized (this) {
                     allStats[0][run.algSimIndex()][statIndex][run.runIndex()] = stat;
                 }
+
+                if (writer != null) writer.writeStat(0, statIndex, stat);
             }
         }
 
@@ -1894,6 +1949,29 @@ public class Comparison implements TetradSerializable {
         this.setAlgorithmKnowledge = setAlgorithmKnowledge;
     }
 
+    /**
+     * Returns whether the comparison is resumable.
+     *
+     * @return True if so.
+     * @see #setResumable(boolean)
+     */
+    public boolean isResumable() {
+        return this.resumable;
+    }
+
+    /**
+     * Sets whether the comparison is resumable. If so, the results of each (algorithm, simulation, run) task are
+     * streamed to a checkpoint directory under the results path as the task finishes, and tasks whose results are
+     * already there, for the same algorithm, simulation, parameters and statistics, are not run again. A comparison
+     * that was stopped part way can then be resumed by running it again. Simulations should be given a fixed seed so
+     * that resumed tasks see the same data as the ones already finished.
+     *
+     * @param resumable True if the comparison should be resumable.
+     */
+    public void setResumable(boolean resumable) {
+        this.resumable = resumable;
+    }
+
     /**
      * An enum of comparison graphs types.
      */
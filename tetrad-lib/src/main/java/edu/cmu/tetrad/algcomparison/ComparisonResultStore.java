@@ -0,0 +1,381 @@
+package edu.cmu.tetrad.algcomparison;
+
+import edu.cmu.tetrad.algcomparison.statistic.Statistic;
+import edu.cmu.tetrad.algcomparison.statistic.Statistics;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphSaveLoadUtils;
+import edu.cmu.tetrad.util.Parameters;
+import edu.cmu.tetrad.util.TetradLogger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * An on-disk store of the results of comparison tasks, so that a comparison that is stopped part way--by a crash, an
+ * out-of-memory error or a timeout--can be resumed without rerunning the tasks that already finished.
+ * <p>
+ * Each task (one algorithm on one simulation for one run, with given parameters) is identified by a key string, and its
+ * results are written to an append-only file named for a hash of the key as the task proceeds: first the key, then one
+ * line per statistic as it is calculated, and finally a completion marker. The estimated graph is saved next to it.
+ * Only files with the completion marker and a matching key are read back, so a task that was interrupted part way is
+ * simply run again.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ * @see Comparison#setResumable(boolean)
+ * @see TimeoutComparison#setResumable(boolean)
+ */
+public class ComparisonResultStore {
+
+    /**
+     * The marker written as the last line of a completed task.
+     */
+    private static final String DONE = "done";
+
+    /**
+     * The directory holding the task files.
+     */
+    private final File directory;
+
+    /**
+     * Constructs a store in the given directory, which is created if necessary.
+     *
+     * @param directory The directory.
+     */
+    public ComparisonResultStore(File directory) {
+        if (directory == null) {
+            throw new NullPointerException("Directory must not be null.");
+        }
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Could not create directory: " + directory);
+        }
+
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the key identifying a task: the algorithm and simulation with the values of their parameters, the
+     * comparison graph type, the statistics, and the run. The values are read without recording the parameters as
+     * used, so the key does not depend on which tasks have already run.
+     *
+     * @param algorithm          The description of the algorithm.
+     * @param algorithmParams    The names of the algorithm's parameters.
+     * @param algorithmValues    The values of the algorithm's parameters.
+     * @param simulation         The description of the simulation.
+     * @param simulationParams   The names of the simulation's parameters.
+     * @param simulationValues   The values of the simulation's parameters.
+     * @param comparisonGraph    The comparison graph type.
+     * @param statistics         The statistics.
+     * @param runIndex           The index of the run.
+     * @return The key.
+     */
+    public static String taskKey(String algorithm, List<String> algorithmParams, Parameters algorithmValues,
+                                 String simulation, List<String> simulationParams, Parameters simulationValues,
+                                 Object comparisonGraph, Statistics statistics, int runIndex) {
+        StringBuilder key = new StringBuilder();
+        key.append("algorithm: ").append(algorithm).append('\n');
+        appendParameters(key, algorithmParams, algorithmValues);
+        key.append("simulation: ").append(simulation).append('\n');
+        appendParameters(key, simulationParams, simulationValues);
+        key.append("comparison graph: ").append(comparisonGraph).append('\n');
+        key.append("statistics:");
+
+        for (Statistic statistic : statistics.getStatistics()) {
+            key.append(' ').append(statistic.getAbbreviation());
+        }
+
+        key.append('\n').append("run: ").append(runIndex + 1);
+        return key.toString();
+    }
+
+    /**
+     * Returns the results of the completed task with the given key, or null if that task has not completed.
+     *
+     * @param key The task key.
+     * @return The results, or null.
+     */
+    public TaskResult load(String key) {
+        File file = statsFile(key);
+
+        if (!file.exists()) {
+            return null;
+        }
+
+        Map<Integer, Map<Integer, Double>> values = new HashMap<>();
+        boolean done = false;
+
+        try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String header = in.readLine();
+
+            if (header == null || !header.equals("key\t" + escape(key))) {
+                return null;
+            }
+
+            String line;
+
+            while ((line = in.readLine()) != null) {
+                if (line.equals(DONE)) {
+                    done = true;
+                    break;
+                }
+
+                String[] tokens = line.split("\t");
+
+                if (tokens.length != 4 || !tokens[0].equals("stat")) {
+                    return null;
+                }
+
+                values.computeIfAbsent(Integer.parseInt(tokens[1]), u -> new HashMap<>())
+                        .put(Integer.parseInt(tokens[2]), Double.parseDouble(tokens[3]));
+            }
+        } catch (IOException | NumberFormatException e) {
+            TetradLogger.getInstance().log("Ignoring unreadable checkpoint " + file + ": " + e.getMessage());
+            return null;
+        }
+
+        return done ? new TaskResult(values, graphFile(key)) : null;
+    }
+
+    /**
+     * Starts writing the results of the task with the given key, discarding any earlier incomplete results for it.
+     *
+     * @param key The task key.
+     * @return A writer for the task's results.
+     */
+    public TaskWriter begin(String key) {
+        return new TaskWriter(statsFile(key), graphFile(key), key);
+    }
+
+    /**
+     * Appends the values of the given parameters, one per line.
+     */
+    private static void appendParameters(StringBuilder key, List<String> names, Parameters parameters) {
+        for (String name : names) {
+            key.append(name).append(" = ").append(Arrays.toString(parameters.getValues(name))).append('\n');
+        }
+    }
+
+    /**
+     * Returns the file holding the statistics for the given key.
+     */
+    private File statsFile(String key) {
+        return new File(this.directory, "task-" + id(key) + ".txt");
+    }
+
+    /**
+     * Returns the file holding the estimated graph for the given key.
+     */
+    private File graphFile(String key) {
+        return new File(this.directory, "task-" + id(key) + ".graph.txt");
+    }
+
+    /**
+     * Returns a name-based identifier for the given key.
+     */
+    private static String id(String key) {
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * Puts the key on one line.
+     */
+    private static String escape(String key) {
+        return key.replace("\\", "\\\\").replace("\r", "\\r").replace("\n", "\\n");
+    }
+
+    /**
+     * The results of a completed task.
+     */
+    public static final class TaskResult {
+
+        /**
+         * The statistic values, by graph type and then by statistic index.
+         */
+        private final Map<Integer, Map<Integer, Double>> values;
+
+        /**
+         * The file holding the estimated graph.
+         */
+        private final File graphFile;
+
+        private TaskResult(Map<Integer, Map<Integer, Double>> values, File graphFile) {
+            this.values = values;
+            this.graphFile = graphFile;
+        }
+
+        /**
+         * Copies the recorded values into the statistics of a comparison, indexed by graph type, algorithm-simulation
+         * pair, statistic and run, and marks the graph types that have values as used.
+         *
+         * @param allStats      The statistics of the comparison.
+         * @param graphTypeUsed Whether each graph type is used.
+         * @param algSimIndex   The index of the algorithm-simulation pair.
+         * @param runIndex      The index of the run.
+         */
+        public void copyTo(double[][][][] allStats, boolean[] graphTypeUsed, int algSimIndex, int runIndex) {
+            for (int u = 0; u < allStats.length; u++) {
+                Map<Integer, Double> row = this.values.get(u);
+                if (row == null) continue;
+                graphTypeUsed[u] = true;
+
+                for (Map.Entry<Integer, Double> entry : row.entrySet()) {
+                    if (entry.getKey() < allStats[u][algSimIndex].length) {
+                        allStats[u][algSimIndex][entry.getKey()][runIndex] = entry.getValue();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns true iff statistics were recorded for the given graph type.
+         *
+         * @param graphType The graph type index.
+         * @return True if so.
+         */
+        public boolean hasGraphType(int graphType) {
+            return this.values.containsKey(graphType);
+        }
+
+        /**
+         * Returns true iff a value was recorded for the given statistic and graph type.
+         *
+         * @param graphType The graph type index.
+         * @param statIndex The statistic index.
+         * @return True if so.
+         */
+        public boolean hasValue(int graphType, int statIndex) {
+            Map<Integer, Double> row = this.values.get(graphType);
+            return row != null && row.containsKey(statIndex);
+        }
+
+        /**
+         * Returns the recorded value of the given statistic for the given graph type, or NaN if none was recorded.
+         *
+         * @param graphType The graph type index.
+         * @param statIndex The statistic index.
+         * @return The value.
+         */
+        public double getValue(int graphType, int statIndex) {
+            Map<Integer, Double> row = this.values.get(graphType);
+            if (row == null) return Double.NaN;
+            return row.getOrDefault(statIndex, Double.NaN);
+        }
+
+        /**
+         * Returns the estimated graph, or null if it was not saved.
+         *
+         * @return The graph.
+         */
+        public Graph getGraph() {
+            if (!this.graphFile.exists()) return null;
+            return GraphSaveLoadUtils.loadGraphTxt(this.graphFile);
+        }
+    }
+
+    /**
+     * Writes the results of one task as they become available. If the file cannot be written, the problem is logged and
+     * the task is left incomplete, so that it is run again on resumption; the comparison itself is not interrupted.
+     */
+    public static final class TaskWriter implements Closeable {
+
+        /**
+         * The file holding the statistics.
+         */
+        private final File file;
+
+        /**
+         * The file holding the estimated graph.
+         */
+        private final File graphFile;
+
+        /**
+         * The output, or null if writing has failed or finished.
+         */
+        private PrintWriter out;
+
+        private TaskWriter(File file, File graphFile, String key) {
+            this.file = file;
+            this.graphFile = graphFile;
+
+            try {
+                this.out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file, false),
+                        StandardCharsets.UTF_8));
+                this.out.println("key\t" + escape(key));
+                check();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Saves the estimated graph.
+         *
+         * @param graph The graph.
+         */
+        public synchronized void writeGraph(Graph graph) {
+            if (this.out == null) return;
+
+            try {
+                GraphSaveLoadUtils.saveGraph(graph, this.graphFile, false);
+            } catch (IllegalArgumentException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Records the value of a statistic.
+         *
+         * @param graphType The graph type index.
+         * @param statIndex The statistic index.
+         * @param value     The value.
+         */
+        public synchronized void writeStat(int graphType, int statIndex, double value) {
+            if (this.out == null) return;
+            this.out.println("stat\t" + graphType + "\t" + statIndex + "\t" + value);
+            check();
+        }
+
+        /**
+         * Marks the task as completed and closes the file.
+         */
+        public synchronized void complete() {
+            if (this.out == null) return;
+            this.out.println(DONE);
+            check();
+            close();
+        }
+
+        /**
+         * Closes the file; a task that has not been marked completed will be run again on resumption.
+         */
+        @Override
+        public synchronized void close() {
+            if (this.out != null) {
+                this.out.close();
+                this.out = null;
+            }
+        }
+
+        /**
+         * Flushes the output so that completed lines survive a crash, and gives up if writing has failed.
+         */
+        private void check() {
+            this.out.flush();
+
+            if (this.out.checkError()) {
+                fail(new IOException("Write failed"));
+            }
+        }
+
+        /**
+         * Logs a failure and stops writing.
+         */
+        private void fail(Exception e) {
+            TetradLogger.getInstance().log("Could not write checkpoint " + this.file + ": " + e.getMessage());
+            close();
+        }
+    }
+}
@@ -33,6 +33,7 @@ import edu.cmu.tetrad.algcomparison.statistic.ElapsedCpuTime;
 import edu.cmu.tetrad.algcomparison.statistic.ParameterColumn;
 import edu.cmu.tetrad.algcomparison.statistic.Statistic;
 import edu.cmu.tetrad.algcomparison.statistic.Statistics;
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.algcomparison.utils.HasKnowledge;
 import edu.cmu.tetrad.algcomparison.utils.HasParameterValues;
 import edu.cmu.tetrad.algcomparison.utils.HasParameters;
@@ -122,6 +123,15 @@ public class TimeoutComparison {
      * The comparison graph.
      */
     private ComparisonGraph comparisonGraph = ComparisonGraph.true_DAG;
+    /**
+     * True if finished tasks should be checkpointed under the results path and skipped when the comparison is run
+     * again.
+     */
+    private boolean resumable;
+    /**
+     * The checkpoint store for the current comparison, or null if the comparison is not resumable.
+     */
+    private transient ComparisonResultStore resultStore;
 
     /**
      * Represents a comparison of two time values for timeout purposes.
@@ -870,6 +880,9 @@ public class TimeoutComparison {
 
         double[][][][] allStats = new double[4][algorithmSimulationWrappers.size()][statistics.size() + 1][numRuns];
 
+        this.resultStore = this.resumable && this.resultsPath != null
+                ? new ComparisonResultStore(new File(this.resultsPath, "checkpoints")) : null;
+
         List<AlgorithmTask> tasks = new ArrayList<>();
         int index = 0;
 
@@ -987,6 +1000,28 @@ public class TimeoutComparison {
         this.parallelized = parallelized;
     }
 
+    /**
+     * Returns whether the comparison is resumable.
+     *
+     * @return True if so.
+     * @see #setResumable(boolean)
+     */
+    public boolean isResumable() {
+        return this.resumable;
+    }
+
+    /**
+     * Sets whether the comparison is resumable. If so, the results of each (algorithm, simulation, run) task are
+     * streamed to a checkpoint directory under the results path as the task finishes, and tasks whose results are
+     * already there are not run again. Tasks that timed out are not recorded as finished and are tried again.
+     *
+     * @param resumable True if the comparison should be resumable.
+     * @see Comparison#setResumable(boolean)
+     */
+    public void setResumable(boolean resumable) {
+        this.resumable = resumable;
+    }
+
     /**
      * <p>isSaveCPDAGs.</p>
      *
@@ -1153,6 +1188,21 @@ public class TimeoutComparison {
         AlgorithmSimulationWrapper algorithmSimulationWrapper = algorithmSimulationWrappers.get(run.getAlgSimIndex());
         AlgorithmWrapper algorithmWrapper = algorithmSimulationWrapper.getAlgorithmWrapper();
         SimulationWrapper simulationWrapper = algorithmSimulationWrapper.getSimulationWrapper();
+
+        String taskKey = ComparisonResultStore.taskKey(algorithmWrapper.getDescription(),
+                algorithmWrapper.getParameters(), algorithmWrapper.getAlgorithmSpecificParameters(),
+                simulationWrapper.getDescription(), simulationWrapper.getParameters(),
+                simulationWrapper.getSimulationSpecificParameters(), this.comparisonGraph, statistics, run.getRunIndex());
+        ComparisonResultStore.TaskResult restored = this.resultStore == null ? null : this.resultStore.load(taskKey);
+
+        if (restored != null) {
+            restored.copyTo(allStats, this.graphTypeUsed, run.getAlgSimIndex(), run.getRunIndex());
+
+            TetradLogger.getInstance().log((run.getAlgSimIndex() + 1) + ". " + algorithmWrapper.getDescription()
+                    + " simulationWrapper: " + simulationWrapper.getDescription() + " (restored from checkpoint)");
+            return;
+        }
+
         DataModel data = simulationWrapper.getDataModel(run.getRunIndex());
         Graph trueGraph = simulationWrapper.getTrueGraph(run.getRunIndex());
 
@@ -1214,6 +1264,23 @@ public class TimeoutComparison {
 
         saveGraph(this.resultsPath, out, run.getRunIndex(), simIndex, algIndex, algorithmWrapper, elapsed);
 
+        try (ComparisonResultStore.TaskWriter writer = this.resultStore == null ? null
+                : this.resultStore.begin(taskKey)) {
+            if (writer != null) writer.writeGraph(out);
+            recordStatistics(simulationWrappers, algorithmWrapper, simulationWrapper, statistics, numGraphTypes,
+                    allStats, run, data, trueGraph, out, elapsed, writer);
+            if (writer != null) writer.complete();
+        }
+    }
+
+    /**
+     * Calculates the statistics for the graph found in one run, putting them in allStats and, if the comparison is
+     * resumable, recording them with the given writer.
+     */
+    private void recordStatistics(List<SimulationWrapper> simulationWrappers, AlgorithmWrapper algorithmWrapper,
+                                  SimulationWrapper simulationWrapper, Statistics statistics, int numGraphTypes,
+                                  double[][][][] allStats, Run run, DataModel data, Graph trueGraph, Graph out,
+                                  long elapsed, ComparisonResultStore.TaskWriter writer) {
         if (trueGraph != null) {
             out = GraphUtils.replaceNodes(out, trueGraph.getNodes());
         }
@@ -1273,22 +1340,30 @@ public class TimeoutComparison {
 
                 int statIndex = -1;
 
-                for (Statistic _stat : statistics.getStatistics()) {
-                    statIndex++;
+                GraphComparison.Scope scope = GraphComparison.open(truth[u], est[u]);
 
-                    if (_stat instanceof ParameterColumn) {
-                        continue;
-                    }
+                try {
+                    for (Statistic _stat : statistics.getStatistics()) {
+                        statIndex++;
 
-                    double stat;
+                        if (_stat instanceof ParameterColumn) {
+                            continue;
+                        }
 
-                    if (_stat instanceof ElapsedCpuTime) {
-                        stat = elapsed / 1000.0;
-                    } else {
-                        stat = _stat.getValue(truth[u], est[u], null);
-                    }
+                        double stat;
 
-                    allStats[u][run.getAlgSimIndex()][statIndex][run.getRunIndex()] = stat;
+                        if (_stat instanceof ElapsedCpuTime) {
+                            stat = elapsed / 1000.0;
+                        } else {
+                            stat = _stat.getValue(truth[u], est[u], null);
+                        }
+
+                        allStats[u][run.getAlgSimIndex()][statIndex][run.getRunIndex()] = stat;
+
+                        if (writer != null) writer.writeStat(u, statIndex, stat);
+                    }
+                } finally {
+                    scope.close();
                 }
             }
         }
@@ -24,6 +24,7 @@ import edu.cmu.tetrad.data.DataSampling;
 import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.graph.EdgeListGraph;
 import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.LazyGraphList;
 import edu.cmu.tetrad.util.GraphSampling;
 import edu.cmu.tetrad.util.Parameters;
 import edu.cmu.tetrad.util.Params;
@@ -46,7 +47,7 @@ public abstract class AbstractBootstrapAlgorithm implements Algorithm, ReturnsBo
     /**
      * The bootstrap graphs.
      */
-    private final List<Graph> bootstrapGraphs = new LinkedList<>();
+    private final List<Graph> bootstrapGraphs = new LazyGraphList();
 
     /**
      * This is a base class for bootstrap algorithms.
@@ -1,24 +1,29 @@
 package edu.cmu.tetrad.algcomparison.algorithm;
 
+import edu.cmu.tetrad.algcomparison.utils.TakesIndependenceWrapper;
+import edu.cmu.tetrad.algcomparison.utils.UsesScoreWrapper;
+import edu.cmu.tetrad.annotation.AnnotatedClassUtils;
 import edu.cmu.tetrad.data.BootstrapSampler;
+import edu.cmu.tetrad.data.CovarianceMatrix;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.data.DataType;
+import edu.cmu.tetrad.graph.Edge;
 import edu.cmu.tetrad.graph.Graph;
-import edu.cmu.tetrad.graph.GraphUtils;
 import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.util.Parameters;
+import edu.cmu.tetrad.util.Params;
 import org.apache.commons.math3.util.FastMath;
 
 import java.io.Serial;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveAction;
-import java.util.concurrent.TimeUnit;
 
 /**
- * StARS
+ * StARS. The algorithm is run on each subsample at each value of the parameter, from low to high in steps of 0.5, and
+ * the value chosen is the one with the greatest instability below the cutoff. Each subsample is searched over all
+ * values in one task, in parallel across subsamples.
  *
  * @author josephramsey
  * @version $Id: $Id
@@ -66,14 +71,24 @@ public class StARS implements Algorithm {
         this.parameter = parameter;
     }
 
-    private static double getD(Parameters params, String paramName, double paramValue, List<DataSet> samples,
-                               Algorithm algorithm) {
-        params.set(paramName, paramValue);
+    /**
+     * Runs the algorithm on each subsample at each value of the parameter, in order, and returns the instability D
+     * for each value. Each subsample is searched over all values in one task, from one covariance matrix if the
+     * algorithm and its test or score can take one and the data are continuous, so that the matrix is calculated once
+     * per subsample rather than once per search. Subsamples are searched in parallel.
+     */
+    private static double[] getD(Parameters params, String paramName, List<Double> paramValues, List<DataSet> samples,
+                                 Algorithm algorithm) {
+        List<Node> variables = samples.get(0).getVariables();
+        int p = variables.size();
+        Map<String, Integer> indices = new HashMap<>();
 
-        List<Graph> graphs = new ArrayList<>();
+        for (int i = 0; i < p; i++) {
+            indices.put(variables.get(i).getName(), i);
+        }
 
-        int parallelism = Runtime.getRuntime().availableProcessors();
-        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        int[][] counts = new int[paramValues.size()][p * p];
+        boolean shareCovariance = acceptsCovariance(algorithm, params) && samples.get(0).isContinuous();
 
         class StabilityAction extends RecursiveAction {
 
@@ -91,14 +106,38 @@ public class StARS implements Algorithm {
             protected void compute() {
                 if (this.to - this.from <= this.chunk) {
                     for (int s = this.from; s < this.to; s++) {
-                        Graph e = null;
-                        try {
-                            e = algorithm.search(samples.get(s), params);
-                        } catch (InterruptedException ex) {
-                            throw new RuntimeException(ex);
+                        DataSet sample = samples.get(s);
+                        DataModel input = shareCovariance ? new CovarianceMatrix(sample) : sample;
+                        Parameters _params = new Parameters(params);
+
+                        for (int k = 0; k < paramValues.size(); k++) {
+                            _params.set(paramName, paramValues.get(k));
+                            Graph e;
+
+                            try {
+                                e = algorithm.search(input, _params);
+                            } catch (InterruptedException ex) {
+                                throw new RuntimeException(ex);
+                            }
+
+                            BitSet adjacent = new BitSet(p * p);
+
+                            for (Edge edge : e.getEdges()) {
+                                Integer i = indices.get(edge.getNode1().getName());
+                                Integer j = indices.get(edge.getNode2().getName());
+
+                                // Latent nodes the algorithm introduces are not counted.
+                                if (i == null || j == null) continue;
+
+                                adjacent.set(FastMath.min(i, j) * p + FastMath.max(i, j));
+                            }
+
+                            synchronized (counts[k]) {
+                                for (int a = adjacent.nextSetBit(0); a >= 0; a = adjacent.nextSetBit(a + 1)) {
+                                    counts[k][a]++;
+                                }
+                            }
                         }
-                        e = GraphUtils.replaceNodes(e, samples.get(0).getVariables());
-                        graphs.add(e);
                     }
                 } else {
                     int mid = (this.to + this.from) / 2;
@@ -115,49 +154,56 @@ public class StARS implements Algorithm {
 
         final int chunk = 1;
 
+        int parallelism = FastMath.min(Runtime.getRuntime().availableProcessors(), samples.size());
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
         try {
             pool.invoke(new StabilityAction(chunk, 0, samples.size()));
         } catch (Exception e) {
             Thread.currentThread().interrupt();
             throw e;
+        } finally {
+            pool.shutdown();
         }
 
-        if (!pool.awaitQuiescence(1, TimeUnit.DAYS)) {
-            throw new IllegalStateException("Pool timed out");
-        }
+        double[] D = new double[paramValues.size()];
 
-        int p = samples.get(0).getNumColumns();
-        List<Node> nodes = graphs.get(0).getNodes();
+        for (int k = 0; k < paramValues.size(); k++) {
+            int count = 0;
 
-        double D = 0.0;
-        int count = 0;
+            for (int i = 0; i < p; i++) {
+                for (int j = i + 1; j < p; j++) {
+                    double theta = counts[k][i * p + j] / (double) samples.size();
+                    double xsi = 2 * theta * (1.0 - theta);
 
-        for (int i = 0; i < p; i++) {
-            for (int j = i + 1; j < p; j++) {
-                double theta = 0.0;
-                Node x = nodes.get(i);
-                Node y = nodes.get(j);
-
-                for (Graph graph : graphs) {
-                    if (graph.isAdjacentTo(x, y)) {
-                        theta += 1.0;
-                    }
+                    D[k] += xsi;
+                    count++;
                 }
-
-                theta /= graphs.size();
-                double xsi = 2 * theta * (1.0 - theta);
-
-//                if (xsi != 0){
-                D += xsi;
-                count++;
-//                }
             }
+
+            D[k] /= count;
         }
 
-        D /= count;
         return D;
     }
 
+    /**
+     * Returns whether the algorithm can search from a covariance matrix in place of the data: it takes one, and so do
+     * its test and score, if it has them, without the pseudoinverse, which needs the data.
+     */
+    private static boolean acceptsCovariance(Algorithm algorithm, Parameters parameters) {
+        if (!(algorithm instanceof TakesCovarianceMatrix)) return false;
+        if (parameters.getBoolean(Params.USE_PSEUDOINVERSE)) return false;
+
+        if (algorithm instanceof TakesIndependenceWrapper withTest
+            && !AnnotatedClassUtils.acceptsCovariance(withTest.getIndependenceWrapper())) {
+            return false;
+        }
+
+        return !(algorithm instanceof UsesScoreWrapper withScore)
+               || AnnotatedClassUtils.acceptsCovariance(withScore.getScoreWrapper());
+    }
+
     private static double getValue(double value, Parameters parameters) {
         if (parameters.getBoolean("logScale")) {
             return FastMath.round(FastMath.pow(10.0, value) * 1000000000.0) / 1000000000.0;
@@ -192,8 +238,17 @@ public class StARS implements Algorithm {
         double maxD = Double.NEGATIVE_INFINITY;
         double _lambda = Double.NaN;
 
+        List<Double> lambdas = new ArrayList<>();
+
         for (double lambda = this.low; lambda <= this.high; lambda += 0.5) {
-            double D = StARS.getD(parameters, this.parameter, lambda, samples, this.algorithm);
+            lambdas.add(lambda);
+        }
+
+        double[] Ds = StARS.getD(parameters, this.parameter, lambdas, samples, this.algorithm);
+
+        for (int k = 0; k < lambdas.size(); k++) {
+            double lambda = lambdas.get(k);
+            double D = Ds[k];
             System.out.println("lambda = " + lambda + " D = " + D);
 
             if (D > maxD && D < beta) {
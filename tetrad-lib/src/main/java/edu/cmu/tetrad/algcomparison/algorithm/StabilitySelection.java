@@ -10,13 +10,9 @@ import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.util.Parameters;
 
 import java.io.Serial;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveAction;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Stability selection.
@@ -55,7 +51,7 @@ public class StabilitySelection implements Algorithm {
 
         Map<Edge, Integer> counts = new HashMap<>();
 
-        List<Graph> graphs = new ArrayList<>();
+        List<Graph> graphs = Collections.synchronizedList(new ArrayList<>());
 
         int parallelism = Runtime.getRuntime().availableProcessors();
         ForkJoinPool pool = new ForkJoinPool(parallelism);
@@ -107,10 +103,8 @@ public class StabilitySelection implements Algorithm {
         } catch (Exception e) {
             Thread.currentThread().interrupt();
             throw e;
-        }
-
-        if (!pool.awaitQuiescence(1, TimeUnit.DAYS)) {
-            throw new IllegalStateException("Pool timed out");
+        } finally {
+            pool.shutdown();
         }
 
         for (Graph graph : graphs) {
@@ -95,7 +95,9 @@ public class IcaLingD extends AbstractBootstrapAlgorithm implements Algorithm, R
         double bThreshold = parameters.getDouble(Params.THRESHOLD_B);
         double wThreshold = parameters.getDouble(Params.THRESHOLD_W);
 
-        Matrix W = edu.cmu.tetrad.search.IcaLingD.estimateW(data, maxIter, tol, alpha, parameters.getBoolean(Params.VERBOSE));
+        Matrix W = edu.cmu.tetrad.search.IcaLingD.estimateW(data, maxIter, tol, alpha, parameters.getBoolean(Params.VERBOSE),
+                parameters.getInt(Params.NUM_THREADS), parameters.getBoolean(Params.FAST_ICA_FLOAT_PRECISION),
+                parameters.getInt(Params.FAST_ICA_BATCH_SIZE));
 
         edu.cmu.tetrad.search.IcaLingD icaLingD = new edu.cmu.tetrad.search.IcaLingD();
         icaLingD.setBThreshold(bThreshold);
@@ -204,6 +206,9 @@ public class IcaLingD extends AbstractBootstrapAlgorithm implements Algorithm, R
         parameters.add(Params.FAST_ICA_A);
         parameters.add(Params.FAST_ICA_MAX_ITER);
         parameters.add(Params.FAST_ICA_TOLERANCE);
+        parameters.add(Params.FAST_ICA_FLOAT_PRECISION);
+        parameters.add(Params.FAST_ICA_BATCH_SIZE);
+        parameters.add(Params.NUM_THREADS);
         parameters.add(Params.THRESHOLD_B);
         parameters.add(Params.THRESHOLD_W);
         return parameters;
@@ -74,7 +74,9 @@ public class IcaLingam extends AbstractBootstrapAlgorithm implements Algorithm,
         double alpha = parameters.getDouble(Params.FAST_ICA_A);
         double tol = parameters.getDouble(Params.FAST_ICA_TOLERANCE);
 
-        Matrix W = IcaLingD.estimateW(data, maxIter, tol, alpha, parameters.getBoolean(Params.VERBOSE));
+        Matrix W = IcaLingD.estimateW(data, maxIter, tol, alpha, parameters.getBoolean(Params.VERBOSE),
+                parameters.getInt(Params.NUM_THREADS), parameters.getBoolean(Params.FAST_ICA_FLOAT_PRECISION),
+                parameters.getInt(Params.FAST_ICA_BATCH_SIZE));
         edu.cmu.tetrad.search.IcaLingam icaLingam = new edu.cmu.tetrad.search.IcaLingam();
         icaLingam.setVerbose(parameters.getBoolean(Params.VERBOSE));
         icaLingam.setBThreshold(parameters.getDouble(Params.THRESHOLD_B));
@@ -132,6 +134,9 @@ public class IcaLingam extends AbstractBootstrapAlgorithm implements Algorithm,
         parameters.add(Params.FAST_ICA_MAX_ITER);
         parameters.add(Params.FAST_ICA_A);
         parameters.add(Params.FAST_ICA_TOLERANCE);
+        parameters.add(Params.FAST_ICA_FLOAT_PRECISION);
+        parameters.add(Params.FAST_ICA_BATCH_SIZE);
+        parameters.add(Params.NUM_THREADS);
         parameters.add(Params.THRESHOLD_B);
         return parameters;
     }
@@ -149,8 +149,10 @@ public class Cstar implements Algorithm, UsesScoreWrapper, TakesIndependenceWrap
 
         String path = parameters.getString(Params.FILE_OUT_PATH);
 
-        LinkedList<LinkedList<edu.cmu.tetrad.search.Cstar.Record>> allRecords
-                = cStaR.getRecords((DataSet) dataSet, possibleCauses, possibleEffects, topBracket, path);
+        // With no output path, run in memory and skip the interim files.
+        LinkedList<LinkedList<edu.cmu.tetrad.search.Cstar.Record>> allRecords = path == null || path.isBlank()
+                ? cStaR.getRecords((DataSet) dataSet, possibleCauses, possibleEffects, topBracket)
+                : cStaR.getRecords((DataSet) dataSet, possibleCauses, possibleEffects, topBracket, path);
 
         if (allRecords.isEmpty()) {
             throw new IllegalStateException("There were no records.");
@@ -162,17 +164,19 @@ public class Cstar implements Algorithm, UsesScoreWrapper, TakesIndependenceWrap
         String table1 = cStaR.makeTable(edu.cmu.tetrad.search.Cstar.cStar(allRecords));
         TetradLogger.getInstance().log(table1);
 
-        // Print table1 to file.
-        File _file = new File(cStaR.getDir(), "/cstar_table.txt");
-        try {
-            PrintWriter writer = new PrintWriter(_file);
-            writer.println(table1);
-            writer.close();
-        } catch (IOException e) {
-            System.out.println("Error writing to file: " + _file.getAbsolutePath());
-        }
+        if (cStaR.getDir() != null) {
+            // Print table1 to file.
+            File _file = new File(cStaR.getDir(), "/cstar_table.txt");
+            try {
+                PrintWriter writer = new PrintWriter(_file);
+                writer.println(table1);
+                writer.close();
+            } catch (IOException e) {
+                System.out.println("Error writing to file: " + _file.getAbsolutePath());
+            }
 
-        TetradLogger.getInstance().log("Files stored in : " + cStaR.getDir().getAbsolutePath());
+            TetradLogger.getInstance().log("Files stored in : " + cStaR.getDir().getAbsolutePath());
+        }
 
         // This stops the program from running in R.
 //        JOptionPane.showMessageDialog(null, "Files stored in : " + cStaR.getDir().getAbsolutePath());
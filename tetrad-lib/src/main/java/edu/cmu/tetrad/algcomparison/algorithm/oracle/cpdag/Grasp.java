@@ -112,6 +112,7 @@ public class Grasp extends AbstractBootstrapAlgorithm implements Algorithm, Uses
         grasp.setVerbose(parameters.getBoolean(Params.VERBOSE));
 
         grasp.setNumStarts(parameters.getInt(Params.NUM_STARTS));
+        grasp.setNumThreads(parameters.getInt(Params.NUM_THREADS));
         grasp.setKnowledge(this.knowledge);
         grasp.bestOrder(myScore.getVariables());
         Graph graph = grasp.getGraph(parameters.getBoolean(Params.OUTPUT_CPDAG));
@@ -169,6 +170,7 @@ public class Grasp extends AbstractBootstrapAlgorithm implements Algorithm, Uses
 
         // Parameters
         params.add(Params.NUM_STARTS);
+        params.add(Params.NUM_THREADS);
 
         return params;
     }
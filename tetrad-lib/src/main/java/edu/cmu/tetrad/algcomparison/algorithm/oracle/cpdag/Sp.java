@@ -90,6 +90,7 @@ public class Sp extends AbstractBootstrapAlgorithm implements Algorithm, UsesSco
 
         Score myScore = this.score.getScore(dataModel, parameters);
         edu.cmu.tetrad.search.Sp suborderSearch = new edu.cmu.tetrad.search.Sp(myScore);
+        suborderSearch.setNumThreads(parameters.getInt(Params.NUM_THREADS));
         PermutationSearch permutationSearch = new PermutationSearch(suborderSearch);
         permutationSearch.setKnowledge(this.knowledge);
         Graph graph = permutationSearch.search();
@@ -130,6 +131,7 @@ public class Sp extends AbstractBootstrapAlgorithm implements Algorithm, UsesSco
     public List<String> getParameters() {
         ArrayList<String> params = new ArrayList<>();
         params.add(Params.TIME_LAG);
+        params.add(Params.NUM_THREADS);
         return params;
     }
 
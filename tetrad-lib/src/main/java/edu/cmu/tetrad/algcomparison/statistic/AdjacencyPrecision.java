@@ -1,6 +1,7 @@
 package edu.cmu.tetrad.algcomparison.statistic;
 
 import edu.cmu.tetrad.algcomparison.statistic.utils.AdjacencyConfusion;
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.graph.Graph;
 
@@ -45,7 +46,7 @@ public class AdjacencyPrecision implements Statistic {
      */
     @Override
     public double getValue(Graph trueGraph, Graph estGraph, DataModel dataModel) {
-        AdjacencyConfusion adjConfusion = new AdjacencyConfusion(trueGraph, estGraph);
+        AdjacencyConfusion adjConfusion = GraphComparison.of(trueGraph, estGraph).getAdjacencyConfusion();
         int adjTp = adjConfusion.getTp();
         int adjFp = adjConfusion.getFp();
         return adjTp / (double) (adjTp + adjFp);
@@ -1,11 +1,11 @@
 package edu.cmu.tetrad.algcomparison.statistic;
 
+import edu.cmu.tetrad.algcomparison.statistic.utils.AncestralConfusion;
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.graph.Graph;
-import edu.cmu.tetrad.graph.Node;
 
 import java.io.Serial;
-import java.util.List;
 
 /**
  * The bidirected true positives.
@@ -51,24 +51,9 @@ public class AncestralPrecision implements Statistic {
      */
     @Override
     public double getValue(Graph trueGraph, Graph estGraph, DataModel dataModel) {
-        int tp = 0, fp = 0;
-
-        List<Node> nodes = trueGraph.getNodes();
-
-        for (Node x : nodes) {
-            for (Node y : nodes) {
-                if (x == y) continue;
-
-                if (estGraph.paths().isAncestorOf(x, y)) {
-                    if (trueGraph.paths().isAncestorOf(x, y)) {
-                        tp++;
-                    } else {
-                        fp++;
-                    }
-                }
-            }
-        }
-
+        AncestralConfusion confusion = GraphComparison.of(trueGraph, estGraph).getAncestralConfusion();
+        int tp = confusion.getTp();
+        int fp = confusion.getFp();
         return tp / (double) (tp + fp);
     }
 
@@ -1,6 +1,7 @@
 package edu.cmu.tetrad.algcomparison.statistic;
 
 import edu.cmu.tetrad.algcomparison.statistic.utils.ArrowConfusion;
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.graph.Graph;
 
@@ -47,7 +48,7 @@ public class ArrowheadPrecision implements Statistic {
      */
     @Override
     public double getValue(Graph trueGraph, Graph estGraph, DataModel dataModel) {
-        ArrowConfusion confusion = new ArrowConfusion(trueGraph, estGraph);
+        ArrowConfusion confusion = GraphComparison.of(trueGraph, estGraph).getArrowConfusion();
         double arrowsTp = confusion.getTp();
         double arrowsFp = confusion.getFp();
         return arrowsTp / (arrowsTp + arrowsFp);
@@ -1,6 +1,7 @@
 package edu.cmu.tetrad.algcomparison.statistic;
 
 import edu.cmu.tetrad.algcomparison.statistic.utils.ArrowConfusion;
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.graph.Graph;
 
@@ -49,7 +50,7 @@ public class F1Arrow implements Statistic {
      */
     @Override
     public double getValue(Graph trueGraph, Graph estGraph, DataModel dataModel) {
-        ArrowConfusion arrowConfusion = new ArrowConfusion(trueGraph, estGraph);
+        ArrowConfusion arrowConfusion = GraphComparison.of(trueGraph, estGraph).getArrowConfusion();
         int arrowTp = arrowConfusion.getTp();
         int arrowFp = arrowConfusion.getFp();
         int arrowFn = arrowConfusion.getFn();
@@ -1,5 +1,6 @@
 package edu.cmu.tetrad.algcomparison.statistic;
 
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.algcomparison.statistic.utils.LocalGraphConfusion;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.graph.Graph;
@@ -30,7 +31,7 @@ public class LocalGraphRecall implements Statistic {
 
     @Override
     public double getValue(Graph trueGraph, Graph estGraph, DataModel dataModel) {
-        LocalGraphConfusion lgConfusion = new LocalGraphConfusion(trueGraph, estGraph);
+        LocalGraphConfusion lgConfusion = GraphComparison.of(trueGraph, estGraph).getLocalGraphConfusion();
         int lgTp = lgConfusion.getTp();
         int lgFn = lgConfusion.getFn();
         return lgTp / (double) (lgTp + lgFn);
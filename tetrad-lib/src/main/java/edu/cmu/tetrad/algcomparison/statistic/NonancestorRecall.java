@@ -1,11 +1,11 @@
 package edu.cmu.tetrad.algcomparison.statistic;
 
+import edu.cmu.tetrad.algcomparison.statistic.utils.AncestralConfusion;
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.graph.Graph;
-import edu.cmu.tetrad.graph.Node;
 
 import java.io.Serial;
-import java.util.List;
 
 /**
  * Number of NOT X~~>Y in true graph for which also NOT X~~>Y in estimated graph.
@@ -45,24 +45,9 @@ public class NonancestorRecall implements Statistic {
      */
     @Override
     public double getValue(Graph trueGraph, Graph estGraph, DataModel dataModel) {
-        int tp = 0;
-        int fn = 0;
-
-        List<Node> nodes = estGraph.getNodes();
-
-        for (Node x : nodes) {
-            for (Node y : nodes) {
-//                if (x == y) continue;
-                if (!trueGraph.paths().isAncestorOf(x, y)) {
-                    if (!estGraph.paths().isAncestorOf(x, y)) {
-                        tp++;
-                    } else {
-                        fn++;
-                    }
-                }
-            }
-        }
-
+        AncestralConfusion confusion = GraphComparison.of(trueGraph, estGraph).getAncestorConfusion();
+        int tp = confusion.getTn();
+        int fn = confusion.getFp();
         return tp / (double) (tp + fn);
     }
 
@@ -1,5 +1,6 @@
 package edu.cmu.tetrad.algcomparison.statistic;
 
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.graph.*;
 
@@ -45,6 +46,7 @@ public class NumCompatibleDefiniteDirectedEdgeAncestors implements Statistic {
      */
     @Override
     public double getValue(Graph trueGraph, Graph estGraph, DataModel dataModel) {
+        GraphComparison comparison = GraphComparison.of(trueGraph, estGraph);
         GraphUtils.addEdgeSpecializationMarkup(estGraph);
 
         Graph pag = GraphTransforms.dagToPag(trueGraph);
@@ -60,7 +62,7 @@ public class NumCompatibleDefiniteDirectedEdgeAncestors implements Statistic {
                 Node x = Edges.getDirectedEdgeTail(edge);
                 Node y = Edges.getDirectedEdgeHead(edge);
 
-                if (trueGraph.paths().isAncestorOf(x, y)) {
+                if (comparison.isTrueAncestorOf(x, y)) {
                     tp++;
                 } else {
                     fp++;
@@ -1,5 +1,6 @@
 package edu.cmu.tetrad.algcomparison.statistic;
 
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.graph.*;
 
@@ -45,6 +46,7 @@ public class NumCompatibleDirectedEdgeNonAncestors implements Statistic {
      */
     @Override
     public double getValue(Graph trueGraph, Graph estGraph, DataModel dataModel) {
+        GraphComparison comparison = GraphComparison.of(trueGraph, estGraph);
         GraphUtils.addEdgeSpecializationMarkup(estGraph);
 //        Graph pag = SearchGraphUtils.dagToPag(trueGraph);
 
@@ -59,7 +61,7 @@ public class NumCompatibleDirectedEdgeNonAncestors implements Statistic {
                 Node x = Edges.getDirectedEdgeTail(edge);
                 Node y = Edges.getDirectedEdgeHead(edge);
 
-                if (!trueGraph.paths().isAncestorOf(x, y) && !existsLatentCommonAncestor(trueGraph, edge)) {
+                if (!comparison.isTrueAncestorOf(x, y) && !existsLatentCommonAncestor(trueGraph, edge)) {
                     tp++;
                 } else {
                     fp++;
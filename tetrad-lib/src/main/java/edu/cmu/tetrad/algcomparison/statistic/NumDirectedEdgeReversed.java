@@ -1,5 +1,6 @@
 package edu.cmu.tetrad.algcomparison.statistic;
 
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.graph.Edge;
 import edu.cmu.tetrad.graph.Edges;
@@ -46,6 +47,7 @@ public class NumDirectedEdgeReversed implements Statistic {
      */
     @Override
     public double getValue(Graph trueGraph, Graph estGraph, DataModel dataModel) {
+        GraphComparison comparison = GraphComparison.of(trueGraph, estGraph);
         int tp = 0;
 
         for (Edge edge : estGraph.getEdges()) {
@@ -53,7 +55,7 @@ public class NumDirectedEdgeReversed implements Statistic {
                 Node x = Edges.getDirectedEdgeTail(edge);
                 Node y = Edges.getDirectedEdgeHead(edge);
 
-                if (trueGraph.paths().isAncestorOf(y, x)) {
+                if (comparison.isTrueAncestorOf(y, x)) {
                     tp++;
                 }
             }
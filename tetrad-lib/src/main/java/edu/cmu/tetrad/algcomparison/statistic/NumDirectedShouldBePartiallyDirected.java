@@ -1,5 +1,6 @@
 package edu.cmu.tetrad.algcomparison.statistic;
 
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.graph.Edge;
 import edu.cmu.tetrad.graph.Edges;
@@ -47,6 +48,7 @@ public class NumDirectedShouldBePartiallyDirected implements Statistic {
      */
     @Override
     public double getValue(Graph trueGraph, Graph estGraph, DataModel dataModel) {
+        GraphComparison comparison = GraphComparison.of(trueGraph, estGraph);
         int tp = 0;
 
         for (Edge edge : estGraph.getEdges()) {
@@ -54,7 +56,7 @@ public class NumDirectedShouldBePartiallyDirected implements Statistic {
                 Node x = Edges.getDirectedEdgeTail(edge);
                 Node y = Edges.getDirectedEdgeHead(edge);
 
-                if (!trueGraph.paths().isAncestorOf(x, y) && !trueGraph.paths().isAncestorOf(y, x) && existsLatentCommonAncestor(trueGraph, edge)) {
+                if (!comparison.isTrueAncestorOf(x, y) && !comparison.isTrueAncestorOf(y, x) && existsLatentCommonAncestor(trueGraph, edge)) {
                     tp++;
                 }
             }
@@ -1,5 +1,6 @@
 package edu.cmu.tetrad.algcomparison.statistic;
 
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.algcomparison.statistic.utils.OrientationConfusion;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.graph.Graph;
@@ -44,7 +45,7 @@ public class OrientationPrecision implements Statistic {
      */
     @Override
     public double getValue(Graph trueGraph, Graph estGraph, DataModel dataModel) {
-        OrientationConfusion oriConfusion = new OrientationConfusion(trueGraph, estGraph);
+        OrientationConfusion oriConfusion = GraphComparison.of(trueGraph, estGraph).getOrientationConfusion();
         int oriTp = oriConfusion.getTp();
         int oriFp = oriConfusion.getFp();
         return oriTp / (double) (oriTp + oriFp);
@@ -1,5 +1,6 @@
 package edu.cmu.tetrad.algcomparison.statistic;
 
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.algcomparison.statistic.utils.TailConfusion;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.graph.Graph;
@@ -51,7 +52,7 @@ public class TailPrecision implements Statistic {
      */
     @Override
     public double getValue(Graph trueGraph, Graph estGraph, DataModel dataModel) {
-        TailConfusion adjConfusion = new TailConfusion(trueGraph, estGraph);
+        TailConfusion adjConfusion = GraphComparison.of(trueGraph, estGraph).getTailConfusion();
         double arrowsTp = adjConfusion.getArrowsTp();
         double arrowsFp = adjConfusion.getArrowsFp();
         return arrowsTp / (arrowsTp + arrowsFp);
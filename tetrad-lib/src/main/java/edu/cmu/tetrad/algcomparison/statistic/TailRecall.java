@@ -1,5 +1,6 @@
 package edu.cmu.tetrad.algcomparison.statistic;
 
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.algcomparison.statistic.utils.TailConfusion;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.graph.Graph;
@@ -50,7 +51,7 @@ public class TailRecall implements Statistic {
      */
     @Override
     public double getValue(Graph trueGraph, Graph estGraph, DataModel dataModel) {
-        TailConfusion confusion = new TailConfusion(trueGraph, estGraph);
+        TailConfusion confusion = GraphComparison.of(trueGraph, estGraph).getTailConfusion();
         double arrowsTp = confusion.getArrowsTp();
         double arrowsFn = confusion.getArrowsFn();
         double den = arrowsTp + arrowsFn;
@@ -1,5 +1,6 @@
 package edu.cmu.tetrad.algcomparison.statistic;
 
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.graph.Edge;
 import edu.cmu.tetrad.graph.Endpoint;
@@ -52,6 +53,7 @@ public class TrueDagFalseNegativesArrows implements Statistic {
      */
     @Override
     public double getValue(Graph trueGraph, Graph estGraph, DataModel dataModel) {
+        GraphComparison comparison = GraphComparison.of(trueGraph, estGraph);
         int fn = 0;
 
         List<Node> nodes = trueGraph.getNodes();
@@ -60,7 +62,7 @@ public class TrueDagFalseNegativesArrows implements Statistic {
             for (Node y : nodes) {
                 if (x == y) continue;
 
-                if (!trueGraph.paths().isAncestorOf(x, y)) {
+                if (!comparison.isTrueAncestorOf(x, y)) {
                     Edge e = estGraph.getEdge(x, y);
 
                     if (e != null && e.getProximalEndpoint(x) != Endpoint.ARROW) {
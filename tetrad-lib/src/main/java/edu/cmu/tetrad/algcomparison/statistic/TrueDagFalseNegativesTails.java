@@ -1,5 +1,6 @@
 package edu.cmu.tetrad.algcomparison.statistic;
 
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.graph.Edge;
 import edu.cmu.tetrad.graph.Endpoint;
@@ -53,6 +54,7 @@ public class TrueDagFalseNegativesTails implements Statistic {
      */
     @Override
     public double getValue(Graph trueGraph, Graph estGraph, DataModel dataModel) {
+        GraphComparison comparison = GraphComparison.of(trueGraph, estGraph);
 //        int tp = 0;
         int fn = 0;
 
@@ -62,7 +64,7 @@ public class TrueDagFalseNegativesTails implements Statistic {
             for (Node y : nodes) {
                 if (x == y) continue;
 
-                if (trueGraph.paths().isAncestorOf(x, y)) {
+                if (comparison.isTrueAncestorOf(x, y)) {
                     Edge e = estGraph.getEdge(x, y);
 
                     if (e != null && e.getProximalEndpoint(x) != Endpoint.TAIL) {
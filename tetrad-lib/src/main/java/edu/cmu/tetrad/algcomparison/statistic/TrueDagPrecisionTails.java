@@ -1,5 +1,6 @@
 package edu.cmu.tetrad.algcomparison.statistic;
 
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.graph.Edge;
 import edu.cmu.tetrad.graph.Edges;
@@ -54,6 +55,7 @@ public class TrueDagPrecisionTails implements Statistic {
      */
     @Override
     public double getValue(Graph trueGraph, Graph estGraph, DataModel dataModel) {
+        GraphComparison comparison = GraphComparison.of(trueGraph, estGraph);
         int tp = 0;
         int fp = 0;
 
@@ -68,13 +70,13 @@ public class TrueDagPrecisionTails implements Statistic {
                 if (edge == null) continue;
 
                 if (Edges.directedEdge(x, y).equals(edge)) {
-                    if (trueGraph.paths().isAncestorOf(x, y)) {
+                    if (comparison.isTrueAncestorOf(x, y)) {
                         tp++;
                     } else {
                         fp++;
                     }
 
-                    if (trueGraph.paths().isAncestorOf(y, x)) {
+                    if (comparison.isTrueAncestorOf(y, x)) {
 //                        System.out.println("Should be " + y + "~~>" + x + ": " + estGraph.getEdge(x, y));
                     } else {
 //                        System.out.println("Should be " + x + "o~~>" + y + ": " + estGraph.getEdge(x, y));
@@ -1,5 +1,6 @@
 package edu.cmu.tetrad.algcomparison.statistic;
 
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.graph.Edge;
 import edu.cmu.tetrad.graph.Endpoint;
@@ -53,17 +54,18 @@ public class TrueDagTruePositiveArrow implements Statistic {
      */
     @Override
     public double getValue(Graph trueGraph, Graph estGraph, DataModel dataModel) {
+        GraphComparison comparison = GraphComparison.of(trueGraph, estGraph);
         int tp = 0;
 
         for (Edge edge : estGraph.getEdges()) {
             if (edge.getEndpoint1() == Endpoint.ARROW) {
-                if (!trueGraph.paths().isAncestorOf(edge.getNode1(), edge.getNode2())) {
+                if (!comparison.isTrueAncestorOf(edge.getNode1(), edge.getNode2())) {
                     tp++;
                 }
             }
 
             if (edge.getEndpoint2() == Endpoint.ARROW) {
-                if (!trueGraph.paths().isAncestorOf(edge.getNode2(), edge.getNode1())) {
+                if (!comparison.isTrueAncestorOf(edge.getNode2(), edge.getNode1())) {
                     tp++;
                 }
             }
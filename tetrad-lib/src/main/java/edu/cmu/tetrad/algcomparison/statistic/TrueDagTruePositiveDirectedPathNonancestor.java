@@ -1,5 +1,6 @@
 package edu.cmu.tetrad.algcomparison.statistic;
 
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.Node;
@@ -53,6 +54,7 @@ public class TrueDagTruePositiveDirectedPathNonancestor implements Statistic {
      */
     @Override
     public double getValue(Graph trueGraph, Graph estGraph, DataModel dataModel) {
+        GraphComparison comparison = GraphComparison.of(trueGraph, estGraph);
         int tp = 0;
 
         List<Node> nodes = trueGraph.getNodes();
@@ -61,8 +63,8 @@ public class TrueDagTruePositiveDirectedPathNonancestor implements Statistic {
             for (Node y : nodes) {
                 if (x == y) continue;
 
-                if (estGraph.paths().isAncestorOf(x, y)) {
-                    if (!trueGraph.paths().isAncestorOf(y, x)) {
+                if (comparison.isEstAncestorOf(x, y)) {
+                    if (!comparison.isTrueAncestorOf(y, x)) {
                         tp++;
                     }
                 }
@@ -0,0 +1,102 @@
+package edu.cmu.tetrad.algcomparison.statistic.utils;
+
+import edu.cmu.tetrad.graph.Node;
+
+import java.util.List;
+
+/**
+ * A confusion matrix for ancestral relations--i.e. TP, FP, TN, FN for counts of ordered pairs (x, y) where x is an
+ * ancestor of y. A pair is a true positive if x is an ancestor of y in both the true and estimated graphs, and a true
+ * negative if it is an ancestor in neither.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ * @see GraphComparison#getAncestorConfusion()
+ * @see GraphComparison#getAncestralConfusion()
+ */
+public class AncestralConfusion {
+
+    /**
+     * The true positive count.
+     */
+    private int tp;
+
+    /**
+     * The false positive count.
+     */
+    private int fp;
+
+    /**
+     * The false negative count.
+     */
+    private int fn;
+
+    /**
+     * The true negative count.
+     */
+    private int tn;
+
+    /**
+     * Counts the ordered pairs of the given nodes.
+     *
+     * @param comparison  The comparison supplying the ancestor relations of the two graphs.
+     * @param nodes       The nodes whose ordered pairs are counted.
+     * @param includeSelf Whether pairs (x, x) are counted.
+     */
+    AncestralConfusion(GraphComparison comparison, List<Node> nodes, boolean includeSelf) {
+        for (Node x : nodes) {
+            for (Node y : nodes) {
+                if (!includeSelf && x == y) continue;
+
+                boolean inTruth = comparison.isTrueAncestorOf(x, y);
+                boolean inEst = comparison.isEstAncestorOf(x, y);
+
+                if (inTruth && inEst) {
+                    this.tp++;
+                } else if (inEst) {
+                    this.fp++;
+                } else if (inTruth) {
+                    this.fn++;
+                } else {
+                    this.tn++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the true positive count.
+     *
+     * @return the true positive count.
+     */
+    public int getTp() {
+        return this.tp;
+    }
+
+    /**
+     * Returns the false positive count.
+     *
+     * @return the false positive count.
+     */
+    public int getFp() {
+        return this.fp;
+    }
+
+    /**
+     * Returns the false negative count.
+     *
+     * @return the false negative count.
+     */
+    public int getFn() {
+        return this.fn;
+    }
+
+    /**
+     * Returns the true negative count.
+     *
+     * @return the true negative count.
+     */
+    public int getTn() {
+        return this.tn;
+    }
+}
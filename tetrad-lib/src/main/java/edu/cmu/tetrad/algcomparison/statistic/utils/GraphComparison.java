@@ -0,0 +1,306 @@
+package edu.cmu.tetrad.algcomparison.statistic.utils;
+
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.graph.ReachabilityIndex;
+
+/**
+ * The comparison structures shared by statistics for one (true graph, estimated graph) pair: the adjacency, arrowhead,
+ * tail, orientation, local-graph and ancestral confusion tables, and the ancestor relation of each graph as a
+ * reachability matrix. Each is computed the first time it is asked for and then reused, so a report with many
+ * statistics walks the two graphs once per table rather than once per statistic.
+ * <p>
+ * Statistics get the comparison for their graphs from {@link #of(Graph, Graph)}. Outside a scope that is a fresh
+ * comparison, which costs what the statistic always cost; inside a scope opened by {@link #open(Graph, Graph)} for the
+ * same two graph objects it is the scope's shared comparison. A scope belongs to the thread that opened it, and the
+ * graphs must not be modified while it is open.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ */
+public final class GraphComparison {
+
+    /**
+     * The comparison for the scope open on this thread, if any.
+     */
+    private static final ThreadLocal<GraphComparison> CURRENT = new ThreadLocal<>();
+
+    /**
+     * The true graph.
+     */
+    private final Graph trueGraph;
+
+    /**
+     * The estimated graph.
+     */
+    private final Graph estGraph;
+
+    /**
+     * The adjacency confusion, once computed.
+     */
+    private AdjacencyConfusion adjacencyConfusion;
+
+    /**
+     * The arrowhead confusion, once computed.
+     */
+    private ArrowConfusion arrowConfusion;
+
+    /**
+     * The arrowhead confusion counting false positives only for true adjacencies, once computed.
+     */
+    private ArrowConfusion arrowConfusionTruthAdj;
+
+    /**
+     * The tail confusion, once computed.
+     */
+    private TailConfusion tailConfusion;
+
+    /**
+     * The orientation confusion, once computed.
+     */
+    private OrientationConfusion orientationConfusion;
+
+    /**
+     * The local graph confusion, once computed.
+     */
+    private LocalGraphConfusion localGraphConfusion;
+
+    /**
+     * The ancestor confusion over pairs of estimated nodes, including (x, x), once computed.
+     */
+    private AncestralConfusion ancestorConfusion;
+
+    /**
+     * The ancestral confusion over pairs of distinct true nodes, once computed.
+     */
+    private AncestralConfusion ancestralConfusion;
+
+    /**
+     * The ancestor relation of the true graph, once computed.
+     */
+    private ReachabilityIndex trueAncestors;
+
+    /**
+     * The ancestor relation of the estimated graph, once computed.
+     */
+    private ReachabilityIndex estAncestors;
+
+    /**
+     * Constructs a comparison for the given graphs.
+     *
+     * @param trueGraph The true graph.
+     * @param estGraph  The estimated graph.
+     */
+    public GraphComparison(Graph trueGraph, Graph estGraph) {
+        this.trueGraph = trueGraph;
+        this.estGraph = estGraph;
+    }
+
+    /**
+     * Returns the comparison for the given graphs: the shared one if a scope is open on this thread for these same
+     * graph objects, otherwise a new one.
+     *
+     * @param trueGraph The true graph.
+     * @param estGraph  The estimated graph.
+     * @return The comparison.
+     */
+    public static GraphComparison of(Graph trueGraph, Graph estGraph) {
+        GraphComparison current = CURRENT.get();
+
+        if (current != null && current.trueGraph == trueGraph && current.estGraph == estGraph) {
+            return current;
+        }
+
+        return new GraphComparison(trueGraph, estGraph);
+    }
+
+    /**
+     * Opens a scope on this thread in which statistics for the given graphs share one comparison. Scopes do not nest;
+     * opening one replaces any scope already open on this thread.
+     *
+     * @param trueGraph The true graph.
+     * @param estGraph  The estimated graph.
+     * @return The scope, to be closed once the statistics for these graphs have been calculated.
+     */
+    public static Scope open(Graph trueGraph, Graph estGraph) {
+        CURRENT.set(new GraphComparison(trueGraph, estGraph));
+        return new Scope();
+    }
+
+    /**
+     * Returns the true graph.
+     *
+     * @return The true graph.
+     */
+    public Graph getTrueGraph() {
+        return this.trueGraph;
+    }
+
+    /**
+     * Returns the estimated graph.
+     *
+     * @return The estimated graph.
+     */
+    public Graph getEstGraph() {
+        return this.estGraph;
+    }
+
+    /**
+     * Returns the adjacency confusion.
+     *
+     * @return The adjacency confusion.
+     */
+    public AdjacencyConfusion getAdjacencyConfusion() {
+        if (this.adjacencyConfusion == null) {
+            this.adjacencyConfusion = new AdjacencyConfusion(this.trueGraph, this.estGraph);
+        }
+
+        return this.adjacencyConfusion;
+    }
+
+    /**
+     * Returns the arrowhead confusion.
+     *
+     * @return The arrowhead confusion.
+     */
+    public ArrowConfusion getArrowConfusion() {
+        if (this.arrowConfusion == null) {
+            this.arrowConfusion = new ArrowConfusion(this.trueGraph, this.estGraph);
+        }
+
+        return this.arrowConfusion;
+    }
+
+    /**
+     * Returns the arrowhead confusion.
+     *
+     * @param truthAdj If true, arrowhead false positives are counted only for adjacencies in the true graph.
+     * @return The arrowhead confusion.
+     */
+    public ArrowConfusion getArrowConfusion(boolean truthAdj) {
+        if (!truthAdj) {
+            return getArrowConfusion();
+        }
+
+        if (this.arrowConfusionTruthAdj == null) {
+            this.arrowConfusionTruthAdj = new ArrowConfusion(this.trueGraph, this.estGraph, true);
+        }
+
+        return this.arrowConfusionTruthAdj;
+    }
+
+    /**
+     * Returns the tail confusion.
+     *
+     * @return The tail confusion.
+     */
+    public TailConfusion getTailConfusion() {
+        if (this.tailConfusion == null) {
+            this.tailConfusion = new TailConfusion(this.trueGraph, this.estGraph);
+        }
+
+        return this.tailConfusion;
+    }
+
+    /**
+     * Returns the orientation confusion.
+     *
+     * @return The orientation confusion.
+     */
+    public OrientationConfusion getOrientationConfusion() {
+        if (this.orientationConfusion == null) {
+            this.orientationConfusion = new OrientationConfusion(this.trueGraph, this.estGraph);
+        }
+
+        return this.orientationConfusion;
+    }
+
+    /**
+     * Returns the local graph confusion.
+     *
+     * @return The local graph confusion.
+     */
+    public LocalGraphConfusion getLocalGraphConfusion() {
+        if (this.localGraphConfusion == null) {
+            this.localGraphConfusion = new LocalGraphConfusion(this.trueGraph, this.estGraph);
+        }
+
+        return this.localGraphConfusion;
+    }
+
+    /**
+     * Returns the ancestor confusion over all ordered pairs (x, y) of nodes of the estimated graph, including x = y.
+     *
+     * @return The ancestor confusion.
+     */
+    public AncestralConfusion getAncestorConfusion() {
+        if (this.ancestorConfusion == null) {
+            this.ancestorConfusion = new AncestralConfusion(this, this.estGraph.getNodes(), true);
+        }
+
+        return this.ancestorConfusion;
+    }
+
+    /**
+     * Returns the ancestral confusion over all ordered pairs (x, y) of distinct nodes of the true graph.
+     *
+     * @return The ancestral confusion.
+     */
+    public AncestralConfusion getAncestralConfusion() {
+        if (this.ancestralConfusion == null) {
+            this.ancestralConfusion = new AncestralConfusion(this, this.trueGraph.getNodes(), false);
+        }
+
+        return this.ancestralConfusion;
+    }
+
+    /**
+     * Returns true iff x is an ancestor of y in the true graph, with the meaning of Paths.isAncestorOf.
+     *
+     * @param x The first node.
+     * @param y The second node.
+     * @return True if so.
+     */
+    public boolean isTrueAncestorOf(Node x, Node y) {
+        if (this.trueAncestors == null) {
+            this.trueAncestors = new ReachabilityIndex(this.trueGraph);
+        }
+
+        return this.trueAncestors.isAncestorOf(x, y);
+    }
+
+    /**
+     * Returns true iff x is an ancestor of y in the estimated graph, with the meaning of Paths.isAncestorOf.
+     *
+     * @param x The first node.
+     * @param y The second node.
+     * @return True if so.
+     */
+    public boolean isEstAncestorOf(Node x, Node y) {
+        if (this.estAncestors == null) {
+            this.estAncestors = new ReachabilityIndex(this.estGraph);
+        }
+
+        return this.estAncestors.isAncestorOf(x, y);
+    }
+
+    /**
+     * A scope in which statistics share one comparison; closing it discards the comparison.
+     */
+    public static final class Scope implements AutoCloseable {
+
+        /**
+         * Constructs the scope.
+         */
+        private Scope() {
+        }
+
+        /**
+         * Closes the scope.
+         */
+        @Override
+        public void close() {
+            CURRENT.remove();
+        }
+    }
+}
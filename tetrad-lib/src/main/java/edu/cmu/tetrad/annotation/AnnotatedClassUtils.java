@@ -18,9 +18,11 @@
  */
 package edu.cmu.tetrad.annotation;
 
+import edu.cmu.tetrad.data.DataType;
 import org.reflections.Reflections;
 
 import java.lang.annotation.Annotation;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -74,4 +76,23 @@ public class AnnotatedClassUtils {
         return list;
     }
 
+    /**
+     * Returns whether the given test or score wrapper is annotated as accepting a covariance matrix.
+     *
+     * @param wrapper The test or score wrapper; may be null.
+     * @return True, if so.
+     */
+    public static boolean acceptsCovariance(Object wrapper) {
+        if (wrapper == null) return false;
+
+        TestOfIndependence test = wrapper.getClass().getAnnotation(TestOfIndependence.class);
+
+        if (test != null) {
+            return Arrays.asList(test.dataType()).contains(DataType.Covariance);
+        }
+
+        Score score = wrapper.getClass().getAnnotation(Score.class);
+        return score != null && Arrays.asList(score.dataType()).contains(DataType.Covariance);
+    }
+
 }
@@ -0,0 +1,424 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.bayes;
+
+import edu.cmu.tetrad.util.ForkJoinUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A junction tree compiled into flat arrays, for inference over many rows of evidence. Each clique is held as an array
+ * of potentials over its members, the first member most significant, and cliques are ordered so that each comes after
+ * the clique it sends its message to, with the index of each clique cell in that separator precomputed. For each row,
+ * the evidence is entered into a copy of the potentials and messages are passed inward, after which the posterior of a
+ * node in the first clique can be read from it, or inward and then outward, after which every clique holds the
+ * posterior of its members, up to a constant. Messages are rescaled as they are passed so that long rows of evidence do
+ * not underflow.
+ * <p>
+ * The compiled tree itself is not modified, so rows can be processed in parallel, each thread holding its own buffers.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ * @see JunctionTreeAlgorithm#getMarginalProbabilities(int, int[][])
+ * @see EmBayesEngine
+ */
+final class CompiledJunctionTree {
+
+    /**
+     * The number of rows processed by a task.
+     */
+    private static final int CHUNK_SIZE = 256;
+
+    /**
+     * The node indices of the members of each clique, the first most significant.
+     */
+    private final int[][] members;
+
+    /**
+     * The number of categories of each node, by node index.
+     */
+    private final int[] numCategories;
+
+    /**
+     * The index of the clique each clique sends its message to, or -1 for the first clique of each component.
+     */
+    private final int[] up;
+
+    /**
+     * For each clique, the cell in the separator it sends its message over of each of its cells.
+     */
+    private final int[][] sepMap;
+
+    /**
+     * For each clique, the cell in the separator it sends its message over of each cell of the clique it sends to.
+     */
+    private final int[][] upMap;
+
+    /**
+     * The number of cells in the separator each clique sends its message over.
+     */
+    private final int[] sepSizes;
+
+    /**
+     * The potentials of each clique; not modified.
+     */
+    private final double[][] potentials;
+
+    /**
+     * The node indices of the nodes in the tree, with the clique their evidence is entered into, and their stride in
+     * that clique.
+     */
+    private final int[] evidenceNodes, evidenceCliques, evidenceStrides;
+
+    /**
+     * Constructs the compiled tree.
+     *
+     * @param members       The node indices of the members of each clique, the first most significant.
+     * @param numCategories The number of categories of each node.
+     * @param up            The clique each clique sends its message to, -1 for the first of a component.
+     * @param sepMap        For each clique, the separator cell of each of its cells.
+     * @param upMap         For each clique, the separator cell of each cell of the clique it sends to.
+     * @param sepSizes      The separator sizes.
+     * @param potentials    The potentials of each clique.
+     */
+    CompiledJunctionTree(int[][] members, int[] numCategories, int[] up, int[][] sepMap, int[][] upMap,
+                         int[] sepSizes, double[][] potentials) {
+        this.members = members;
+        this.numCategories = numCategories;
+        this.up = up;
+        this.sepMap = sepMap;
+        this.upMap = upMap;
+        this.sepSizes = sepSizes;
+        this.potentials = potentials;
+
+        int[] clique = new int[numCategories.length];
+        int[] stride = new int[numCategories.length];
+        Arrays.fill(clique, -1);
+        int count = 0;
+
+        for (int c = 0; c < members.length; c++) {
+            for (int k = 0; k < members[c].length; k++) {
+                int node = members[c][k];
+
+                if (clique[node] == -1) {
+                    clique[node] = c;
+                    stride[node] = getStride(c, k);
+                    count++;
+                }
+            }
+        }
+
+        this.evidenceNodes = new int[count];
+        this.evidenceCliques = new int[count];
+        this.evidenceStrides = new int[count];
+
+        for (int node = 0, e = 0; node < numCategories.length; node++) {
+            if (clique[node] == -1) continue;
+            this.evidenceNodes[e] = node;
+            this.evidenceCliques[e] = clique[node];
+            this.evidenceStrides[e] = stride[node];
+            e++;
+        }
+    }
+
+    /**
+     * Returns a tree with the same structure and the given potentials.
+     *
+     * @param potentials The potentials of each clique.
+     * @return The tree.
+     */
+    CompiledJunctionTree withPotentials(double[][] potentials) {
+        return new CompiledJunctionTree(this.members, this.numCategories, this.up, this.sepMap, this.upMap,
+                this.sepSizes, potentials);
+    }
+
+    /**
+     * Returns the number of cliques.
+     *
+     * @return This number.
+     */
+    int getNumCliques() {
+        return this.members.length;
+    }
+
+    /**
+     * Returns the node indices of the members of a clique, the first most significant.
+     *
+     * @param c The clique.
+     * @return These indices; not to be modified.
+     */
+    int[] getMembers(int c) {
+        return this.members[c];
+    }
+
+    /**
+     * Returns, for each cell of a clique, the index of the corresponding cell in a table over the given nodes, all of
+     * them members of the clique, the first most significant.
+     *
+     * @param c     The clique.
+     * @param nodes The node indices.
+     * @return These indices.
+     */
+    int[] getCellMap(int c, int[] nodes) {
+        int[] strides = new int[nodes.length];
+
+        for (int j = 0; j < nodes.length; j++) {
+            int k = indexOf(this.members[c], nodes[j]);
+
+            if (k == -1) {
+                throw new IllegalArgumentException("Node " + nodes[j] + " is not in clique " + c + ".");
+            }
+
+            strides[j] = getStride(c, k);
+        }
+
+        int[] map = new int[getSize(c)];
+
+        for (int i = 0; i < map.length; i++) {
+            int index = 0;
+
+            for (int j = 0; j < nodes.length; j++) {
+                int card = this.numCategories[nodes[j]];
+                index = index * card + (i / strides[j]) % card;
+            }
+
+            map[i] = index;
+        }
+
+        return map;
+    }
+
+    /**
+     * Returns the posterior marginals of a node in the first clique given each row of evidence, in parallel.
+     *
+     * @param target     The node index; a member of the first clique.
+     * @param evidence   The rows of evidence, a value for each node, negative if unobserved; the value of the target is
+     *                   ignored.
+     * @param numThreads The number of threads.
+     * @return The marginals, by row; NaN for rows whose evidence has probability zero.
+     */
+    double[][] getMarginals(int target, int[][] evidence, int numThreads) {
+        int k = indexOf(this.members[0], target);
+
+        if (k == -1) {
+            throw new IllegalArgumentException("Node " + target + " is not in the first clique.");
+        }
+
+        int stride = getStride(0, k);
+        int card = this.numCategories[target];
+        double[][] marginals = new double[evidence.length][];
+        ThreadLocal<double[][][]> buffers = ThreadLocal.withInitial(this::newBuffers);
+        int numChunks = (evidence.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+
+        try {
+            ForkJoinUtils.forRange(pool, numChunks, chunk -> {
+                double[][][] buffer = buffers.get();
+                int to = Math.min(evidence.length, (chunk + 1) * CHUNK_SIZE);
+
+                for (int r = chunk * CHUNK_SIZE; r < to; r++) {
+                    double[] marginal = new double[card];
+                    marginals[r] = marginal;
+
+                    load(evidence[r], target, buffer[0]);
+
+                    if (!collect(buffer[0], buffer[1])) {
+                        Arrays.fill(marginal, Double.NaN);
+                        continue;
+                    }
+
+                    double[] root = buffer[0][0];
+
+                    for (int i = 0; i < root.length; i++) {
+                        marginal[(i / stride) % card] += root[i];
+                    }
+
+                    normalize(marginal);
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+
+        return marginals;
+    }
+
+    /**
+     * Returns new buffers for one thread: the clique buffers, and two sets of message buffers.
+     *
+     * @return These buffers.
+     */
+    double[][][] newBuffers() {
+        double[][] cliques = new double[this.members.length][];
+        double[][] messages = new double[this.members.length][];
+        double[][] scratch = new double[this.members.length][];
+
+        for (int c = 0; c < this.members.length; c++) {
+            cliques[c] = new double[this.potentials[c].length];
+            messages[c] = new double[this.sepSizes[c]];
+            scratch[c] = new double[this.sepSizes[c]];
+        }
+
+        return new double[][][]{cliques, messages, scratch};
+    }
+
+    /**
+     * Copies the potentials into the clique buffers and enters the evidence of a row.
+     *
+     * @param row     The row of evidence, a value for each node, negative if unobserved.
+     * @param skip    A node whose value is ignored, or -1.
+     * @param cliques The clique buffers.
+     */
+    void load(int[] row, int skip, double[][] cliques) {
+        for (int c = 0; c < cliques.length; c++) {
+            System.arraycopy(this.potentials[c], 0, cliques[c], 0, cliques[c].length);
+        }
+
+        for (int e = 0; e < this.evidenceNodes.length; e++) {
+            int node = this.evidenceNodes[e];
+            int value = row[node];
+            if (value < 0 || node == skip) continue;
+
+            double[] clique = cliques[this.evidenceCliques[e]];
+            int stride = this.evidenceStrides[e];
+            int period = stride * this.numCategories[node];
+
+            for (int base = 0; base < clique.length; base += period) {
+                Arrays.fill(clique, base, base + value * stride, 0.0);
+                Arrays.fill(clique, base + (value + 1) * stride, base + period, 0.0);
+            }
+        }
+    }
+
+    /**
+     * Passes messages inward, leaving the messages sent, each summing to one, in the message buffers.
+     *
+     * @param cliques  The clique buffers, loaded.
+     * @param messages The message buffers.
+     * @return False if the evidence has probability zero.
+     */
+    boolean collect(double[][] cliques, double[][] messages) {
+        for (int c = cliques.length - 1; c >= 0; c--) {
+            if (this.up[c] == -1) continue;
+
+            double[] message = messages[c];
+
+            if (!marginalize(cliques[c], this.sepMap[c], message)) {
+                return false;
+            }
+
+            double[] to = cliques[this.up[c]];
+            int[] toMap = this.upMap[c];
+
+            for (int i = 0; i < to.length; i++) {
+                to[i] *= message[toMap[i]];
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Passes messages outward after collect, so that each clique holds the posterior of its members, up to a
+     * constant.
+     *
+     * @param cliques  The clique buffers, collected.
+     * @param messages The message buffers, as left by collect.
+     * @param scratch  Scratch buffers of the same sizes.
+     */
+    void distribute(double[][] cliques, double[][] messages, double[][] scratch) {
+        for (int c = 0; c < cliques.length; c++) {
+            if (this.up[c] == -1) continue;
+
+            double[] message = scratch[c];
+            marginalize(cliques[this.up[c]], this.upMap[c], message);
+
+            double[] old = messages[c];
+
+            for (int s = 0; s < message.length; s++) {
+                message[s] = old[s] == 0.0 ? 0.0 : message[s] / old[s];
+            }
+
+            double[] clique = cliques[c];
+            int[] map = this.sepMap[c];
+
+            for (int i = 0; i < clique.length; i++) {
+                clique[i] *= message[map[i]];
+            }
+        }
+    }
+
+    /**
+     * Sums the cells of a clique into a separator, rescaled to sum to one.
+     *
+     * @return False if the sum is zero.
+     */
+    private static boolean marginalize(double[] clique, int[] map, double[] message) {
+        Arrays.fill(message, 0.0);
+
+        for (int i = 0; i < clique.length; i++) {
+            message[map[i]] += clique[i];
+        }
+
+        return normalize(message);
+    }
+
+    /**
+     * Rescales the values to sum to one, or sets them to NaN if they sum to zero.
+     *
+     * @return False if they sum to zero.
+     */
+    private static boolean normalize(double[] values) {
+        double sum = 0.0;
+        for (double v : values) sum += v;
+
+        if (sum == 0.0) {
+            Arrays.fill(values, Double.NaN);
+            return false;
+        }
+
+        for (int k = 0; k < values.length; k++) values[k] /= sum;
+        return true;
+    }
+
+    private int getSize(int c) {
+        int size = 1;
+        for (int node : this.members[c]) size *= this.numCategories[node];
+        return size;
+    }
+
+    private int getStride(int c, int k) {
+        int stride = 1;
+        for (int j = k + 1; j < this.members[c].length; j++) stride *= this.numCategories[this.members[c][j]];
+        return stride;
+    }
+
+    private static int indexOf(int[] array, int value) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == value) return i;
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,422 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.bayes;
+
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.util.ForkJoinUtils;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The expectation step of EM for a discrete Bayes net, on a compiled junction tree. Identical rows of the data are
+ * grouped and weighted by their number, and rows are grouped by their pattern of missing values; for each pattern, the
+ * nodes whose families are observed are counted directly and the rest are found by inference, which is skipped
+ * altogether for rows with no missing values in any family. Expected counts are accumulated over a fixed number of
+ * shards of the rows in parallel, each with its own count arrays and inference buffers, allocated once and reused from
+ * one iteration to the next, and the shards are added in order, so that results do not depend on the number of
+ * threads.
+ * <p>
+ * Nodes are indexed as in the compiled tree. Conditional probability tables and counts are flattened by row and then
+ * column, with rows indexed as in BayesIm, the first parent most significant.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ * @see EmBayesEstimator
+ * @see CompiledJunctionTree
+ */
+final class EmBayesEngine {
+
+    /**
+     * The most shards the rows are divided into.
+     */
+    private static final int MAX_SHARDS = 32;
+
+    /**
+     * The compiled tree, with its structure only.
+     */
+    private final CompiledJunctionTree tree;
+
+    /**
+     * The number of categories of each node.
+     */
+    private final int[] numCategories;
+
+    /**
+     * The parents of each node, in BayesIm order.
+     */
+    private final int[][] parents;
+
+    /**
+     * The distinct rows of the data, a value for each node, -1 if missing.
+     */
+    private final int[][] rows;
+
+    /**
+     * The number of times each distinct row occurs.
+     */
+    private final double[] weights;
+
+    /**
+     * The missing value pattern of each distinct row.
+     */
+    private final int[] patterns;
+
+    /**
+     * For each pattern, the nodes whose families have missing values, and the rest.
+     */
+    private final int[][] inferred, counted;
+
+    /**
+     * For each node, a clique containing its family, and the index in its table of each cell of that clique.
+     */
+    private final int[] familyCliques;
+    private final int[][] familyMaps;
+
+    /**
+     * The nodes whose tables are multiplied into each clique.
+     */
+    private final int[][] assigned;
+
+    /**
+     * The first row of each shard, and one past the last row of the last.
+     */
+    private final int[] shards;
+
+    /**
+     * The counts of each shard, and its inference buffers.
+     */
+    private final double[][][] shardCounts;
+    private final double[][][][] shardBuffers;
+
+    /**
+     * The number of threads.
+     */
+    private final int numThreads;
+
+    /**
+     * Constructs the engine, grouping the rows of the data.
+     *
+     * @param tree          The compiled junction tree for the Bayes net.
+     * @param numCategories The number of categories of each node.
+     * @param parents   The parents of each node, in BayesIm order.
+     * @param data       The data.
+     * @param columns    The column in the data of each node, or -1 if the node is latent.
+     * @param numThreads The number of threads.
+     */
+    EmBayesEngine(CompiledJunctionTree tree, int[] numCategories, int[][] parents, DataSet data, int[] columns,
+                  int numThreads) {
+        this.tree = tree;
+        this.numCategories = numCategories;
+        this.parents = parents;
+        this.numThreads = numThreads;
+
+        int numNodes = numCategories.length;
+
+        // Group identical rows.
+        Map<Row, Integer> distinct = new LinkedHashMap<>();
+        List<Row> rowList = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+
+        for (int i = 0; i < data.getNumRows(); i++) {
+            int[] values = new int[numNodes];
+
+            for (int v = 0; v < numNodes; v++) {
+                int value = columns[v] == -1 ? -1 : data.getInt(i, columns[v]);
+                values[v] = value < 0 ? -1 : value;
+            }
+
+            Row row = new Row(values);
+            Integer index = distinct.get(row);
+
+            if (index == null) {
+                distinct.put(row, rowList.size());
+                rowList.add(row);
+                counts.add(1);
+            } else {
+                counts.set(index, counts.get(index) + 1);
+            }
+        }
+
+        this.rows = new int[rowList.size()][];
+        this.weights = new double[rowList.size()];
+
+        for (int r = 0; r < this.rows.length; r++) {
+            this.rows[r] = rowList.get(r).values;
+            this.weights[r] = counts.get(r);
+        }
+
+        // Group the rows by missing value pattern.
+        Map<BitSet, Integer> patternIndices = new HashMap<>();
+        List<int[]> inferred = new ArrayList<>();
+        List<int[]> counted = new ArrayList<>();
+        this.patterns = new int[this.rows.length];
+
+        for (int r = 0; r < this.rows.length; r++) {
+            BitSet missing = new BitSet(numNodes);
+
+            for (int v = 0; v < numNodes; v++) {
+                if (this.rows[r][v] == -1) missing.set(v);
+            }
+
+            Integer pattern = patternIndices.get(missing);
+
+            if (pattern == null) {
+                pattern = inferred.size();
+                patternIndices.put(missing, pattern);
+
+                List<Integer> _inferred = new ArrayList<>();
+                List<Integer> _counted = new ArrayList<>();
+
+                for (int v = 0; v < numNodes; v++) {
+                    boolean familyMissing = missing.get(v);
+                    for (int p : parents[v]) familyMissing |= missing.get(p);
+                    (familyMissing ? _inferred : _counted).add(v);
+                }
+
+                inferred.add(_inferred.stream().mapToInt(Integer::intValue).toArray());
+                counted.add(_counted.stream().mapToInt(Integer::intValue).toArray());
+            }
+
+            this.patterns[r] = pattern;
+        }
+
+        this.inferred = inferred.toArray(new int[0][]);
+        this.counted = counted.toArray(new int[0][]);
+
+        // Find a clique for each family and the tables multiplied into each clique.
+        this.familyCliques = new int[numNodes];
+        this.familyMaps = new int[numNodes][];
+        List<List<Integer>> assigned = new ArrayList<>();
+        for (int c = 0; c < tree.getNumCliques(); c++) assigned.add(new ArrayList<>());
+
+        for (int v = 0; v < numNodes; v++) {
+            int[] family = Arrays.copyOf(parents[v], parents[v].length + 1);
+            family[parents[v].length] = v;
+            this.familyCliques[v] = -1;
+
+            for (int c = 0; c < tree.getNumCliques(); c++) {
+                if (containsAll(tree.getMembers(c), family)) {
+                    this.familyCliques[v] = c;
+                    break;
+                }
+            }
+
+            if (this.familyCliques[v] == -1) {
+                throw new IllegalStateException("No clique contains the family of node " + v + ".");
+            }
+
+            this.familyMaps[v] = tree.getCellMap(this.familyCliques[v], family);
+            assigned.get(this.familyCliques[v]).add(v);
+        }
+
+        this.assigned = new int[assigned.size()][];
+
+        for (int c = 0; c < assigned.size(); c++) {
+            this.assigned[c] = assigned.get(c).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        // Divide the rows into shards.
+        int numShards = Math.max(1, Math.min(MAX_SHARDS, this.rows.length));
+        this.shards = new int[numShards + 1];
+
+        for (int s = 0; s <= numShards; s++) {
+            this.shards[s] = (int) ((long) s * this.rows.length / numShards);
+        }
+
+        this.shardCounts = new double[numShards][numNodes][];
+        this.shardBuffers = new double[numShards][][][];
+
+        for (int s = 0; s < numShards; s++) {
+            for (int v = 0; v < numNodes; v++) {
+                this.shardCounts[s][v] = new double[getTableSize(v)];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of distinct rows.
+     *
+     * @return This number.
+     */
+    int getNumDistinctRows() {
+        return this.rows.length;
+    }
+
+    /**
+     * Returns the expected counts of the data under the given conditional probability tables. Rows whose observed
+     * values have probability zero under the tables contribute nothing to the counts of the nodes found by inference.
+     *
+     * @param tables The conditional probability table of each node.
+     * @return The expected counts, shaped as the tables.
+     */
+    double[][] getExpectedCounts(double[][] tables) {
+        CompiledJunctionTree tree = this.tree.withPotentials(getPotentials(tables));
+        ForkJoinPool pool = new ForkJoinPool(this.numThreads);
+
+        try {
+            ForkJoinUtils.forRange(pool, this.shards.length - 1, s -> {
+                double[][] counts = this.shardCounts[s];
+                for (double[] count : counts) Arrays.fill(count, 0.0);
+
+                if (this.shardBuffers[s] == null) {
+                    this.shardBuffers[s] = tree.newBuffers();
+                }
+
+                double[][][] buffers = this.shardBuffers[s];
+
+                for (int r = this.shards[s]; r < this.shards[s + 1]; r++) {
+                    count(tree, r, counts, buffers);
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+
+        double[][] expected = new double[this.numCategories.length][];
+
+        for (int v = 0; v < expected.length; v++) {
+            expected[v] = new double[getTableSize(v)];
+
+            for (double[][] counts : this.shardCounts) {
+                for (int k = 0; k < expected[v].length; k++) {
+                    expected[v][k] += counts[v][k];
+                }
+            }
+        }
+
+        return expected;
+    }
+
+    /**
+     * Adds the expected counts of one distinct row.
+     */
+    private void count(CompiledJunctionTree tree, int r, double[][] counts, double[][][] buffers) {
+        int[] row = this.rows[r];
+        double weight = this.weights[r];
+        int pattern = this.patterns[r];
+
+        for (int v : this.counted[pattern]) {
+            int index = 0;
+
+            for (int p : this.parents[v]) {
+                index = index * this.numCategories[p] + row[p];
+            }
+
+            counts[v][index * this.numCategories[v] + row[v]] += weight;
+        }
+
+        int[] inferred = this.inferred[pattern];
+        if (inferred.length == 0) return;
+
+        double[][] cliques = buffers[0];
+        tree.load(row, -1, cliques);
+
+        if (!tree.collect(cliques, buffers[1])) return;
+        tree.distribute(cliques, buffers[1], buffers[2]);
+
+        for (int v : inferred) {
+            double[] clique = cliques[this.familyCliques[v]];
+            int[] map = this.familyMaps[v];
+            double[] count = counts[v];
+
+            double sum = 0.0;
+            for (double p : clique) sum += p;
+            double scale = weight / sum;
+
+            for (int i = 0; i < clique.length; i++) {
+                count[map[i]] += clique[i] * scale;
+            }
+        }
+    }
+
+    /**
+     * Returns the potentials of the cliques for the given tables.
+     */
+    private double[][] getPotentials(double[][] tables) {
+        double[][] potentials = new double[this.tree.getNumCliques()][];
+
+        for (int c = 0; c < potentials.length; c++) {
+            int size = 1;
+            for (int node : this.tree.getMembers(c)) size *= this.numCategories[node];
+
+            potentials[c] = new double[size];
+            Arrays.fill(potentials[c], 1.0);
+
+            for (int v : this.assigned[c]) {
+                int[] map = this.familyMaps[v];
+
+                for (int i = 0; i < size; i++) {
+                    potentials[c][i] *= tables[v][map[i]];
+                }
+            }
+        }
+
+        return potentials;
+    }
+
+    private int getTableSize(int v) {
+        int size = this.numCategories[v];
+        for (int p : this.parents[v]) size *= this.numCategories[p];
+        return size;
+    }
+
+    private static boolean containsAll(int[] members, int[] nodes) {
+        for (int node : nodes) {
+            boolean found = false;
+
+            for (int member : members) {
+                if (member == node) {
+                    found = true;
+                    break;
+                }
+            }
+
+            if (!found) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * A row of values, compared by content.
+     */
+    private static final class Row {
+        private final int[] values;
+        private final int hash;
+
+        private Row(int[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Row && Arrays.equals(this.values, ((Row) o).values);
+        }
+    }
+}
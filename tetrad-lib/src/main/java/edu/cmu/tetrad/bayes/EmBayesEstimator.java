@@ -29,11 +29,9 @@ import edu.cmu.tetrad.graph.Dag;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.graph.NodeType;
+import edu.cmu.tetrad.util.TetradLogger;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
 
 /**
  * Estimates parameters of the given Bayes net from the given data using maximum likelihood method.
@@ -113,6 +111,22 @@ public final class EmBayesEstimator {
      */
     private double[][][] condProbs;
 
+    /**
+     * The number of threads used in the expectation step.
+     */
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The largest number of EM iterations in the maximization method.
+     */
+    private int maxIterations = 1000;
+
+    /**
+     * The engine for the expectation step, built on first use, and the index in the Bayes IM of each of its nodes.
+     */
+    private EmBayesEngine engine;
+    private int[] engineIndices;
+
     /**
      * Provides methods for estimating a Bayes IM from an existing BayesIM and a discrete dataset using EM (Expectation
      * Maximization).  The data columns in the given data must be equal to a variable in the given Bayes IM but the
@@ -256,181 +270,106 @@ public final class EmBayesEstimator {
     /**
      * This method takes an instantiated Bayes net (BayesIm) whose graph include all the variables (observed and latent)
      * and computes estimated counts using the data in the DataSet mixedData. The counts that are estimated correspond
-     * to cells in the conditional probability tables of the Bayes net.  The outermost loop (indexed by j) is over the
-     * set of variables.  If the variable has no parents, each case in the dataset is examined and the count for the
-     * observed value of the variables is increased by 1.0; if the value of the variable is missing the marginal
-     * probabilities its values given the values of the variables that are available for that case are used to increment
-     * the corresponding estimated counts. If a variable has parents then there is a loop which steps through all
-     * possible sets of values of its parents.  This loop is indexed by the variable "row".  Each case in the dataset is
-     * examined.  It the variable and all its parents have values in the case the corresponding estimated counts are
-     * incremented by 1.0.  If the variable or any of its parents have missing values, the joint marginal is computed
-     * for the variable and the set of values of its parents corresponding to "row" and the corresponding estimated
-     * counts are incremented by the appropriate probability. The estimated counts are stored in the double[][][] array
-     * estimatedCounts.  The count (possibly fractional) of the number of times each combination of parent values occurs
-     * is stored in the double[][] array estimatedCountsDenom.  These two arrays are used to compute the estimated
-     * conditional probabilities of the output Bayes net.
+     * to cells in the conditional probability tables of the Bayes net. For each case, the count for the observed values
+     * of a variable and its parents is increased by 1.0; if the variable or any of its parents is missing, the joint
+     * marginal of the variable and its parents given the values available for that case is used to increment the
+     * corresponding estimated counts. The counts are computed by an EmBayesEngine, which groups identical cases and
+     * cases with the same missing values and runs junction tree inference over shards of the cases in parallel. The
+     * estimated counts are stored in the double[][][] array estimatedCounts.  The count (possibly fractional) of the
+     * number of times each combination of parent values occurs is stored in the double[][] array estimatedCountsDenom.
+     * These two arrays are used to compute the estimated conditional probabilities of the output Bayes net, which
+     * becomes the estimated IM; rows whose parent values have an estimated count of zero keep the probabilities of the
+     * input Bayes net.
      */
     private void expectation(BayesIm inputBayesIm) {
-        int numCases = this.mixedData.getNumRows();
-        int numVariables = this.allVariables.size();
-        RowSummingExactUpdater rseu = new RowSummingExactUpdater(inputBayesIm);
-
-        for (int j = 0; j < numVariables; j++) {
-            DiscreteVariable var = (DiscreteVariable) this.allVariables.get(j);
-            String varName = var.getName();
-            Node varNode = this.graph.getNode(varName);
-            int varIndex = inputBayesIm.getNodeIndex(varNode);
-            int[] parentVarIndices = inputBayesIm.getParents(varIndex);
-
-            //This segment is for variables with no parents:
-            if (parentVarIndices.length == 0) {
-                //System.out.println("No parents");
-                for (int col = 0; col < var.getNumCategories(); col++) {
-                    this.estimatedCounts[j][0][col] = 0.0;
-                }
+        EmBayesEngine engine = getEngine();
+        int[] indices = this.engineIndices;
 
-                for (int i = 0; i < numCases; i++) {
-                    //System.out.println("Case " + i);
-                    //If this case has a value for ar
-                    if (this.mixedData.getInt(i, j) != -99) {
-                        this.estimatedCounts[j][0][this.mixedData.getInt(i, j)] += 1.0;
-                    } else {
-                        //find marginal probability, given obs data in this case, p(v=0)
-                        Evidence evidenceThisCase = Evidence.tautology(inputBayesIm);
-                        boolean existsEvidence = false;
-
-                        //Define evidence for updating by using the values of the other vars.
-                        for (int k = 0; k < numVariables; k++) {
-                            if (k == j) {
-                                continue;
-                            }
-                            Node otherVar = this.allVariables.get(k);
-                            if (this.mixedData.getInt(i, k) == -99) {
-                                continue;
-                            }
-                            existsEvidence = true;
-                            String otherVarName = otherVar.getName();
-                            Node otherNode = this.graph.getNode(otherVarName);
-                            int otherIndex =
-                                    inputBayesIm.getNodeIndex(otherNode);
-
-                            evidenceThisCase.getProposition().setCategory(
-                                    otherIndex, this.mixedData.getInt(i, k));
-                        }
-
-                        if (!existsEvidence) {
-                            continue; //No other variable contained useful data
-                        }
-
-                        rseu.setEvidence(evidenceThisCase);
-
-                        for (int m = 0; m < var.getNumCategories(); m++) {
-                            this.estimatedCounts[j][0][m] +=
-                                    rseu.getMarginal(varIndex, m);
-                        }
-                    }
-                }
+        double[][] tables = new double[indices.length][];
 
-                //Print estimated counts:
-                //System.out.println("Estimated counts:  ");
-
-                //Print counts for each value of this variable with no parents.
-            } else {    //For variables with parents:
-                int numRows = inputBayesIm.getNumRows(varIndex);
-                for (int row = 0; row < numRows; row++) {
-                    int[] parValues =
-                            inputBayesIm.getParentValues(varIndex, row);
-                    this.estimatedCountsDenom[varIndex][row] = 0.0;
-                    for (int col = 0; col < var.getNumCategories(); col++) {
-                        this.estimatedCounts[varIndex][row][col] = 0.0;
-                    }
+        for (int k = 0; k < indices.length; k++) {
+            int i = indices[k];
+            int numCols = inputBayesIm.getNumColumns(i);
+            tables[k] = new double[inputBayesIm.getNumRows(i) * numCols];
 
-                    for (int i = 0; i < numCases; i++) {
-                        //for a case where the parent values = parValues increment the estCount
-
-                        boolean parentMatch = true;
-
-                        for (int p = 0; p < parentVarIndices.length; p++) {
-                            if (parValues[p] !=
-                                this.mixedData.getInt(i, parentVarIndices[p]) &&
-                                this.mixedData.getInt(i, parentVarIndices[p]) !=
-                                -99) {
-                                parentMatch = false;
-                                break;
-                            }
-                        }
-
-                        if (!parentMatch) {
-                            continue;  //Not a matching case; go to next.
-                        }
-
-                        boolean parentMissing = false;
-                        for (int parentVarIndice : parentVarIndices) {
-                            if (this.mixedData.getInt(i, parentVarIndice) == -99) {
-                                parentMissing = true;
-                                break;
-                            }
-                        }
-
-
-                        if (this.mixedData.getInt(i, j) != -99 && !parentMissing) {
-                            this.estimatedCounts[j][row][this.mixedData.getInt(i, j)] +=
-                                    1.0;
-                            this.estimatedCountsDenom[j][row] += 1.0;
-                            continue;    //Next case
-                        }
-
-                        Evidence.tautology(inputBayesIm);
-                    }
+            for (int row = 0; row < inputBayesIm.getNumRows(i); row++) {
+                for (int col = 0; col < numCols; col++) {
+                    tables[k][row * numCols + col] = inputBayesIm.getProbability(i, row, col);
                 }
-
-
             }
         }
 
+        double[][] counts = engine.getExpectedCounts(tables);
         BayesIm outputBayesIm = new MlBayesIm(this.bayesPm);
 
-        for (int j = 0; j < this.nodes.length; j++) {
-
-            DiscreteVariable var = (DiscreteVariable) this.allVariables.get(j);
-            String varName = var.getName();
-            Node varNode = this.graph.getNode(varName);
-            int varIndex = inputBayesIm.getNodeIndex(varNode);
-//            int[] parentVarIndices = inputBayesIm.getParents(varIndex);
+        for (int k = 0; k < indices.length; k++) {
+            int i = indices[k];
+            int numCols = inputBayesIm.getNumColumns(i);
 
-            int numRows = inputBayesIm.getNumRows(j);
-            //System.out.println("Conditional probabilities for variable " + varName);
+            for (int row = 0; row < inputBayesIm.getNumRows(i); row++) {
+                double denom = 0.0;
 
-            int numCols = inputBayesIm.getNumColumns(j);
-            if (numRows == 1) {
-                double sum = 0.0;
-                for (int m = 0; m < numCols; m++) {
-                    sum += this.estimatedCounts[j][0][m];
+                for (int col = 0; col < numCols; col++) {
+                    this.estimatedCounts[i][row][col] = counts[k][row * numCols + col];
+                    denom += this.estimatedCounts[i][row][col];
                 }
 
-                for (int m = 0; m < numCols; m++) {
-                    this.condProbs[j][0][m] = this.estimatedCounts[j][0][m] / sum;
-                    outputBayesIm.setProbability(varIndex, 0, m,
-                            this.condProbs[j][0][m]);
-                }
-            } else {
+                this.estimatedCountsDenom[i][row] = denom;
 
-                for (int row = 0; row < numRows; row++) {
-
-                    for (int m = 0; m < numCols; m++) {
-                        if (this.estimatedCountsDenom[j][row] != 0.0) {
-                            this.condProbs[j][row][m] = this.estimatedCounts[j][row][m] /
-                                                        this.estimatedCountsDenom[j][row];
-                        } else {
-                            this.condProbs[j][row][m] = Double.NaN;
-                        }
-                        outputBayesIm.setProbability(varIndex, row, m,
-                                this.condProbs[j][row][m]);
+                for (int col = 0; col < numCols; col++) {
+                    if (denom != 0.0) {
+                        this.condProbs[i][row][col] = this.estimatedCounts[i][row][col] / denom;
+                    } else {
+                        this.condProbs[i][row][col] = inputBayesIm.getProbability(i, row, col);
                     }
+
+                    outputBayesIm.setProbability(i, row, col, this.condProbs[i][row][col]);
                 }
             }
+        }
 
+        this.estimatedIm = outputBayesIm;
+    }
+
+    /**
+     * Returns the engine for the expectation step, building it on first use. Its nodes are those of the junction tree
+     * for the Bayes net; engineIndices gives the index in the Bayes IM of each.
+     */
+    private EmBayesEngine getEngine() {
+        if (this.engine == null) {
+            JunctionTreeAlgorithm jta = new JunctionTreeAlgorithm(this.estimatedIm);
+            List<Node> jtaNodes = jta.getNodes();
+            int numNodes = jtaNodes.size();
+
+            Map<Node, Integer> jtaIndices = new HashMap<>();
+            for (int k = 0; k < numNodes; k++) jtaIndices.put(jtaNodes.get(k), k);
+
+            int[] indices = new int[numNodes];
+            int[] numCategories = new int[numNodes];
+            int[][] parents = new int[numNodes][];
+            int[] columns = new int[numNodes];
+
+            for (int k = 0; k < numNodes; k++) {
+                Node node = jtaNodes.get(k);
+                indices[k] = this.estimatedIm.getNodeIndex(node);
+                numCategories[k] = this.estimatedIm.getNumColumns(indices[k]);
+
+                int[] imParents = this.estimatedIm.getParents(indices[k]);
+                parents[k] = new int[imParents.length];
+
+                for (int p = 0; p < imParents.length; p++) {
+                    parents[k][p] = jtaIndices.get(this.estimatedIm.getNode(imParents[p]));
+                }
+
+                columns[k] = this.mixedData.getColumn(this.mixedData.getVariable(node.getName()));
+            }
+
+            this.engineIndices = indices;
+            this.engine = new EmBayesEngine(jta.compile(), numCategories, parents, this.mixedData, columns,
+                    this.numThreads);
         }
+
+        return this.engine;
     }
 
     /**
@@ -439,24 +378,38 @@ public final class EmBayesEstimator {
      * parameters (with respect to the dataset) etc.  The threshhold is compared to the distance between successive
      * parameter sets and when the change is less than the threshhold, the process is considered to have converged.  The
      * distance between successive Bayes nets is the Euclidean distance between vectors of sequences of their
-     * parameters.  See the BayesImDistanceFunction class for details.
+     * parameters.  See the BayesImDistanceFunction class for details. The iteration also stops after the maximum
+     * number of iterations, or if the distance is NaN, which happens once a parameter is NaN and would not change on
+     * later iterations.
      *
      * @param threshhold a double
      * @return a {@link edu.cmu.tetrad.bayes.BayesIm} object
+     * @see #setMaxIterations(int)
      */
     public BayesIm maximization(double threshhold) {
         double distance = Double.MAX_VALUE;
         BayesIm oldBayesIm = this.estimatedIm;
         BayesIm newBayesIm = null;
 
-        while (Double.isNaN(distance) || distance > threshhold) {
+        for (int iteration = 0; distance > threshhold; iteration++) {
+            if (iteration == this.maxIterations) {
+                TetradLogger.getInstance().log("EM did not converge in " + this.maxIterations + " iterations.");
+                break;
+            }
+
             expectation(oldBayesIm);
-            newBayesIm = getEstimatedIm();
+            newBayesIm = this.estimatedIm;
 
             distance = BayesImDistanceFunction.distance(newBayesIm, oldBayesIm);
 
+            if (Double.isNaN(distance)) {
+                TetradLogger.getInstance().log("EM stopped; the distance between successive Bayes IMs is NaN.");
+                break;
+            }
+
             oldBayesIm = newBayesIm;
         }
+
         return newBayesIm;
     }
 
@@ -529,6 +482,36 @@ public final class EmBayesEstimator {
 
     }
 
+    /**
+     * Sets the number of threads used in the expectation step. By default, this is the number of available processors.
+     * Results do not depend on the number of threads.
+     *
+     * @param numThreads The number of threads, at least 1.
+     * @throws IllegalArgumentException If numThreads is less than 1.
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+        }
+
+        this.numThreads = numThreads;
+        this.engine = null;
+    }
+
+    /**
+     * Sets the largest number of EM iterations in the maximization method. By default, this is 1000.
+     *
+     * @param maxIterations The number of iterations, at least 1.
+     * @throws IllegalArgumentException If maxIterations is less than 1.
+     */
+    public void setMaxIterations(int maxIterations) {
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("Max iterations must be at least 1: " + maxIterations);
+        }
+
+        this.maxIterations = maxIterations;
+    }
+
     /**
      * <p>getMixedDataSet.</p>
      *
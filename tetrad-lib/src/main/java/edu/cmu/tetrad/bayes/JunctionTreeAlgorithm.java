@@ -621,6 +621,182 @@ public class JunctionTreeAlgorithm implements TetradSerializable {
         return this.margins[iNode][value];
     }
 
+    /**
+     * Returns the posterior marginals of a node given each of many rows of evidence. The junction tree is compiled once
+     * for the node into flat potential arrays, and the rows are processed in parallel, each with one inward pass of
+     * messages, without changing the state of this object. This is much faster than setting the evidence of each row
+     * in turn.
+     *
+     * @param iNode    the index of the node
+     * @param evidence the rows of evidence, each with a value for every node, or a negative value if the node is
+     *                 unobserved; the value given for iNode itself is ignored
+     * @return the marginals of iNode, by row; all NaN for a row if its evidence has probability zero
+     */
+    public double[][] getMarginalProbabilities(int iNode, int[][] evidence) {
+        return getMarginalProbabilities(iNode, evidence, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Returns the posterior marginals of a node given each of many rows of evidence, using the given number of
+     * threads.
+     *
+     * @param iNode      the index of the node
+     * @param evidence   the rows of evidence, each with a value for every node, or a negative value if the node is
+     *                   unobserved; the value given for iNode itself is ignored
+     * @param numThreads the number of threads
+     * @return the marginals of iNode, by row; all NaN for a row if its evidence has probability zero
+     * @see #getMarginalProbabilities(int, int[][])
+     */
+    public double[][] getMarginalProbabilities(int iNode, int[][] evidence, int numThreads) {
+        validate(iNode);
+
+        if (evidence == null) {
+            throw new IllegalArgumentException("Evidence cannot be null.");
+        }
+
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+        }
+
+        for (int[] row : evidence) {
+            if (row == null || row.length != this.graphNodes.length) {
+                throw new IllegalArgumentException("Each row of evidence must have a value for every node.");
+            }
+
+            for (int i = 0; i < row.length; i++) {
+                if (i != iNode && row[i] >= 0) {
+                    validate(i, row[i]);
+                }
+            }
+        }
+
+        return compile(iNode).getMarginals(iNode, evidence, numThreads);
+    }
+
+    /**
+     * Compiles the component of the junction tree containing the given node, ordering its cliques outward from a
+     * clique containing the node.
+     */
+    private CompiledJunctionTree compile(int iNode) {
+        Node target = this.graphNodes[iNode];
+        TreeNode first = getCliqueContainsNode(target);
+
+        if (first == null) {
+            String msg = String.format("Node %s is not in junction tree.", target.getName());
+            throw new IllegalArgumentException(msg);
+        }
+
+        return compile(Collections.singletonList(first));
+    }
+
+    /**
+     * Compiles the whole junction tree, with its current potentials, ordering the cliques of each component outward
+     * from its root. Node indices are as in getNodes().
+     *
+     * @return The compiled tree.
+     */
+    CompiledJunctionTree compile() {
+        List<TreeNode> firsts = new ArrayList<>();
+        firsts.add(this.root);
+
+        for (Node node : this.maxCardOrdering) {
+            TreeNode treeNode = this.treeNodes.get(node);
+
+            if (treeNode != null && treeNode != this.root && treeNode.parentSeparator == null) {
+                firsts.add(treeNode);
+            }
+        }
+
+        return compile(firsts);
+    }
+
+    /**
+     * Compiles the components of the junction tree containing the given cliques, ordering the cliques of each
+     * component outward from the given one.
+     */
+    private CompiledJunctionTree compile(List<TreeNode> firsts) {
+        List<TreeNode> order = new ArrayList<>();
+        List<Integer> up = new ArrayList<>();
+        List<TreeSeparator> separators = new ArrayList<>();
+        Set<TreeNode> visited = new HashSet<>();
+
+        for (TreeNode first : firsts) {
+            if (!visited.add(first)) continue;
+
+            order.add(first);
+            up.add(-1);
+            separators.add(null);
+
+            for (int c = order.size() - 1; c < order.size(); c++) {
+                TreeNode treeNode = order.get(c);
+
+                for (TreeNode child : treeNode.children) {
+                    if (visited.add(child)) {
+                        order.add(child);
+                        up.add(c);
+                        separators.add(child.parentSeparator);
+                    }
+                }
+
+                if (treeNode.parentSeparator != null && visited.add(treeNode.parentSeparator.parentNode)) {
+                    order.add(treeNode.parentSeparator.parentNode);
+                    up.add(c);
+                    separators.add(treeNode.parentSeparator);
+                }
+            }
+        }
+
+        Map<Node, Integer> indices = new HashMap<>();
+        int[] numCategories = new int[this.graphNodes.length];
+
+        for (int i = 0; i < this.graphNodes.length; i++) {
+            indices.put(this.graphNodes[i], i);
+            numCategories[i] = this.bayesPm.getNumCategories(this.graphNodes[i]);
+        }
+
+        int numCliques = order.size();
+        int[][] members = new int[numCliques][];
+        double[][] potentials = new double[numCliques][];
+        int[] _up = new int[numCliques];
+        int[][] sepMap = new int[numCliques][];
+        int[][] upMap = new int[numCliques][];
+        int[] sepSizes = new int[numCliques];
+
+        for (int c = 0; c < numCliques; c++) {
+            TreeNode treeNode = order.get(c);
+            members[c] = new int[treeNode.nodes.length];
+            for (int k = 0; k < members[c].length; k++) members[c][k] = indices.get(treeNode.nodes[k]);
+            potentials[c] = treeNode.potentials;
+            _up[c] = up.get(c);
+
+            TreeSeparator separator = separators.get(c);
+
+            if (separator != null) {
+                sepSizes[c] = separator.parentPotentials.length;
+                sepMap[c] = getSeparatorMap(treeNode, separator.nodes);
+                upMap[c] = getSeparatorMap(order.get(_up[c]), separator.nodes);
+            }
+        }
+
+        return new CompiledJunctionTree(members, numCategories, _up, sepMap, upMap, sepSizes, potentials);
+    }
+
+    /**
+     * Returns the index in the separator with the given nodes of each cell of the given clique.
+     */
+    private int[] getSeparatorMap(TreeNode treeNode, Node[] separatorNodes) {
+        int size = treeNode.nodes.length;
+        int[] values = new int[size];
+        int[] map = new int[treeNode.cardinality];
+
+        for (int i = 0; i < treeNode.cardinality; i++) {
+            map[getIndexOfCPT(treeNode.nodes, values)] = getIndexOfCPT(separatorNodes, values, treeNode.nodes);
+            updateValues(size, values, treeNode.nodes);
+        }
+
+        return map;
+    }
+
     /**
      * <p>getNodes.</p>
      *
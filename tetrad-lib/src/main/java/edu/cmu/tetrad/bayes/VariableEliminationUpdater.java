@@ -0,0 +1,783 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.bayes;
+
+import edu.cmu.tetrad.graph.Dag;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
+import java.util.*;
+
+/**
+ * Performs exact updating operations on a BayesIm by variable elimination. The conditional probability tables of the
+ * manipulated Bayes net are stored as factors in flat arrays indexed by strides, and are restricted to the evidence
+ * once each time the evidence is set. For each query, nodes that are not ancestors of the query or evidence variables
+ * are dropped, and the remaining variables are summed out in a min-fill order. Elimination orders depend only on which
+ * variables are in evidence and how, and on the query, so they are computed once for each such signature and kept when
+ * the evidence changes; the results of queries are kept until the evidence changes. Unlike the row summing updater,
+ * the cost of a query grows with the treewidth of the graph rather than with the number of variables not in evidence.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ * @see RowSummingExactUpdater
+ */
+public final class VariableEliminationUpdater implements ManipulatingBayesUpdater {
+    @Serial
+    private static final long serialVersionUID = 23L;
+
+    /**
+     * The BayesIm which this updater modifies.
+     */
+    private final BayesIm bayesIm;
+
+    /**
+     * Stores evidence for all variables.
+     */
+    private Evidence evidence;
+
+    /**
+     * The last manipulated BayesIm.
+     */
+    private BayesIm manipulatedBayesIm;
+
+    /**
+     * The BayesIm after update, if this was calculated.
+     */
+    private BayesIm updatedBayesIm;
+
+    /**
+     * Elimination orders, by evidence signature and query.
+     */
+    private transient Map<String, int[]> eliminationOrders;
+
+    /**
+     * The conditional probability table of each node, restricted to the evidence.
+     */
+    private transient Factor[] factors;
+
+    /**
+     * For each node, the category it is restricted to by the evidence, -2 if it is restricted to several categories,
+     * or -1 if it is not restricted.
+     */
+    private transient int[] restrictions;
+
+    /**
+     * The signature of the evidence--how each variable is restricted or manipulated.
+     */
+    private transient String signature;
+
+    /**
+     * The results of queries for the current evidence, by query.
+     */
+    private transient Map<String, Factor> results;
+
+    //==============================CONSTRUCTORS===========================//
+
+    /**
+     * Constructs a new updater for the given Bayes net.
+     *
+     * @param bayesIm a {@link edu.cmu.tetrad.bayes.BayesIm} object
+     */
+    public VariableEliminationUpdater(BayesIm bayesIm) {
+        this(bayesIm, Evidence.tautology(bayesIm));
+    }
+
+    /**
+     * Constructs a new updater for the given Bayes net.
+     *
+     * @param bayesIm  a {@link edu.cmu.tetrad.bayes.BayesIm} object
+     * @param evidence a {@link edu.cmu.tetrad.bayes.Evidence} object
+     */
+    public VariableEliminationUpdater(BayesIm bayesIm, Evidence evidence) {
+        if (bayesIm == null) {
+            throw new NullPointerException();
+        }
+
+        this.bayesIm = bayesIm;
+        setEvidence(evidence);
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     *
+     * @return a {@link edu.cmu.tetrad.bayes.VariableEliminationUpdater} object
+     */
+    public static VariableEliminationUpdater serializableInstance() {
+        return new VariableEliminationUpdater(MlBayesIm.serializableInstance());
+    }
+
+    //============================PUBLIC METHODS==========================//
+
+    /**
+     * The BayesIm that this updater bases its update on. This BayesIm is not modified; rather, a new BayesIm is created
+     * and updated.
+     *
+     * @return a {@link edu.cmu.tetrad.bayes.BayesIm} object
+     */
+    public BayesIm getBayesIm() {
+        return this.bayesIm;
+    }
+
+    /**
+     * <p>Getter for the field <code>manipulatedBayesIm</code>.</p>
+     *
+     * @return the updated BayesIm.
+     */
+    public BayesIm getManipulatedBayesIm() {
+        return this.manipulatedBayesIm;
+    }
+
+    /**
+     * <p>getManipulatedGraph.</p>
+     *
+     * @return a {@link edu.cmu.tetrad.graph.Graph} object
+     */
+    public Graph getManipulatedGraph() {
+        return getManipulatedBayesIm().getDag();
+    }
+
+    /**
+     * The updated BayesIm. This is a different object from the source BayesIm.
+     *
+     * @return a {@link edu.cmu.tetrad.bayes.BayesIm} object
+     * @see #getBayesIm
+     */
+    public BayesIm getUpdatedBayesIm() {
+        if (this.updatedBayesIm == null) {
+            updateAll();
+        }
+
+        return this.updatedBayesIm;
+    }
+
+    /**
+     * <p>Getter for the field <code>evidence</code>.</p>
+     *
+     * @return a defensive copy of the evidence.
+     */
+    public Evidence getEvidence() {
+        return new Evidence(this.evidence);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setEvidence(Evidence evidence) {
+        if (evidence == null) {
+            throw new NullPointerException();
+        }
+
+        if (evidence.isIncompatibleWith(this.bayesIm)) {
+            throw new IllegalArgumentException("The variable list for the " +
+                                               "given bayesIm must be compatible with the variable list " +
+                                               "for this evidence.");
+        }
+
+        this.evidence = evidence;
+
+        Graph graph = this.bayesIm.getBayesPm().getDag();
+        Dag manipulatedGraph = createManipulatedGraph(graph);
+        BayesPm manipulatedPm = createUpdatedBayesPm(manipulatedGraph);
+
+        this.manipulatedBayesIm = createdUpdatedBayesIm(manipulatedPm);
+
+        for (int i = 0; i < evidence.getNumNodes(); i++) {
+            if (evidence.isManipulated(i)) {
+                for (int j = 0; j < evidence.getNumCategories(i); j++) {
+                    if (evidence.getProposition().isAllowed(i, j)) {
+                        this.manipulatedBayesIm.setProbability(i, 0, j, 1.0);
+                    } else {
+                        this.manipulatedBayesIm.setProbability(i, 0, j, 0.0);
+                    }
+                }
+            }
+        }
+
+        this.updatedBayesIm = null;
+        this.factors = null;
+    }
+
+    /**
+     * <p>isJointMarginalSupported.</p>
+     *
+     * @return a boolean
+     */
+    public boolean isJointMarginalSupported() {
+        return true;
+    }
+
+    /**
+     * <p>getJointMarginal.</p>
+     *
+     * @param variables an array of  objects
+     * @param values    an array of  objects
+     * @return a double
+     */
+    public double getJointMarginal(int[] variables, int[] values) {
+        if (variables.length != values.length) {
+            throw new IllegalArgumentException("Values must match variables.");
+        }
+
+        if (!existsCombination()) {
+            return Double.NaN;
+        }
+
+        // As with a proposition, a later value for a variable replaces an earlier one.
+        Map<Integer, Integer> assertion = new TreeMap<>();
+
+        for (int i = 0; i < variables.length; i++) {
+            assertion.put(variables[i], values[i]);
+        }
+
+        int[] query = new int[assertion.size()];
+        int index = 0;
+        int k = 0;
+
+        for (Map.Entry<Integer, Integer> entry : assertion.entrySet()) {
+            query[k++] = entry.getKey();
+            index = index * this.manipulatedBayesIm.getNumColumns(entry.getKey()) + entry.getValue();
+        }
+
+        return query(query).values[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getMarginal(int variable, int value) {
+        if (!existsCombination()) {
+            return Double.NaN;
+        }
+
+        return query(new int[]{variable}).values[value];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double[] calculatePriorMarginals(int nodeIndex) {
+        Evidence evidence = getEvidence();
+        setEvidence(Evidence.tautology(evidence.getVariableSource()));
+
+        double[] marginals = new double[evidence.getNumCategories(nodeIndex)];
+
+        for (int i = 0; i < getBayesIm().getNumColumns(nodeIndex); i++) {
+            marginals[i] = getMarginal(nodeIndex, i);
+        }
+
+        setEvidence(evidence);
+        return marginals;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double[] calculateUpdatedMarginals(int nodeIndex) {
+        double[] marginals = new double[this.evidence.getNumCategories(nodeIndex)];
+
+        for (int i = 0; i < getBayesIm().getNumColumns(nodeIndex); i++) {
+            marginals[i] = getMarginal(nodeIndex, i);
+        }
+
+        return marginals;
+    }
+
+    /**
+     * Prints out the most recent marginal.
+     *
+     * @return a {@link java.lang.String} object
+     */
+    public String toString() {
+        return "Variable elimination updater, evidence = " + this.evidence;
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    private void updateAll() {
+        BayesIm updatedBayesIm = new MlBayesIm(this.manipulatedBayesIm);
+        int numNodes = this.manipulatedBayesIm.getNumNodes();
+        boolean existsCombination = existsCombination();
+
+        for (int node = 0; node < numNodes; node++) {
+            int numRows = this.manipulatedBayesIm.getNumRows(node);
+            int numCols = this.manipulatedBayesIm.getNumColumns(node);
+            int[] parents = this.manipulatedBayesIm.getParents(node);
+
+            int[] family = Arrays.copyOf(parents, parents.length + 1);
+            family[parents.length] = node;
+            double[] joint = existsCombination ? query(family).values : null;
+
+            for (int row = 0; row < numRows; row++) {
+                double sum = 0.0;
+
+                for (int col = 0; col < numCols && joint != null; col++) {
+                    sum += joint[row * numCols + col];
+                }
+
+                for (int col = 0; col < numCols; col++) {
+                    double p = sum > 0.0 ? joint[row * numCols + col] / sum : Double.NaN;
+                    updatedBayesIm.setProbability(node, row, col, p);
+                }
+            }
+        }
+
+        this.updatedBayesIm = updatedBayesIm;
+    }
+
+    private boolean existsCombination() {
+        return new Proposition(this.manipulatedBayesIm, this.evidence.getProposition()).existsCombination();
+    }
+
+    /**
+     * Returns the distribution of the given variables given the evidence, with the first variable most significant,
+     * or NaNs if the evidence has probability zero.
+     */
+    private Factor query(int[] query) {
+        if (this.factors == null) {
+            restrictToEvidence();
+        }
+
+        String key = Arrays.toString(query);
+        Factor result = this.results.get(key);
+
+        if (result == null) {
+            result = eliminate(query);
+            this.results.put(key, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Builds the factors for the current evidence.
+     */
+    private void restrictToEvidence() {
+        int numNodes = this.manipulatedBayesIm.getNumNodes();
+        Proposition proposition = this.evidence.getProposition();
+
+        this.restrictions = new int[numNodes];
+        StringBuilder signature = new StringBuilder();
+
+        for (int i = 0; i < numNodes; i++) {
+            int numAllowed = proposition.getNumAllowed(i);
+
+            if (numAllowed == this.manipulatedBayesIm.getNumColumns(i)) {
+                this.restrictions[i] = -1;
+            } else if (numAllowed == 1) {
+                this.restrictions[i] = proposition.getSingleCategory(i);
+            } else {
+                this.restrictions[i] = -2;
+            }
+
+            signature.append(this.restrictions[i] == -1 ? 'f' : this.restrictions[i] == -2 ? 'r' : 's');
+            signature.append(this.evidence.isManipulated(i) ? 'm' : '.');
+        }
+
+        this.signature = signature.toString();
+        this.factors = new Factor[numNodes];
+
+        for (int i = 0; i < numNodes; i++) {
+            int[] parents = this.manipulatedBayesIm.getParents(i);
+            int[] vars = Arrays.copyOf(parents, parents.length + 1);
+            vars[parents.length] = i;
+
+            Factor factor = new Factor(vars, getCards());
+            int numCols = this.manipulatedBayesIm.getNumColumns(i);
+
+            for (int row = 0; row < this.manipulatedBayesIm.getNumRows(i); row++) {
+                for (int col = 0; col < numCols; col++) {
+                    factor.values[row * numCols + col] = this.manipulatedBayesIm.getProbability(i, row, col);
+                }
+            }
+
+            this.factors[i] = restrict(factor, proposition);
+        }
+
+        if (this.eliminationOrders == null) {
+            this.eliminationOrders = new HashMap<>();
+        }
+
+        this.results = new HashMap<>();
+    }
+
+    /**
+     * Zeroes out the disallowed categories of the factor and drops the variables restricted to a single category.
+     */
+    private Factor restrict(Factor factor, Proposition proposition) {
+        int[] cards = getCards();
+
+        for (int k = 0; k < factor.values.length; k++) {
+            for (int j = 0; j < factor.vars.length; j++) {
+                int v = factor.vars[j];
+                int category = (k / factor.strides[j]) % cards[v];
+
+                if (!proposition.isAllowed(v, category)) {
+                    factor.values[k] = 0.0;
+                    break;
+                }
+            }
+        }
+
+        int[] kept = Arrays.stream(factor.vars).filter(v -> this.restrictions[v] < 0).toArray();
+        if (kept.length == factor.vars.length) return factor;
+
+        int offset = 0;
+
+        for (int j = 0; j < factor.vars.length; j++) {
+            int v = factor.vars[j];
+            if (this.restrictions[v] >= 0) offset += this.restrictions[v] * factor.strides[j];
+        }
+
+        Factor sliced = new Factor(kept, cards);
+        int[] strides = new int[kept.length];
+
+        for (int j = 0; j < kept.length; j++) {
+            strides[j] = factor.strideOf(kept[j]);
+        }
+
+        int[] assignment = new int[kept.length];
+        int index = offset;
+
+        for (int k = 0; k < sliced.values.length; k++) {
+            sliced.values[k] = factor.values[index];
+
+            for (int j = kept.length - 1; j >= 0; j--) {
+                if (++assignment[j] < cards[kept[j]]) {
+                    index += strides[j];
+                    break;
+                }
+
+                assignment[j] = 0;
+                index -= (cards[kept[j]] - 1) * strides[j];
+            }
+        }
+
+        return sliced;
+    }
+
+    /**
+     * Computes the distribution of the query variables by variable elimination.
+     */
+    private Factor eliminate(int[] query) {
+        int numNodes = this.factors.length;
+        int[] cards = getCards();
+
+        // Only the ancestors of the query and evidence variables matter.
+        boolean[] relevant = new boolean[numNodes];
+        Deque<Integer> stack = new ArrayDeque<>();
+
+        for (int v : query) stack.push(v);
+
+        for (int i = 0; i < numNodes; i++) {
+            if (this.restrictions[i] != -1) stack.push(i);
+        }
+
+        while (!stack.isEmpty()) {
+            int v = stack.pop();
+            if (relevant[v]) continue;
+            relevant[v] = true;
+
+            for (int p : this.manipulatedBayesIm.getParents(v)) {
+                if (!relevant[p]) stack.push(p);
+            }
+        }
+
+        List<Factor> factors = new ArrayList<>();
+
+        for (int i = 0; i < numNodes; i++) {
+            if (relevant[i]) factors.add(this.factors[i]);
+        }
+
+        int[] sortedQuery = query.clone();
+        Arrays.sort(sortedQuery);
+        String key = this.signature + Arrays.toString(sortedQuery);
+        int[] order = this.eliminationOrders.get(key);
+
+        if (order == null) {
+            order = minFillOrder(factors, query, numNodes);
+            this.eliminationOrders.put(key, order);
+        }
+
+        for (int v : order) {
+            List<Factor> containing = new ArrayList<>();
+            Set<Integer> scope = new TreeSet<>();
+
+            for (Iterator<Factor> it = factors.iterator(); it.hasNext(); ) {
+                Factor factor = it.next();
+
+                if (factor.strideOf(v) != 0) {
+                    containing.add(factor);
+                    for (int w : factor.vars) if (w != v) scope.add(w);
+                    it.remove();
+                }
+            }
+
+            int[] vars = scope.stream().mapToInt(Integer::intValue).toArray();
+            factors.add(combine(containing, vars, v, cards));
+        }
+
+        // The remaining factors mention only query variables.
+        int[] vars = Arrays.stream(query).filter(v -> this.restrictions[v] < 0).toArray();
+        Factor joint = combine(factors, vars, -1, cards);
+        Factor result = new Factor(query, cards);
+
+        for (int k = 0; k < result.values.length; k++) {
+            int index = 0;
+            boolean allowed = true;
+
+            for (int j = 0; j < query.length; j++) {
+                int v = query[j];
+                int category = (k / result.strides[j]) % cards[v];
+
+                if (this.restrictions[v] >= 0) {
+                    allowed &= category == this.restrictions[v];
+                } else {
+                    index += category * joint.strideOf(v);
+                }
+            }
+
+            result.values[k] = allowed ? joint.values[index] : 0.0;
+        }
+
+        double sum = 0.0;
+        for (double value : result.values) sum += value;
+
+        for (int k = 0; k < result.values.length; k++) {
+            result.values[k] = sum > 0.0 ? result.values[k] / sum : Double.NaN;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns an order in which to sum out the variables of the factors not in the query, greedily choosing the
+     * variable whose elimination adds the fewest edges to the interaction graph, then the one with fewest neighbors.
+     */
+    private static int[] minFillOrder(List<Factor> factors, int[] query, int numNodes) {
+        List<Set<Integer>> neighbors = new ArrayList<>();
+        for (int i = 0; i < numNodes; i++) neighbors.add(new TreeSet<>());
+
+        Set<Integer> remaining = new TreeSet<>();
+
+        for (Factor factor : factors) {
+            for (int v : factor.vars) {
+                remaining.add(v);
+
+                for (int w : factor.vars) {
+                    if (v != w) neighbors.get(v).add(w);
+                }
+            }
+        }
+
+        for (int v : query) remaining.remove(v);
+
+        int[] order = new int[remaining.size()];
+
+        for (int k = 0; k < order.length; k++) {
+            int best = -1;
+            int bestFill = Integer.MAX_VALUE;
+            int bestDegree = Integer.MAX_VALUE;
+
+            for (int v : remaining) {
+                List<Integer> adj = new ArrayList<>(neighbors.get(v));
+                int fill = 0;
+
+                for (int a = 0; a < adj.size() && fill < bestFill; a++) {
+                    for (int b = a + 1; b < adj.size(); b++) {
+                        if (!neighbors.get(adj.get(a)).contains(adj.get(b))) fill++;
+                    }
+                }
+
+                if (fill < bestFill || (fill == bestFill && adj.size() < bestDegree)) {
+                    best = v;
+                    bestFill = fill;
+                    bestDegree = adj.size();
+                }
+            }
+
+            for (int a : neighbors.get(best)) {
+                neighbors.get(a).remove(best);
+
+                for (int b : neighbors.get(best)) {
+                    if (a != b) neighbors.get(a).add(b);
+                }
+            }
+
+            neighbors.get(best).clear();
+            remaining.remove(best);
+            order[k] = best;
+        }
+
+        return order;
+    }
+
+    /**
+     * Multiplies the factors together and sums out the given variable, or none if it is -1, giving a factor over the
+     * given variables.
+     */
+    private static Factor combine(List<Factor> factors, int[] vars, int sumVar, int[] cards) {
+        int[] all = sumVar == -1 ? vars : Arrays.copyOf(vars, vars.length + 1);
+        if (sumVar != -1) all[vars.length] = sumVar;
+
+        int m = factors.size();
+        double[][] values = new double[m][];
+        int[][] strides = new int[m][all.length];
+
+        for (int f = 0; f < m; f++) {
+            values[f] = factors.get(f).values;
+
+            for (int j = 0; j < all.length; j++) {
+                strides[f][j] = factors.get(f).strideOf(all[j]);
+            }
+        }
+
+        Factor result = new Factor(vars, cards);
+        int sumCard = sumVar == -1 ? 1 : cards[sumVar];
+        int[] assignment = new int[all.length];
+        int[] index = new int[m];
+
+        for (int k = 0; k < result.values.length; k++) {
+            double sum = 0.0;
+
+            for (int s = 0; s < sumCard; s++) {
+                double product = 1.0;
+                for (int f = 0; f < m; f++) product *= values[f][index[f]];
+                sum += product;
+
+                for (int j = all.length - 1; j >= 0; j--) {
+                    if (++assignment[j] < cards[all[j]]) {
+                        for (int f = 0; f < m; f++) index[f] += strides[f][j];
+                        break;
+                    }
+
+                    assignment[j] = 0;
+                    for (int f = 0; f < m; f++) index[f] -= (cards[all[j]] - 1) * strides[f][j];
+                }
+            }
+
+            result.values[k] = sum;
+        }
+
+        return result;
+    }
+
+    private int[] getCards() {
+        int[] cards = new int[this.manipulatedBayesIm.getNumNodes()];
+
+        for (int i = 0; i < cards.length; i++) {
+            cards[i] = this.manipulatedBayesIm.getNumColumns(i);
+        }
+
+        return cards;
+    }
+
+    private BayesIm createdUpdatedBayesIm(BayesPm updatedBayesPm) {
+
+        // Switching this to MANUAL since the initial values don't matter.
+        return new MlBayesIm(updatedBayesPm, this.bayesIm, MlBayesIm.InitializationMethod.MANUAL);
+    }
+
+    private BayesPm createUpdatedBayesPm(Dag updatedGraph) {
+        return new BayesPm(updatedGraph, this.bayesIm.getBayesPm());
+    }
+
+    private Dag createManipulatedGraph(Graph graph) {
+        Dag updatedGraph = new Dag(graph);
+
+        // alters graph for manipulated evidenceItems
+        for (int i = 0; i < this.evidence.getNumNodes(); ++i) {
+            if (this.evidence.isManipulated(i)) {
+                Node node = updatedGraph.getNode(this.evidence.getNode(i).getName());
+                List<Node> parents = updatedGraph.getParents(node);
+
+                for (Node parent1 : parents) {
+                    updatedGraph.removeEdge(node, parent1);
+                }
+            }
+        }
+
+        return updatedGraph;
+    }
+
+    /**
+     * Adds semantic checks to the default deserialization method. This method must have the standard signature for a
+     * readObject method, and the body of the method must begin with "s.defaultReadObject();". Other than that, any
+     * semantic checks can be specified and do not need to stay the same from version to version. A readObject method of
+     * this form may be added to any class, even if Tetrad sessions were previously saved out using a version of the
+     * class that didn't include it. (That's what the "s.defaultReadObject();" is for. See J. Bloch, Effective Java, for
+     * help.
+     *
+     * @param s an {@link java.io.ObjectInputStream} object
+     * @throws IOException            If any.
+     * @throws ClassNotFoundException If any.
+     */
+    @Serial
+    private void readObject(ObjectInputStream s)
+            throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+
+        if (this.bayesIm == null) {
+            throw new NullPointerException();
+        }
+
+        if (this.evidence == null) {
+            throw new NullPointerException();
+        }
+    }
+
+    /**
+     * A table over some variables, flattened with the first variable most significant.
+     */
+    private static final class Factor {
+        private final int[] vars;
+        private final int[] strides;
+        private final double[] values;
+
+        private Factor(int[] vars, int[] cards) {
+            this.vars = vars;
+            this.strides = new int[vars.length];
+
+            int size = 1;
+
+            for (int j = vars.length - 1; j >= 0; j--) {
+                this.strides[j] = size;
+                size *= cards[vars[j]];
+            }
+
+            this.values = new double[size];
+        }
+
+        /**
+         * Returns the stride of the given variable, or 0 if it is not in the factor.
+         */
+        private int strideOf(int v) {
+            for (int j = 0; j < this.vars.length; j++) {
+                if (this.vars[j] == v) return this.strides[j];
+            }
+
+            return 0;
+        }
+    }
+}
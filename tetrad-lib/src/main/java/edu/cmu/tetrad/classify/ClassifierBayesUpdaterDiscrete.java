@@ -51,6 +51,11 @@ public final class ClassifierBayesUpdaterDiscrete implements ClassifierDiscrete,
     @Serial
     private static final long serialVersionUID = 23L;
 
+    /**
+     * The number of cases updated together.
+     */
+    private static final int BATCH_SIZE = 65536;
+
     /**
      * The BayesIm instance used to create an updater.  Supplied as an argument to the constructor.
      */
@@ -163,8 +168,9 @@ public final class ClassifierBayesUpdaterDiscrete implements ClassifierDiscrete,
             throw new NullPointerException("Target not set.");
         }
 
-        //Create an updater for the instantiated Bayes net.
-        BayesUpdater bayesUpdater = new RowSummingExactUpdater(getBayesIm());
+        //Compile a junction tree for the instantiated Bayes net, so that
+        //the cases can be updated in batches.
+        JunctionTreeAlgorithm junctionTree = new JunctionTreeAlgorithm(getBayesIm());
 
         //Get the raw data from the dataset to be classified, the number
         //of variables and the number of cases.
@@ -198,56 +204,57 @@ public final class ClassifierBayesUpdaterDiscrete implements ClassifierDiscrete,
         double[][] probOfClassifiedValues = new double[numTargetCategories][ncases];
         Arrays.fill(estimatedValues, -1);
 
-        //For each case in the dataset to be classified compute the estimated
-        //value of the target variable and increment the appropriate element
-        //of the crosstabulation array. Compute the estimated value of the
-        // target variable by using the observed values of the other variables
-        // and Bayesian updating.
-        for (int i = 0; i < ncases; i++) {
+        //Find the column of the selected data for each node of the junction
+        //tree, -1 for the target.
+        List<Node> treeNodes = junctionTree.getNodes();
+        int[] columns = new int[treeNodes.size()];
+        int itarget = -1;
 
-            //Create an Evidence instance for the instantiated Bayes net
-            //which will allow that updating.
-            Evidence evidence = Evidence.tautology(getBayesIm());
+        for (int k = 0; k < columns.length; k++) {
+            String name = treeNodes.get(k).getName();
+            columns[k] = -1;
 
-            //Let the target variable range over all its values.
-            int itarget = evidence.getNodeIndex(this.targetVariable.getName());
-            evidence.getProposition().setVariable(itarget, true);
+            if (name.equals(this.targetVariable.getName())) {
+                itarget = k;
+                continue;
+            }
 
-            //Restrict all other variables to their observed values in
-            //this case.
-            for (int j = 0; j < getBayesImVars().size(); j++) {
-                if (j == getBayesImVars().indexOf(this.targetVariable)) {
-                    continue;
+            for (int j = 0; j < nvars; j++) {
+                if (getBayesImVars().get(j).getName().equals(name)) {
+                    columns[k] = j;
                 }
+            }
+        }
+
+        //For each case in the dataset to be classified compute the estimated
+        //value of the target variable. Compute the estimated value of the
+        //target variable by using the observed values of the other variables
+        //and Bayesian updating, a batch of cases at a time.
+        for (int from = 0; from < ncases; from += BATCH_SIZE) {
+            int to = Math.min(ncases, from + BATCH_SIZE);
 
-                int observedValue = selectedData.getInt(i, j);
+            //Restrict all other variables to their observed values in
+            //each case, leaving missing values unobserved.
+            int[][] evidence = new int[to - from][columns.length];
 
-                if (observedValue == DiscreteVariable.MISSING_VALUE) {
-                    continue;
+            for (int i = from; i < to; i++) {
+                for (int k = 0; k < columns.length; k++) {
+                    evidence[i - from][k] = columns[k] == -1 ? -1 : selectedData.getInt(i, columns[k]);
                 }
-
-                String jName = getBayesImVars().get(j).getName();
-                int jIndex = evidence.getNodeIndex(jName);
-                evidence.getProposition().setCategory(jIndex, observedValue);
             }
 
-            //Update using those values.
-            bayesUpdater.setEvidence(evidence);
-
-            //for each possible value of target compute its probability in
-            //the updated Bayes net.  Select the value with the highest
-            //probability as the estimated value.
-            Node targetNode = getBayesIm().getNode(this.targetVariable.getName());
-            int indexTargetBN = getBayesIm().getNodeIndex(targetNode);
+            double[][] updated = junctionTree.getMarginalProbabilities(itarget, evidence);
 
-            //Straw man values--to be replaced.
-            int estimatedValue = -1;
+            for (int i = from; i < to; i++) {
 
-            {
+                //For each possible value of target take its probability in
+                //the updated Bayes net.  Select the value with the highest
+                //probability as the estimated value.
+                int estimatedValue = -1;
                 double highestProb = -0.1;
 
                 for (int j = 0; j < numTargetCategories; j++) {
-                    double marginal = bayesUpdater.getMarginal(indexTargetBN, j);
+                    double marginal = updated[i - from][j];
                     probOfClassifiedValues[j][i] = marginal;
 
                     if (marginal >= highestProb) {
@@ -255,24 +262,24 @@ public final class ClassifierBayesUpdaterDiscrete implements ClassifierDiscrete,
                         estimatedValue = j;
                     }
                 }
-            }
 
-            //Sometimes the marginal cannot be computed because certain
-            //combinations of values of the variables do not occur in the
-            //training dataset.  If that happens skip the case.
-            if (estimatedValue < 0) {
-                TetradLogger.getInstance().log("Case " + i + " does not return valid marginal.");
+                //Sometimes the marginal cannot be computed because certain
+                //combinations of values of the variables do not occur in the
+                //training dataset.  If that happens skip the case.
+                if (estimatedValue < 0) {
+                    TetradLogger.getInstance().log("Case " + i + " does not return valid marginal.");
+
+                    for (int m = 0; m < nvars; m++) {
+                        String message = "  " + selectedData.getDouble(i, m);
+                        TetradLogger.getInstance().log(message);
+                    }
 
-                for (int m = 0; m < nvars; m++) {
-                    String message = "  " + selectedData.getDouble(i, m);
-                    TetradLogger.getInstance().log(message);
+                    estimatedValues[i] = DiscreteVariable.MISSING_VALUE;
+                    continue;
                 }
 
-                estimatedValues[i] = DiscreteVariable.MISSING_VALUE;
-                continue;
+                estimatedValues[i] = estimatedValue;
             }
-
-            estimatedValues[i] = estimatedValue;
         }
 
         this.classifications = estimatedValues;
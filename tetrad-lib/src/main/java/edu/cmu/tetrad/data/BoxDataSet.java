@@ -1450,6 +1450,10 @@ public final class BoxDataSet implements DataSet {
      * @return the data box that holds the data for this data set.
      */
     public DataBox getDataBox() {
+        if (this.dataBox instanceof LazyDataBox lazy) {
+            this.dataBox = lazy.load();
+        }
+
         return this.dataBox;
     }
 }
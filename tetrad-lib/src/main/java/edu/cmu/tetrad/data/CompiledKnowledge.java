@@ -0,0 +1,283 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.graph.OrderedPair;
+
+import java.util.*;
+
+/**
+ * A snapshot of a Knowledge object indexed against a fixed list of variables, so that the queries searches make in
+ * their inner loops take constant time. Knowledge answers isForbidden and isRequired by scanning its rules and its
+ * tiers with set lookups on variable names; here each variable has an index, its tier is kept in an array, and the
+ * forbidden and required rules are expanded into bit matrices, so that:
+ * <ul>
+ *     <li>x --&gt; y is forbidden by tiers iff tier(y) &gt;= 0 and tier(x) &gt; tier(y);</li>
+ *     <li>x --&gt; y is forbidden by rules, or required, iff a bit is set in the row of x.</li>
+ * </ul>
+ * Rows with no bits set are not allocated. Queries about variables outside the list fall back to the knowledge
+ * itself, so answers always agree with Knowledge at the time of compilation. The snapshot does not follow later changes
+ * to the knowledge, so searches compile it when they start.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ * @see Knowledge#compile(List)
+ */
+public final class CompiledKnowledge {
+
+    /**
+     * The knowledge, consulted for variables outside the list.
+     */
+    private final Knowledge knowledge;
+
+    /**
+     * A map from variable names to indices.
+     */
+    private final Map<String, Integer> indices;
+
+    /**
+     * The tier of each variable, or -1 if it is in no tier.
+     */
+    private final int[] tiers;
+
+    /**
+     * The variables each variable is forbidden by rule from causing, or null if none.
+     */
+    private final BitSet[] forbidden;
+
+    /**
+     * The variables each variable is required to cause, or null if none.
+     */
+    private final BitSet[] required;
+
+    /**
+     * True if the knowledge was empty.
+     */
+    private final boolean empty;
+
+    /**
+     * Compiles the given knowledge against the given variables.
+     *
+     * @param knowledge The knowledge.
+     * @param variables The variables.
+     */
+    public CompiledKnowledge(Knowledge knowledge, List<Node> variables) {
+        if (knowledge == null) {
+            throw new NullPointerException("Knowledge must not be null.");
+        }
+
+        this.knowledge = knowledge;
+        this.empty = knowledge.isEmpty();
+        this.indices = new HashMap<>();
+
+        for (Node node : variables) {
+            this.indices.putIfAbsent(node.getName(), this.indices.size());
+        }
+
+        int n = this.indices.size();
+        this.tiers = new int[n];
+        this.forbidden = new BitSet[n];
+        this.required = new BitSet[n];
+
+        Arrays.fill(this.tiers, -1);
+
+        List<Set<String>> tierSpecs = knowledge.getTiers();
+
+        for (int t = 0; t < tierSpecs.size(); t++) {
+            for (String name : tierSpecs.get(t)) {
+                Integer i = this.indices.get(name);
+                if (i != null && this.tiers[i] == -1) this.tiers[i] = t;
+            }
+        }
+
+        expand(knowledge.getForbiddenRules(), this.forbidden);
+        expand(knowledge.getRequiredRules(), this.required);
+    }
+
+    /**
+     * Returns the knowledge this was compiled from.
+     *
+     * @return The knowledge.
+     */
+    public Knowledge getKnowledge() {
+        return this.knowledge;
+    }
+
+    /**
+     * Returns true if the knowledge was empty.
+     *
+     * @return True if so.
+     */
+    public boolean isEmpty() {
+        return this.empty;
+    }
+
+    /**
+     * Returns the index of the variable with the given name, or -1 if it is not in the list.
+     *
+     * @param name The name.
+     * @return The index.
+     */
+    public int getIndex(String name) {
+        Integer i = this.indices.get(name);
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * Returns the tier of the variable with the given index, or -1 if it is in no tier.
+     *
+     * @param i The index.
+     * @return The tier.
+     */
+    public int getTier(int i) {
+        return this.tiers[i];
+    }
+
+    /**
+     * Determines whether the edge from the variable with index i to the one with index j is forbidden.
+     *
+     * @param i The index of the first variable.
+     * @param j The index of the second variable.
+     * @return True if so.
+     * @see Knowledge#isForbidden(String, String)
+     */
+    public boolean isForbidden(int i, int j) {
+        if (this.tiers[j] >= 0 && this.tiers[i] > this.tiers[j]) return true;
+        BitSet row = this.forbidden[i];
+        return row != null && row.get(j);
+    }
+
+    /**
+     * Determines whether the edge from the variable with index i to the one with index j is required.
+     *
+     * @param i The index of the first variable.
+     * @param j The index of the second variable.
+     * @return True if so.
+     * @see Knowledge#isRequired(String, String)
+     */
+    public boolean isRequired(int i, int j) {
+        BitSet row = this.required[i];
+        return row != null && row.get(j);
+    }
+
+    /**
+     * Determines whether the edge var1 --&gt; var2 is forbidden.
+     *
+     * @param var1 The name of the first variable.
+     * @param var2 The name of the second variable.
+     * @return True if so.
+     * @see Knowledge#isForbidden(String, String)
+     */
+    public boolean isForbidden(String var1, String var2) {
+        if (this.empty) return false;
+
+        Integer i = this.indices.get(var1);
+        Integer j = this.indices.get(var2);
+
+        if (i == null || j == null) {
+            return this.knowledge.isForbidden(var1, var2);
+        }
+
+        return isForbidden(i, j);
+    }
+
+    /**
+     * Determines whether the edge var1 --&gt; var2 is required.
+     *
+     * @param var1 The name of the first variable.
+     * @param var2 The name of the second variable.
+     * @return True if so.
+     * @see Knowledge#isRequired(String, String)
+     */
+    public boolean isRequired(String var1, String var2) {
+        if (this.empty) return false;
+
+        Integer i = this.indices.get(var1);
+        Integer j = this.indices.get(var2);
+
+        if (i == null || j == null) {
+            return this.knowledge.isRequired(var1, var2);
+        }
+
+        return isRequired(i, j);
+    }
+
+    /**
+     * Determines whether the edge x --&gt; y is forbidden.
+     *
+     * @param x The first node.
+     * @param y The second node.
+     * @return True if so.
+     */
+    public boolean isForbidden(Node x, Node y) {
+        return isForbidden(x.getName(), y.getName());
+    }
+
+    /**
+     * Determines whether the edge x --&gt; y is required.
+     *
+     * @param x The first node.
+     * @param y The second node.
+     * @return True if so.
+     */
+    public boolean isRequired(Node x, Node y) {
+        return isRequired(x.getName(), y.getName());
+    }
+
+    /**
+     * Returns true if neither x --&gt; y nor y --&gt; x is required.
+     *
+     * @param x The name of the first variable.
+     * @param y The name of the second variable.
+     * @return True if so.
+     * @see Knowledge#noEdgeRequired(String, String)
+     */
+    public boolean noEdgeRequired(String x, String y) {
+        return !(isRequired(x, y) || isRequired(y, x));
+    }
+
+    /**
+     * Sets the bits for the given rules, allocating rows as needed.
+     */
+    private void expand(List<OrderedPair<Set<String>>> rules, BitSet[] rows) {
+        int n = rows.length;
+
+        for (OrderedPair<Set<String>> rule : rules) {
+            BitSet to = new BitSet(n);
+
+            for (String name : rule.getSecond()) {
+                Integer j = this.indices.get(name);
+                if (j != null) to.set(j);
+            }
+
+            if (to.isEmpty()) continue;
+
+            for (String name : rule.getFirst()) {
+                Integer i = this.indices.get(name);
+                if (i == null) continue;
+                if (rows[i] == null) rows[i] = new BitSet(n);
+                rows[i].or(to);
+            }
+        }
+    }
+}
@@ -996,6 +996,39 @@ public final class Knowledge implements TetradSerializable {
         }
     }
 
+    /**
+     * Returns a snapshot of this knowledge indexed against the given variables, for fast queries in the inner loops of
+     * searches.
+     *
+     * @param variables The variables.
+     * @return The compiled knowledge.
+     * @see CompiledKnowledge
+     */
+    public CompiledKnowledge compile(List<Node> variables) {
+        return new CompiledKnowledge(this, variables);
+    }
+
+    /**
+     * Returns the forbidden rules, read-only, for compilation.
+     */
+    List<OrderedPair<Set<String>>> getForbiddenRules() {
+        return Collections.unmodifiableList(this.forbiddenRulesSpecs);
+    }
+
+    /**
+     * Returns the required rules, read-only, for compilation.
+     */
+    List<OrderedPair<Set<String>>> getRequiredRules() {
+        return Collections.unmodifiableList(this.requiredRulesSpecs);
+    }
+
+    /**
+     * Returns the tiers, read-only, for compilation.
+     */
+    List<Set<String>> getTiers() {
+        return Collections.unmodifiableList(this.tierSpecs);
+    }
+
     /**
      * Computes a hashcode.
      *
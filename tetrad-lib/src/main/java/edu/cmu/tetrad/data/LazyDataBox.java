@@ -0,0 +1,220 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.util.PayloadSource;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serial;
+import java.io.UncheckedIOException;
+
+/**
+ * A data box whose contents are read from a payload source the first time they are needed, so that datasets in a saved
+ * session do not have to be read into memory until they are used. The dimensions are known up front. Once loaded,
+ * every method delegates to the loaded box; BoxDataSet.getDataBox() returns the loaded box itself, so that code
+ * checking for particular kinds of data box sees the real one.
+ * <p>
+ * Serialized with an ordinary object stream, the contents are loaded and written out in full.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ * @see edu.cmu.tetrad.util.SessionArchive
+ */
+public final class LazyDataBox implements DataBox {
+
+    @Serial
+    private static final long serialVersionUID = 23L;
+
+    /**
+     * The number of rows.
+     */
+    private final int numRows;
+
+    /**
+     * The number of columns.
+     */
+    private final int numCols;
+
+    /**
+     * Where the contents are read from; null once they have been loaded.
+     */
+    private transient PayloadSource<DataBox> source;
+
+    /**
+     * The contents, once loaded.
+     */
+    private transient DataBox dataBox;
+
+    /**
+     * Constructs a data box with the given dimensions, to be read from the given source when first needed.
+     *
+     * @param numRows the number of rows.
+     * @param numCols the number of columns.
+     * @param source  where the contents are read from; must give a box with these dimensions.
+     */
+    public LazyDataBox(int numRows, int numCols, PayloadSource<DataBox> source) {
+        if (source == null) {
+            throw new NullPointerException("Source must not be null.");
+        }
+
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.source = source;
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     *
+     * @return a {@link edu.cmu.tetrad.data.LazyDataBox} object
+     */
+    public static LazyDataBox serializableInstance() {
+        return new LazyDataBox(4, 4, () -> new VerticalDoubleDataBox(4, 4));
+    }
+
+    /**
+     * Returns the contents, reading them from the source if they have not been read yet.
+     *
+     * @return the loaded data box.
+     * @throws UncheckedIOException if the contents cannot be read.
+     */
+    public synchronized DataBox load() {
+        if (this.dataBox == null) {
+            try {
+                DataBox dataBox = this.source.load();
+
+                if (dataBox.numRows() != this.numRows || dataBox.numCols() != this.numCols) {
+                    throw new IllegalStateException("Expected a " + this.numRows + " x " + this.numCols
+                                                    + " data box but read a " + dataBox.numRows() + " x "
+                                                    + dataBox.numCols() + " one.");
+                }
+
+                this.dataBox = dataBox;
+                this.source = null;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read data: " + e.getMessage(), e);
+            }
+        }
+
+        return this.dataBox;
+    }
+
+    /**
+     * Returns whether the contents have been read.
+     *
+     * @return true if so.
+     */
+    public synchronized boolean isLoaded() {
+        return this.dataBox != null;
+    }
+
+    /**
+     * Returns where the contents will be read from.
+     *
+     * @return the source, or null if the contents have already been loaded.
+     */
+    public synchronized PayloadSource<DataBox> getSource() {
+        return this.source;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int numRows() {
+        return this.numRows;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int numCols() {
+        return this.numCols;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void set(int row, int col, Number value) {
+        load().set(row, col, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Number get(int row, int col) {
+        return load().get(row, col);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DataBox copy() {
+        return load().copy();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DataBox viewSelection(int[] rows, int[] cols) {
+        return load().viewSelection(rows, cols);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DataBox like() {
+        return load().like();
+    }
+
+    /**
+     * Writes the loaded contents after the dimensions.
+     *
+     * @param out The output stream.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(load());
+    }
+
+    /**
+     * Reads the contents written by writeObject.
+     *
+     * @param in The input stream.
+     * @throws IOException            If an I/O error occurs.
+     * @throws ClassNotFoundException If the class of the contents cannot be found.
+     */
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.dataBox = (DataBox) in.readObject();
+    }
+}
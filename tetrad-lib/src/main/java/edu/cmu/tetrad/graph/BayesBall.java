@@ -0,0 +1,299 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.graph;
+
+import java.util.*;
+
+/**
+ * Answers m-separation queries in batches. For a node x and conditioning set Z, a single reachability traversal
+ * (Bayes-ball) over a compact snapshot of the graph finds every node m-connected to x given Z, so all facts x _||_ y |
+ * Z for the same x and Z cost one traversal between them, linear in the number of edges. The ancestors of Z, needed to
+ * decide whether colliders are open, are computed once per distinct Z and reused.
+ * <p>
+ * The traversal follows the same rules as Paths.isMConnectedTo(x, y, z, ancestors, isPag): a collider is open iff it
+ * is an ancestor of Z, a non-collider is open iff it is not in Z, underlined triples are treated as non-colliders, and
+ * after entering a node along an arrowhead, an outgoing o-o edge is followed as o-&gt;. Results are cached per (x, Z),
+ * so this class is meant for oracle tests over a fixed graph; it is thread-safe.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ * @see Paths#isMConnectedTo(Node, Node, Set, Map, boolean)
+ */
+public final class BayesBall {
+
+    /**
+     * The maximum number of (x, Z) results kept.
+     */
+    private static final int MAX_CACHED_RESULTS = 4096;
+
+    /**
+     * The maximum number of ancestor sets of Z kept.
+     */
+    private static final int MAX_CACHED_ANCESTORS = 1024;
+
+    /**
+     * The graph snapshot.
+     */
+    private final CompactGraph graph;
+
+    /**
+     * The start of each node's adjacencies in the traversal state numbering.
+     */
+    private final int[] offsets;
+
+    /**
+     * The node whose adjacencies contain each state-numbering entry.
+     */
+    private final int[] owners;
+
+    /**
+     * The underlined triples of the graph, which are treated as non-colliders.
+     */
+    private final Set<Triple> underlines;
+
+    /**
+     * A cache from conditioning sets to their ancestors.
+     */
+    private final Map<BitSet, BitSet> ancestorCache = lruCache(MAX_CACHED_ANCESTORS);
+
+    /**
+     * A cache from (x, Z) to the nodes m-connected to x given Z.
+     */
+    private final Map<Query, BitSet> resultCache = lruCache(MAX_CACHED_RESULTS);
+
+    /**
+     * Constructs the oracle for a snapshot of the given graph; later changes to the graph are not seen.
+     *
+     * @param graph The graph, which may be a DAG, CPDAG, MAG or PAG.
+     */
+    public BayesBall(Graph graph) {
+        if (graph == null) {
+            throw new NullPointerException("Graph must not be null.");
+        }
+
+        this.graph = new CsrGraph(graph);
+        this.underlines = new HashSet<>(graph.getUnderLines());
+
+        int n = this.graph.getNumNodes();
+        this.offsets = new int[n + 1];
+
+        for (int i = 0; i < n; i++) {
+            this.offsets[i + 1] = this.offsets[i] + this.graph.getDegree(i);
+        }
+
+        this.owners = new int[this.offsets[n]];
+
+        for (int i = 0; i < n; i++) {
+            Arrays.fill(this.owners, this.offsets[i], this.offsets[i + 1], i);
+        }
+    }
+
+    /**
+     * Returns true iff x is m-connected to y given z.
+     *
+     * @param x The first node.
+     * @param y The second node.
+     * @param z The conditioning set.
+     * @return True if so.
+     */
+    public boolean isMConnectedTo(Node x, Node y, Set<Node> z) {
+        if (x == y) return true;
+        return getMConnected(indexOf(x), toBitSet(z)).get(indexOf(y));
+    }
+
+    /**
+     * Returns every node m-connected to x given z, including x itself.
+     *
+     * @param x The node.
+     * @param z The conditioning set.
+     * @return A new set of these nodes.
+     */
+    public Set<Node> getMConnectedNodes(Node x, Set<Node> z) {
+        BitSet connected = getMConnected(indexOf(x), toBitSet(z));
+        Set<Node> nodes = new HashSet<>();
+
+        for (int i = connected.nextSetBit(0); i >= 0; i = connected.nextSetBit(i + 1)) {
+            nodes.add(this.graph.getNode(i));
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Returns the indices of every node m-connected to node x given z, including x itself, where indices are positions
+     * in the node list of the graph.
+     *
+     * @param x The index of the node.
+     * @param z The indices of the conditioning set.
+     * @return A new bit set of node indices.
+     */
+    public BitSet getMConnected(int x, BitSet z) {
+        Query query = new Query(x, (BitSet) z.clone());
+        BitSet connected;
+
+        synchronized (this.resultCache) {
+            connected = this.resultCache.get(query);
+        }
+
+        if (connected == null) {
+            connected = traverse(x, query.z(), getAncestorsOf(query.z()));
+
+            synchronized (this.resultCache) {
+                this.resultCache.put(query, connected);
+            }
+        }
+
+        return (BitSet) connected.clone();
+    }
+
+    /**
+     * Returns the ancestors of z, including z, from the cache if possible.
+     */
+    private BitSet getAncestorsOf(BitSet z) {
+        BitSet ancestors;
+
+        synchronized (this.ancestorCache) {
+            ancestors = this.ancestorCache.get(z);
+        }
+
+        if (ancestors == null) {
+            ancestors = this.graph.getAncestors(z);
+
+            synchronized (this.ancestorCache) {
+                this.ancestorCache.put(z, ancestors);
+            }
+        }
+
+        return ancestors;
+    }
+
+    /**
+     * Runs the reachability traversal from x. A state is an adjacency entry (a, k) traversed from a toward its k'th
+     * neighbor, doubled to record whether an o-o edge is being followed as o-&gt;.
+     */
+    private BitSet traverse(int x, BitSet z, BitSet ancestorsOfZ) {
+        CompactGraph g = this.graph;
+        BitSet connected = new BitSet(g.getNumNodes());
+        BitSet visited = new BitSet(2 * this.offsets[g.getNumNodes()]);
+        int[] queue = new int[2 * this.offsets[g.getNumNodes()]];
+        int head = 0, tail = 0;
+
+        connected.set(x);
+
+        for (int k = 0; k < g.getDegree(x); k++) {
+            connected.set(g.getNeighbor(x, k));
+            int state = 2 * (this.offsets[x] + k);
+            visited.set(state);
+            queue[tail++] = state;
+        }
+
+        while (head < tail) {
+            int state = queue[head++];
+            int entry = state >>> 1;
+            int a = this.owners[entry];
+            int k = entry - this.offsets[a];
+            int b = g.getNeighbor(a, k);
+            boolean intoB = (state & 1) == 1 || g.getFarMark(a, k) == CompactGraph.ARROW;
+
+            for (int l = 0; l < g.getDegree(b); l++) {
+                int c = g.getNeighbor(b, l);
+                if (c == a) continue;
+
+                int nearB = g.getNearMark(b, l);
+                boolean collider = intoB && nearB == CompactGraph.ARROW;
+                boolean open;
+
+                if ((!collider || isUnderline(a, b, c)) && !z.get(b)) {
+                    open = true;
+                } else {
+                    open = collider && ancestorsOfZ.get(b);
+                }
+
+                if (!open) continue;
+
+                connected.set(c);
+
+                int virtual = intoB && nearB == CompactGraph.CIRCLE && g.getFarMark(b, l) == CompactGraph.CIRCLE ? 1 : 0;
+                int next = 2 * (this.offsets[b] + l) + virtual;
+
+                if (!visited.get(next)) {
+                    visited.set(next);
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        return connected;
+    }
+
+    /**
+     * Returns true iff a-b-c is an underlined triple.
+     */
+    private boolean isUnderline(int a, int b, int c) {
+        return !this.underlines.isEmpty()
+               && this.underlines.contains(new Triple(this.graph.getNode(a), this.graph.getNode(b),
+                this.graph.getNode(c)));
+    }
+
+    /**
+     * Returns the index of the given node.
+     */
+    private int indexOf(Node node) {
+        int i = this.graph.getIndex(node);
+
+        if (i < 0) {
+            throw new IllegalArgumentException("Node not in graph: " + node);
+        }
+
+        return i;
+    }
+
+    /**
+     * Returns the indices of the given nodes.
+     */
+    private BitSet toBitSet(Set<Node> nodes) {
+        BitSet bits = new BitSet(this.graph.getNumNodes());
+        for (Node node : nodes) bits.set(indexOf(node));
+        return bits;
+    }
+
+    /**
+     * Returns a size-bounded map that evicts its least recently used entry.
+     */
+    private static <K, V> Map<K, V> lruCache(int maxSize) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * A query node and conditioning set.
+     *
+     * @param x The node index.
+     * @param z The conditioning set indices.
+     */
+    private record Query(int x, BitSet z) {
+    }
+}
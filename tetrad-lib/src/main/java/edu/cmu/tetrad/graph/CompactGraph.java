@@ -0,0 +1,495 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.graph;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * An integer-indexed view of a graph for use in the inner loops of searches. Nodes are identified by their index in
+ * {@link #getNodes()}, and each node's adjacencies are stored in ascending index order, each adjacency carrying a
+ * 2-bit endpoint mark for each of its two ends. No {@link Edge} objects are created to answer adjacency or endpoint
+ * queries.
+ * <p>
+ * Implementations supply the primitive accessors; the bulk operations (parents, children, common adjacents,
+ * ancestors, descendants, directed paths) are implemented here once in terms of those accessors. Use
+ * {@link CsrGraph} for an immutable snapshot and {@link MutableCompactGraph} for a working graph that a search edits
+ * in place. Both convert back to an {@link EdgeListGraph} using {@link #toGraph()}.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ * @see CsrGraph
+ * @see MutableCompactGraph
+ */
+public interface CompactGraph {
+
+    /**
+     * Mark code for a tail endpoint.
+     */
+    int TAIL = 0;
+
+    /**
+     * Mark code for an arrow endpoint.
+     */
+    int ARROW = 1;
+
+    /**
+     * Mark code for a circle endpoint.
+     */
+    int CIRCLE = 2;
+
+    /**
+     * Mark code for a star endpoint.
+     */
+    int STAR = 3;
+
+    /**
+     * Returned by mark queries when the two nodes are not adjacent.
+     */
+    int NO_EDGE = -1;
+
+    /**
+     * Returns the 2-bit mark code for the given endpoint.
+     *
+     * @param endpoint The endpoint; Endpoint.NULL is not permitted.
+     * @return The mark code.
+     * @throws IllegalArgumentException If the endpoint is Endpoint.NULL.
+     */
+    static int toMark(Endpoint endpoint) {
+        return switch (endpoint) {
+            case TAIL -> TAIL;
+            case ARROW -> ARROW;
+            case CIRCLE -> CIRCLE;
+            case STAR -> STAR;
+            default -> throw new IllegalArgumentException("Endpoint not supported in a compact graph: " + endpoint);
+        };
+    }
+
+    /**
+     * Returns the endpoint for the given 2-bit mark code.
+     *
+     * @param mark The mark code, or NO_EDGE.
+     * @return The endpoint, or null if the mark is NO_EDGE.
+     */
+    static Endpoint toEndpoint(int mark) {
+        return switch (mark) {
+            case TAIL -> Endpoint.TAIL;
+            case ARROW -> Endpoint.ARROW;
+            case CIRCLE -> Endpoint.CIRCLE;
+            case STAR -> Endpoint.STAR;
+            default -> null;
+        };
+    }
+
+    /**
+     * Returns the number of nodes in the graph.
+     *
+     * @return This number.
+     */
+    int getNumNodes();
+
+    /**
+     * Returns the nodes of the graph, in index order.
+     *
+     * @return This list (unmodifiable).
+     */
+    List<Node> getNodes();
+
+    /**
+     * Returns the node at the given index.
+     *
+     * @param i The index.
+     * @return The node.
+     */
+    Node getNode(int i);
+
+    /**
+     * Returns the index of the given node.
+     *
+     * @param node The node.
+     * @return Its index, or -1 if the node is not in the graph.
+     */
+    int getIndex(Node node);
+
+    /**
+     * Returns the number of adjacencies of node i.
+     *
+     * @param i The node index.
+     * @return This number.
+     */
+    int getDegree(int i);
+
+    /**
+     * Returns the k'th neighbor of node i, where neighbors are kept in ascending index order.
+     *
+     * @param i The node index.
+     * @param k The position in i's adjacency list, 0 &lt;= k &lt; getDegree(i).
+     * @return The index of the neighbor.
+     */
+    int getNeighbor(int i, int k);
+
+    /**
+     * Returns the mark at node i on the k'th adjacency of node i.
+     *
+     * @param i The node index.
+     * @param k The position in i's adjacency list.
+     * @return The mark code.
+     */
+    int getNearMark(int i, int k);
+
+    /**
+     * Returns the mark at the neighbor's end of the k'th adjacency of node i.
+     *
+     * @param i The node index.
+     * @param k The position in i's adjacency list.
+     * @return The mark code.
+     */
+    int getFarMark(int i, int k);
+
+    /**
+     * Returns the position of j in i's adjacency list.
+     *
+     * @param i The node index.
+     * @param j The neighbor index.
+     * @return The position, or -1 if i and j are not adjacent.
+     */
+    int positionOf(int i, int j);
+
+    /**
+     * Returns the number of edges in the graph.
+     *
+     * @return This number.
+     */
+    default int getNumEdges() {
+        int sum = 0;
+        int selfLoops = 0;
+
+        for (int i = 0; i < getNumNodes(); i++) {
+            sum += getDegree(i);
+
+            for (int k = 0; k < getDegree(i); k++) {
+                if (getNeighbor(i, k) == i) selfLoops++;
+            }
+        }
+
+        // A self-loop is recorded once, in its node's own adjacency list.
+        return (sum - selfLoops) / 2 + selfLoops;
+    }
+
+    /**
+     * Returns true iff i and j are adjacent.
+     *
+     * @param i The first node index.
+     * @param j The second node index.
+     * @return True if so.
+     */
+    default boolean isAdjacentTo(int i, int j) {
+        return positionOf(i, j) >= 0;
+    }
+
+    /**
+     * Returns the mark at the j end of the edge between i and j.
+     *
+     * @param i The first node index.
+     * @param j The second node index.
+     * @return The mark code, or NO_EDGE if i and j are not adjacent.
+     */
+    default int getMark(int i, int j) {
+        int k = positionOf(i, j);
+        return k < 0 ? NO_EDGE : getFarMark(i, k);
+    }
+
+    /**
+     * Returns the endpoint at the j end of the edge between i and j, as Graph.getEndpoint does.
+     *
+     * @param i The first node index.
+     * @param j The second node index.
+     * @return The endpoint, or null if i and j are not adjacent.
+     */
+    default Endpoint getEndpoint(int i, int j) {
+        return toEndpoint(getMark(i, j));
+    }
+
+    /**
+     * Returns true iff i --&gt; j is in the graph.
+     *
+     * @param i The first node index.
+     * @param j The second node index.
+     * @return True if so.
+     */
+    default boolean isParentOf(int i, int j) {
+        int k = positionOf(i, j);
+        return k >= 0 && getNearMark(i, k) == TAIL && getFarMark(i, k) == ARROW;
+    }
+
+    /**
+     * Returns true iff i --- j is in the graph.
+     *
+     * @param i The first node index.
+     * @param j The second node index.
+     * @return True if so.
+     */
+    default boolean isUndirected(int i, int j) {
+        int k = positionOf(i, j);
+        return k >= 0 && getNearMark(i, k) == TAIL && getFarMark(i, k) == TAIL;
+    }
+
+    /**
+     * Returns true iff a *-&gt; b &lt;-* c is in the graph.
+     *
+     * @param a The first node index.
+     * @param b The middle node index.
+     * @param c The third node index.
+     * @return True if so.
+     */
+    default boolean isDefCollider(int a, int b, int c) {
+        return getMark(a, b) == ARROW && getMark(c, b) == ARROW;
+    }
+
+    /**
+     * Returns the adjacencies of node i in ascending index order.
+     *
+     * @param i The node index.
+     * @return A new array of neighbor indices.
+     */
+    default int[] getAdjacent(int i) {
+        int[] adj = new int[getDegree(i)];
+        for (int k = 0; k < adj.length; k++) adj[k] = getNeighbor(i, k);
+        return adj;
+    }
+
+    /**
+     * Returns the parents of node i (nodes p with p --&gt; i) in ascending index order.
+     *
+     * @param i The node index.
+     * @return A new array of parent indices.
+     */
+    default int[] getParents(int i) {
+        return neighborsWithMarks(i, ARROW, TAIL);
+    }
+
+    /**
+     * Returns the children of node i (nodes c with i --&gt; c) in ascending index order.
+     *
+     * @param i The node index.
+     * @return A new array of child indices.
+     */
+    default int[] getChildren(int i) {
+        return neighborsWithMarks(i, TAIL, ARROW);
+    }
+
+    /**
+     * Returns the neighbors j of i for which the edge i-j has the given mark at i and the given mark at j.
+     *
+     * @param i    The node index.
+     * @param near The mark at i.
+     * @param far  The mark at the neighbor.
+     * @return A new array of neighbor indices, in ascending order.
+     */
+    default int[] neighborsWithMarks(int i, int near, int far) {
+        int degree = getDegree(i);
+        int[] buf = new int[degree];
+        int n = 0;
+
+        for (int k = 0; k < degree; k++) {
+            if (getNearMark(i, k) == near && getFarMark(i, k) == far) {
+                int j = getNeighbor(i, k);
+                if (n == 0 || buf[n - 1] != j) buf[n++] = j;
+            }
+        }
+
+        return n == degree ? buf : Arrays.copyOf(buf, n);
+    }
+
+    /**
+     * Returns the nodes adjacent to both i and j, in ascending index order, by merging the two sorted adjacency
+     * lists.
+     *
+     * @param i The first node index.
+     * @param j The second node index.
+     * @return A new array of node indices.
+     */
+    default int[] getCommonAdjacents(int i, int j) {
+        int di = getDegree(i);
+        int dj = getDegree(j);
+        int[] buf = new int[Math.min(di, dj)];
+        int n = 0;
+        int a = 0, b = 0;
+
+        while (a < di && b < dj) {
+            int u = getNeighbor(i, a);
+            int v = getNeighbor(j, b);
+
+            if (u < v) {
+                a++;
+            } else if (u > v) {
+                b++;
+            } else {
+                if (n == 0 || buf[n - 1] != u) buf[n++] = u;
+                a++;
+                b++;
+            }
+        }
+
+        return Arrays.copyOf(buf, n);
+    }
+
+    /**
+     * Returns the ancestors of the given nodes, including the nodes themselves, following directed edges backward.
+     *
+     * @param targets The node indices whose ancestors are wanted.
+     * @return A new bit set of ancestor indices.
+     */
+    default BitSet getAncestors(BitSet targets) {
+        return closure(targets, ARROW, TAIL);
+    }
+
+    /**
+     * Returns the descendants of the given nodes, including the nodes themselves, following directed edges forward.
+     *
+     * @param sources The node indices whose descendants are wanted.
+     * @return A new bit set of descendant indices.
+     */
+    default BitSet getDescendants(BitSet sources) {
+        return closure(sources, TAIL, ARROW);
+    }
+
+    /**
+     * Returns true iff there is a directed path of length at least one from i to j.
+     *
+     * @param i The source index.
+     * @param j The target index.
+     * @return True if so.
+     */
+    default boolean existsDirectedPath(int i, int j) {
+        BitSet visited = new BitSet(getNumNodes());
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(i);
+
+        while (!queue.isEmpty()) {
+            int t = queue.poll();
+
+            for (int k = 0; k < getDegree(t); k++) {
+                if (getNearMark(t, k) != TAIL || getFarMark(t, k) != ARROW) continue;
+                int c = getNeighbor(t, k);
+                if (c == j) return true;
+
+                if (!visited.get(c)) {
+                    visited.set(c);
+                    queue.add(c);
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns true iff the directed edges of the graph contain a cycle, using Kahn's algorithm over in-degrees.
+     *
+     * @return True if so.
+     */
+    default boolean existsDirectedCycle() {
+        int n = getNumNodes();
+        int[] inDegree = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            inDegree[i] = getParents(i).length;
+        }
+
+        int[] stack = new int[n];
+        int top = 0;
+
+        for (int i = 0; i < n; i++) {
+            if (inDegree[i] == 0) stack[top++] = i;
+        }
+
+        int removed = 0;
+
+        while (top > 0) {
+            int t = stack[--top];
+            removed++;
+
+            for (int c : getChildren(t)) {
+                if (--inDegree[c] == 0) stack[top++] = c;
+            }
+        }
+
+        return removed < n;
+    }
+
+    /**
+     * Returns a new EdgeListGraph over the same nodes with the same edges.
+     *
+     * @return This graph.
+     */
+    default Graph toGraph() {
+        Graph graph = new EdgeListGraph(getNodes());
+
+        for (int i = 0; i < getNumNodes(); i++) {
+            for (int k = 0; k < getDegree(i); k++) {
+                int j = getNeighbor(i, k);
+                if (j < i) continue;
+                graph.addEdge(new Edge(getNode(i), getNode(j), toEndpoint(getNearMark(i, k)),
+                        toEndpoint(getFarMark(i, k))));
+            }
+        }
+
+        return graph;
+    }
+
+    /**
+     * Returns the closure of the given nodes under the adjacencies with the given near and far marks.
+     *
+     * @param start The starting node indices.
+     * @param near  The mark required at the node being expanded.
+     * @param far   The mark required at the neighbor.
+     * @return A new bit set containing the start nodes and every node reachable from them.
+     */
+    private BitSet closure(BitSet start, int near, int far) {
+        BitSet reached = (BitSet) start.clone();
+        int[] stack = new int[getNumNodes()];
+        int top = 0;
+
+        for (int i = start.nextSetBit(0); i >= 0; i = start.nextSetBit(i + 1)) {
+            stack[top++] = i;
+        }
+
+        while (top > 0) {
+            int t = stack[--top];
+
+            for (int k = 0; k < getDegree(t); k++) {
+                if (getNearMark(t, k) != near || getFarMark(t, k) != far) continue;
+                int j = getNeighbor(t, k);
+
+                if (!reached.get(j)) {
+                    reached.set(j);
+                    stack[top++] = j;
+                }
+            }
+        }
+
+        return reached;
+    }
+}
@@ -0,0 +1,273 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.graph;
+
+import java.util.*;
+
+/**
+ * An immutable {@link CompactGraph} in compressed sparse row form. The adjacencies of node i are
+ * neighbors[offsets[i]] ... neighbors[offsets[i + 1] - 1], in ascending order, and the two endpoint marks of each
+ * adjacency are packed four bits to an entry, sixteen entries to a long. A snapshot of an n-node, e-edge graph takes
+ * n + 1 + 2e ints plus e / 8 longs, independent of how the source graph stores its edges.
+ * <p>
+ * Parallel edges between the same pair of nodes are kept as separate, consecutive entries; a self-loop is kept as a
+ * single entry in its node's own row.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ * @see MutableCompactGraph
+ */
+public final class CsrGraph implements CompactGraph {
+
+    /**
+     * The nodes, in index order.
+     */
+    private final List<Node> nodes;
+
+    /**
+     * A map from nodes to their indices.
+     */
+    private final Map<Node, Integer> indices;
+
+    /**
+     * The start of each node's row in the neighbors array; offsets[n] is the total number of entries.
+     */
+    private final int[] offsets;
+
+    /**
+     * The neighbors of each node, row by row, ascending within each row.
+     */
+    private final int[] neighbors;
+
+    /**
+     * The packed endpoint marks, four bits per entry: the near mark in the low two bits and the far mark in the high
+     * two bits.
+     */
+    private final long[] marks;
+
+    /**
+     * Constructs a snapshot of the given graph.
+     *
+     * @param graph The graph.
+     */
+    public CsrGraph(Graph graph) {
+        if (graph == null) {
+            throw new NullPointerException("Graph must not be null.");
+        }
+
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(graph.getNodes()));
+        this.indices = indexMap(this.nodes);
+
+        int n = this.nodes.size();
+        int[][] rows = new int[n][];
+        int[][] rowMarks = new int[n][];
+        int total = 0;
+
+        for (int i = 0; i < n; i++) {
+            Node node = this.nodes.get(i);
+            Set<Edge> edges = graph.getEdges(node);
+            long[] entries = new long[edges.size()];
+            int m = 0;
+
+            for (Edge edge : edges) {
+                Node other = edge.getDistalNode(node);
+                boolean selfLoop = edge.getNode1() == edge.getNode2();
+                int j = this.indices.get(other);
+                int near = CompactGraph.toMark(selfLoop ? edge.getEndpoint1() : edge.getProximalEndpoint(node));
+                int far = CompactGraph.toMark(selfLoop ? edge.getEndpoint2() : edge.getDistalEndpoint(node));
+                entries[m++] = ((long) j << 4) | ((long) far << 2) | near;
+            }
+
+            Arrays.sort(entries, 0, m);
+            rows[i] = new int[m];
+            rowMarks[i] = new int[m];
+
+            for (int k = 0; k < m; k++) {
+                rows[i][k] = (int) (entries[k] >>> 4);
+                rowMarks[i][k] = (int) (entries[k] & 0xF);
+            }
+
+            total += m;
+        }
+
+        this.offsets = new int[n + 1];
+        this.neighbors = new int[total];
+        this.marks = new long[(total + 15) >>> 4];
+
+        int e = 0;
+
+        for (int i = 0; i < n; i++) {
+            this.offsets[i] = e;
+
+            for (int k = 0; k < rows[i].length; k++) {
+                this.neighbors[e] = rows[i][k];
+                this.marks[e >>> 4] |= (long) rowMarks[i][k] << ((e & 15) << 2);
+                e++;
+            }
+        }
+
+        this.offsets[n] = e;
+    }
+
+    /**
+     * Constructs a snapshot from rows already in compact form; used by MutableCompactGraph.
+     *
+     * @param nodes    The nodes, in index order.
+     * @param indices  The node-to-index map; not copied.
+     * @param rows     The neighbors of each node, ascending.
+     * @param rowMarks The 4-bit packed marks of each entry of each row.
+     * @param degrees  The number of valid entries in each row.
+     */
+    CsrGraph(List<Node> nodes, Map<Node, Integer> indices, int[][] rows, byte[][] rowMarks, int[] degrees) {
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        this.indices = indices;
+
+        int n = nodes.size();
+        int total = 0;
+        for (int i = 0; i < n; i++) total += degrees[i];
+
+        this.offsets = new int[n + 1];
+        this.neighbors = new int[total];
+        this.marks = new long[(total + 15) >>> 4];
+
+        int e = 0;
+
+        for (int i = 0; i < n; i++) {
+            this.offsets[i] = e;
+
+            for (int k = 0; k < degrees[i]; k++) {
+                this.neighbors[e] = rows[i][k];
+                this.marks[e >>> 4] |= (long) (rowMarks[i][k] & 0xF) << ((e & 15) << 2);
+                e++;
+            }
+        }
+
+        this.offsets[n] = e;
+    }
+
+    /**
+     * Returns a map from the given nodes to their positions in the list.
+     *
+     * @param nodes The nodes.
+     * @return This map.
+     */
+    static Map<Node, Integer> indexMap(List<Node> nodes) {
+        Map<Node, Integer> indices = new HashMap<>(nodes.size() * 2);
+
+        for (int i = 0; i < nodes.size(); i++) {
+            if (indices.put(nodes.get(i), i) != null) {
+                throw new IllegalArgumentException("Duplicate node: " + nodes.get(i));
+            }
+        }
+
+        return indices;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNumNodes() {
+        return this.nodes.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Node> getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Node getNode(int i) {
+        return this.nodes.get(i);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getIndex(Node node) {
+        Integer i = this.indices.get(node);
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDegree(int i) {
+        return this.offsets[i + 1] - this.offsets[i];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNeighbor(int i, int k) {
+        return this.neighbors[this.offsets[i] + k];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNearMark(int i, int k) {
+        return packed(this.offsets[i] + k) & 3;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getFarMark(int i, int k) {
+        return (packed(this.offsets[i] + k) >>> 2) & 3;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int positionOf(int i, int j) {
+        int from = this.offsets[i];
+        int k = Arrays.binarySearch(this.neighbors, from, this.offsets[i + 1], j);
+        if (k < 0) return -1;
+
+        // Report the first of any parallel entries.
+        while (k > from && this.neighbors[k - 1] == j) k--;
+        return k - from;
+    }
+
+    /**
+     * Returns the 4-bit packed marks of the entry at the given position of the neighbors array.
+     *
+     * @param e The position.
+     * @return The packed marks.
+     */
+    private int packed(int e) {
+        return (int) (this.marks[e >>> 4] >>> ((e & 15) << 2)) & 0xF;
+    }
+}
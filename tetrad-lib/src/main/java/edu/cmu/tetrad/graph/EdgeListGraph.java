@@ -49,6 +49,15 @@ public class EdgeListGraph implements Graph, TripleClassifier {
 
     @Serial
     private static final long serialVersionUID = 23L;
+    /**
+     * The number of directed-path queries after which a reachability index is built for the graph; below this, a
+     * search per query is cheaper than building the index.
+     */
+    private static final int REACHABILITY_QUERY_THRESHOLD = 8;
+    /**
+     * The largest number of nodes for which a reachability index is built, to bound its n^2 bits of memory.
+     */
+    private static final int MAX_REACHABILITY_NODES = 20000;
     /**
      * The edges in the graph.
      */
@@ -66,10 +75,6 @@ public class EdgeListGraph implements Graph, TripleClassifier {
      * The attributes.
      */
     private final Map<String, Object> attributes = new HashMap<>();
-    /**
-     * The cache for the ancestor relationships
-     */
-    private final Map<Pair<Node, Node>, Boolean> ancestorCache = new HashMap<>();
     /**
      * The cache for the semidirected path relationships
      */
@@ -82,6 +87,15 @@ public class EdgeListGraph implements Graph, TripleClassifier {
      * The property change support.
      */
     private transient PropertyChangeSupport pcs;
+    /**
+     * The transitive closure of the directed edges, maintained incrementally once built; null if not yet built or
+     * invalidated by a change to the node set.
+     */
+    private transient ReachabilityIndex reachability;
+    /**
+     * The number of directed-path queries since the reachability index was last invalidated.
+     */
+    private transient int reachabilityQueries;
     /**
      * The underline triples.
      */
@@ -160,6 +174,7 @@ public class EdgeListGraph implements Graph, TripleClassifier {
         this.edgesSet = new HashSet<>(graph.edgesSet);
         this.namesHash = new HashMap<>(graph.namesHash);
         this.parentsHash = new HashMap<>(graph.parentsHash);
+        // The reachability index is not copied; it is rebuilt lazily if the copy is queried often enough.
 //        this.paths = new Paths(this);
 
         this.underLineTriples = graph.getUnderLines();
@@ -191,6 +206,51 @@ public class EdgeListGraph implements Graph, TripleClassifier {
         }
     }
 
+    /**
+     * Constructs a new graph with the given nodes and edges, building the edge lists in one pass rather than edge by
+     * edge. This is much faster than adding the edges one at a time for large graphs, as when reading graphs from
+     * files. No property change events are fired.
+     *
+     * @param nodes the nodes, which must have distinct names.
+     * @param edges the edges, all of whose nodes must be in the list of nodes.
+     * @throws IllegalArgumentException if two nodes have the same name or an edge has a node not in the list.
+     */
+    public EdgeListGraph(List<Node> nodes, Collection<Edge> edges) {
+        this();
+
+        if (nodes == null || edges == null) {
+            throw new NullPointerException();
+        }
+
+        Map<Node, Set<Edge>> edgeSets = new HashMap<>();
+
+        for (Node node : nodes) {
+            if (this.namesHash.put(node.getName(), node) != null) {
+                throw new IllegalArgumentException("Duplicate node name: " + node.getName());
+            }
+
+            this.nodes.add(node);
+            edgeSets.put(node, new HashSet<>());
+        }
+
+        for (Edge edge : edges) {
+            Set<Edge> edges1 = edgeSets.get(edge.getNode1());
+            Set<Edge> edges2 = edgeSets.get(edge.getNode2());
+
+            if (edges1 == null || edges2 == null) {
+                throw new IllegalArgumentException("Edge has a node that is not in the graph: " + edge);
+            }
+
+            edges1.add(edge);
+            edges2.add(edge);
+            this.edgesSet.add(edge);
+        }
+
+        for (Node node : nodes) {
+            this.edgeLists.put(node, Collections.unmodifiableSet(edgeSets.get(node)));
+        }
+    }
+
     /**
      * Generates a simple exemplar of this class to test serialization.
      *
@@ -438,14 +498,32 @@ public class EdgeListGraph implements Graph, TripleClassifier {
      * @return True if the first node is an ancestor of the second, false if not.
      */
     public boolean isAncestorOf(Node node1, Node node2) {
-        Boolean ancestor = ancestorCache.get(Pair.of(node1, node2));
+        return node1 == node2 || paths().existsDirectedPath(node1, node2);
+    }
 
-        if (ancestor == null) {
-            ancestor = node1 == node2 || paths().existsDirectedPath(node1, node2);
-            ancestorCache.put(Pair.of(node1, node2), ancestor);
+    /**
+     * Returns the reachability index for the directed edges of this graph, building it if enough directed-path queries
+     * have been made since the node set last changed for the index to pay for itself. The index is then kept up to date
+     * as edges are added and removed.
+     *
+     * @return The index, or null if directed-path queries should be answered by search.
+     * @see ReachabilityIndex
+     */
+    synchronized ReachabilityIndex getReachabilityIndex() {
+        if (this.reachability == null && ++this.reachabilityQueries > REACHABILITY_QUERY_THRESHOLD
+            && this.nodes.size() <= MAX_REACHABILITY_NODES) {
+            this.reachability = new ReachabilityIndex(this);
         }
 
-        return ancestor;
+        return this.reachability;
+    }
+
+    /**
+     * Discards the reachability index; it will be rebuilt once queries warrant it.
+     */
+    private void invalidateReachability() {
+        this.reachability = null;
+        this.reachabilityQueries = 0;
     }
 
     /**
@@ -806,13 +884,20 @@ public class EdgeListGraph implements Graph, TripleClassifier {
         edges2.add(edge);
         this.edgeLists.put(node1, Collections.unmodifiableSet(edges1));
         this.edgeLists.put(node2, Collections.unmodifiableSet(edges2));
-        this.edgesSet.add(edge);
+        boolean added = this.edgesSet.add(edge);
 
         this.parentsHash.remove(node1);
         this.parentsHash.remove(node2);
 
+        // An edge already in the graph is already in the index.
+        if (added && this.reachability != null && Edges.isDirectedEdge(edge)) {
+            if (this.reachability.contains(node1) && this.reachability.contains(node2)) {
+                this.reachability.addDirectedEdge(Edges.getDirectedEdgeTail(edge), Edges.getDirectedEdgeHead(edge));
+            } else {
+                invalidateReachability();
+            }
+        }
 
-        ancestorCache.clear();
         semidirectedPathCache.clear();
 //        }
 
@@ -863,7 +948,7 @@ public class EdgeListGraph implements Graph, TripleClassifier {
             getPcs().firePropertyChange("nodeAdded", null, node);
         }
 
-        ancestorCache.clear();
+        invalidateReachability();
         semidirectedPathCache.clear();
 
         return true;
@@ -967,6 +1052,7 @@ public class EdgeListGraph implements Graph, TripleClassifier {
         this.edgesSet.clear();
         this.edgeLists.clear();
         this.parentsHash.clear();
+        invalidateReachability();
 
         for (Node node : this.nodes) {
             this.edgeLists.put(node, new HashSet<>());
@@ -1077,6 +1163,9 @@ public class EdgeListGraph implements Graph, TripleClassifier {
         }
 
         this.edgeLists.clear();
+
+        invalidateReachability();
+        semidirectedPathCache.clear();
     }
 
     /**
@@ -1112,7 +1201,10 @@ public class EdgeListGraph implements Graph, TripleClassifier {
             this.parentsHash.remove(edge.getNode1());
             this.parentsHash.remove(edge.getNode2());
 
-            ancestorCache.clear();
+            if (this.reachability != null && Edges.isDirectedEdge(edge)) {
+                this.reachability.removeDirectedEdge(Edges.getDirectedEdgeTail(edge), Edges.getDirectedEdgeHead(edge));
+            }
+
             semidirectedPathCache.clear();
 
             getPcs().firePropertyChange("edgeRemoved", edge, null);
@@ -1186,6 +1278,9 @@ public class EdgeListGraph implements Graph, TripleClassifier {
         this.parentsHash.remove(node);
         this.namesHash.remove(node.getName());
 
+        invalidateReachability();
+        semidirectedPathCache.clear();
+
         removeTriplesNotInGraph();
 
         getPcs().firePropertyChange("nodeRemoved", node, null);
@@ -0,0 +1,440 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.graph;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A compact binary format for lists of graphs, such as the graphs from the bootstrap samples of a search. A file holds
+ * <ul>
+ *     <li>the signature "TGBF" and a format version byte;</li>
+ *     <li>a table of the node names used in any of the graphs, so that a name shared by many graphs is stored once;</li>
+ *     <li>the number of graphs; and</li>
+ *     <li>each graph, prefixed by its length in bytes.</li>
+ * </ul>
+ * A graph lists its nodes as indices into the name table, with their types and positions, and then its edges as pairs
+ * of indices into its node list, each with one byte packing both endpoints. Edge properties, edge probabilities and
+ * edge type probabilities are written only for the edges that have them. Graph attributes that are strings or numbers
+ * and the ambiguous, underline and dotted underline triples follow. Counts and indices are written as variable-length
+ * integers.
+ * <p>
+ * Files are read through a memory map, and each graph is built in one pass with the bulk EdgeListGraph constructor.
+ * Graphs are read as EdgeListGraph's with GraphNode's, as they are from the text format.
+ *
+ * @author josephramsey
+ * @see GraphSaveLoadUtils#saveGraphsBinary(List, File)
+ * @see GraphSaveLoadUtils#loadGraphsBinary(File)
+ */
+final class GraphBinaryFormat {
+
+    /**
+     * The format version.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The signature at the start of each file.
+     */
+    private static final byte[] SIGNATURE = {'T', 'G', 'B', 'F'};
+
+    /**
+     * The largest region of a file mapped at once.
+     */
+    private static final long MAX_WINDOW = 1L << 30;
+
+    // Flags in the endpoint byte of an edge and in the flags byte that may follow it.
+    private static final int HAS_EXTRAS = 0x40;
+    private static final int HAS_PROBABILITY = 0x10;
+    private static final int HAS_EDGE_TYPE_PROBABILITIES = 0x20;
+
+    // Tags for attribute values.
+    private static final byte STRING = 0;
+    private static final byte NUMBER = 1;
+
+    private static final Endpoint[] ENDPOINTS = Endpoint.values();
+    private static final NodeType[] NODE_TYPES = NodeType.values();
+    private static final Edge.Property[] PROPERTIES = Edge.Property.values();
+    private static final EdgeTypeProbability.EdgeType[] EDGE_TYPES = EdgeTypeProbability.EdgeType.values();
+
+    private GraphBinaryFormat() {
+    }
+
+    /**
+     * Writes graphs to a file.
+     *
+     * @param graphs the graphs.
+     * @param file   the file.
+     * @throws IOException if the file cannot be written.
+     */
+    static void write(List<Graph> graphs, Path file) throws IOException {
+        Map<String, Integer> names = new LinkedHashMap<>();
+
+        for (Graph graph : graphs) {
+            for (Node node : graph.getNodes()) {
+                names.putIfAbsent(node.getName(), names.size());
+            }
+        }
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            out.write(SIGNATURE);
+            out.write(VERSION);
+
+            writeVarInt(out, names.size());
+
+            for (String name : names.keySet()) {
+                writeString(out, name);
+            }
+
+            writeVarInt(out, graphs.size());
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(bytes);
+
+            for (Graph graph : graphs) {
+                bytes.reset();
+                writeGraph(graph, names, data);
+                data.flush();
+
+                new DataOutputStream(out).writeInt(bytes.size());
+                bytes.writeTo(out);
+            }
+        }
+    }
+
+    /**
+     * Reads the graphs from a file.
+     *
+     * @param file the file.
+     * @return the graphs, in the order written.
+     * @throws IOException if the file cannot be read or is not in this format.
+     */
+    static List<Graph> read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long base = 0;
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAX_WINDOW));
+
+            try {
+                byte[] signature = new byte[SIGNATURE.length];
+                buffer.get(signature);
+
+                if (!Arrays.equals(signature, SIGNATURE)) {
+                    throw new IOException("Not a binary graph file: " + file);
+                }
+
+                int version = buffer.get();
+
+                if (version > VERSION) {
+                    throw new IOException("This graph file was written in a later format (" + version
+                                          + ") than this version of Tetrad can read (" + VERSION + ").");
+                }
+
+                String[] names = new String[readVarInt(buffer)];
+
+                for (int i = 0; i < names.length; i++) {
+                    names[i] = readString(buffer);
+                }
+
+                int numGraphs = readVarInt(buffer);
+                List<Graph> graphs = new ArrayList<>(numGraphs);
+
+                for (int g = 0; g < numGraphs; g++) {
+                    long offset = base + buffer.position();
+
+                    // Map the next region of the file if this graph does not fit in the current one.
+                    if (buffer.remaining() < Integer.BYTES
+                        || buffer.remaining() < Integer.BYTES + buffer.getInt(buffer.position())) {
+                        base = offset;
+                        buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, Math.min(size - base, MAX_WINDOW));
+                    }
+
+                    int length = buffer.getInt();
+                    int end = buffer.position() + length;
+
+                    if (length < 0 || end > buffer.limit()) {
+                        throw new IOException("Graph " + (g + 1) + " of " + file + " is truncated or too large.");
+                    }
+
+                    graphs.add(readGraph(buffer.slice(buffer.position(), length), names));
+                    buffer.position(end);
+                }
+
+                return graphs;
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IOException("Could not read " + file + "; the file is truncated or corrupt.", e);
+            }
+        }
+    }
+
+    private static void writeGraph(Graph graph, Map<String, Integer> names, DataOutputStream out) throws IOException {
+        List<Node> nodes = graph.getNodes();
+        Map<Node, Integer> indices = new HashMap<>();
+
+        writeVarInt(out, nodes.size());
+
+        for (Node node : nodes) {
+            indices.put(node, indices.size());
+            writeVarInt(out, names.get(node.getName()));
+            out.writeByte(node.getNodeType().ordinal());
+            writeVarInt(out, zigZag(node.getCenterX()));
+            writeVarInt(out, zigZag(node.getCenterY()));
+        }
+
+        Set<Edge> edges = graph.getEdges();
+        writeVarInt(out, edges.size());
+
+        for (Edge edge : edges) {
+            List<Edge.Property> properties = edge.getProperties();
+            List<EdgeTypeProbability> edgeTypeProbabilities = edge.getEdgeTypeProbabilities();
+            double probability = edge.getProbability();
+
+            int flags = propertyMask(properties);
+            if (probability != 0.0) flags |= HAS_PROBABILITY;
+            if (!edgeTypeProbabilities.isEmpty()) flags |= HAS_EDGE_TYPE_PROBABILITIES;
+
+            writeVarInt(out, indices.get(edge.getNode1()));
+            writeVarInt(out, indices.get(edge.getNode2()));
+            out.writeByte(edge.getEndpoint1().ordinal() | edge.getEndpoint2().ordinal() << 3
+                          | (flags != 0 ? HAS_EXTRAS : 0));
+
+            if (flags != 0) {
+                out.writeByte(flags);
+
+                if (probability != 0.0) {
+                    out.writeDouble(probability);
+                }
+
+                if (!edgeTypeProbabilities.isEmpty()) {
+                    writeVarInt(out, edgeTypeProbabilities.size());
+
+                    for (EdgeTypeProbability etp : edgeTypeProbabilities) {
+                        out.writeByte(etp.getEdgeType().ordinal());
+                        out.writeByte(propertyMask(etp.getProperties()));
+                        out.writeDouble(etp.getProbability());
+                    }
+                }
+            }
+        }
+
+        Map<String, Object> attributes = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Object> entry : graph.getAllAttributes().entrySet()) {
+            if (entry.getValue() instanceof String || entry.getValue() instanceof Number) {
+                attributes.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        writeVarInt(out, attributes.size());
+
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            writeString(out, entry.getKey());
+
+            if (entry.getValue() instanceof String value) {
+                out.writeByte(STRING);
+                writeString(out, value);
+            } else {
+                out.writeByte(NUMBER);
+                out.writeDouble(((Number) entry.getValue()).doubleValue());
+            }
+        }
+
+        writeTriples(graph.getAmbiguousTriples(), indices, out);
+        writeTriples(graph.getUnderLines(), indices, out);
+        writeTriples(graph.getDottedUnderlines(), indices, out);
+    }
+
+    private static Graph readGraph(ByteBuffer in, String[] names) throws IOException {
+        Node[] nodes = new Node[readVarInt(in)];
+
+        for (int i = 0; i < nodes.length; i++) {
+            Node node = new GraphNode(names[readVarInt(in)]);
+            node.setNodeType(NODE_TYPES[in.get()]);
+            node.setCenter(unZigZag(readVarInt(in)), unZigZag(readVarInt(in)));
+            nodes[i] = node;
+        }
+
+        Edge[] edges = new Edge[readVarInt(in)];
+
+        for (int i = 0; i < edges.length; i++) {
+            Node node1 = nodes[readVarInt(in)];
+            Node node2 = nodes[readVarInt(in)];
+            int endpoints = in.get();
+            Edge edge = new Edge(node1, node2, ENDPOINTS[endpoints & 0x7], ENDPOINTS[(endpoints >> 3) & 0x7]);
+
+            if ((endpoints & HAS_EXTRAS) != 0) {
+                int flags = in.get();
+                List<Edge.Property> properties = new ArrayList<>();
+                addProperties(flags, properties);
+                properties.forEach(edge::addProperty);
+
+                if ((flags & HAS_PROBABILITY) != 0) {
+                    edge.setProbability(in.getDouble());
+                }
+
+                if ((flags & HAS_EDGE_TYPE_PROBABILITIES) != 0) {
+                    int count = readVarInt(in);
+
+                    for (int k = 0; k < count; k++) {
+                        EdgeTypeProbability.EdgeType edgeType = EDGE_TYPES[in.get()];
+                        List<Edge.Property> etpProperties = new ArrayList<>();
+                        addProperties(in.get(), etpProperties);
+                        edge.addEdgeTypeProbability(new EdgeTypeProbability(edgeType, etpProperties, in.getDouble()));
+                    }
+                }
+            }
+
+            edges[i] = edge;
+        }
+
+        Graph graph = new EdgeListGraph(Arrays.asList(nodes), Arrays.asList(edges));
+
+        int numAttributes = readVarInt(in);
+
+        for (int i = 0; i < numAttributes; i++) {
+            String key = readString(in);
+            byte tag = in.get();
+
+            if (tag == STRING) {
+                graph.addAttribute(key, readString(in));
+            } else if (tag == NUMBER) {
+                graph.addAttribute(key, in.getDouble());
+            } else {
+                throw new IOException("Unknown attribute type: " + tag);
+            }
+        }
+
+        for (int[] triple : readTriples(in)) {
+            graph.addAmbiguousTriple(nodes[triple[0]], nodes[triple[1]], nodes[triple[2]]);
+        }
+
+        for (int[] triple : readTriples(in)) {
+            graph.addUnderlineTriple(nodes[triple[0]], nodes[triple[1]], nodes[triple[2]]);
+        }
+
+        for (int[] triple : readTriples(in)) {
+            graph.addDottedUnderlineTriple(nodes[triple[0]], nodes[triple[1]], nodes[triple[2]]);
+        }
+
+        return graph;
+    }
+
+    private static int propertyMask(List<Edge.Property> properties) {
+        int mask = 0;
+
+        for (Edge.Property property : properties) {
+            mask |= 1 << property.ordinal();
+        }
+
+        return mask;
+    }
+
+    private static void addProperties(int mask, List<Edge.Property> properties) {
+        for (Edge.Property property : PROPERTIES) {
+            if ((mask & (1 << property.ordinal())) != 0) {
+                properties.add(property);
+            }
+        }
+    }
+
+    private static void writeTriples(Set<Triple> triples, Map<Node, Integer> indices, DataOutputStream out)
+            throws IOException {
+        List<Triple> inGraph = new ArrayList<>();
+
+        for (Triple triple : triples) {
+            if (indices.containsKey(triple.getX()) && indices.containsKey(triple.getY())
+                && indices.containsKey(triple.getZ())) {
+                inGraph.add(triple);
+            }
+        }
+
+        writeVarInt(out, inGraph.size());
+
+        for (Triple triple : inGraph) {
+            writeVarInt(out, indices.get(triple.getX()));
+            writeVarInt(out, indices.get(triple.getY()));
+            writeVarInt(out, indices.get(triple.getZ()));
+        }
+    }
+
+    private static int[][] readTriples(ByteBuffer in) {
+        int[][] triples = new int[readVarInt(in)][];
+
+        for (int i = 0; i < triples.length; i++) {
+            triples[i] = new int[]{readVarInt(in), readVarInt(in), readVarInt(in)};
+        }
+
+        return triples;
+    }
+
+    private static void writeString(OutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a non-negative int in seven-bit groups, low group first, using one to five bytes.
+     */
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+
+        out.write(value);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
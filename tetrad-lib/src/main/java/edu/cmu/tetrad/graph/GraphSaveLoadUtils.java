@@ -14,7 +14,6 @@ import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Methods to load or save graphs.
@@ -507,22 +506,7 @@ public class GraphSaveLoadUtils {
      * @throws java.io.IOException if any.
      */
     public static Graph readerToGraphTxt(Reader reader) throws IOException {
-        Graph graph = new EdgeListGraph();
-        try (BufferedReader in = new BufferedReader(reader)) {
-            for (String line = in.readLine(); line != null; line = in.readLine()) {
-                line = line.trim();
-                switch (line) {
-                    case "Graph Nodes:":
-                        extractGraphNodes(graph, in);
-                        break;
-                    case "Graph Edges:":
-                        extractGraphEdges(graph, in);
-                        break;
-                }
-            }
-        }
-
-        return graph;
+        return GraphTxtReader.read(reader);
     }
 
     /**
@@ -551,169 +535,68 @@ public class GraphSaveLoadUtils {
     }
 
     /**
-     * <p>readerToGraphRuben.</p>
+     * Saves a graph in the compact binary format; see saveGraphsBinary.
      *
-     * @param reader a {@link java.io.Reader} object
-     * @return a {@link edu.cmu.tetrad.graph.Graph} object
-     * @throws java.io.IOException if any.
+     * @param graph The graph to be saved.
+     * @param file  The file to save it in.
+     * @throws java.io.IOException if the file cannot be written.
      */
-    public static Graph readerToGraphRuben(Reader reader) throws IOException {
-        Graph graph = new EdgeListGraph();
-        try (BufferedReader in = new BufferedReader(reader)) {
-            for (String line = in.readLine(); line != null; line = in.readLine()) {
-                line = line.trim();
-                switch (line) {
-                    case "Graph Nodes:":
-                        extractGraphNodes(graph, in);
-                        break;
-                    case "Graph Edges:":
-                        extractGraphEdges(graph, in);
-                        break;
-                }
-            }
-        }
-
-        return graph;
+    public static void saveGraphBinary(Graph graph, File file) throws IOException {
+        saveGraphsBinary(Collections.singletonList(graph), file);
     }
 
-    private static void extractGraphEdges(Graph graph, BufferedReader in) throws IOException {
-        Pattern lineNumPattern = Pattern.compile("^\\d+.\\s?");
-        Pattern spacePattern = Pattern.compile("\\s+");
-        Pattern semicolonPattern = Pattern.compile(";");
-        Pattern colonPattern = Pattern.compile(":");
-        for (String line = in.readLine(); line != null; line = in.readLine()) {
-            line = line.trim();
-            if (line.isEmpty()) {
-                return;
-            }
-
-            line = lineNumPattern.matcher(line).replaceAll("");
-            String[] fields = spacePattern.split(line, 4);
-            Edge edge = getEdge(fields[0], fields[1], fields[2], graph);
-            if (fields.length > 3) {
-                fields = semicolonPattern.split(fields[3]);
-                if (fields.length > 1) {
-                    for (String prop : fields) {
-                        setEdgeTypeProperties(edge, prop, spacePattern, colonPattern);
-                    }
-                } else {
-                    getEdgeProperties(fields[0], spacePattern)
-                            .forEach(edge::addProperty);
-                }
-            }
-
-            graph.addEdge(edge);
-        }
+    /**
+     * Saves a list of graphs, such as bootstrap graphs, in a compact binary format. Nodes are stored as indices into a
+     * table of names shared by all the graphs, and the two endpoints of an edge are packed into one byte. Node types
+     * and positions, edge properties, edge probabilities, edge type probabilities, graph attributes that are strings
+     * or numbers, and ambiguous, underline and dotted underline triples are kept.
+     *
+     * @param graphs The graphs to be saved.
+     * @param file   The file to save them in.
+     * @throws java.io.IOException if the file cannot be written.
+     */
+    public static void saveGraphsBinary(List<Graph> graphs, File file) throws IOException {
+        GraphBinaryFormat.write(graphs, file.toPath());
     }
 
-    private static void setEdgeTypeProperties(Edge edge, String prop, Pattern spacePattern, Pattern colonPattern) {
-        prop = prop.replace("[", "").replace("]", "");
-        String[] fields = colonPattern.split(prop);
-        if (fields.length == 2) {
-            String bootstrapEdge = fields[0];
-            String bootstrapEdgeTypeProb = fields[1];
-
-            // edge type
-            fields = spacePattern.split(bootstrapEdge, 4);
-            if (fields.length >= 3) {
-                // edge-type probability
-                EdgeTypeProbability.EdgeType edgeType = getEdgeType(fields[1]);
-                List<Edge.Property> properties = new LinkedList<>();
-                if (fields.length > 3) {
-                    // pags
-                    properties.addAll(getEdgeProperties(fields[3], spacePattern));
-                }
+    /**
+     * Loads the first graph from a file saved in the binary format.
+     *
+     * @param file The file.
+     * @return The graph.
+     * @throws java.io.IOException if the file cannot be read, is not in the binary format or holds no graphs.
+     */
+    public static Graph loadGraphBinary(File file) throws IOException {
+        List<Graph> graphs = loadGraphsBinary(file);
 
-                edge.addEdgeTypeProbability(new EdgeTypeProbability(edgeType, properties, Double.parseDouble(bootstrapEdgeTypeProb)));
-            } else {
-                // edge probability
-                if ("edge".equals(bootstrapEdge)) {
-                    fields = spacePattern.split(bootstrapEdgeTypeProb, 2);
-                    if (fields.length > 1) {
-                        edge.setProbability(Double.parseDouble(fields[0]));
-                        getEdgeProperties(fields[1], spacePattern).forEach(edge::addProperty);
-                    } else {
-                        edge.setProbability(Double.parseDouble(bootstrapEdgeTypeProb));
-                    }
-                } else if ("no edge".equals(bootstrapEdge)) {
-                    edge.addEdgeTypeProbability(new EdgeTypeProbability(EdgeTypeProbability.EdgeType.nil, Double.parseDouble(bootstrapEdgeTypeProb)));
-                }
-            }
+        if (graphs.isEmpty()) {
+            throw new IOException("No graphs in " + file);
         }
-    }
 
-    private static EdgeTypeProbability.EdgeType getEdgeType(String edgeType) {
-        Endpoint endpointFrom = getEndpoint(edgeType.charAt(0));
-        Endpoint endpointTo = getEndpoint(edgeType.charAt(2));
-
-        if (endpointFrom == Endpoint.TAIL && endpointTo == Endpoint.ARROW) {
-            return EdgeTypeProbability.EdgeType.ta;
-        } else if (endpointFrom == Endpoint.ARROW && endpointTo == Endpoint.TAIL) {
-            return EdgeTypeProbability.EdgeType.at;
-        } else if (endpointFrom == Endpoint.CIRCLE && endpointTo == Endpoint.ARROW) {
-            return EdgeTypeProbability.EdgeType.ca;
-        } else if (endpointFrom == Endpoint.ARROW && endpointTo == Endpoint.CIRCLE) {
-            return EdgeTypeProbability.EdgeType.ac;
-        } else if (endpointFrom == Endpoint.CIRCLE && endpointTo == Endpoint.CIRCLE) {
-            return EdgeTypeProbability.EdgeType.cc;
-        } else if (endpointFrom == Endpoint.ARROW && endpointTo == Endpoint.ARROW) {
-            return EdgeTypeProbability.EdgeType.aa;
-        } else if (endpointFrom == Endpoint.TAIL && endpointTo == Endpoint.TAIL) {
-            return EdgeTypeProbability.EdgeType.tt;
-        } else {
-            return EdgeTypeProbability.EdgeType.nil;
-        }
+        return graphs.get(0);
     }
 
-    private static List<Edge.Property> getEdgeProperties(String props, Pattern spacePattern) {
-        List<Edge.Property> properties = new LinkedList<>();
-
-        for (String prop : spacePattern.split(props)) {
-            if ("dd".equals(prop)) {
-                properties.add(Edge.Property.dd);
-            } else if ("nl".equals(prop)) {
-                properties.add(Edge.Property.nl);
-            } else if ("pd".equals(prop)) {
-                properties.add(Edge.Property.pd);
-            } else if ("pl".equals(prop)) {
-                properties.add(Edge.Property.pl);
-            }
-        }
-
-        return properties;
+    /**
+     * Loads the graphs from a file saved in the binary format. The file is read through a memory map, and each graph
+     * is built in one pass rather than edge by edge.
+     *
+     * @param file The file.
+     * @return The graphs, as EdgeListGraph's, in the order saved.
+     * @throws java.io.IOException if the file cannot be read or is not in the binary format.
+     */
+    public static List<Graph> loadGraphsBinary(File file) throws IOException {
+        return GraphBinaryFormat.read(file.toPath());
     }
 
-    private static void extractGraphNodes(Graph graph, BufferedReader in) throws IOException {
-        for (String line = in.readLine(); line != null; line = in.readLine()) {
-            line = line.trim();
-            if (line.isEmpty()) {
-                break;
-            }
-
-            String[] tokens = line.split("[,;]");
-
-            for (String token : tokens) {
-                if (token.startsWith("(") && token.endsWith(")")) {
-                    token = token.replace("(", "");
-                    token = token.replace(")", "");
-                    Node node = new GraphNode(token);
-                    node.setNodeType(NodeType.LATENT);
-                    graph.addNode(node);
-                } else if (token.startsWith("[") && token.endsWith("]")) {
-                    token = token.replace("[", "");
-                    token = token.replace("]", "");
-                    Node node = new GraphNode(token);
-                    node.setNodeType(NodeType.SELECTION);
-                    graph.addNode(node);
-                } else {
-                    Node node = new GraphNode(token);
-                    node.setNodeType(NodeType.MEASURED);
-                    graph.addNode(node);
-                }
-            }
-
-//            Arrays.stream(line.split("[,;]")).map(GraphNode::new).forEach(graph::addNode);
-        }
+    /**
+     * <p>readerToGraphRuben.</p>
+     *
+     * @param reader a {@link java.io.Reader} object
+     * @return a {@link edu.cmu.tetrad.graph.Graph} object
+     * @throws java.io.IOException if any.
+     */
+    public static Graph readerToGraphRuben(Reader reader) throws IOException {
+        return GraphTxtReader.read(reader);
     }
 
     /**
@@ -1399,39 +1282,6 @@ public class GraphSaveLoadUtils {
         return document.getRootElement();
     }
 
-    private static Edge getEdge(String nodeNameFrom, String edgeType, String nodeNameTo, Graph graph) {
-        Node nodeFrom = getNode(nodeNameFrom, graph);
-        Node nodeTo = getNode(nodeNameTo, graph);
-        Endpoint endpointFrom = getEndpoint(edgeType.charAt(0));
-        Endpoint endpointTo = getEndpoint(edgeType.charAt(2));
-
-        return new Edge(nodeFrom, nodeTo, endpointFrom, endpointTo);
-    }
-
-    private static Endpoint getEndpoint(char endpoint) {
-        if (endpoint == '>' || endpoint == '<') {
-            return Endpoint.ARROW;
-        } else if (endpoint == 'o') {
-            return Endpoint.CIRCLE;
-        } else if (endpoint == '-') {
-            return Endpoint.TAIL;
-        } else if (endpoint == '.') {
-            return Endpoint.NULL;
-        } else {
-            throw new IllegalArgumentException(String.format("Unrecognized endpoint: %s.", endpoint));
-        }
-    }
-
-    private static Node getNode(String nodeName, Graph graph) {
-        Node node = graph.getNode(nodeName);
-        if (node == null) {
-            graph.addNode(new GraphNode(nodeName));
-            node = graph.getNode(nodeName);
-        }
-
-        return node;
-    }
-
 
     /**
      * <p>grabLayout.</p>
@@ -0,0 +1,308 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.graph;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads graphs in the text format written by Graph.toString() and GraphSaveLoadUtils.loadGraphTxt(Graph, boolean),
+ * scanning each line by hand rather than splitting it with regular expressions, and building the graph in one pass
+ * at the end with the bulk EdgeListGraph constructor.
+ *
+ * @author josephramsey
+ * @see GraphSaveLoadUtils#readerToGraphTxt(Reader)
+ */
+final class GraphTxtReader {
+
+    /**
+     * The nodes read so far, in order.
+     */
+    private final List<Node> nodes = new ArrayList<>();
+
+    /**
+     * The nodes read so far, by name.
+     */
+    private final Map<String, Node> nodesByName = new HashMap<>();
+
+    /**
+     * The edges read so far.
+     */
+    private final List<Edge> edges = new ArrayList<>();
+
+    private GraphTxtReader() {
+    }
+
+    /**
+     * Reads a graph. Only the "Graph Nodes:" and "Graph Edges:" sections are read; nodes named in edges but not in
+     * the node section are added as measured nodes.
+     *
+     * @param reader the reader, which is closed.
+     * @return the graph.
+     * @throws IOException if the text cannot be read.
+     */
+    static Graph read(Reader reader) throws IOException {
+        GraphTxtReader graphReader = new GraphTxtReader();
+
+        try (BufferedReader in = new BufferedReader(reader, 1 << 16)) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                line = line.trim();
+
+                if (line.equals("Graph Nodes:")) {
+                    for (line = in.readLine(); line != null && !isBlank(line); line = in.readLine()) {
+                        graphReader.readNodes(line);
+                    }
+                } else if (line.equals("Graph Edges:")) {
+                    for (line = in.readLine(); line != null && !isBlank(line); line = in.readLine()) {
+                        graphReader.readEdge(line);
+                    }
+                }
+            }
+        }
+
+        return new EdgeListGraph(graphReader.nodes, graphReader.edges);
+    }
+
+    private static boolean isBlank(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) > ' ') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads a line of node names separated by commas or semicolons. Latent nodes are in parentheses and selection
+     * nodes in square brackets.
+     */
+    private void readNodes(String line) {
+        int start = 0;
+
+        for (int i = 0; i <= line.length(); i++) {
+            if (i == line.length() || line.charAt(i) == ',' || line.charAt(i) == ';') {
+                String token = line.substring(start, i).trim();
+                start = i + 1;
+
+                if (token.isEmpty()) {
+                    continue;
+                }
+
+                NodeType type = NodeType.MEASURED;
+                char first = token.charAt(0);
+                char last = token.charAt(token.length() - 1);
+
+                if (first == '(' && last == ')' && token.length() > 1) {
+                    type = NodeType.LATENT;
+                    token = token.substring(1, token.length() - 1);
+                } else if (first == '[' && last == ']' && token.length() > 1) {
+                    type = NodeType.SELECTION;
+                    token = token.substring(1, token.length() - 1);
+                }
+
+                if (!this.nodesByName.containsKey(token)) {
+                    Node node = new GraphNode(token);
+                    node.setNodeType(type);
+                    addNode(node);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads an edge line such as "3. X1 --> X2 [X1 --> X2]:0.6000;[no edge]:0.4000;[edge]:0.6000 dd nl".
+     */
+    private void readEdge(String line) {
+        int n = line.length();
+        int i = skipSpace(line, 0);
+
+        // The line number, e.g. "12. ".
+        if (i < n && Character.isDigit(line.charAt(i))) {
+            while (i < n && Character.isDigit(line.charAt(i))) i++;
+            i++;
+        }
+
+        int from = skipSpace(line, i);
+        int fromEnd = skipToken(line, from);
+        int type = skipSpace(line, fromEnd);
+        int typeEnd = skipToken(line, type);
+        int to = skipSpace(line, typeEnd);
+        int toEnd = skipToken(line, to);
+
+        if (typeEnd - type < 3 || toEnd == to) {
+            throw new IllegalArgumentException("Could not parse edge: " + line);
+        }
+
+        Node node1 = getNode(line.substring(from, fromEnd));
+        Node node2 = getNode(line.substring(to, toEnd));
+        Edge edge = new Edge(node1, node2, endpoint(line.charAt(type)), endpoint(line.charAt(type + 2)));
+
+        i = skipSpace(line, toEnd);
+
+        // Bootstrap annotations, each "[...]:probability;".
+        while (i < n && line.charAt(i) == '[') {
+            int close = line.indexOf(']', i);
+
+            if (close < 0 || close + 1 >= n || line.charAt(close + 1) != ':') {
+                throw new IllegalArgumentException("Could not parse edge: " + line);
+            }
+
+            int number = close + 2;
+            int numberEnd = number;
+
+            while (numberEnd < n && line.charAt(numberEnd) != ';' && line.charAt(numberEnd) > ' ') numberEnd++;
+
+            double probability = Double.parseDouble(line.substring(number, numberEnd));
+            String annotation = line.substring(i + 1, close).trim();
+
+            if (annotation.equals("edge")) {
+                edge.setProbability(probability);
+            } else if (annotation.equals("no edge")) {
+                edge.addEdgeTypeProbability(new EdgeTypeProbability(EdgeTypeProbability.EdgeType.nil, probability));
+            } else {
+                int a = skipToken(annotation, 0);
+                int etpType = skipSpace(annotation, a);
+                int etpTypeEnd = skipToken(annotation, etpType);
+                int b = skipSpace(annotation, etpTypeEnd);
+                int propertiesStart = skipSpace(annotation, skipToken(annotation, b));
+
+                if (etpTypeEnd - etpType < 3) {
+                    throw new IllegalArgumentException("Could not parse edge: " + line);
+                }
+
+                EdgeTypeProbability.EdgeType edgeType = edgeType(endpoint(annotation.charAt(etpType)),
+                        endpoint(annotation.charAt(etpType + 2)));
+                List<Edge.Property> properties = new ArrayList<>();
+                readProperties(annotation, propertiesStart, annotation.length(), properties);
+                edge.addEdgeTypeProbability(new EdgeTypeProbability(edgeType, properties, probability));
+            }
+
+            i = numberEnd;
+
+            if (i < n && line.charAt(i) == ';') i++;
+
+            i = skipSpace(line, i);
+        }
+
+        // Edge properties, e.g. "dd nl".
+        List<Edge.Property> properties = new ArrayList<>();
+        readProperties(line, i, n, properties);
+        properties.forEach(edge::addProperty);
+
+        this.edges.add(edge);
+    }
+
+    private void readProperties(String s, int from, int to, List<Edge.Property> properties) {
+        int i = skipSpace(s, from);
+
+        while (i < to) {
+            int end = Math.min(skipToken(s, i), to);
+
+            switch (s.substring(i, end)) {
+                case "dd":
+                    properties.add(Edge.Property.dd);
+                    break;
+                case "nl":
+                    properties.add(Edge.Property.nl);
+                    break;
+                case "pd":
+                    properties.add(Edge.Property.pd);
+                    break;
+                case "pl":
+                    properties.add(Edge.Property.pl);
+                    break;
+                default:
+                    break;
+            }
+
+            i = skipSpace(s, end);
+        }
+    }
+
+    private Node getNode(String name) {
+        Node node = this.nodesByName.get(name);
+
+        if (node == null) {
+            node = new GraphNode(name);
+            addNode(node);
+        }
+
+        return node;
+    }
+
+    private void addNode(Node node) {
+        this.nodes.add(node);
+        this.nodesByName.put(node.getName(), node);
+    }
+
+    private static int skipSpace(String s, int i) {
+        while (i < s.length() && s.charAt(i) <= ' ') i++;
+        return i;
+    }
+
+    private static int skipToken(String s, int i) {
+        while (i < s.length() && s.charAt(i) > ' ') i++;
+        return i;
+    }
+
+    private static Endpoint endpoint(char c) {
+        switch (c) {
+            case '>':
+            case '<':
+                return Endpoint.ARROW;
+            case 'o':
+                return Endpoint.CIRCLE;
+            case '-':
+                return Endpoint.TAIL;
+            case '.':
+                return Endpoint.NULL;
+            default:
+                throw new IllegalArgumentException(String.format("Unrecognized endpoint: %s.", c));
+        }
+    }
+
+    private static EdgeTypeProbability.EdgeType edgeType(Endpoint from, Endpoint to) {
+        if (from == Endpoint.TAIL && to == Endpoint.ARROW) {
+            return EdgeTypeProbability.EdgeType.ta;
+        } else if (from == Endpoint.ARROW && to == Endpoint.TAIL) {
+            return EdgeTypeProbability.EdgeType.at;
+        } else if (from == Endpoint.CIRCLE && to == Endpoint.ARROW) {
+            return EdgeTypeProbability.EdgeType.ca;
+        } else if (from == Endpoint.ARROW && to == Endpoint.CIRCLE) {
+            return EdgeTypeProbability.EdgeType.ac;
+        } else if (from == Endpoint.CIRCLE && to == Endpoint.CIRCLE) {
+            return EdgeTypeProbability.EdgeType.cc;
+        } else if (from == Endpoint.ARROW && to == Endpoint.ARROW) {
+            return EdgeTypeProbability.EdgeType.aa;
+        } else if (from == Endpoint.TAIL && to == Endpoint.TAIL) {
+            return EdgeTypeProbability.EdgeType.tt;
+        } else {
+            return EdgeTypeProbability.EdgeType.nil;
+        }
+    }
+}
@@ -6,6 +6,9 @@ import org.apache.commons.math3.util.FastMath;
 import javax.swing.*;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * <p>LayoutUtil class.</p>
@@ -49,6 +52,18 @@ public class LayoutUtil {
         layout.doLayout();
     }
 
+    /**
+     * Lays out the graph with a multilevel Barnes-Hut force-directed layout, which scales to graphs with many
+     * thousands of nodes.
+     *
+     * @param graph a {@link edu.cmu.tetrad.graph.Graph} object
+     * @see BarnesHutLayout
+     */
+    public static void barnesHutLayout(Graph graph) {
+        BarnesHutLayout layout = new BarnesHutLayout(graph);
+        layout.doLayout();
+    }
+
     /**
      * <p>arrangeByLayout.</p>
      *
@@ -1074,4 +1089,795 @@ public class LayoutUtil {
             this.temperature = 5.0;
         }
     }
+
+    /**
+     * Lays out a large graph with the spring-electrical model of Fruchterman and Reingold. Repulsive forces are
+     * approximated with a Barnes-Hut quadtree, so that an iteration takes O(n log n) rather than O(n^2) time, and the
+     * forces on different nodes are computed in parallel. The graph is first coarsened repeatedly by merging matched
+     * neighbors; the coarsest graph is laid out from random positions, and each layout is then expanded to the next
+     * finer graph and refined, so that only a few iterations are needed at full size. Connected components are laid
+     * out separately and packed in rows.
+     * <p>
+     * See Hu, Y. (2005). Efficient, high-quality force-directed graph drawing. Mathematica Journal, 10(1), 37-71.
+     *
+     * @author josephramsey
+     */
+    public static final class BarnesHutLayout {
+
+        /**
+         * The strength of repulsion relative to attraction; see Hu (2005).
+         */
+        private static final double REPULSION = 0.2;
+
+        /**
+         * Graphs are coarsened until they have no more than this many nodes.
+         */
+        private static final int COARSEST_SIZE = 50;
+
+        /**
+         * Coarsening stops if a level would keep more than this fraction of the nodes of the level below it.
+         */
+        private static final double MIN_COARSENING = 0.75;
+
+        /**
+         * Components with fewer nodes than this are laid out on one thread.
+         */
+        private static final int MIN_PARALLEL_SIZE = 1000;
+
+        /**
+         * The graph being laid out.
+         */
+        private final Graph graph;
+
+        /**
+         * The natural length of an edge, in pixels.
+         */
+        private double naturalEdgeLength = 100.0;
+
+        /**
+         * The Barnes-Hut opening criterion; a quadtree cell is treated as one body if its width is less than theta
+         * times its distance. Zero gives exact forces.
+         */
+        private double theta = 1.2;
+
+        /**
+         * The maximum number of iterations on the coarsest graph; finer graphs get a third of this.
+         */
+        private int numIterations = 300;
+
+        /**
+         * The number of threads to use.
+         */
+        private int numThreads = Runtime.getRuntime().availableProcessors();
+
+        //==============================CONSTRUCTORS===========================//
+
+        /**
+         * Constructs a new BarnesHutLayout for the given graph.
+         *
+         * @param graph the graph to be laid out.
+         */
+        public BarnesHutLayout(Graph graph) {
+            if (graph == null) {
+                throw new NullPointerException();
+            }
+
+            this.graph = graph;
+        }
+
+        //============================PUBLIC METHODS==========================//
+
+        /**
+         * Lays out the graph, setting the center of each node.
+         */
+        public void doLayout() {
+            List<Node> nodes = this.graph.getNodes();
+
+            if (nodes.isEmpty()) {
+                return;
+            }
+
+            Level full = fullLevel(nodes);
+            List<int[]> components = components(full);
+            List<double[][]> positions = new ArrayList<>();
+            ForkJoinPool pool = new ForkJoinPool(this.numThreads);
+
+            try {
+                for (int[] component : components) {
+                    positions.add(layoutComponent(full.subLevel(component), pool));
+                }
+            } finally {
+                pool.shutdown();
+            }
+
+            pack(nodes, components, positions);
+        }
+
+        /**
+         * Sets the natural length of an edge.
+         *
+         * @param naturalEdgeLength the length, in pixels; must be positive.
+         */
+        public void setNaturalEdgeLength(double naturalEdgeLength) {
+            if (!(naturalEdgeLength > 0.0)) {
+                throw new IllegalArgumentException("Natural edge length should be greater than zero.");
+            }
+
+            this.naturalEdgeLength = naturalEdgeLength;
+        }
+
+        /**
+         * Sets the Barnes-Hut opening criterion. Larger values are faster and less exact; zero gives exact forces.
+         *
+         * @param theta the criterion; must be nonnegative.
+         */
+        public void setTheta(double theta) {
+            if (!(theta >= 0.0)) {
+                throw new IllegalArgumentException("Theta should be nonnegative.");
+            }
+
+            this.theta = theta;
+        }
+
+        /**
+         * Sets the maximum number of iterations on the coarsest graph; finer graphs get a third of this.
+         *
+         * @param numIterations the number of iterations; must be at least 1.
+         */
+        public void setNumIterations(int numIterations) {
+            if (numIterations < 1) {
+                throw new IllegalArgumentException("Number of iterations should be at least 1.");
+            }
+
+            this.numIterations = numIterations;
+        }
+
+        /**
+         * Sets the number of threads used to compute forces.
+         *
+         * @param numThreads the number of threads, at least 1.
+         */
+        public void setNumThreads(int numThreads) {
+            if (numThreads < 1) {
+                throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+            }
+
+            this.numThreads = numThreads;
+        }
+
+        //============================PRIVATE METHODS=========================//
+
+        /**
+         * Lays out one connected component, returning its node positions.
+         */
+        private double[][] layoutComponent(Level level, ForkJoinPool pool) {
+            int n = level.n;
+
+            if (n == 1) {
+                return new double[][]{{0.0}, {0.0}};
+            }
+
+            // Coarsen.
+            List<Level> levels = new ArrayList<>();
+            levels.add(level);
+
+            while (levels.get(levels.size() - 1).n > COARSEST_SIZE) {
+                Level coarser = coarsen(levels.get(levels.size() - 1));
+
+                if (coarser == null) {
+                    break;
+                }
+
+                levels.add(coarser);
+            }
+
+            // Lay out the coarsest level from random positions.
+            Level coarsest = levels.get(levels.size() - 1);
+            double side = this.naturalEdgeLength * FastMath.sqrt(coarsest.n);
+            double[] x = new double[coarsest.n];
+            double[] y = new double[coarsest.n];
+
+            for (int v = 0; v < coarsest.n; v++) {
+                x[v] = RandomUtil.getInstance().nextUniform(0, side);
+                y[v] = RandomUtil.getInstance().nextUniform(0, side);
+            }
+
+            refine(coarsest, x, y, this.numIterations, this.naturalEdgeLength, pool);
+
+            // Expand each layout to the next finer level and refine it.
+            for (int l = levels.size() - 2; l >= 0; l--) {
+                Level finer = levels.get(l);
+                double[] finerX = new double[finer.n];
+                double[] finerY = new double[finer.n];
+                double jitter = 0.1 * this.naturalEdgeLength;
+
+                for (int v = 0; v < finer.n; v++) {
+                    finerX[v] = x[finer.parent[v]] + RandomUtil.getInstance().nextUniform(-jitter, jitter);
+                    finerY[v] = y[finer.parent[v]] + RandomUtil.getInstance().nextUniform(-jitter, jitter);
+                }
+
+                x = finerX;
+                y = finerY;
+                refine(finer, x, y, FastMath.max(1, this.numIterations / 3), 0.2 * this.naturalEdgeLength, pool);
+            }
+
+            return new double[][]{x, y};
+        }
+
+        /**
+         * Moves the nodes of the given level along the forces on them, with the adaptive step length of Hu (2005),
+         * until the step is small or the iterations run out.
+         */
+        private void refine(Level level, double[] x, double[] y, int iterations, double step, ForkJoinPool pool) {
+            int n = level.n;
+            double k = this.naturalEdgeLength;
+            double repulsion = REPULSION * k * k;
+            double[] fx = new double[n];
+            double[] fy = new double[n];
+            double energy = Double.POSITIVE_INFINITY;
+            int progress = 0;
+
+            for (int iteration = 0; iteration < iterations && step > 0.01 * k; iteration++) {
+                ForceTree tree = new ForceTree(x, y, level.mass, n);
+
+                forEachNode(n, pool, v -> {
+                    double[] repulsive = tree.repulsion(v, x[v], y[v], level.mass[v], this.theta);
+                    double forceX = repulsion * repulsive[0];
+                    double forceY = repulsion * repulsive[1];
+
+                    for (int j = level.start[v]; j < level.start[v + 1]; j++) {
+                        int u = level.adj[j];
+                        double deltaX = x[u] - x[v];
+                        double deltaY = y[u] - y[v];
+                        double attraction = level.weight[j] * FastMath.sqrt(deltaX * deltaX + deltaY * deltaY) / k;
+                        forceX += deltaX * attraction;
+                        forceY += deltaY * attraction;
+                    }
+
+                    fx[v] = forceX;
+                    fy[v] = forceY;
+                });
+
+                double newEnergy = 0.0;
+
+                for (int v = 0; v < n; v++) {
+                    double norm = FastMath.sqrt(fx[v] * fx[v] + fy[v] * fy[v]);
+
+                    if (norm > 0.0) {
+                        x[v] += step * fx[v] / norm;
+                        y[v] += step * fy[v] / norm;
+                    }
+
+                    newEnergy += norm * norm;
+                }
+
+                if (newEnergy < energy) {
+                    if (++progress >= 5) {
+                        progress = 0;
+                        step /= 0.9;
+                    }
+                } else {
+                    progress = 0;
+                    step *= 0.9;
+                }
+
+                energy = newEnergy;
+            }
+        }
+
+        /**
+         * Runs the action for each node, in parallel for large levels.
+         */
+        private void forEachNode(int n, ForkJoinPool pool, IntConsumer action) {
+            if (n < MIN_PARALLEL_SIZE || this.numThreads == 1) {
+                for (int v = 0; v < n; v++) {
+                    action.accept(v);
+                }
+            } else {
+                pool.submit(() -> IntStream.range(0, n).parallel().forEach(action)).join();
+            }
+        }
+
+        /**
+         * Returns the next coarser level, merging each node with at most one neighbor, or null if this would not
+         * shrink the level enough to be worthwhile.
+         */
+        private static Level coarsen(Level level) {
+            int n = level.n;
+            int[] order = new int[n];
+
+            for (int v = 0; v < n; v++) {
+                order[v] = v;
+            }
+
+            for (int v = n - 1; v > 0; v--) {
+                int u = RandomUtil.getInstance().nextInt(v + 1);
+                int t = order[v];
+                order[v] = order[u];
+                order[u] = t;
+            }
+
+            // Match each node with the unmatched neighbor it shares the heaviest edge with, relative to their size.
+            int[] parent = new int[n];
+            Arrays.fill(parent, -1);
+            int coarseN = 0;
+
+            for (int v : order) {
+                if (parent[v] != -1) {
+                    continue;
+                }
+
+                int best = -1;
+                double bestWeight = 0.0;
+
+                for (int j = level.start[v]; j < level.start[v + 1]; j++) {
+                    int u = level.adj[j];
+                    double weight = level.weight[j] / (level.mass[u] + level.mass[v]);
+
+                    if (parent[u] == -1 && weight > bestWeight) {
+                        best = u;
+                        bestWeight = weight;
+                    }
+                }
+
+                parent[v] = coarseN;
+
+                if (best != -1) {
+                    parent[best] = coarseN;
+                }
+
+                coarseN++;
+            }
+
+            if (coarseN > MIN_COARSENING * n) {
+                return null;
+            }
+
+            level.parent = parent;
+
+            // Merge the nodes and edges of each group.
+            int[][] members = new int[coarseN][];
+            int[] size = new int[coarseN];
+
+            for (int v = 0; v < n; v++) {
+                size[parent[v]]++;
+            }
+
+            for (int c = 0; c < coarseN; c++) {
+                members[c] = new int[size[c]];
+                size[c] = 0;
+            }
+
+            for (int v = 0; v < n; v++) {
+                members[parent[v]][size[parent[v]]++] = v;
+            }
+
+            double[] mass = new double[coarseN];
+            int[] start = new int[coarseN + 1];
+            int[] adj = new int[level.adj.length];
+            double[] weight = new double[level.adj.length];
+            int[] mark = new int[coarseN];
+            double[] sum = new double[coarseN];
+            int[] touched = new int[coarseN];
+            Arrays.fill(mark, -1);
+            int numAdj = 0;
+
+            for (int c = 0; c < coarseN; c++) {
+                int numTouched = 0;
+
+                for (int v : members[c]) {
+                    mass[c] += level.mass[v];
+
+                    for (int j = level.start[v]; j < level.start[v + 1]; j++) {
+                        int d = parent[level.adj[j]];
+
+                        if (d == c) {
+                            continue;
+                        }
+
+                        if (mark[d] != c) {
+                            mark[d] = c;
+                            sum[d] = 0.0;
+                            touched[numTouched++] = d;
+                        }
+
+                        sum[d] += level.weight[j];
+                    }
+                }
+
+                Arrays.sort(touched, 0, numTouched);
+
+                for (int t = 0; t < numTouched; t++) {
+                    adj[numAdj] = touched[t];
+                    weight[numAdj++] = sum[touched[t]];
+                }
+
+                start[c + 1] = numAdj;
+            }
+
+            return new Level(coarseN, start, Arrays.copyOf(adj, numAdj), Arrays.copyOf(weight, numAdj), mass);
+        }
+
+        /**
+         * Returns the undirected adjacency structure of the whole graph, with each node of unit mass and each pair of
+         * adjacent nodes joined by an edge of unit weight.
+         */
+        private Level fullLevel(List<Node> nodes) {
+            int n = nodes.size();
+            Map<Node, Integer> indices = new HashMap<>();
+
+            for (int v = 0; v < n; v++) {
+                indices.put(nodes.get(v), v);
+            }
+
+            List<Set<Integer>> neighbors = new ArrayList<>();
+
+            for (int v = 0; v < n; v++) {
+                neighbors.add(new TreeSet<>());
+            }
+
+            for (Edge edge : this.graph.getEdges()) {
+                Integer v = indices.get(edge.getNode1());
+                Integer u = indices.get(edge.getNode2());
+
+                if (v != null && u != null && !v.equals(u)) {
+                    neighbors.get(v).add(u);
+                    neighbors.get(u).add(v);
+                }
+            }
+
+            int[] start = new int[n + 1];
+
+            for (int v = 0; v < n; v++) {
+                start[v + 1] = start[v] + neighbors.get(v).size();
+            }
+
+            int[] adj = new int[start[n]];
+            int j = 0;
+
+            for (int v = 0; v < n; v++) {
+                for (int u : neighbors.get(v)) {
+                    adj[j++] = u;
+                }
+            }
+
+            double[] weight = new double[adj.length];
+            double[] mass = new double[n];
+            Arrays.fill(weight, 1.0);
+            Arrays.fill(mass, 1.0);
+            return new Level(n, start, adj, weight, mass);
+        }
+
+        /**
+         * Returns the connected components of the given level, largest first, each as a list of node indices in
+         * increasing order.
+         */
+        private static List<int[]> components(Level level) {
+            int[] component = new int[level.n];
+            Arrays.fill(component, -1);
+            List<int[]> components = new ArrayList<>();
+            int[] queue = new int[level.n];
+
+            for (int s = 0; s < level.n; s++) {
+                if (component[s] != -1) {
+                    continue;
+                }
+
+                int head = 0, tail = 0;
+                queue[tail++] = s;
+                component[s] = components.size();
+
+                while (head < tail) {
+                    int v = queue[head++];
+
+                    for (int j = level.start[v]; j < level.start[v + 1]; j++) {
+                        int u = level.adj[j];
+
+                        if (component[u] == -1) {
+                            component[u] = components.size();
+                            queue[tail++] = u;
+                        }
+                    }
+                }
+
+                int[] members = Arrays.copyOf(queue, tail);
+                Arrays.sort(members);
+                components.add(members);
+            }
+
+            components.sort((c1, c2) -> Integer.compare(c2.length, c1.length));
+            return components;
+        }
+
+        /**
+         * Places the laid-out components left to right in rows of roughly equal width and sets the node centers.
+         */
+        private void pack(List<Node> nodes, List<int[]> components, List<double[][]> positions) {
+            double gap = this.naturalEdgeLength;
+            double[] minX = new double[components.size()];
+            double[] minY = new double[components.size()];
+            double[] width = new double[components.size()];
+            double[] height = new double[components.size()];
+            double area = 0.0;
+            double maxWidth = 0.0;
+
+            for (int c = 0; c < components.size(); c++) {
+                double[] x = positions.get(c)[0];
+                double[] y = positions.get(c)[1];
+                minX[c] = Arrays.stream(x).min().orElse(0);
+                minY[c] = Arrays.stream(y).min().orElse(0);
+                width[c] = Arrays.stream(x).max().orElse(0) - minX[c];
+                height[c] = Arrays.stream(y).max().orElse(0) - minY[c];
+                area += (width[c] + gap) * (height[c] + gap);
+                maxWidth = FastMath.max(maxWidth, width[c]);
+            }
+
+            double rowWidth = FastMath.max(maxWidth, FastMath.sqrt(area));
+            double left = 50.0;
+            double top = 40.0;
+            double rowX = left;
+            double rowHeight = 0.0;
+
+            for (int c = 0; c < components.size(); c++) {
+                if (rowX > left && rowX + width[c] > left + rowWidth) {
+                    rowX = left;
+                    top += rowHeight + gap;
+                    rowHeight = 0.0;
+                }
+
+                int[] members = components.get(c);
+
+                for (int i = 0; i < members.length; i++) {
+                    Node node = nodes.get(members[i]);
+                    node.setCenterX((int) FastMath.round(rowX + positions.get(c)[0][i] - minX[c]));
+                    node.setCenterY((int) FastMath.round(top + positions.get(c)[1][i] - minY[c]));
+                }
+
+                rowX += width[c] + gap;
+                rowHeight = FastMath.max(rowHeight, height[c]);
+            }
+        }
+
+        /**
+         * One level of the multilevel hierarchy: an undirected weighted graph over n nodes in compressed adjacency
+         * form. The neighbors of v are adj[start[v]] to adj[start[v + 1] - 1], with the given edge weights.
+         */
+        private static final class Level {
+            private final int n;
+            private final int[] start;
+            private final int[] adj;
+            private final double[] weight;
+            private final double[] mass;
+
+            /**
+             * The node each node is merged into at the next coarser level; null for the coarsest level.
+             */
+            private int[] parent;
+
+            private Level(int n, int[] start, int[] adj, double[] weight, double[] mass) {
+                this.n = n;
+                this.start = start;
+                this.adj = adj;
+                this.weight = weight;
+                this.mass = mass;
+            }
+
+            /**
+             * Returns the level restricted to the given nodes, which must be closed under adjacency and in
+             * increasing order.
+             */
+            private Level subLevel(int[] nodes) {
+                int[] index = new int[this.n];
+
+                for (int i = 0; i < nodes.length; i++) {
+                    index[nodes[i]] = i;
+                }
+
+                int[] start = new int[nodes.length + 1];
+
+                for (int i = 0; i < nodes.length; i++) {
+                    start[i + 1] = start[i] + this.start[nodes[i] + 1] - this.start[nodes[i]];
+                }
+
+                int[] adj = new int[start[nodes.length]];
+                double[] weight = new double[adj.length];
+                double[] mass = new double[nodes.length];
+
+                for (int i = 0; i < nodes.length; i++) {
+                    int v = nodes[i];
+                    mass[i] = this.mass[v];
+
+                    for (int j = this.start[v], k = start[i]; j < this.start[v + 1]; j++, k++) {
+                        adj[k] = index[this.adj[j]];
+                        weight[k] = this.weight[j];
+                    }
+                }
+
+                return new Level(nodes.length, start, adj, weight, mass);
+            }
+        }
+
+        /**
+         * A Barnes-Hut quadtree over weighted points, storing the total mass and center of mass of each cell. Points
+         * that cannot be separated within MAX_DEPTH subdivisions share a leaf.
+         */
+        private static final class ForceTree {
+
+            private static final int MAX_DEPTH = 40;
+
+            private final double[] x, y, m;
+            private double[] centerX, centerY, mass, minX, minY, size;
+            private int[] firstChild, body;
+            private int numCells;
+
+            private ForceTree(double[] x, double[] y, double[] m, int n) {
+                this.x = x;
+                this.y = y;
+                this.m = m;
+
+                double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+                double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+
+                for (int v = 0; v < n; v++) {
+                    x0 = FastMath.min(x0, x[v]);
+                    y0 = FastMath.min(y0, y[v]);
+                    x1 = FastMath.max(x1, x[v]);
+                    y1 = FastMath.max(y1, y[v]);
+                }
+
+                int capacity = 4 * n + 4;
+                this.centerX = new double[capacity];
+                this.centerY = new double[capacity];
+                this.mass = new double[capacity];
+                this.minX = new double[capacity];
+                this.minY = new double[capacity];
+                this.size = new double[capacity];
+                this.firstChild = new int[capacity];
+                this.body = new int[capacity];
+
+                newCell(x0, y0, 1.0001 * FastMath.max(x1 - x0, y1 - y0) + 1e-6);
+
+                for (int v = 0; v < n; v++) {
+                    insert(v);
+                }
+            }
+
+            /**
+             * Returns the repulsive force on v, up to the repulsion constant: the sum over other bodies of
+             * m_v * m_u / d, directed away from them, with distant cells treated as single bodies.
+             */
+            private double[] repulsion(int v, double vx, double vy, double vm, double theta) {
+                double forceX = 0.0;
+                double forceY = 0.0;
+                int[] stack = new int[3 * MAX_DEPTH + 4];
+                int top = 0;
+                stack[top++] = 0;
+
+                while (top > 0) {
+                    int cell = stack[--top];
+                    double cellMass = this.mass[cell];
+                    double cellX = this.centerX[cell];
+                    double cellY = this.centerY[cell];
+
+                    if (this.firstChild[cell] == -1) {
+                        if (this.body[cell] == v) {
+
+                            // Leave v out of a leaf it shares with coincident points.
+                            cellMass -= vm;
+
+                            if (cellMass <= 0.0) {
+                                continue;
+                            }
+
+                            cellX = (this.centerX[cell] * this.mass[cell] - vx * vm) / cellMass;
+                            cellY = (this.centerY[cell] * this.mass[cell] - vy * vm) / cellMass;
+                        }
+                    } else {
+                        boolean inside = vx >= this.minX[cell] && vx < this.minX[cell] + this.size[cell]
+                                         && vy >= this.minY[cell] && vy < this.minY[cell] + this.size[cell];
+                        double deltaX = cellX - vx;
+                        double deltaY = cellY - vy;
+
+                        if (inside || this.size[cell] * this.size[cell]
+                                      >= theta * theta * (deltaX * deltaX + deltaY * deltaY)) {
+                            for (int q = 0; q < 4; q++) {
+                                if (this.mass[this.firstChild[cell] + q] > 0.0) {
+                                    stack[top++] = this.firstChild[cell] + q;
+                                }
+                            }
+
+                            continue;
+                        }
+                    }
+
+                    double deltaX = cellX - vx;
+                    double deltaY = cellY - vy;
+                    double distance2 = deltaX * deltaX + deltaY * deltaY;
+
+                    if (distance2 == 0.0) {
+                        continue;
+                    }
+
+                    double force = vm * cellMass / distance2;
+                    forceX -= deltaX * force;
+                    forceY -= deltaY * force;
+                }
+
+                return new double[]{forceX, forceY};
+            }
+
+            private void insert(int v) {
+                int cell = 0;
+                int depth = 0;
+
+                while (true) {
+                    if (this.firstChild[cell] != -1) {
+                        addMass(cell, v);
+                        cell = this.firstChild[cell] + quadrant(cell, this.x[v], this.y[v]);
+                        depth++;
+                    } else if (this.body[cell] == -1) {
+                        this.body[cell] = v;
+                        this.centerX[cell] = this.x[v];
+                        this.centerY[cell] = this.y[v];
+                        this.mass[cell] = this.m[v];
+                        return;
+                    } else if (depth >= MAX_DEPTH) {
+                        addMass(cell, v);
+                        return;
+                    } else {
+                        int other = this.body[cell];
+                        double half = this.size[cell] / 2.0;
+                        int first = this.numCells;
+
+                        newCell(this.minX[cell], this.minY[cell], half);
+                        newCell(this.minX[cell] + half, this.minY[cell], half);
+                        newCell(this.minX[cell], this.minY[cell] + half, half);
+                        newCell(this.minX[cell] + half, this.minY[cell] + half, half);
+
+                        int child = first + quadrant(cell, this.x[other], this.y[other]);
+                        this.body[child] = other;
+                        this.centerX[child] = this.x[other];
+                        this.centerY[child] = this.y[other];
+                        this.mass[child] = this.m[other];
+
+                        this.firstChild[cell] = first;
+                        this.body[cell] = -1;
+                    }
+                }
+            }
+
+            private void addMass(int cell, int v) {
+                double total = this.mass[cell] + this.m[v];
+                this.centerX[cell] = (this.centerX[cell] * this.mass[cell] + this.x[v] * this.m[v]) / total;
+                this.centerY[cell] = (this.centerY[cell] * this.mass[cell] + this.y[v] * this.m[v]) / total;
+                this.mass[cell] = total;
+            }
+
+            private int quadrant(int cell, double px, double py) {
+                double half = this.size[cell] / 2.0;
+                return (px >= this.minX[cell] + half ? 1 : 0) + (py >= this.minY[cell] + half ? 2 : 0);
+            }
+
+            private void newCell(double minX, double minY, double size) {
+                if (this.numCells + 1 > this.size.length) {
+                    int capacity = 2 * this.size.length;
+                    this.centerX = Arrays.copyOf(this.centerX, capacity);
+                    this.centerY = Arrays.copyOf(this.centerY, capacity);
+                    this.mass = Arrays.copyOf(this.mass, capacity);
+                    this.minX = Arrays.copyOf(this.minX, capacity);
+                    this.minY = Arrays.copyOf(this.minY, capacity);
+                    this.size = Arrays.copyOf(this.size, capacity);
+                    this.firstChild = Arrays.copyOf(this.firstChild, capacity);
+                    this.body = Arrays.copyOf(this.body, capacity);
+                }
+
+                int cell = this.numCells++;
+                this.minX[cell] = minX;
+                this.minY[cell] = minY;
+                this.size[cell] = size;
+                this.firstChild[cell] = -1;
+                this.body[cell] = -1;
+            }
+        }
+    }
 }
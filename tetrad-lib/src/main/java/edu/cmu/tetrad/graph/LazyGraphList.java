@@ -0,0 +1,250 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.graph;
+
+import edu.cmu.tetrad.util.PayloadSource;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A list of graphs, such as bootstrap graphs, that may be stored in chunks and read one chunk at a time as its graphs
+ * are needed. A list built up in memory behaves like an ordinary list; a list read back from a saved session archive
+ * holds a source for each chunk and loads a chunk when one of its graphs is first asked for. Changing the list loads
+ * all of it first.
+ * <p>
+ * Serialized with an ordinary object stream, all graphs are loaded and written out.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ * @see edu.cmu.tetrad.util.SessionArchive
+ */
+public final class LazyGraphList extends AbstractList<Graph> implements RandomAccess, Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 23L;
+
+    /**
+     * The graphs; null for graphs in chunks that have not been loaded.
+     */
+    private transient List<Graph> graphs = new ArrayList<>();
+
+    /**
+     * The source of each chunk, null for chunks that have been loaded; null if the list is not stored in chunks.
+     */
+    private transient List<PayloadSource<List<Graph>>> chunks;
+
+    /**
+     * The number of graphs in each chunk but the last.
+     */
+    private transient int chunkSize;
+
+    /**
+     * Constructs an empty list.
+     */
+    public LazyGraphList() {
+    }
+
+    /**
+     * Constructs a list of the given size whose graphs are read from the given chunks as needed.
+     *
+     * @param size      the number of graphs.
+     * @param chunkSize the number of graphs in each chunk but the last.
+     * @param chunks    the source of each chunk, in order.
+     * @return the list.
+     */
+    public static LazyGraphList ofChunks(int size, int chunkSize, List<PayloadSource<List<Graph>>> chunks) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1: " + chunkSize);
+        }
+
+        if (chunks.size() != (size + chunkSize - 1) / chunkSize) {
+            throw new IllegalArgumentException("Expected " + (size + chunkSize - 1) / chunkSize
+                                               + " chunks but got " + chunks.size());
+        }
+
+        LazyGraphList list = new LazyGraphList();
+        list.graphs = new ArrayList<>(Collections.nCopies(size, null));
+        list.chunks = new ArrayList<>(chunks);
+        list.chunkSize = chunkSize;
+        return list;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Graph get(int index) {
+        Objects.checkIndex(index, this.graphs.size());
+
+        synchronized (this) {
+            if (this.chunks != null && this.chunks.get(index / this.chunkSize) != null) {
+                loadChunk(index / this.chunkSize);
+            }
+
+            return this.graphs.get(index);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return this.graphs.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Graph set(int index, Graph graph) {
+        loadAll();
+        return this.graphs.set(index, graph);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void add(int index, Graph graph) {
+        loadAll();
+        this.graphs.add(index, graph);
+        this.modCount++;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Graph remove(int index) {
+        loadAll();
+        this.modCount++;
+        return this.graphs.remove(index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void clear() {
+        this.graphs.clear();
+        this.chunks = null;
+        this.modCount++;
+    }
+
+    /**
+     * Returns the number of chunks the list is stored in.
+     *
+     * @return the number of chunks, or 0 if the list is held entirely in memory.
+     */
+    public synchronized int getNumChunks() {
+        return this.chunks == null ? 0 : this.chunks.size();
+    }
+
+    /**
+     * Returns the number of graphs in each chunk but the last.
+     *
+     * @return the chunk size, if the list is stored in chunks.
+     */
+    public synchronized int getChunkSize() {
+        return this.chunkSize;
+    }
+
+    /**
+     * Returns where the given chunk will be read from.
+     *
+     * @param chunk the index of the chunk.
+     * @return its source, or null if it has already been loaded.
+     */
+    public synchronized PayloadSource<List<Graph>> getChunkSource(int chunk) {
+        return this.chunks.get(chunk);
+    }
+
+    private void loadChunk(int chunk) {
+        try {
+            List<Graph> graphs = this.chunks.get(chunk).load();
+            int from = chunk * this.chunkSize;
+            int to = Math.min(from + this.chunkSize, this.graphs.size());
+
+            if (graphs.size() != to - from) {
+                throw new IllegalStateException("Expected " + (to - from) + " graphs in chunk " + chunk
+                                                + " but read " + graphs.size());
+            }
+
+            for (int i = from; i < to; i++) {
+                this.graphs.set(i, graphs.get(i - from));
+            }
+
+            this.chunks.set(chunk, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read graphs: " + e.getMessage(), e);
+        }
+    }
+
+    private void loadAll() {
+        if (this.chunks != null) {
+            for (int chunk = 0; chunk < this.chunks.size(); chunk++) {
+                if (this.chunks.get(chunk) != null) {
+                    loadChunk(chunk);
+                }
+            }
+
+            this.chunks = null;
+        }
+    }
+
+    /**
+     * Writes all of the graphs.
+     *
+     * @param out The output stream.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Serial
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        loadAll();
+        out.defaultWriteObject();
+        out.writeInt(this.graphs.size());
+
+        for (Graph graph : this.graphs) {
+            out.writeObject(graph);
+        }
+    }
+
+    /**
+     * Reads the graphs written by writeObject.
+     *
+     * @param in The input stream.
+     * @throws IOException            If an I/O error occurs.
+     * @throws ClassNotFoundException If the class of a graph cannot be found.
+     */
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int size = in.readInt();
+        this.graphs = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            this.graphs.add((Graph) in.readObject());
+        }
+    }
+}
@@ -0,0 +1,322 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.graph;
+
+import java.util.*;
+
+/**
+ * A mutable {@link CompactGraph} over a fixed list of nodes, for searches that add, remove and reorient edges in
+ * their inner loops. Each node keeps a sorted, growable array of neighbor indices with a parallel array of packed
+ * endpoint marks, so adjacency and endpoint queries are a binary search and edits never allocate Edge objects. At
+ * most one edge is kept between any pair of nodes.
+ * <p>
+ * Use {@link #toCsrGraph()} to freeze the current state into an immutable snapshot and {@link #toGraph()} to get an
+ * EdgeListGraph back.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ * @see CsrGraph
+ */
+public final class MutableCompactGraph implements CompactGraph {
+
+    /**
+     * The nodes, in index order.
+     */
+    private final List<Node> nodes;
+
+    /**
+     * A map from nodes to their indices.
+     */
+    private final Map<Node, Integer> indices;
+
+    /**
+     * The neighbors of each node; only the first degrees[i] entries of row i are valid.
+     */
+    private final int[][] rows;
+
+    /**
+     * The packed marks for each entry of each row: the near mark in the low two bits, the far mark in the next two.
+     */
+    private final byte[][] rowMarks;
+
+    /**
+     * The number of valid entries in each row.
+     */
+    private final int[] degrees;
+
+    /**
+     * Constructs a graph with the given nodes and no edges.
+     *
+     * @param nodes The nodes.
+     */
+    public MutableCompactGraph(List<Node> nodes) {
+        if (nodes == null) {
+            throw new NullPointerException("Nodes must not be null.");
+        }
+
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        this.indices = CsrGraph.indexMap(this.nodes);
+
+        int n = this.nodes.size();
+        this.rows = new int[n][];
+        this.rowMarks = new byte[n][];
+        this.degrees = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            this.rows[i] = new int[4];
+            this.rowMarks[i] = new byte[4];
+        }
+    }
+
+    /**
+     * Constructs a mutable copy of the given graph.
+     *
+     * @param graph The graph.
+     * @throws IllegalArgumentException If the graph has more than one edge between some pair of nodes.
+     */
+    public MutableCompactGraph(Graph graph) {
+        this(graph.getNodes());
+
+        for (Edge edge : graph.getEdges()) {
+            int i = this.indices.get(edge.getNode1());
+            int j = this.indices.get(edge.getNode2());
+
+            if (!addEdge(i, j, CompactGraph.toMark(edge.getEndpoint1()), CompactGraph.toMark(edge.getEndpoint2()))) {
+                throw new IllegalArgumentException("Compact graphs keep at most one edge per node pair: " + edge);
+            }
+        }
+    }
+
+    /**
+     * Constructs a mutable copy of the given compact graph.
+     *
+     * @param graph The graph.
+     * @throws IllegalArgumentException If the graph has more than one edge between some pair of nodes.
+     */
+    public MutableCompactGraph(CompactGraph graph) {
+        this(graph.getNodes());
+
+        for (int i = 0; i < graph.getNumNodes(); i++) {
+            for (int k = 0; k < graph.getDegree(i); k++) {
+                int j = graph.getNeighbor(i, k);
+                if (j < i) continue;
+
+                if (!addEdge(i, j, graph.getNearMark(i, k), graph.getFarMark(i, k))) {
+                    throw new IllegalArgumentException("Compact graphs keep at most one edge per node pair: "
+                                                       + graph.getNode(i) + ", " + graph.getNode(j));
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds an edge between i and j with the given marks.
+     *
+     * @param i     The first node index.
+     * @param j     The second node index.
+     * @param markI The mark at i.
+     * @param markJ The mark at j.
+     * @return True if the edge was added, false if i and j were already adjacent.
+     */
+    public boolean addEdge(int i, int j, int markI, int markJ) {
+        if (isAdjacentTo(i, j)) return false;
+
+        insert(i, j, markI, markJ);
+        if (i != j) insert(j, i, markJ, markI);
+        return true;
+    }
+
+    /**
+     * Adds the edge i --&gt; j.
+     *
+     * @param i The tail.
+     * @param j The head.
+     * @return True if the edge was added, false if i and j were already adjacent.
+     */
+    public boolean addDirectedEdge(int i, int j) {
+        return addEdge(i, j, TAIL, ARROW);
+    }
+
+    /**
+     * Adds the edge i --- j.
+     *
+     * @param i The first node index.
+     * @param j The second node index.
+     * @return True if the edge was added, false if i and j were already adjacent.
+     */
+    public boolean addUndirectedEdge(int i, int j) {
+        return addEdge(i, j, TAIL, TAIL);
+    }
+
+    /**
+     * Removes the edge between i and j, if there is one.
+     *
+     * @param i The first node index.
+     * @param j The second node index.
+     * @return True if an edge was removed.
+     */
+    public boolean removeEdge(int i, int j) {
+        if (!delete(i, j)) return false;
+        if (i != j) delete(j, i);
+        return true;
+    }
+
+    /**
+     * Sets the mark at the j end of the edge between i and j, as Graph.setEndpoint does.
+     *
+     * @param i    The first node index.
+     * @param j    The second node index.
+     * @param mark The new mark at j.
+     * @return True if the mark was set, false if i and j are not adjacent.
+     */
+    public boolean setMark(int i, int j, int mark) {
+        int k = positionOf(i, j);
+        if (k < 0) return false;
+
+        byte m = this.rowMarks[i][k];
+        this.rowMarks[i][k] = (byte) ((m & 3) | (mark << 2));
+
+        if (i != j) {
+            int l = positionOf(j, i);
+            byte r = this.rowMarks[j][l];
+            this.rowMarks[j][l] = (byte) ((r & 0xC) | mark);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns an immutable snapshot of the current state of this graph.
+     *
+     * @return This snapshot.
+     */
+    public CsrGraph toCsrGraph() {
+        return new CsrGraph(this.nodes, this.indices, this.rows, this.rowMarks, this.degrees);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNumNodes() {
+        return this.nodes.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Node> getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Node getNode(int i) {
+        return this.nodes.get(i);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getIndex(Node node) {
+        Integer i = this.indices.get(node);
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDegree(int i) {
+        return this.degrees[i];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNeighbor(int i, int k) {
+        return this.rows[i][k];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNearMark(int i, int k) {
+        return this.rowMarks[i][k] & 3;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getFarMark(int i, int k) {
+        return (this.rowMarks[i][k] >>> 2) & 3;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int positionOf(int i, int j) {
+        int k = Arrays.binarySearch(this.rows[i], 0, this.degrees[i], j);
+        return k < 0 ? -1 : k;
+    }
+
+    /**
+     * Inserts j into i's row, keeping the row sorted.
+     */
+    private void insert(int i, int j, int near, int far) {
+        int d = this.degrees[i];
+
+        if (d == this.rows[i].length) {
+            this.rows[i] = Arrays.copyOf(this.rows[i], 2 * d);
+            this.rowMarks[i] = Arrays.copyOf(this.rowMarks[i], 2 * d);
+        }
+
+        int k = -Arrays.binarySearch(this.rows[i], 0, d, j) - 1;
+        System.arraycopy(this.rows[i], k, this.rows[i], k + 1, d - k);
+        System.arraycopy(this.rowMarks[i], k, this.rowMarks[i], k + 1, d - k);
+        this.rows[i][k] = j;
+        this.rowMarks[i][k] = (byte) (near | (far << 2));
+        this.degrees[i] = d + 1;
+    }
+
+    /**
+     * Deletes j from i's row.
+     */
+    private boolean delete(int i, int j) {
+        int k = positionOf(i, j);
+        if (k < 0) return false;
+
+        int d = this.degrees[i];
+        System.arraycopy(this.rows[i], k + 1, this.rows[i], k, d - k - 1);
+        System.arraycopy(this.rowMarks[i], k + 1, this.rowMarks[i], k, d - k - 1);
+        this.degrees[i] = d - 1;
+        return true;
+    }
+}
@@ -1265,18 +1265,11 @@ public class Paths implements TetradSerializable {
      * @return This map.
      */
     public Map<Node, Set<Node>> getDescendantsMap() {
+        ReachabilityIndex index = reachabilityIndex();
         Map<Node, Set<Node>> decendantsMap = new HashMap<>();
 
         for (Node node : graph.getNodes()) {
-            decendantsMap.put(node, new HashSet<>());
-        }
-
-        for (Node n1 : graph.getNodes()) {
-            for (Node n2 : graph.getNodes()) {
-                if (isAncestor(n1, Collections.singleton(n2))) {
-                    decendantsMap.get(n1).add(n2);
-                }
-            }
+            decendantsMap.put(node, index.getDescendants(node));
         }
 
         return decendantsMap;
@@ -1288,21 +1281,29 @@ public class Paths implements TetradSerializable {
      * @return This map.
      */
     public Map<Node, Set<Node>> getAncestorsMap() {
+        ReachabilityIndex index = reachabilityIndex();
         Map<Node, Set<Node>> ancestorsMap = new HashMap<>();
 
         for (Node node : graph.getNodes()) {
-            ancestorsMap.put(node, new HashSet<>());
+            ancestorsMap.put(node, index.getAncestors(node));
         }
 
-        for (Node n1 : graph.getNodes()) {
-            for (Node n2 : graph.getNodes()) {
-                if (isAncestor(n1, Collections.singleton(n2))) {
-                    ancestorsMap.get(n2).add(n1);
-                }
-            }
+        return ancestorsMap;
+    }
+
+    /**
+     * Returns a reachability index for the graph: the one the graph maintains, if it is an EdgeListGraph that has
+     * built one, or else a new one for use by a single bulk query.
+     *
+     * @return This index.
+     */
+    private ReachabilityIndex reachabilityIndex() {
+        if (graph instanceof EdgeListGraph edgeListGraph) {
+            ReachabilityIndex index = edgeListGraph.getReachabilityIndex();
+            if (index != null) return index;
         }
 
-        return ancestorsMap;
+        return new ReachabilityIndex(graph);
     }
 
     /**
@@ -1317,6 +1318,14 @@ public class Paths implements TetradSerializable {
             return true;
         }
 
+        if (graph instanceof EdgeListGraph edgeListGraph) {
+            ReachabilityIndex index = edgeListGraph.getReachabilityIndex();
+
+            if (index != null && index.contains(b)) {
+                return index.isAncestorOfAny(b, z);
+            }
+        }
+
         Queue<Node> Q = new ArrayDeque<>();
         Set<Node> V = new HashSet<>();
 
@@ -2262,13 +2271,17 @@ public class Paths implements TetradSerializable {
      * @return a boolean
      */
     public boolean existsDirectedCycle() {
-        for (Node node : graph.getNodes()) {
-            if (existsDirectedPath(node, node)) {
-                TetradLogger.getInstance().log("Cycle found at node " + node.getName() + ".");
-                return true;
+        CompactGraph compact = new CsrGraph(graph);
+        if (!compact.existsDirectedCycle()) return false;
+
+        for (int i = 0; i < compact.getNumNodes(); i++) {
+            if (compact.existsDirectedPath(i, i)) {
+                TetradLogger.getInstance().log("Cycle found at node " + compact.getNode(i).getName() + ".");
+                break;
             }
         }
-        return false;
+
+        return true;
     }
 
     /**
@@ -2279,6 +2292,14 @@ public class Paths implements TetradSerializable {
      * @return true if a directed path exists from node1 to node2, false otherwise
      */
     public boolean existsDirectedPath(Node node1, Node node2) {
+        if (graph instanceof EdgeListGraph edgeListGraph) {
+            ReachabilityIndex index = edgeListGraph.getReachabilityIndex();
+
+            if (index != null && index.contains(node1) && index.contains(node2)) {
+                return index.existsDirectedPath(node1, node2);
+            }
+        }
+
         Queue<Node> Q = new LinkedList<>();
         Set<Node> V = new HashSet<>();
 
@@ -2384,15 +2405,7 @@ public class Paths implements TetradSerializable {
      * @return A list of all descendant nodes.
      */
     public Set<Node> getDescendants(Node node) {
-        Set<Node> descendants = new HashSet<>();
-
-        for (Node n : graph.getNodes()) {
-            if (isDescendentOf(n, node)) {
-                descendants.add(n);
-            }
-        }
-
-        return descendants;
+        return new HashSet<>(getDescendants(Collections.singletonList(node)));
     }
 
     /**
@@ -2402,17 +2415,8 @@ public class Paths implements TetradSerializable {
      * @return A list of nodes that are descendants of the given nodes.
      */
     public List<Node> getDescendants(List<Node> nodes) {
-        Set<Node> ancestors = new HashSet<>();
-
-        for (Node n : graph.getNodes()) {
-            for (Node m : nodes) {
-                if (isDescendentOf(n, m)) {
-                    ancestors.add(n);
-                }
-            }
-        }
-
-        return new ArrayList<>(ancestors);
+        CompactGraph compact = new CsrGraph(graph);
+        return toNodes(compact, compact.getDescendants(toBitSet(compact, nodes)));
     }
 
     /**
@@ -2434,15 +2438,7 @@ public class Paths implements TetradSerializable {
      * @return A list of ancestors for the specified `Node`.
      */
     public List<Node> getAncestors(Node node) {
-        Set<Node> ancestors = new HashSet<>();
-
-        for (Node n : graph.getNodes()) {
-            if (isAncestorOf(n, node)) {
-                ancestors.add(n);
-            }
-        }
-
-        return new ArrayList<>(ancestors);
+        return getAncestors(Collections.singletonList(node));
     }
 
     /**
@@ -2452,17 +2448,43 @@ public class Paths implements TetradSerializable {
      * @return a list containing all the ancestors of the given nodes
      */
     public List<Node> getAncestors(List<Node> nodes) {
-        Set<Node> ancestors = new HashSet<>();
+        CompactGraph compact = new CsrGraph(graph);
+        return toNodes(compact, compact.getAncestors(toBitSet(compact, nodes)));
+    }
 
-        for (Node n : graph.getNodes()) {
-            for (Node m : nodes) {
-                if (isAncestorOf(n, m)) {
-                    ancestors.add(n);
-                }
-            }
+    /**
+     * Returns the indices in the given compact graph of those of the given nodes that are in it.
+     *
+     * @param compact The compact graph.
+     * @param nodes   The nodes.
+     * @return A bit set of their indices.
+     */
+    private static BitSet toBitSet(CompactGraph compact, Collection<Node> nodes) {
+        BitSet bits = new BitSet(compact.getNumNodes());
+
+        for (Node node : nodes) {
+            int i = compact.getIndex(node);
+            if (i >= 0) bits.set(i);
+        }
+
+        return bits;
+    }
+
+    /**
+     * Returns the nodes of the given compact graph whose indices are set in the given bit set, in index order.
+     *
+     * @param compact The compact graph.
+     * @param bits    The bit set.
+     * @return A list of these nodes.
+     */
+    private static List<Node> toNodes(CompactGraph compact, BitSet bits) {
+        List<Node> nodes = new ArrayList<>(bits.cardinality());
+
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            nodes.add(compact.getNode(i));
         }
 
-        return new ArrayList<>(ancestors);
+        return nodes;
     }
 
     /**
@@ -0,0 +1,390 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.graph;
+
+import java.util.*;
+
+/**
+ * Maintains the transitive closure of the directed edges of a graph as one bit set of strict descendants per node,
+ * so that directed-path and ancestor queries are a single bit lookup and "is b an ancestor of anything in Z" is one
+ * bit set intersection. The index is kept up to date incrementally as directed edges are added and removed:
+ * <ul>
+ *     <li>Adding i --&gt; j ORs {j} and the descendants of j into the row of every ancestor of i.</li>
+ *     <li>Removing i --&gt; j recomputes only the rows of i and its ancestors, reusing the rows of every other node,
+ *     which cannot have depended on the removed edge.</li>
+ * </ul>
+ * Non-directed edges do not affect the index. The closure is exact for cyclic graphs as well, though updates are
+ * cheapest when the directed part of the graph is acyclic, which is the usual case for DAGs, CPDAGs, MAGs and PAGs.
+ * Memory is n<sup>2</sup> bits for n nodes; the node set is fixed at construction.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ * @see EdgeListGraph
+ */
+public final class ReachabilityIndex {
+
+    /**
+     * The nodes, in index order.
+     */
+    private final List<Node> nodes;
+
+    /**
+     * A map from nodes to their indices.
+     */
+    private final Map<Node, Integer> indices;
+
+    /**
+     * The children of each node, one entry per directed edge, in no particular order.
+     */
+    private final int[][] children;
+
+    /**
+     * The number of valid entries in each children row.
+     */
+    private final int[] numChildren;
+
+    /**
+     * The strict descendants of each node--that is, the nodes reachable from it by a directed path of length at least
+     * one. A node is in its own row only if it lies on a directed cycle.
+     */
+    private final BitSet[] descendants;
+
+    /**
+     * Constructs the index for the directed edges of the given graph.
+     *
+     * @param graph The graph.
+     */
+    public ReachabilityIndex(Graph graph) {
+        this.nodes = new ArrayList<>(graph.getNodes());
+        this.indices = CsrGraph.indexMap(this.nodes);
+
+        int n = this.nodes.size();
+        this.children = new int[n][];
+        this.numChildren = new int[n];
+        this.descendants = new BitSet[n];
+
+        for (int i = 0; i < n; i++) {
+            this.children[i] = new int[2];
+            this.descendants[i] = new BitSet(n);
+        }
+
+        for (Edge edge : graph.getEdges()) {
+            if (!Edges.isDirectedEdge(edge)) continue;
+            Integer tail = this.indices.get(Edges.getDirectedEdgeTail(edge));
+            Integer head = this.indices.get(Edges.getDirectedEdgeHead(edge));
+            if (tail == null || head == null) continue;
+            addChild(tail, head);
+        }
+
+        computeClosure();
+    }
+
+    /**
+     * Constructs a copy of the given index.
+     *
+     * @param index The index to copy.
+     */
+    public ReachabilityIndex(ReachabilityIndex index) {
+        this.nodes = index.nodes;
+        this.indices = index.indices;
+
+        int n = this.nodes.size();
+        this.children = new int[n][];
+        this.numChildren = Arrays.copyOf(index.numChildren, n);
+        this.descendants = new BitSet[n];
+
+        for (int i = 0; i < n; i++) {
+            this.children[i] = Arrays.copyOf(index.children[i], index.children[i].length);
+            this.descendants[i] = (BitSet) index.descendants[i].clone();
+        }
+    }
+
+    /**
+     * Returns true iff the given node is indexed.
+     *
+     * @param node The node.
+     * @return True if so.
+     */
+    public boolean contains(Node node) {
+        return this.indices.containsKey(node);
+    }
+
+    /**
+     * Records the addition of the directed edge tail --&gt; head.
+     *
+     * @param tail The tail.
+     * @param head The head.
+     * @throws IllegalArgumentException If either node is not indexed.
+     */
+    public void addDirectedEdge(Node tail, Node head) {
+        int i = indexOf(tail);
+        int j = indexOf(head);
+
+        addChild(i, j);
+
+        if (i != j && this.descendants[i].get(j)) {
+            return;
+        }
+
+        BitSet added = (BitSet) this.descendants[j].clone();
+        added.set(j);
+
+        for (int a = 0; a < this.descendants.length; a++) {
+            if (a == i || this.descendants[a].get(i)) {
+                this.descendants[a].or(added);
+            }
+        }
+    }
+
+    /**
+     * Records the removal of the directed edge tail --&gt; head.
+     *
+     * @param tail The tail.
+     * @param head The head.
+     * @throws IllegalArgumentException If either node is not indexed.
+     */
+    public void removeDirectedEdge(Node tail, Node head) {
+        int i = indexOf(tail);
+        int j = indexOf(head);
+
+        if (!removeChild(i, j)) {
+            return;
+        }
+
+        BitSet affected = new BitSet(this.descendants.length);
+
+        for (int a = 0; a < this.descendants.length; a++) {
+            if (a == i || this.descendants[a].get(i)) {
+                affected.set(a);
+            }
+        }
+
+        recompute(affected);
+    }
+
+    /**
+     * Returns true iff there is a directed path of length at least one from node1 to node2.
+     *
+     * @param node1 The first node.
+     * @param node2 The second node.
+     * @return True if so; false if not or if either node is not indexed.
+     */
+    public boolean existsDirectedPath(Node node1, Node node2) {
+        Integer i = this.indices.get(node1);
+        Integer j = this.indices.get(node2);
+        return i != null && j != null && this.descendants[i].get(j);
+    }
+
+    /**
+     * Returns true iff node1 == node2 or there is a directed path from node1 to node2.
+     *
+     * @param node1 The first node.
+     * @param node2 The second node.
+     * @return True if so.
+     */
+    public boolean isAncestorOf(Node node1, Node node2) {
+        return node1 == node2 || existsDirectedPath(node1, node2);
+    }
+
+    /**
+     * Returns true iff b is an ancestor of some node in z (including b being in z).
+     *
+     * @param b The node.
+     * @param z The nodes.
+     * @return True if so.
+     */
+    public boolean isAncestorOfAny(Node b, Collection<Node> z) {
+        if (z.contains(b)) return true;
+
+        Integer i = this.indices.get(b);
+        if (i == null) return false;
+
+        BitSet row = this.descendants[i];
+
+        for (Node node : z) {
+            Integer j = this.indices.get(node);
+            if (j != null && row.get(j)) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the descendants of the given node, including the node itself.
+     *
+     * @param node The node.
+     * @return A new set of these nodes.
+     */
+    public Set<Node> getDescendants(Node node) {
+        int i = indexOf(node);
+        Set<Node> result = new HashSet<>();
+        result.add(node);
+
+        BitSet row = this.descendants[i];
+
+        for (int j = row.nextSetBit(0); j >= 0; j = row.nextSetBit(j + 1)) {
+            result.add(this.nodes.get(j));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the ancestors of the given node, including the node itself.
+     *
+     * @param node The node.
+     * @return A new set of these nodes.
+     */
+    public Set<Node> getAncestors(Node node) {
+        int j = indexOf(node);
+        Set<Node> result = new HashSet<>();
+        result.add(node);
+
+        for (int a = 0; a < this.descendants.length; a++) {
+            if (this.descendants[a].get(j)) {
+                result.add(this.nodes.get(a));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the index of the given node.
+     */
+    private int indexOf(Node node) {
+        Integer i = this.indices.get(node);
+
+        if (i == null) {
+            throw new IllegalArgumentException("Node not in reachability index: " + node);
+        }
+
+        return i;
+    }
+
+    /**
+     * Adds j to the children of i.
+     */
+    private void addChild(int i, int j) {
+        if (this.numChildren[i] == this.children[i].length) {
+            this.children[i] = Arrays.copyOf(this.children[i], 2 * this.children[i].length);
+        }
+
+        this.children[i][this.numChildren[i]++] = j;
+    }
+
+    /**
+     * Removes one occurrence of j from the children of i.
+     */
+    private boolean removeChild(int i, int j) {
+        int[] row = this.children[i];
+
+        for (int k = 0; k < this.numChildren[i]; k++) {
+            if (row[k] == j) {
+                row[k] = row[--this.numChildren[i]];
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Computes every row from scratch: in reverse topological order if the directed edges are acyclic, otherwise by
+     * recomputing all rows.
+     */
+    private void computeClosure() {
+        int n = this.descendants.length;
+        int[] inDegree = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < this.numChildren[i]; k++) {
+                inDegree[this.children[i][k]]++;
+            }
+        }
+
+        int[] order = new int[n];
+        int head = 0, tail = 0;
+
+        for (int i = 0; i < n; i++) {
+            if (inDegree[i] == 0) order[tail++] = i;
+        }
+
+        while (head < tail) {
+            int t = order[head++];
+
+            for (int k = 0; k < this.numChildren[t]; k++) {
+                if (--inDegree[this.children[t][k]] == 0) order[tail++] = this.children[t][k];
+            }
+        }
+
+        if (tail < n) {
+            BitSet all = new BitSet(n);
+            all.set(0, n);
+            recompute(all);
+            return;
+        }
+
+        for (int p = n - 1; p >= 0; p--) {
+            int v = order[p];
+            BitSet row = this.descendants[v];
+
+            for (int k = 0; k < this.numChildren[v]; k++) {
+                int c = this.children[v][k];
+                row.set(c);
+                row.or(this.descendants[c]);
+            }
+        }
+    }
+
+    /**
+     * Recomputes the rows of the affected nodes by search, taking the rows of unaffected nodes as already correct.
+     */
+    private void recompute(BitSet affected) {
+        int n = this.descendants.length;
+        int[] stack = new int[n];
+
+        for (int a = affected.nextSetBit(0); a >= 0; a = affected.nextSetBit(a + 1)) {
+            BitSet row = new BitSet(n);
+            int top = 0;
+            stack[top++] = a;
+
+            while (top > 0) {
+                int t = stack[--top];
+
+                for (int k = 0; k < this.numChildren[t]; k++) {
+                    int c = this.children[t][k];
+                    if (row.get(c)) continue;
+                    row.set(c);
+
+                    if (affected.get(c)) {
+                        stack[top++] = c;
+                    } else {
+                        row.or(this.descendants[c]);
+                    }
+                }
+            }
+
+            this.descendants[a] = row;
+        }
+    }
+}
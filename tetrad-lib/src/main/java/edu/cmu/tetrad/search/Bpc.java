@@ -65,6 +65,10 @@ import java.util.*;
  * 16, 575-577.
  * <p>
  * This class is not configured to respect knowledge of forbidden and required edges.
+ * <p>
+ * Unlike Fofc, BPC tests its tetrads one at a time through a TetradTest, since its rules stop at the first tetrad that
+ * decides them and the tests need not be delta tests. With the delta test, TetradTestContinuous still keeps one
+ * DeltaTetradTest, so fourth moments are cached across tests, but they are not evaluated in parallel batches.
  *
  * @author Ricardo Silva
  * @version $Id: $Id
@@ -3,6 +3,7 @@ package edu.cmu.tetrad.search;
 import edu.cmu.tetrad.algcomparison.algorithm.oracle.cpdag.RestrictedBoss;
 import edu.cmu.tetrad.algcomparison.independence.IndependenceWrapper;
 import edu.cmu.tetrad.algcomparison.score.ScoreWrapper;
+import edu.cmu.tetrad.annotation.AnnotatedClassUtils;
 import edu.cmu.tetrad.data.*;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.search.score.Score;
@@ -95,6 +96,11 @@ public class Cstar {
      */
     private File newDir = null;
 
+    /**
+     * The approximate number of bytes the in-memory mode may hold in live subsamples at once.
+     */
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+
     /**
      * Constructor.
      *
@@ -192,14 +198,7 @@ public class Cstar {
      * @see Record
      */
     public LinkedList<LinkedList<Record>> getRecords(DataSet dataSet, List<Node> possibleCauses, List<Node> possibleEffects, int topBracket, String path) {
-        if (topBracket < 1) {
-            throw new IllegalArgumentException("Top bracket must be at least 1.");
-        }
-
-        if (topBracket > possibleCauses.size()) {
-            throw new IllegalArgumentException("Top bracket (q) is too large; it is " + topBracket + " but the number of possible causes is " + possibleCauses.size());
-        }
-
+        checkTopBracket(topBracket, possibleCauses);
         this.topBracket = topBracket;
 
         if (path == null || path.isEmpty()) {
@@ -245,8 +244,6 @@ public class Cstar {
         possibleEffects = GraphUtils.replaceNodes(possibleEffects, dataSet.getVariables());
         possibleCauses = GraphUtils.replaceNodes(possibleCauses, dataSet.getVariables());
 
-        LinkedList<LinkedList<Record>> allRecords = new LinkedList<>();
-
         TetradLogger.getInstance().log("Results directory = " + newDir.getAbsolutePath());
 
         if (new File(origDir, "possible.causes.txt").exists() && new File(newDir, "possible.causes.txt").exists()) {
@@ -302,7 +299,6 @@ public class Cstar {
                 TetradLogger.getInstance().log("\nRunning subsample " + (this.subsample + 1) + " of " + Cstar.this.numSubsamples + ".");
 
                 try {
-                    BootstrapSampler sampler = new BootstrapSampler();
                     DataSet sample;
                     Graph cpdag;
                     double[][] effects;
@@ -313,46 +309,18 @@ public class Cstar {
                         effects = loadMatrix(new File(origDir, "effects." + (this.subsample + 1) + ".txt"));
                     } else {
                         TetradLogger.getInstance().log("Sampling data for index " + (this.subsample + 1));
-
-                        if (Cstar.this.sampleStyle == SampleStyle.BOOTSTRAP) {
-                            sampler.setWithoutReplacements(false);
-                            sample = sampler.sample(this._dataSet, this._dataSet.getNumRows() / 2);
-                        } else if (Cstar.this.sampleStyle == SampleStyle.SUBSAMPLE) {
-                            sampler.setWithoutReplacements(true);
-                            sample = sampler.sample(this._dataSet, this._dataSet.getNumRows() / 2);
-                        } else {
-                            throw new IllegalArgumentException("That type of sample is not configured: " + Cstar.this.sampleStyle);
-                        }
-
-                        if (Cstar.this.cpdagAlgorithm == CpdagAlgorithm.PC_STABLE) {
-                            TetradLogger.getInstance().log("Running PC-Stable for index " + (this.subsample + 1));
-                            cpdag = getPatternPcStable(sample);
-                        } else if (Cstar.this.cpdagAlgorithm == CpdagAlgorithm.FGES) {
-                            TetradLogger.getInstance().log("Running FGES for index " + (this.subsample + 1));
-                            cpdag = getPatternFges(sample);
-                        } else if (Cstar.this.cpdagAlgorithm == CpdagAlgorithm.BOSS) {
-                            TetradLogger.getInstance().log("Running BOSS for index " + (this.subsample + 1));
-                            cpdag = getPatternBoss(sample);
-                        } else if (Cstar.this.cpdagAlgorithm == CpdagAlgorithm.RESTRICTED_BOSS) {
-                            TetradLogger.getInstance().log("Running Restricted BOSS for index " + (this.subsample + 1));
-                            cpdag = getPatternRestrictedBoss(sample, this._dataSet);
-                        } else {
-                            throw new IllegalArgumentException("That type of of cpdag algorithm is not configured: " + Cstar.this.cpdagAlgorithm);
-                        }
+                        sample = sample(this._dataSet);
+                        cpdag = searchCpdag(sample, sample, this._dataSet, this.subsample);
 
                         Ida ida = new Ida(sample, cpdag, this.possibleCauses);
 
-                        effects = new double[this.possibleCauses.size()][this.possibleEffects.size()];
+                        // Subsamples already run in parallel.
+                        if (Cstar.this.parallelized) {
+                            ida.setNumThreads(1);
+                        }
 
                         TetradLogger.getInstance().log("Running IDA for index " + (this.subsample + 1));
-                        for (int e = 0; e < this.possibleEffects.size(); e++) {
-                            Map<Node, Double> minEffects = ida.calculateMinimumTotalEffectsOnY(this.possibleEffects.get(e));
-
-                            for (int c = 0; c < this.possibleCauses.size(); c++) {
-                                final Double _e = minEffects.get(this.possibleCauses.get(c));
-                                effects[c][e] = _e != null ? _e : 0.0;
-                            }
-                        }
+                        effects = ida.calculateMinimumTotalEffects(this.possibleEffects);
                     }
 
                     TetradLogger.getInstance().log("Saving CPDAG and effects for index " + (this.subsample + 1));
@@ -384,84 +352,104 @@ public class Cstar {
             throw new RuntimeException(e);
         }
 
-        List<List<Double>> doubles = new ArrayList<>();
+        EffectRanks ranks = new EffectRanks(possibleCauses.size(), possibleEffects.size(), this.topBracket);
 
         for (int subsample = 0; subsample < this.numSubsamples; subsample++) {
-            double[][] effects = allEffects.get(subsample);
-
-            if (effects.length != possibleCauses.size() || effects[0].length != possibleEffects.size()) {
-                throw new IllegalStateException("Length of subsample " + (subsample + 1) + "does not match the number of possible causes.");
-            }
+            ranks.add(allEffects.get(subsample), subsample);
+        }
 
-            List<Double> _doubles = new ArrayList<>();
+        return makeRecords(possibleCauses, possibleEffects, ranks);
+    }
 
-            for (int c = 0; c < possibleCauses.size(); c++) {
-                for (int e = 0; e < possibleEffects.size(); e++) {
-                    _doubles.add(effects[c][e]);
-                }
-            }
+    /**
+     * Returns records for a set of variables with expected number of false positives bounded by q, keeping everything
+     * in memory. Nothing is written to or read from disk. The covariance matrix of each subsample is computed once and
+     * shared by the CPDAG search (where the test or score accepts a covariance matrix) and by IDA, and the effects of
+     * each subsample are folded into running counts as soon as they are available and then dropped. The number of
+     * subsamples held in memory at once is bounded by the memory budget.
+     *
+     * @param dataSet         The full datasets to search over.
+     * @param possibleCauses  A set of variables in the datasets over which to search.
+     * @param possibleEffects The effect variables.
+     * @param topBracket      The top bracket (q).
+     * @return a {@link java.util.LinkedList} object
+     * @see Record
+     * @see #setMemoryBudget(long)
+     */
+    public LinkedList<LinkedList<Record>> getRecords(DataSet dataSet, List<Node> possibleCauses, List<Node> possibleEffects, int topBracket) {
+        checkTopBracket(topBracket, possibleCauses);
+        this.topBracket = topBracket;
+        this.newDir = null;
 
-            _doubles.sort((o1, o2) -> Double.compare(o2, o1));
-            doubles.add(_doubles);
-        }
+        List<Node> effects = GraphUtils.replaceNodes(possibleEffects, dataSet.getVariables());
+        List<Node> causes = GraphUtils.replaceNodes(possibleCauses, dataSet.getVariables());
 
-        try {
-            if (Cstar.this.verbose) {
-                TetradLogger.getInstance().log("Examining top bracket = " + this.topBracket + ".");
-            }
+        EffectRanks ranks = new EffectRanks(causes.size(), effects.size(), this.topBracket);
 
-            List<Tuple> tuples = new ArrayList<>();
+        // The pseudoinverse tests work from the rows of the data, not the covariance matrix.
+        boolean shareCovariance = switch (this.cpdagAlgorithm) {
+            case PC_STABLE -> AnnotatedClassUtils.acceptsCovariance(this.test) && !this.parameters.getBoolean(Params.USE_PSEUDOINVERSE);
+            case FGES, BOSS -> AnnotatedClassUtils.acceptsCovariance(this.score);
+            default -> false;
+        };
 
-            for (int e = 0; e < possibleEffects.size(); e++) {
-                for (int c = 0; c < possibleCauses.size(); c++) {
-                    int count = 0;
+        int parallelism = this.parallelized ? Runtime.getRuntime().availableProcessors() : 1;
+        int numAlive = (int) Math.max(1, Math.min(parallelism, this.memoryBudget / subsampleBytes(dataSet, causes.size(), effects.size())));
 
-                    for (int subsample = 0; subsample < Cstar.this.numSubsamples; subsample++) {
-                        double cutoff = doubles.get(subsample).get(this.topBracket * possibleEffects.size() - 1);
+        if (this.verbose) {
+            TetradLogger.getInstance().log("Running up to " + numAlive + " subsamples at a time in memory.");
+        }
 
-                        if (allEffects.get(subsample)[c][e] >= cutoff) {
-                            count++;
-                        }
-                    }
+        // Random numbers are per thread, so each subsample gets a seed drawn here, in order, to make its sample
+        // independent of which worker runs it.
+        long[] seeds = new long[this.numSubsamples];
 
-                    double pi = count / ((double) Cstar.this.numSubsamples);
-                    if (pi <= 0) continue;
-                    Node cause = possibleCauses.get(c);
-                    Node effect = possibleEffects.get(e);
-                    tuples.add(new Tuple(cause, effect, pi, avgMinEffect(possibleCauses, possibleEffects,
-                            allEffects, cause, effect)));
-                }
-            }
+        for (int subsample = 0; subsample < this.numSubsamples; subsample++) {
+            seeds[subsample] = RandomUtil.getInstance().nextLong();
+        }
 
-            tuples.sort((o1, o2) -> {
-                if (o1.getPi() == o2.getPi()) {
-                    return Double.compare(o2.getMinBeta(), o1.getMinBeta());
-                } else {
-                    return Double.compare(o2.getPi(), o1.getPi());
-                }
-            });
+        ForkJoinPool pool = new ForkJoinPool(numAlive);
 
-            LinkedList<Record> records = new LinkedList<>();
+        try {
+            for (int start = 0; start < this.numSubsamples; start += numAlive) {
+                List<Callable<double[][]>> tasks = new ArrayList<>();
 
-            for (Tuple tuple : tuples) {
-                double avg = tuple.getMinBeta();
+                for (int subsample = start; subsample < Math.min(start + numAlive, this.numSubsamples); subsample++) {
+                    int _subsample = subsample;
+                    tasks.add(() -> subsampleEffects(dataSet, causes, effects, _subsample, seeds[_subsample], shareCovariance));
+                }
 
-                Node causeNode = tuple.getCauseNode();
-                Node effectNode = tuple.getEffectNode();
+                List<Future<double[][]>> futures = pool.invokeAll(tasks);
 
-                if (tuple.getMinBeta() > selectionAlpha) {
-                    records.add(new Record(causeNode, effectNode, tuple.getPi(), avg, possibleCauses.size(), possibleEffects.size()));
+                for (int i = 0; i < futures.size(); i++) {
+                    ranks.add(futures.get(i).get(), start + i);
                 }
             }
-
-            allRecords.add(records);
-        } catch (Exception e) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
         }
 
-        allRecords.sort(Comparator.comparingDouble(List::size));
+        return makeRecords(causes, effects, ranks);
+    }
 
-        return allRecords;
+    /**
+     * Sets the approximate number of bytes the in-memory mode may hold in live subsamples at once. At least one
+     * subsample is always run. The default is half of the maximum heap size.
+     *
+     * @param memoryBudget The budget in bytes.
+     * @see #getRecords(DataSet, List, List, int)
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        if (memoryBudget < 1) {
+            throw new IllegalArgumentException("Memory budget must be at least 1 byte: " + memoryBudget);
+        }
+
+        this.memoryBudget = memoryBudget;
     }
 
     /**
@@ -609,35 +597,6 @@ public class Cstar {
         }
     }
 
-    /**
-     * Calculates the average minimum effect for a given cause and effect node.
-     *
-     * @param possibleCauses  the list of possible cause nodes
-     * @param possibleEffects the list of possible effect nodes
-     * @param allEffects      the list of effect matrices
-     * @param causeNode       the cause node
-     * @param effectNode      the effect node
-     * @return the average minimum effect
-     * @throws NullPointerException if allEffects is null
-     */
-    private double avgMinEffect(List<Node> possibleCauses, List<Node> possibleEffects, List<double[][]> allEffects, Node causeNode, Node effectNode) {
-        List<Double> f = new ArrayList<>();
-
-        if (allEffects == null) {
-            throw new NullPointerException("effects null");
-        }
-
-        for (int k = 0; k < this.numSubsamples; k++) {
-            int c = possibleCauses.indexOf(causeNode);
-            int e = possibleEffects.indexOf(effectNode);
-            f.add(allEffects.get(k)[c][e]);
-        }
-
-        double[] _f = new double[f.size()];
-        for (int b = 0; b < f.size(); b++) _f[b] = f.get(b);
-        return StatUtils.mean(_f);
-    }
-
     /**
      * Returns a text table from the given records
      *
@@ -692,13 +651,168 @@ public class Cstar {
         return header + table;
     }
 
+    /**
+     * Checks that the top bracket is in range for the given possible causes.
+     *
+     * @param topBracket     The top bracket (q).
+     * @param possibleCauses The possible causes.
+     */
+    private void checkTopBracket(int topBracket, List<Node> possibleCauses) {
+        if (topBracket < 1) {
+            throw new IllegalArgumentException("Top bracket must be at least 1.");
+        }
+
+        if (topBracket > possibleCauses.size()) {
+            throw new IllegalArgumentException("Top bracket (q) is too large; it is " + topBracket + " but the number of possible causes is " + possibleCauses.size());
+        }
+    }
+
+    /**
+     * Turns the accumulated effect ranks into the list of records for the CSTaR table.
+     *
+     * @param possibleCauses  The possible causes.
+     * @param possibleEffects The possible effects.
+     * @param ranks           The ranks accumulated over all subsamples.
+     * @return The records.
+     */
+    private LinkedList<LinkedList<Record>> makeRecords(List<Node> possibleCauses, List<Node> possibleEffects, EffectRanks ranks) {
+        if (this.verbose) {
+            TetradLogger.getInstance().log("Examining top bracket = " + this.topBracket + ".");
+        }
+
+        List<Tuple> tuples = new ArrayList<>();
+
+        for (int e = 0; e < possibleEffects.size(); e++) {
+            for (int c = 0; c < possibleCauses.size(); c++) {
+                double pi = ranks.getPi(c, e);
+                if (pi <= 0) continue;
+                tuples.add(new Tuple(possibleCauses.get(c), possibleEffects.get(e), pi, ranks.getAvgMinEffect(c, e)));
+            }
+        }
+
+        tuples.sort((o1, o2) -> {
+            if (o1.getPi() == o2.getPi()) {
+                return Double.compare(o2.getMinBeta(), o1.getMinBeta());
+            } else {
+                return Double.compare(o2.getPi(), o1.getPi());
+            }
+        });
+
+        LinkedList<Record> records = new LinkedList<>();
+
+        for (Tuple tuple : tuples) {
+            if (tuple.getMinBeta() > selectionAlpha) {
+                records.add(new Record(tuple.getCauseNode(), tuple.getEffectNode(), tuple.getPi(), tuple.getMinBeta(),
+                        possibleCauses.size(), possibleEffects.size()));
+            }
+        }
+
+        LinkedList<LinkedList<Record>> allRecords = new LinkedList<>();
+        allRecords.add(records);
+        return allRecords;
+    }
+
+    /**
+     * Draws a sample of half the rows of the given dataset, according to the sample style.
+     *
+     * @param dataSet The full dataset.
+     * @return The sample.
+     */
+    private DataSet sample(DataSet dataSet) {
+        BootstrapSampler sampler = new BootstrapSampler();
+
+        if (this.sampleStyle == SampleStyle.BOOTSTRAP) {
+            sampler.setWithoutReplacements(false);
+        } else if (this.sampleStyle == SampleStyle.SUBSAMPLE) {
+            sampler.setWithoutReplacements(true);
+        } else {
+            throw new IllegalArgumentException("That type of sample is not configured: " + this.sampleStyle);
+        }
+
+        return sampler.sample(dataSet, dataSet.getNumRows() / 2);
+    }
+
+    /**
+     * Runs the configured CPDAG algorithm on one subsample.
+     *
+     * @param sample    The subsample.
+     * @param data      The data the test or score is built from; either the subsample or its covariance matrix.
+     * @param dataSet   The full dataset.
+     * @param subsample The index of the subsample.
+     * @return The CPDAG.
+     */
+    private Graph searchCpdag(DataSet sample, DataModel data, DataSet dataSet, int subsample) throws InterruptedException {
+        if (this.cpdagAlgorithm == CpdagAlgorithm.PC_STABLE) {
+            TetradLogger.getInstance().log("Running PC-Stable for index " + (subsample + 1));
+            return getPatternPcStable(data);
+        } else if (this.cpdagAlgorithm == CpdagAlgorithm.FGES) {
+            TetradLogger.getInstance().log("Running FGES for index " + (subsample + 1));
+            return getPatternFges(data);
+        } else if (this.cpdagAlgorithm == CpdagAlgorithm.BOSS) {
+            TetradLogger.getInstance().log("Running BOSS for index " + (subsample + 1));
+            return getPatternBoss(data);
+        } else if (this.cpdagAlgorithm == CpdagAlgorithm.RESTRICTED_BOSS) {
+            TetradLogger.getInstance().log("Running Restricted BOSS for index " + (subsample + 1));
+            return getPatternRestrictedBoss(sample, dataSet);
+        } else {
+            throw new IllegalArgumentException("That type of of cpdag algorithm is not configured: " + this.cpdagAlgorithm);
+        }
+    }
+
+    /**
+     * Runs one subsample in memory, returning the minimum total effects of the possible causes on the possible
+     * effects.
+     *
+     * @param dataSet         The full dataset.
+     * @param possibleCauses  The possible causes.
+     * @param possibleEffects The possible effects.
+     * @param subsample       The index of the subsample.
+     * @param seed            The seed for drawing the subsample.
+     * @param shareCovariance Whether the CPDAG search should use the covariance matrix computed for IDA.
+     * @return The effects, indexed by cause and then effect.
+     */
+    private double[][] subsampleEffects(DataSet dataSet, List<Node> possibleCauses, List<Node> possibleEffects,
+                                        int subsample, long seed, boolean shareCovariance) throws InterruptedException {
+        TetradLogger.getInstance().log("\nRunning subsample " + (subsample + 1) + " of " + this.numSubsamples + ".");
+
+        RandomUtil.getInstance().setSeed(seed);
+        DataSet sample = sample(dataSet);
+        ICovarianceMatrix covariances = new CovarianceMatrix(sample);
+        Graph cpdag = searchCpdag(sample, shareCovariance ? covariances : sample, dataSet, subsample);
+
+        Ida ida = new Ida(covariances, cpdag, possibleCauses);
+
+        // Subsamples already run in parallel.
+        if (this.parallelized) {
+            ida.setNumThreads(1);
+        }
+
+        TetradLogger.getInstance().log("Running IDA for index " + (subsample + 1));
+        return ida.calculateMinimumTotalEffects(possibleEffects);
+    }
+
+    /**
+     * Returns a rough estimate of the bytes one live subsample needs: the sampled data, its covariance matrix with
+     * room for the search's own copy, and the effects.
+     *
+     * @param dataSet    The full dataset.
+     * @param numCauses  The number of possible causes.
+     * @param numEffects The number of possible effects.
+     * @return The estimate.
+     */
+    private static long subsampleBytes(DataSet dataSet, int numCauses, int numEffects) {
+        long numVars = dataSet.getNumColumns();
+        long numRows = dataSet.getNumRows() / 2;
+        return Double.BYTES * (numRows * numVars + 2 * numVars * numVars + (long) numCauses * numEffects);
+    }
+
     /**
      * Retrieves a stable pattern graph using the PC algorithm.
      *
-     * @param sample the dataset to use for the PC algorithm
+     * @param sample the subsample, or its covariance matrix, to use for the PC algorithm
      * @return the graph representing the stable pattern
      */
-    private Graph getPatternPcStable(DataSet sample) throws InterruptedException {
+    private Graph getPatternPcStable(DataModel sample) throws InterruptedException {
         IndependenceTest test = this.test.getTest(sample, parameters);
         test.setVerbose(false);
         Pc pc = new Pc(test);
@@ -710,10 +824,10 @@ public class Cstar {
     /**
      * Retrieves a pattern graph using the FGES (Fast Greedy Equivalence Search) algorithm.
      *
-     * @param sample the dataset to use for the FGES algorithm
+     * @param sample the subsample, or its covariance matrix, to use for the FGES algorithm
      * @return the graph representing the pattern
      */
-    private Graph getPatternFges(DataSet sample) {
+    private Graph getPatternFges(DataModel sample) {
         Score score = this.score.getScore(sample, parameters);
         Fges fges = new Fges(score);
         fges.setVerbose(false);
@@ -727,10 +841,10 @@ public class Cstar {
     /**
      * Retrieves a pattern graph using the BOSS (Bayesian Optimal Structure Search) algorithm.
      *
-     * @param sample the dataset to use for the BOSS algorithm
+     * @param sample the subsample, or its covariance matrix, to use for the BOSS algorithm
      * @return the graph representing the pattern
      */
-    private Graph getPatternBoss(DataSet sample) throws InterruptedException {
+    private Graph getPatternBoss(DataModel sample) throws InterruptedException {
         Score score = this.score.getScore(sample, parameters);
         PermutationSearch boss = new PermutationSearch(new Boss(score));
         boss.setSeed(parameters.getLong(Params.SEED));
@@ -1007,6 +1121,122 @@ public class Cstar {
         }
     }
 
+    /**
+     * Running per-subsample statistics of the effect matrices: for each cause and effect, how often the effect was in
+     * the top bracket of its subsample, and the sum of its values. Subsamples are added in order, so the
+     * results do not depend on how the subsamples were scheduled.
+     */
+    private static class EffectRanks {
+
+        /**
+         * The number of possible causes.
+         */
+        private final int numCauses;
+
+        /**
+         * The number of possible effects.
+         */
+        private final int numEffects;
+
+        /**
+         * The number of the largest effects in a subsample that count as being in its top bracket.
+         */
+        private final int bracketSize;
+
+        /**
+         * The number of subsamples for which each effect was in the top bracket, indexed by c * numEffects + e.
+         */
+        private final int[] topCounts;
+
+        /**
+         * The sum of the values of each effect, indexed by c * numEffects + e; NaN if any value was NaN.
+         */
+        private final double[] sums;
+
+        /**
+         * A scratch buffer for finding the cutoff of a subsample.
+         */
+        private final double[] sorted;
+
+        /**
+         * The number of subsamples added.
+         */
+        private int numSubsamples = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param numCauses  The number of possible causes.
+         * @param numEffects The number of possible effects.
+         * @param topBracket The top bracket (q).
+         */
+        private EffectRanks(int numCauses, int numEffects, int topBracket) {
+            this.numCauses = numCauses;
+            this.numEffects = numEffects;
+            this.bracketSize = topBracket * numEffects;
+            this.topCounts = new int[numCauses * numEffects];
+            this.sums = new double[numCauses * numEffects];
+            this.sorted = new double[numCauses * numEffects];
+        }
+
+        /**
+         * Adds the effects of the next subsample.
+         *
+         * @param effects   The effects, indexed by cause and then effect.
+         * @param subsample The index of the subsample, for error messages.
+         */
+        private void add(double[][] effects, int subsample) {
+            if (effects.length != numCauses || effects[0].length != numEffects) {
+                throw new IllegalStateException("Length of subsample " + (subsample + 1) + "does not match the number of possible causes.");
+            }
+
+            for (int c = 0; c < numCauses; c++) {
+                System.arraycopy(effects[c], 0, sorted, c * numEffects, numEffects);
+            }
+
+            Arrays.sort(sorted);
+            double cutoff = sorted[sorted.length - bracketSize];
+
+            for (int c = 0; c < numCauses; c++) {
+                for (int e = 0; e < numEffects; e++) {
+                    int i = c * numEffects + e;
+                    double effect = effects[c][e];
+
+                    if (effect >= cutoff) {
+                        topCounts[i]++;
+                    }
+
+                    sums[i] += effect;
+                }
+            }
+
+            numSubsamples++;
+        }
+
+        /**
+         * Returns the fraction of subsamples in which the given effect was in the top bracket.
+         *
+         * @param c The index of the cause.
+         * @param e The index of the effect.
+         * @return This fraction.
+         */
+        private double getPi(int c, int e) {
+            return topCounts[c * numEffects + e] / (double) numSubsamples;
+        }
+
+        /**
+         * Returns the average over subsamples of the given minimum effect, or NaN if it was NaN for any subsample, as
+         * StatUtils.mean gives.
+         *
+         * @param c The index of the cause.
+         * @param e The index of the effect.
+         * @return This average.
+         */
+        private double getAvgMinEffect(int c, int e) {
+            return sums[c * numEffects + e] / numSubsamples;
+        }
+    }
+
     /**
      * A tuple.
      */
@@ -26,12 +26,14 @@ import edu.cmu.tetrad.graph.EdgeListGraph;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.search.utils.MeekRules;
-import org.apache.commons.math3.linear.LUDecomposition;
-import org.apache.commons.math3.linear.RealMatrix;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.CommonOps_MT_DDRM;
+import org.ejml.dense.row.decomposition.lu.LUDecompositionAlt_DDRM;
+import org.ejml.dense.row.linsol.lu.LinearSolverLu_DDRM;
 
 import java.util.List;
 
-import static org.apache.commons.math3.linear.MatrixUtils.*;
 import static org.apache.commons.math3.util.FastMath.*;
 
 /**
@@ -39,12 +41,20 @@ import static org.apache.commons.math3.util.FastMath.*;
  * <p>
  * Bello, K., Aragam, B., &amp; Ravikumar, P. (2022). Dagma: Learning dags via m-matrices and a log-determinant
  * acyclicity characterization. Advances in Neural Information Processing Systems, 35, 8226-8239.
+ * <p>
+ * The optimizer works on dense row-major matrices, updated in place. The matrices for each iteration and the LU
+ * decomposition used for the inverse and the log-determinant are allocated once per search and reused, and for large
+ * numbers of variables the matrix products are multithreaded.
  *
  * @author bryanandrews
  * @version $Id: $Id
  */
 public class Dagma {
 
+    /**
+     * The number of variables at and above which matrix products are multithreaded.
+     */
+    private static final int PARALLEL_THRESHOLD = 128;
     /**
      * The T variable represents an array of doubles.
      */
@@ -89,15 +99,11 @@ public class Dagma {
     /**
      * Represents a private final variable for covariance matrix.
      */
-    private final RealMatrix cov;
+    private final DMatrixRMaj cov;
     /**
      * Represents the list of Node variables.
      */
     private final List<Node> variables;
-    /**
-     * Identity.
-     */
-    private final RealMatrix I;
     /**
      * The variable 'd'.
      */
@@ -114,6 +120,26 @@ public class Dagma {
      * Whether a CPDAG should be returned; otherwise, a DAG is returned.
      */
     private boolean cpdag;
+    /**
+     * The LU decomposition, reused for every inverse and log-determinant.
+     */
+    private LUDecompositionAlt_DDRM lu;
+    /**
+     * The solver for the inverse, using the LU decomposition.
+     */
+    private LinearSolverLu_DDRM solver;
+    /**
+     * Workspace for the M matrix.
+     */
+    private DMatrixRMaj M;
+    /**
+     * Workspace for the inverse of the M matrix.
+     */
+    private DMatrixRMaj Minv;
+    /**
+     * Workspace for matrix products.
+     */
+    private DMatrixRMaj work;
 
     /**
      * Constructor.
@@ -122,9 +148,8 @@ public class Dagma {
      */
     public Dagma(DataSet dataset) {
         this.variables = dataset.getVariables();
-        this.cov = dataset.getCorrelationMatrix().getApacheData();
-        this.d = cov.getRowDimension();
-        this.I = createRealIdentityMatrix(this.d);
+        this.cov = new DMatrixRMaj(dataset.getCorrelationMatrix().toArray());
+        this.d = this.cov.getNumRows();
 
         // tunable parameters
         this.lambda1 = 0.05;
@@ -154,7 +179,13 @@ public class Dagma {
      * @return a Graph object representing the found graph
      */
     public Graph search() {
-        RealMatrix W = createRealMatrix(this.d, this.d);
+        DMatrixRMaj W = new DMatrixRMaj(this.d, this.d);
+
+        this.lu = new LUDecompositionAlt_DDRM();
+        this.solver = new LinearSolverLu_DDRM(this.lu);
+        this.M = new DMatrixRMaj(this.d, this.d);
+        this.Minv = new DMatrixRMaj(this.d, this.d);
+        this.work = new DMatrixRMaj(this.d, this.d);
 
         double mu = this.muInit;
         double lrAdam;
@@ -235,134 +266,145 @@ public class Dagma {
     }
 
     /**
-     * Evaluate value and gradient of the score function.
+     * Evaluate value of the score function.
      *
-     * @param W The RealMatrix to calculate the score for.
+     * @param W The matrix to calculate the score for.
      * @return The calculated score.
      */
-    private double _score(RealMatrix W) {
-        RealMatrix dif = this.I.subtract(W);
-        RealMatrix rhs = this.cov.multiply(dif);
-        return 0.5 * dif.transpose().multiply(rhs).getTrace();
+    private double _score(DMatrixRMaj W) {
+        DMatrixRMaj dif = this.M;
+        CommonOps_DDRM.scale(-1, W, dif);
+        for (int i = 0; i < this.d; i++) {
+            dif.add(i, i, 1);
+        }
+
+        // tr(dif' cov dif) is the sum of the entries of dif times those of cov dif.
+        mult(this.cov, dif, this.work);
+
+        double trace = 0;
+        for (int k = 0; k < dif.data.length; k++) {
+            trace += dif.data[k] * this.work.data[k];
+        }
+
+        return 0.5 * trace;
     }
 
     /**
-     * Evaluate value and gradient of the logdet acyclicity constraint.
+     * Evaluate value of the logdet acyclicity constraint.
      *
-     * @param W the RealMatrix to calculate the score for
+     * @param W the matrix to calculate the score for
      * @param s the value of s
      * @return the calculated value of `_h`
      */
-    private double _h(RealMatrix W, double s) {
-        RealMatrix M = getMMatrix(W, s);
-        return this.d * log(s) - logDet(M);
+    private double _h(DMatrixRMaj W, double s) {
+        getMMatrix(W, s, this.M);
+        return this.d * log(s) - logDet(this.M);
     }
 
     /**
      * Evaluate value of the penalized objective function.
      *
-     * @param W  The RealMatrix representing the input matrix.
+     * @param W  The matrix representing the input matrix.
      * @param mu The value of mu.
      * @param s  The value of s.
      * @return The calculated value of _func.
      */
-    private double _func(RealMatrix W, double mu, double s) {
+    private double _func(DMatrixRMaj W, double mu, double s) {
         double score = _score(W);
         double h = _h(W, s);
         return mu * (score + this.lambda1 * absSum(W)) + h;
     }
 
-
     /**
-     * Update the optimizer parameters using the Adam algorithm.
+     * Update the optimizer parameters using the Adam algorithm, in place.
      *
-     * @param grad The gradient matrix.
+     * @param grad The gradient matrix, replaced by the Adam step direction.
      * @param iter The current iteration count.
      * @param optM The first moment estimate matrix.
      * @param optV The second moment estimate matrix.
      */
-    private void adamUpdate(RealMatrix grad, int iter, RealMatrix optM, RealMatrix optV) {
-
+    private void adamUpdate(DMatrixRMaj grad, int iter, DMatrixRMaj optM, DMatrixRMaj optV) {
         double b1_ = 1 - this.b1;
         double b2_ = 1 - this.b2;
+        double c1 = 1 - pow(this.b1, iter);
+        double c2 = 1 - pow(this.b2, iter);
 
-        for (int i = 0; i < this.d; i++) {
-            for (int j = 0; j < this.d; j++) {
-                double g = grad.getEntry(i, j);
-                double m = optM.getEntry(i, j);
-                double v = optV.getEntry(i, j);
+        double[] g_ = grad.data;
+        double[] m_ = optM.data;
+        double[] v_ = optV.data;
 
-                double a = this.b1 * m + b1_ * g;
-                double b = this.b2 * v + b2_ * pow(g, 2);
+        for (int k = 0; k < this.d * this.d; k++) {
+            double g = g_[k];
 
-                optM.setEntry(i, j, a);
-                optV.setEntry(i, j, b);
-                a /= 1 - pow(this.b1, iter);
-                b /= 1 - pow(this.b2, iter);
+            double a = this.b1 * m_[k] + b1_ * g;
+            double b = this.b2 * v_[k] + b2_ * g * g;
 
-                grad.setEntry(i, j, a / (sqrt(b) + 1e-8));
-            }
+            m_[k] = a;
+            v_[k] = b;
+            a /= c1;
+            b /= c2;
+
+            g_[k] = a / (sqrt(b) + 1e-8);
         }
     }
 
     /**
      * Minimizes the objective function using the specified parameters.
      *
-     * @param W         The RealMatrix representing the input matrix.
+     * @param W         The matrix representing the input matrix, updated in place.
      * @param mu        The value of mu.
      * @param innerIter The number of inner iterations.
      * @param s         The value of s.
      * @param lrAdam    The learning rate for the Adam optimizer.
      * @return true if the optimization is successful, false otherwise.
      */
-    private boolean minimize(RealMatrix W, double mu, int innerIter, double s, double lrAdam) {
-        RealMatrix optM = createRealMatrix(this.d, this.d);
-        RealMatrix optV = createRealMatrix(this.d, this.d);
+    private boolean minimize(DMatrixRMaj W, double mu, int innerIter, double s, double lrAdam) {
+        DMatrixRMaj optM = new DMatrixRMaj(this.d, this.d);
+        DMatrixRMaj optV = new DMatrixRMaj(this.d, this.d);
+        DMatrixRMaj grad = new DMatrixRMaj(this.d, this.d);
 
         double objPrev = 1e16;
         double objNew;
 
-        RealMatrix W_old = W.copy();
-        RealMatrix grad = null;
+        DMatrixRMaj W_old = W.copy();
 
-        for (int iter = 1; iter <= innerIter; iter++) {
-            RealMatrix M = inverse(getMMatrix(W, s));
-            addToEntries(M, 1e-16);
+        double[] w_ = W.data;
+        double[] g_ = grad.data;
+        double[] c_ = this.cov.data;
+        double[] mi_ = this.Minv.data;
 
-            while (notMMatrix(M)) {
+        for (int iter = 1; iter <= innerIter; iter++) {
+            while (!invertMMatrix(W, s)) {
                 if ((iter == 1) || (s <= 0.9)) {
-                    setEntries(W, W_old);
+                    W.setTo(W_old);
                     return true;
                 } else if (lrAdam <= 2e-16) {
-                    addToEntries(W, grad, lrAdam);
+                    CommonOps_DDRM.addEquals(W, lrAdam, grad);
                     return false;
                 } else {
                     lrAdam *= 0.5;
-                    addToEntries(W, grad, lrAdam);
-                    M = inverse(getMMatrix(W, s));
-                    addToEntries(M, 1e-16);
+                    CommonOps_DDRM.addEquals(W, lrAdam, grad);
                 }
             }
 
-            grad = this.cov.multiply(W);
+            mult(this.cov, W, grad);
             for (int i = 0; i < this.d; i++) {
                 for (int j = 0; j < this.d; j++) {
-                    double g = grad.getEntry(i, j);
-                    double c = this.cov.getEntry(i, j);
-                    double w = W.getEntry(i, j);
-                    double mt = M.getEntry(j, i);
+                    int k = i * this.d + j;
+                    double w = w_[k];
+                    double mt = mi_[j * this.d + i];
 
                     double sign = 0;
                     if (w > 0) sign = 1;
                     if (w < 0) sign = -1;
 
-                    grad.setEntry(i, j, mu * (g - c + this.lambda1 * sign) + 2 * w * mt);
+                    g_[k] = mu * (g_[k] - c_[k] + this.lambda1 * sign) + 2 * w * mt;
                 }
             }
 
             // Adam step
             adamUpdate(grad, iter, optM, optV);
-            addToEntries(W, grad, -lrAdam);
+            CommonOps_DDRM.addEquals(W, -lrAdam, grad);
 
             // Check obj convergence
             if (iter % this.checkpoint == 0) {
@@ -376,168 +418,128 @@ public class Dagma {
     }
 
     /**
-     * Calculates the M matrix for a given RealMatrix W and value of s.
+     * Computes the inverse of the M matrix for W and s into Minv, with 1e-16 added to each entry, and returns whether
+     * it is an M-matrix, that is, nonsingular with a nonnegative inverse.
      *
-     * @param W The RealMatrix representing the input matrix.
+     * @param W The matrix representing the input matrix.
      * @param s The value of s.
-     * @return The calculated M matrix.
+     * @return True if so.
      */
-    private RealMatrix getMMatrix(RealMatrix W, double s) {
-        RealMatrix M = this.I.scalarMultiply(s);
+    private boolean invertMMatrix(DMatrixRMaj W, double s) {
+        getMMatrix(W, s, this.M);
 
-        for (int i = 0; i < this.d; i++) {
-            for (int j = 0; j < this.d; j++) {
-                M.addToEntry(i, j, -W.getEntry(i, j) * W.getEntry(i, j));
-            }
+        if (!this.solver.setA(this.M) || this.lu.isSingular()) {
+            return false;
         }
 
-        return M;
-    }
+        this.solver.invert(this.Minv);
 
-    /**
-     * Sets the entries of the matrix A to the values of the matrix B.
-     *
-     * @param A The RealMatrix to be updated.
-     * @param B The RealMatrix containing the new values.
-     */
-    private void setEntries(RealMatrix A, RealMatrix B) {
-        for (int i = 0; i < this.d; i++) {
-            for (int j = 0; j < this.d; j++) {
-                A.setEntry(i, j, B.getEntry(i, j));
-            }
+        double[] m_ = this.Minv.data;
+        boolean mMatrix = true;
+
+        for (int k = 0; k < m_.length; k++) {
+            m_[k] += 1e-16;
+            if (!(m_[k] >= 0)) mMatrix = false;
         }
+
+        return mMatrix;
     }
 
     /**
-     * Adds a constant value to each entry of the provided RealMatrix.
+     * Calculates the M matrix, sI - W * W elementwise, for a given W and value of s.
      *
-     * @param A The RealMatrix to be updated.
-     * @param c The constant value to be added.
+     * @param W The matrix representing the input matrix.
+     * @param s The value of s.
+     * @param M The matrix to hold the result.
      */
-    private void addToEntries(RealMatrix A, double c) {
-        for (int i = 0; i < this.d; i++) {
-            for (int j = 0; j < this.d; j++) {
-                A.addToEntry(i, j, c);
-            }
+    private void getMMatrix(DMatrixRMaj W, double s, DMatrixRMaj M) {
+        double[] w_ = W.data;
+        double[] m_ = M.data;
+
+        for (int k = 0; k < m_.length; k++) {
+            m_[k] = -w_[k] * w_[k];
         }
-    }
 
-    /**
-     * Adds each element of matrix B multiplied by constant c to the corresponding element in matrix A.
-     *
-     * @param A The matrix to be updated.
-     * @param B The matrix containing the elements to be added.
-     * @param c The constant value to multiply with the elements of B before adding to A.
-     */
-    private void addToEntries(RealMatrix A, RealMatrix B, double c) {
         for (int i = 0; i < this.d; i++) {
-            for (int j = 0; j < this.d; j++) {
-                A.addToEntry(i, j, c * B.getEntry(i, j));
-            }
+            m_[i * this.d + i] += s;
         }
     }
 
     /**
-     * Calculates the log determinant of a square RealMatrix.
+     * Calculates the log of the absolute value of the determinant of a square matrix, from the diagonal of its LU
+     * decomposition.
      *
-     * @param M The RealMatrix for which to calculate the log determinant.
-     * @return The log determinant of the given RealMatrix.
-     */
-    private double logDet(RealMatrix M) {
-        assert M.isSquare();
-        int d = M.getRowDimension();
-
-        LUDecomposition lud = new LUDecomposition(M);
-        RealMatrix P = lud.getP();
-        RealMatrix L = lud.getL();
-        RealMatrix U = lud.getU();
-
-        double logDet = log(abs(d - P.getTrace() - 1));
-        for (int i = 0; i < d; i++) {
-            logDet += log(abs(L.getEntry(i, i)));
-            logDet += log(abs(U.getEntry(i, i)));
+     * @param M The matrix for which to calculate the log determinant.
+     * @return The log determinant of the given matrix.
+     */
+    private double logDet(DMatrixRMaj M) {
+        this.lu.decompose(M);
+        DMatrixRMaj LU = this.lu.getLU();
+
+        double logDet = 0;
+        for (int i = 0; i < M.getNumRows(); i++) {
+            logDet += log(abs(LU.get(i, i)));
         }
 
         return logDet;
     }
 
     /**
-     * Checks whether the given RealMatrix is not an M matrix.
-     *
-     * @param M The RealMatrix to check.
-     * @return true if the RealMatrix is not an M matrix, false otherwise.
+     * Multiplies a by b into c, multithreaded for large numbers of variables.
      */
-    private boolean notMMatrix(RealMatrix M) {
-        assert M.isSquare();
-        int d = M.getRowDimension();
-
-        for (int i = 0; i < d; i++) {
-            for (int j = 0; j < d; j++) {
-                if (M.getEntry(i, j) < 0) {
-                    return true;
-                }
-            }
+    private void mult(DMatrixRMaj a, DMatrixRMaj b, DMatrixRMaj c) {
+        if (this.d >= PARALLEL_THRESHOLD) {
+            CommonOps_MT_DDRM.mult(a, b, c);
+        } else {
+            CommonOps_DDRM.mult(a, b, c);
         }
-
-        return false;
     }
 
     /**
-     * Calculates the absolute sum of all elements in a given RealMatrix.
+     * Calculates the absolute sum of all elements in a given matrix.
      *
-     * @param M The RealMatrix for which to calculate the absolute sum.
-     * @return The absolute sum of all elements in the RealMatrix.
+     * @param M The matrix for which to calculate the absolute sum.
+     * @return The absolute sum of all elements in the matrix.
      */
-    private double absSum(RealMatrix M) {
-        assert M.isSquare();
-        int d = M.getRowDimension();
-
+    private double absSum(DMatrixRMaj M) {
         double s = 0;
-        for (int i = 0; i < d; i++) {
-            for (int j = 0; j < d; j++) {
-                s += abs(M.getEntry(i, j));
-            }
+        for (double v : M.data) {
+            s += abs(v);
         }
 
         return s;
     }
 
     /**
-     * Converts a RealMatrix to a Graph representation.
+     * Converts a weight matrix to a Graph representation.
      *
-     * @param W The RealMatrix to convert to a Graph.
-     * @return The Graph representation of the input RealMatrix.
+     * @param W The matrix to convert to a Graph.
+     * @return The Graph representation of the input matrix.
      */
-    private Graph toGraph(RealMatrix W) {
-        RealMatrix W_ = createRealMatrix(this.d, this.d);
-        for (int i = 0; i < this.d; i++) {
-            for (int j = 0; j < this.d; j++) {
-                W_.setEntry(i, j, abs(W.getEntry(i, j)));
-            }
-        }
+    private Graph toGraph(DMatrixRMaj W) {
+        DMatrixRMaj W_ = W.copy();
+        CommonOps_DDRM.abs(W_);
 
         double wThreshold = this.wThreshold;
         double wMin;
 
         do {
             wMin = Double.MAX_VALUE;
-            for (int i = 0; i < this.d; i++) {
-                for (int j = 0; j < this.d; j++) {
-                    double w_ = W_.getEntry(i, j);
-                    if (w_ < wThreshold) {
-                        W_.setEntry(i, j, 0);
-                    } else if (w_ < wMin) {
-                        wMin = w_;
-                    }
+            for (int k = 0; k < W_.data.length; k++) {
+                double w_ = W_.data[k];
+                if (w_ < wThreshold) {
+                    W_.data[k] = 0;
+                } else if (w_ < wMin) {
+                    wMin = w_;
                 }
             }
             wThreshold = wMin + 1e-6;
-        } while (W_.power(this.d).getTrace() > 0);
+        } while (CommonOps_DDRM.trace(power(W_, this.d)) > 0);
 
         Graph graph = new EdgeListGraph(this.variables);
         for (int i = 0; i < this.d; i++) {
             for (int j = 0; j < this.d; j++) {
-                if (W_.getEntry(i, j) == 0) continue;
+                if (W_.get(i, j) == 0) continue;
                 graph.addDirectedEdge(this.variables.get(i), this.variables.get(j));
             }
         }
@@ -550,4 +552,32 @@ public class Dagma {
 
         return graph;
     }
+
+    /**
+     * Returns A to the power p, p &gt;= 1, by repeated squaring.
+     */
+    private DMatrixRMaj power(DMatrixRMaj A, int p) {
+        DMatrixRMaj result = null;
+        DMatrixRMaj square = A.copy();
+        DMatrixRMaj temp = new DMatrixRMaj(this.d, this.d);
+
+        while (true) {
+            if ((p & 1) == 1) {
+                if (result == null) {
+                    result = square.copy();
+                } else {
+                    mult(result, square, temp);
+                    result.setTo(temp);
+                }
+            }
+
+            p >>= 1;
+            if (p == 0) break;
+
+            mult(square, square, temp);
+            square.setTo(temp);
+        }
+
+        return result;
+    }
 }
@@ -30,6 +30,9 @@ import edu.cmu.tetrad.search.utils.GrowShrinkTree;
 import edu.cmu.tetrad.util.StatUtils;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 
 import static org.apache.commons.math3.util.FastMath.*;
 
@@ -59,6 +62,10 @@ public class DirectLingam {
      * the grow-shrink trees
      */
     private final Map<Node, GrowShrinkTree> gsts;
+    /**
+     * the number of threads
+     */
+    private int numThreads = Runtime.getRuntime().availableProcessors();
 
     /**
      * Constructor.
@@ -120,81 +127,219 @@ public class DirectLingam {
 
     /**
      * Performs the search. Returns a graph.
+     * <p>
+     * Residuals are kept as one column array per variable and updated in place as variables are removed, and the
+     * entropy of each residual is cached until it is next updated. The pairwise likelihood ratios are computed in
+     * parallel, one row per task, each pair once.
      *
      * @return a graph
      */
     public Graph search() {
-        List<Node> U = new ArrayList<>(this.variables);
-        Map<Node, double[]> R = new HashMap<>();
+        double[][] R = this.dataset.getDoubleData().transpose().toArray();
+        for (double[] x : R) {
+            standardize(x);
+        }
 
-        double[][] X = this.dataset.getDoubleData().transpose().toArray();
-        for (int i = 0; i < X.length; i++) {
-            standardize(X[i]);
-            R.put(this.variables.get(i), X[i]);
+        int p = R.length;
+        List<Integer> U = new ArrayList<>();
+        for (int i = 0; i < p; i++) {
+            U.add(i);
         }
 
+        double[] H = new double[p];
+        double[][] lr = new double[p][p];
+
         Set<Node> K = new HashSet<>();
         Graph g = new EdgeListGraph(this.variables);
 
-        while (!U.isEmpty()) {
-            Node m = getNext(U, R);
-            U.remove(m);
-            for (Node x : U) {
-                R.put(x, residuals(R.get(x), R.get(m)));
-            }
+        ForkJoinPool pool = new ForkJoinPool(this.numThreads);
+
+        try {
+            pool.invoke(new RowAction(U.size(), i -> H[U.get(i)] = entropy(R[U.get(i)].clone())));
 
-            K.add(m);
-            Set<Node> parents = new HashSet<>();
-            this.gsts.get(m).trace(K, K, parents);
-            for (Node x : parents) {
-                g.addDirectedEdge(x, m);
+            while (!U.isEmpty()) {
+                int m = getNext(U, R, H, lr, pool);
+                U.remove((Integer) m);
+
+                pool.invoke(new RowAction(U.size(), i -> {
+                    int x = U.get(i);
+                    residualize(R[x], R[m]);
+                    H[x] = entropy(R[x].clone());
+                }));
+
+                Node node = this.variables.get(m);
+                K.add(node);
+                Set<Node> parents = new HashSet<>();
+                this.gsts.get(node).trace(K, K, parents);
+                for (Node x : parents) {
+                    g.addDirectedEdge(x, node);
+                }
             }
+        } finally {
+            pool.shutdown();
         }
 
         return g;
     }
 
     /**
-     * Returns the next node in the list U that minimizes the objective function.
+     * Sets the number of threads to use for the pairwise likelihood ratios. By default, the number of available
+     * processors.
      *
-     * @param U the list of nodes
-     * @param R a map of nodes to residuals
-     * @return the next node in the list U that minimizes the objective function
+     * @param numThreads the number of threads; must be at least 1
      */
-    private Node getNext(List<Node> U, Map<Node, double[]> R) {
-        Node m = U.get(0);
-        double best = Double.POSITIVE_INFINITY;
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+        }
 
-        for (Node x : U) {
-            double curr = 0;
-            double entx = maxEntApprox(R.get(x));
-            for (Node y : U) {
-                if (x == y) continue;
+        this.numThreads = numThreads;
+    }
 
-                double[] rxy = residuals(R.get(x), R.get(y));
-                double[] ryx = residuals(R.get(y), R.get(x));
+    /**
+     * Returns the index of the next variable in U, the one that minimizes the objective function. The likelihood ratio
+     * for (y, x) is the negative of that for (x, y), so each pair is computed once, in the row of whichever comes first
+     * in U.
+     *
+     * @param U    the indices of the remaining variables
+     * @param R    the residuals, by variable index
+     * @param H    the entropies of the residuals, by variable index
+     * @param lr   scratch space for the likelihood ratios
+     * @param pool the pool to compute them in
+     * @return the index of the next variable
+     */
+    private int getNext(List<Integer> U, double[][] R, double[] H, double[][] lr, ForkJoinPool pool) {
+        int k = U.size();
 
-                double lr = maxEntApprox(R.get(y)) - entx;
-                lr += maxEntApprox(rxy) - maxEntApprox(ryx);
-                double min = min(0, lr);
-                curr += min * min;
+        pool.invoke(new RowAction(k, a -> {
+            int x = U.get(a);
+            double[] r = new double[R[x].length];
+
+            for (int b = a + 1; b < k; b++) {
+                int y = U.get(b);
+                lr[x][y] = likelihoodRatio(R[x], R[y], H[x], H[y], r);
             }
+        }));
+
+        double[] curr = new double[k];
 
-            if (curr < best) {
-                best = curr;
-                m = x;
+        for (int a = 0; a < k; a++) {
+            int x = U.get(a);
+
+            for (int b = a + 1; b < k; b++) {
+                double l = lr[x][U.get(b)];
+                double min = min(0, l);
+                curr[a] += min * min;
+                min = min(0, -l);
+                curr[b] += min * min;
+            }
+        }
+
+        int m = U.get(0);
+        double best = Double.POSITIVE_INFINITY;
+
+        for (int a = 0; a < k; a++) {
+            if (curr[a] < best) {
+                best = curr[a];
+                m = U.get(a);
             }
         }
 
         return m;
     }
 
+    /**
+     * Returns the pairwise likelihood ratio for x --&gt; y, H(y) - H(x) + H(x | y) - H(y | x), where H(x | y) is the
+     * entropy of the residual of x regressed on y.
+     *
+     * @param x  the residuals of x
+     * @param y  the residuals of y
+     * @param hx the entropy of x
+     * @param hy the entropy of y
+     * @param r  scratch space for the residuals of the regressions
+     * @return the likelihood ratio
+     */
+    private static double likelihoodRatio(double[] x, double[] y, double hx, double hy, double[] r) {
+        int n = x.length;
+        double cov = 0;
+        double varx = 0;
+        double vary = 0;
+
+        for (int i = 0; i < n; i++) {
+            cov += x[i] * y[i];
+            varx += x[i] * x[i];
+            vary += y[i] * y[i];
+        }
+
+        double bxy = cov / vary;
+        for (int i = 0; i < n; i++) {
+            r[i] = x[i] - bxy * y[i];
+        }
+        double hxy = entropy(r);
+
+        double byx = cov / varx;
+        for (int i = 0; i < n; i++) {
+            r[i] = y[i] - byx * x[i];
+        }
+        double hyx = entropy(r);
+
+        return hy - hx + hxy - hyx;
+    }
+
+    /**
+     * Calculates the maximum entropy approximation as in maxEntApprox, standardizing the given array in place rather
+     * than copying it.
+     *
+     * @param x the array of values, overwritten
+     * @return the maximum entropy approximation
+     */
+    private static double entropy(double[] x) {
+        int n = x.length;
+        double mean = 0.0;
+
+        for (double v : x) {
+            mean += v;
+        }
+
+        mean /= n;
+        double norm = 0.0;
+
+        for (int i = 0; i < n; i++) {
+            x[i] -= mean;
+            norm += x[i] * x[i];
+        }
+
+        norm = sqrt(norm / (n - 1));
+
+        final double k1 = 79.047;
+        double k2 = 36 / (8 * sqrt(3) - 9);
+        final double gamma = 0.37457;
+        double gaussianEntropy = (log(2.0 * PI) / 2.0) + 1.0 / 2.0;
+
+        double b1 = 0.0;
+        double b2 = 0.0;
+
+        for (int i = 0; i < n; i++) {
+            double v = x[i] / norm;
+            b1 += v * v / 2.0;
+            b2 += v * exp(-(v * v) / 2);
+        }
+
+        b1 /= n;
+        b2 /= n;
+
+        double d = b1 - gamma;
+        double negentropy = k1 * (d * d) + k2 * (b2 * b2);
+
+        return gaussianEntropy - negentropy;
+    }
+
     /**
      * Standardizes an array of doubles.
      *
      * @param x the array of doubles to be standardized
      */
-    private void standardize(double[] x) {
+    private static void standardize(double[] x) {
         int n = x.length;
         double mu = 0;
         double std = 0;
@@ -213,13 +358,12 @@ public class DirectLingam {
     }
 
     /**
-     * Calculates the residuals between two arrays.
+     * Replaces x with its residuals regressed on y.
      *
-     * @param x the first array
-     * @param y the second array
-     * @return an array of residuals
+     * @param x the array to residualize, in place
+     * @param y the regressor
      */
-    private double[] residuals(double[] x, double[] y) {
+    private static void residualize(double[] x, double[] y) {
         int n = x.length;
         double cov = 0;
         double var = 0;
@@ -230,11 +374,45 @@ public class DirectLingam {
         }
         double b = cov / var;
 
-        double[] r = new double[n];
         for (int i = 0; i < n; i++) {
-            r[i] = x[i] - b * y[i];
+            x[i] -= b * y[i];
+        }
+    }
+
+    /**
+     * Applies an action to each of the indices 0, ..., n - 1, splitting them into blocks for the pool.
+     */
+    private static class RowAction extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        private RowAction(int n, IntConsumer action) {
+            this(0, n, action);
+        }
+
+        private RowAction(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
         }
 
-        return r;
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= 1) {
+                for (int i = this.from; i < this.to; i++) {
+                    this.action.accept(i);
+                }
+            } else {
+                int mid = (this.to + this.from) / 2;
+
+                RowAction left = new RowAction(this.from, mid, this.action);
+                RowAction right = new RowAction(mid, this.to, this.action);
+
+                left.fork();
+                right.compute();
+                left.join();
+            }
+        }
     }
 }
@@ -21,6 +21,7 @@
 
 package edu.cmu.tetrad.search;
 
+import edu.cmu.tetrad.data.CompiledKnowledge;
 import edu.cmu.tetrad.data.Knowledge;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.search.test.IndependenceResult;
@@ -80,6 +81,10 @@ public class Fas implements IFas {
      * The knowledge.
      */
     private Knowledge knowledge = new Knowledge();
+    /**
+     * The knowledge compiled against the nodes being searched over.
+     */
+    private CompiledKnowledge compiledKnowledge;
     /**
      * The sepsets that were discovered in the search.
      */
@@ -133,7 +138,7 @@ public class Fas implements IFas {
     private static boolean checkSide(Map<Edge, Double> scores, IndependenceTest test, Map<Node, Set<Node>> adjacencies,
                                      int depth, Node x, Node y,
                                      PcCommon.PcHeuristicType heuristic,
-                                     Knowledge knowledge,
+                                     CompiledKnowledge knowledge,
                                      SepsetMap sepsets, Thread mainThread) throws InterruptedException {
         if (!adjacencies.get(x).contains(y)) return false;
 
@@ -225,7 +230,7 @@ public class Fas implements IFas {
      * @param y         Another node in the graph.
      * @return A list of nodes that are possible parents of the node x.
      */
-    private static List<Node> possibleParents(Node x, List<Node> adjx, Knowledge knowledge, Node y) throws InterruptedException {
+    private static List<Node> possibleParents(Node x, List<Node> adjx, CompiledKnowledge knowledge, Node y) throws InterruptedException {
         List<Node> possibleParents = new LinkedList<>();
         String _x = x.getName();
 
@@ -255,7 +260,7 @@ public class Fas implements IFas {
      * @param knowledge The knowledge object that provides information about conditional independencies.
      * @return True if the node z is a possible parent of node x, false otherwise.
      */
-    private static boolean possibleParentOf(String z, String x, Knowledge knowledge) {
+    private static boolean possibleParentOf(String z, String x, CompiledKnowledge knowledge) {
         return !knowledge.isForbidden(z, x) && !knowledge.isRequired(x, z);
     }
 
@@ -290,6 +295,7 @@ public class Fas implements IFas {
 
         long startTime = MillisecondTimes.timeMillis();
         nodes = new ArrayList<>(nodes);
+        this.compiledKnowledge = this.knowledge.compile(nodes);
 
         this.logger.addOutputStream(out);
 
@@ -405,7 +411,7 @@ public class Fas implements IFas {
         }
 
         for (Edge edge : new ArrayList<>(edges)) {
-            if (scores.get(edge) != null && scores.get(edge) < 0 || (this.knowledge.isForbidden(edge.getNode1().getName(), edge.getNode2().getName()) && (this.knowledge.isForbidden(edge.getNode2().getName(), edge.getNode1().getName())))) {
+            if (scores.get(edge) != null && scores.get(edge) < 0 || (this.compiledKnowledge.isForbidden(edge.getNode1().getName(), edge.getNode2().getName()) && (this.compiledKnowledge.isForbidden(edge.getNode2().getName(), edge.getNode1().getName())))) {
                 edges.remove(edge);
                 adjacencies.get(edge.getNode1()).remove(edge.getNode2());
                 adjacencies.get(edge.getNode2()).remove(edge.getNode1());
@@ -623,11 +629,11 @@ public class Fas implements IFas {
             private final Map<Node, Set<Node>> adjacencies;
             private final int depth;
             private final PcCommon.PcHeuristicType heuristic;
-            private final Knowledge knowledge;
+            private final CompiledKnowledge knowledge;
             private final SepsetMap sepset;
             private final Thread mainThread;
 
-            public Task(Edge edge, Map<Edge, Double> scores, IndependenceTest test, Map<Node, Set<Node>> adjacencies, int depth, PcCommon.PcHeuristicType heuristic, Knowledge knowledge, SepsetMap sepset, Thread mainThread) {
+            public Task(Edge edge, Map<Edge, Double> scores, IndependenceTest test, Map<Node, Set<Node>> adjacencies, int depth, PcCommon.PcHeuristicType heuristic, CompiledKnowledge knowledge, SepsetMap sepset, Thread mainThread) {
                 this.edge = edge;
                 this.scores = scores;
                 this.test = test;
@@ -661,7 +667,7 @@ public class Fas implements IFas {
         List<Task> tasks = new ArrayList<>();
 
         for (Edge edge : edges) {
-            tasks.add(new Task(edge, scores, test, adjacencies, depth, heuristic, knowledge, sepset, mainThread));
+            tasks.add(new Task(edge, scores, test, adjacencies, depth, heuristic, compiledKnowledge, sepset, mainThread));
         }
 
         if (stable) {
@@ -199,6 +199,21 @@ public class FastIca {
      */
     private Matrix wInit;
 
+    /**
+     * True if the whitened data should be held in float precision during the iterations. Default = false.
+     */
+    private boolean floatPrecision;
+
+    /**
+     * The number of samples used in each fixed-point step, or 0 if all of them are used. Default = 0.
+     */
+    private int batchSize;
+
+    /**
+     * The number of threads used in each fixed-point step. Default = the number of available processors.
+     */
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
     /**
      * Constructs an instance of the Fast ICA algorithm, taking as arguments the two arguments that cannot be defaulted:
      * the data matrix itself and the number of components to be extracted.
@@ -340,6 +355,44 @@ public class FastIca {
         this.wInit = wInit;
     }
 
+    /**
+     * Sets whether the whitened data should be held in float precision during the iterations, which halves the memory
+     * they take, for very long samples. Sums are still accumulated in double precision.
+     *
+     * @param floatPrecision True, if so.
+     */
+    public void setFloatPrecision(boolean floatPrecision) {
+        this.floatPrecision = floatPrecision;
+    }
+
+    /**
+     * Sets the number of samples used in each fixed-point step. If this is positive and less than the sample size,
+     * each step uses the next batch of that many samples, cycling through the data, rather than all of them; the
+     * updates are then noisier, and the tolerance may need to be loosened. Default = 0, all samples.
+     *
+     * @param batchSize This number, or 0 for all samples.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 0) {
+            throw new IllegalArgumentException("Batch size must be at least 0: " + batchSize);
+        }
+
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the number of threads used to calculate each fixed-point step. Results do not depend on this number.
+     *
+     * @param numThreads This number.
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+        }
+
+        this.numThreads = numThreads;
+    }
+
     /**
      * Runs the Fast ICA algorithm (following the R version) and returns the list of result items that the R version
      * returns.
@@ -399,16 +452,14 @@ public class FastIca {
         Matrix K = D.times(U.transpose());
         K = K.getPart(0, this.numComponents - 1, 0, p - 1);
 
-        Matrix X1 = K.times(this.X);
-
+        FastIcaEngine engine = new FastIcaEngine(K.toArray(), this.X.getApacheData(), this.floatPrecision,
+                this.function, this.alpha, this.batchSize, this.numThreads);
         Matrix b;
 
         if (this.algorithmType == FastIca.DEFLATION) {
-            b = icaDeflation(X1, this.tolerance, this.function, this.alpha,
-                    this.maxIterations, this.verbose, this.wInit);
+            b = new Matrix(engine.deflation(this.wInit.toArray(), this.tolerance, this.maxIterations, this.verbose));
         } else if (this.algorithmType == FastIca.PARALLEL) {
-            b = icaParallel(X1, this.numComponents, this.tolerance, this.alpha,
-                    this.maxIterations, this.verbose, this.wInit);
+            b = new Matrix(engine.symmetric(this.wInit.toArray(), this.tolerance, this.maxIterations, this.verbose));
         } else {
             throw new IllegalStateException();
         }
@@ -419,142 +470,6 @@ public class FastIca {
 
     }
 
-    private Matrix icaDeflation(Matrix X,
-                                double tolerance, int function, double alpha,
-                                int maxIterations, boolean verbose, Matrix wInit) {
-        if (verbose && function == FastIca.LOGCOSH) {
-            TetradLogger.getInstance().log("Deflation FastIca using lgcosh approx. to neg-entropy function");
-        }
-
-        if (verbose && function == FastIca.EXP) {
-            TetradLogger.getInstance().log("Deflation FastIca using exponential approx. to neg-entropy function");
-        }
-
-        Matrix W = new Matrix(X.getNumRows(), X.getNumRows());
-
-        for (int i = 0; i < X.getNumRows(); i++) {
-            if (verbose) {
-                TetradLogger.getInstance().log("Component " + (i + 1));
-            }
-
-            Vector w = wInit.getRow(i);
-
-            if (i > 0) {
-                for (int u = 0; u < i; u++) {
-                    double k = w.dotProduct(W.getRow(u));
-                    w = w.minus(W.getRow(u).scalarMult(k));
-                }
-            }
-
-            w = w.scalarMult(1.0 / rms(w));
-
-            int it = 0;
-            double _tolerance = Double.POSITIVE_INFINITY;
-
-            while (_tolerance > tolerance && ++it <= maxIterations) {
-                Vector wx = X.transpose().times(w);
-
-                Vector gwx0 = new Vector(X.getNumColumns());
-
-                for (int j = 0; j < X.getNumColumns(); j++) {
-                    gwx0.set(j, g(alpha, wx.get(j)));
-                }
-
-                Matrix gwx = new Matrix(X.getNumRows(), X.getNumColumns());
-
-                for (int _i = 0; _i < X.getNumRows(); _i++) {
-                    gwx.assignRow(i, gwx0);
-                }
-
-                // A weighting of X by gwx0.
-                Matrix xgwx = new Matrix(X.getNumRows(), X.getNumColumns());
-
-                for (int _i = 0; _i < X.getNumRows(); _i++) {
-                    for (int j = 0; j < X.getNumColumns(); j++) {
-                        xgwx.set(_i, j, X.get(_i, j) * gwx0.get(j));
-                    }
-                }
-
-                Vector v1 = new Vector(X.getNumRows());
-
-                for (int k = 0; k < X.getNumRows(); k++) {
-                    v1.set(k, mean(xgwx.getRow(k)));
-                }
-
-                Vector g_wx = new Vector(X.getNumColumns());
-
-                for (int k = 0; k < X.getNumColumns(); k++) {
-                    double t = g(alpha, wx.get(k));
-                    g_wx.set(k, (1.0 - t * t));
-                }
-
-                Vector v2 = w.copy();
-                double meanGwx = mean(g_wx);
-                v2 = v2.scalarMult(meanGwx);
-
-                Vector w1 = v1.minus(v2);
-
-                if (i > 0) {
-                    Vector t = w1.like();
-
-                    for (int u = 0; u < i; u++) {
-                        double k = 0.0;
-
-                        for (int j = 0; j < X.getNumRows(); j++) {
-                            k += w1.get(j) * W.get(u, j);
-                        }
-
-                        for (int j = 0; j < X.getNumRows(); j++) {
-                            t.set(j, t.get(j) + k * W.get(u, j));
-                        }
-                    }
-
-                    for (int j = 0; j < X.getNumRows(); j++) {
-                        w1.set(j, w1.get(j) - t.get(j));
-                    }
-                }
-
-                w1 = w1.scalarMult(1.0 / rms(w1));
-
-                _tolerance = 0.0;
-
-                for (int k = 0; k < X.getNumRows(); k++) {
-                    _tolerance += w1.get(k) * w.get(k);
-                }
-
-                _tolerance = abs(abs(_tolerance) - 1.0);
-
-                if (verbose) {
-                    TetradLogger.getInstance().log("Iteration " + it + " tol = " + _tolerance);
-                }
-
-                w = w1;
-            }
-
-            W.assignRow(i, w);
-        }
-
-        return W;
-    }
-
-    /**
-     * Computes the value of the function g(alpha, y) based on the selected function type.
-     *
-     * @param alpha The alpha parameter used for the function approximation.
-     * @param y     The input value.
-     * @return The computed value of g(alpha, y).
-     * @throws IllegalArgumentException if the function type is not configured.
-     */
-    private double g(double alpha, double y) {
-        if (this.function == FastIca.LOGCOSH) {
-            return tanh(alpha * y);
-        } else if (this.function == FastIca.EXP) {
-            return y * exp(-(y * y) / 2.);
-        } else {
-            throw new IllegalArgumentException("That function is not configured.");
-        }
-    }
-
     /**
      * Calculates the sum of squares for elements in a given Vector.
      *
@@ -582,105 +497,6 @@ public class FastIca {
         return FastMath.sqrt(ssq);
     }
 
-    /**
-     * This method implements the parallel Independent Component Analysis (ICA) algorithm.
-     *
-     * @param X             The input data matrix with rows representing cases and columns representing variables.
-     * @param numComponents The number of components to be extracted.
-     * @param tolerance     A positive scalar value indicating the convergence tolerance of the un-mixing matrix.
-     * @param alpha         The alpha constant in the range [1, 2] used in the approximation to neg-entropy when 'fun ==
-     *                      "logcosh"'.
-     * @param maxIterations The maximum number of iterations to allow.
-     * @param verbose       A boolean value indicating whether verbose output should be printed.
-     * @param wInit         The initial un-mixing matrix of dimension (numComponents, numComponents).
-     * @return The computed un-mixing matrix.
-     */
-    private Matrix icaParallel(Matrix X, int numComponents,
-                               double tolerance, double alpha,
-                               int maxIterations, boolean verbose, Matrix wInit) {
-        int p = X.getNumColumns();
-        Matrix W = wInit;
-
-        SingularValueDecomposition sW = new SingularValueDecomposition(W.getApacheData());
-        Matrix D = new Matrix(sW.getS().getData());
-        for (int i = 0; i < D.getNumRows(); i++) D.set(i, i, 1.0 / D.get(i, i));
-
-        Matrix WTemp = new Matrix(sW.getU()).times(D);
-        WTemp = WTemp.times(new Matrix(sW.getU()).transpose());
-        WTemp = WTemp.times(W);
-        W = WTemp;
-
-        Matrix W1;
-        double _tolerance = Double.POSITIVE_INFINITY;
-        int it = 0;
-
-        if (verbose) {
-            TetradLogger.getInstance().log("Symmetric FastICA using logcosh approx. to neg-entropy function");
-        }
-
-        while (_tolerance > tolerance && it < maxIterations) {
-            Matrix wx = W.times(X);
-            Matrix gwx = new Matrix(numComponents, p);
-
-            for (int i = 0; i < numComponents; i++) {
-                for (int j = 0; j < p; j++) {
-                    gwx.set(i, j, g(alpha, wx.get(i, j)));
-                }
-            }
-
-            Matrix v1 = gwx.times(X.transpose().scalarMult(1.0 / p));
-            Matrix g_wx = gwx.like();
-
-            for (int i = 0; i < g_wx.getNumRows(); i++) {
-                for (int j = 0; j < g_wx.getNumColumns(); j++) {
-                    double v = g_wx.get(i, j);
-                    double w = alpha * (1.0 - v * v);
-                    g_wx.set(i, j, w);
-                }
-            }
-
-            Vector V20 = new Vector(numComponents);
-
-            for (int k = 0; k < numComponents; k++) {
-                V20.set(k, mean(g_wx.getRow(k)));
-            }
-
-            Matrix v2 = V20.diag();
-            v2 = v2.times(W);
-            W1 = v1.minus(v2);
-
-            SingularValueDecomposition sW1 = new SingularValueDecomposition(W1.getApacheData());
-            Matrix U = new Matrix(sW1.getU());
-            Matrix sD = new Matrix(sW1.getS());
-            for (int i = 0; i < sD.getNumRows(); i++)
-                sD.set(i, i, 1.0 / sD.get(i, i));
-
-            Matrix W1Temp = U.times(sD);
-            W1Temp = W1Temp.times(U.transpose());
-            W1Temp = W1Temp.times(W1);
-            W1 = W1Temp;
-
-            Matrix d1 = W1.times(W.transpose());
-            Vector d = d1.diag();
-            _tolerance = Double.NEGATIVE_INFINITY;
-
-            for (int i = 0; i < d.size(); i++) {
-                double m = abs(abs(d.get(i)) - 1);
-                if (m > _tolerance) _tolerance = m;
-            }
-
-            W = W1;
-
-            if (verbose) {
-                TetradLogger.getInstance().log("Iteration " + (it + 1) + " tol = " + _tolerance);
-            }
-
-            it++;
-        }
-
-        return W;
-    }
-
     /**
      * Scales the input matrix by dividing each row by its root-mean-square (RMS).
      *
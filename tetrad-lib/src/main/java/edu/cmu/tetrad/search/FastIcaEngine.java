@@ -0,0 +1,468 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.util.ForkJoinUtils;
+import edu.cmu.tetrad.util.TetradLogger;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+import org.apache.commons.math3.util.FastMath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+
+/**
+ * The deflation and symmetric fixed-point iterations of FastIca on primitive arrays. The whitened data are held by
+ * component, in double or, to halve memory and bandwidth for very long samples, in float precision; sums are always
+ * accumulated in double. Each fixed-point step needs E[x g(w'x)] and, for deflation, E[g'(w'x)], over the samples;
+ * these are calculated in parallel over blocks of samples of fixed size, and the block sums are added in order, so that
+ * results do not depend on the number of threads.
+ * <p>
+ * If a batch size is given, each step uses the next batch of that many samples, cycling through the data, rather than
+ * all of them. This makes steps cheaper for very long samples, at the cost of noisier updates, so the tolerance may
+ * need to be loosened for the iteration to converge.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ * @see FastIca
+ */
+final class FastIcaEngine {
+
+    /**
+     * The number of samples in a block.
+     */
+    private static final int BLOCK_SIZE = 4096;
+
+    /**
+     * The whitened data, by component, in double precision, or null.
+     */
+    private final double[][] x;
+
+    /**
+     * The whitened data, by component, in float precision, or null.
+     */
+    private final float[][] xf;
+
+    /**
+     * The number of components and the number of samples.
+     */
+    private final int c, n;
+
+    /**
+     * The function, FastIca.LOGCOSH or FastIca.EXP.
+     */
+    private final int function;
+
+    /**
+     * The FastICA alpha constant.
+     */
+    private final double alpha;
+
+    /**
+     * The number of samples used in a step; all of them if this is not between 1 and n - 1.
+     */
+    private final int batchSize;
+
+    /**
+     * The number of threads.
+     */
+    private final int numThreads;
+
+    /**
+     * The pool running the parallel steps, while iterating.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * The first sample of the next batch.
+     */
+    private int offset;
+
+    /**
+     * Constructs the engine, whitening the data. The whitened data are calculated a block of samples at a time,
+     * directly in the precision in which they are held, so that no double precision copy of them is made when they are
+     * held in float precision.
+     *
+     * @param k              The whitening matrix, components by variables.
+     * @param x              The centered data, variables by samples.
+     * @param floatPrecision True if the whitened data should be held in float precision.
+     * @param function       The function, FastIca.LOGCOSH or FastIca.EXP.
+     * @param alpha          The FastICA alpha constant.
+     * @param batchSize      The number of samples used in a step, or 0 for all of them.
+     * @param numThreads     The number of threads.
+     */
+    FastIcaEngine(double[][] k, RealMatrix x, boolean floatPrecision, int function, double alpha, int batchSize,
+                  int numThreads) {
+        this.c = k.length;
+        this.n = x.getColumnDimension();
+        this.function = function;
+        this.alpha = alpha;
+        this.batchSize = batchSize;
+        this.numThreads = numThreads;
+        this.x = floatPrecision ? null : new double[this.c][this.n];
+        this.xf = floatPrecision ? new float[this.c][this.n] : null;
+
+        int p = x.getRowDimension();
+
+        for (int start = 0; start < this.n; start += BLOCK_SIZE) {
+            int end = Math.min(this.n, start + BLOCK_SIZE);
+            double[][] block = x.getSubMatrix(0, p - 1, start, end - 1).getData();
+
+            for (int i = 0; i < this.c; i++) {
+                for (int t = start; t < end; t++) {
+                    double sum = 0.0;
+
+                    for (int j = 0; j < p; j++) {
+                        sum += k[i][j] * block[j][t - start];
+                    }
+
+                    if (floatPrecision) {
+                        this.xf[i][t] = (float) sum;
+                    } else {
+                        this.x[i][t] = sum;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Extracts the components one at a time, as FastIca.icaDeflation did.
+     *
+     * @param wInit         The initial un-mixing matrix, components by components.
+     * @param tolerance     The convergence tolerance.
+     * @param maxIterations The maximum number of iterations per component.
+     * @param verbose       True if progress should be logged.
+     * @return The un-mixing matrix.
+     */
+    double[][] deflation(double[][] wInit, double tolerance, int maxIterations, boolean verbose) {
+        if (verbose && this.function == FastIca.LOGCOSH) {
+            TetradLogger.getInstance().log("Deflation FastIca using lgcosh approx. to neg-entropy function");
+        }
+
+        if (verbose && this.function == FastIca.EXP) {
+            TetradLogger.getInstance().log("Deflation FastIca using exponential approx. to neg-entropy function");
+        }
+
+        double[][] W = new double[this.c][];
+        double[][] v1 = new double[1][this.c];
+        double[] derivative = new double[1];
+        this.pool = new ForkJoinPool(this.numThreads);
+
+        try {
+            for (int i = 0; i < this.c; i++) {
+                if (verbose) {
+                    TetradLogger.getInstance().log("Component " + (i + 1));
+                }
+
+                double[] w = wInit[i].clone();
+
+                for (int u = 0; u < i; u++) {
+                    double k = dot(w, W[u]);
+                    for (int j = 0; j < this.c; j++) w[j] -= k * W[u][j];
+                }
+
+                normalize(w);
+
+                int it = 0;
+                double _tolerance = Double.POSITIVE_INFINITY;
+
+                while (_tolerance > tolerance && ++it <= maxIterations) {
+                    contrast(new double[][]{w}, v1, derivative);
+
+                    double[] w1 = new double[this.c];
+                    for (int j = 0; j < this.c; j++) w1[j] = v1[0][j] - w[j] * derivative[0];
+
+                    if (i > 0) {
+                        double[] t = new double[this.c];
+
+                        for (int u = 0; u < i; u++) {
+                            double k = dot(w1, W[u]);
+                            for (int j = 0; j < this.c; j++) t[j] += k * W[u][j];
+                        }
+
+                        for (int j = 0; j < this.c; j++) w1[j] -= t[j];
+                    }
+
+                    normalize(w1);
+
+                    _tolerance = FastMath.abs(FastMath.abs(dot(w1, w)) - 1.0);
+
+                    if (verbose) {
+                        TetradLogger.getInstance().log("Iteration " + it + " tol = " + _tolerance);
+                    }
+
+                    w = w1;
+                }
+
+                W[i] = w;
+            }
+        } finally {
+            this.pool.shutdown();
+            this.pool = null;
+        }
+
+        return W;
+    }
+
+    /**
+     * Extracts the components simultaneously, as FastIca.icaParallel did.
+     *
+     * @param wInit         The initial un-mixing matrix, components by components.
+     * @param tolerance     The convergence tolerance.
+     * @param maxIterations The maximum number of iterations.
+     * @param verbose       True if progress should be logged.
+     * @return The un-mixing matrix.
+     */
+    double[][] symmetric(double[][] wInit, double tolerance, int maxIterations, boolean verbose) {
+        double[][] W = decorrelate(wInit);
+        double[][] v1 = new double[this.c][this.c];
+        double _tolerance = Double.POSITIVE_INFINITY;
+        int it = 0;
+
+        if (verbose) {
+            TetradLogger.getInstance().log("Symmetric FastICA using logcosh approx. to neg-entropy function");
+        }
+
+        this.pool = new ForkJoinPool(this.numThreads);
+
+        try {
+            while (_tolerance > tolerance && it < maxIterations) {
+                contrast(W, v1, null);
+
+                double[][] W1 = new double[this.c][this.c];
+
+                for (int i = 0; i < this.c; i++) {
+                    for (int j = 0; j < this.c; j++) {
+                        W1[i][j] = v1[i][j] - this.alpha * W[i][j];
+                    }
+                }
+
+                W1 = decorrelate(W1);
+                _tolerance = Double.NEGATIVE_INFINITY;
+
+                for (int i = 0; i < this.c; i++) {
+                    double m = FastMath.abs(FastMath.abs(dot(W1[i], W[i])) - 1);
+                    if (m > _tolerance) _tolerance = m;
+                }
+
+                W = W1;
+
+                if (verbose) {
+                    TetradLogger.getInstance().log("Iteration " + (it + 1) + " tol = " + _tolerance);
+                }
+
+                it++;
+            }
+        } finally {
+            this.pool.shutdown();
+            this.pool = null;
+        }
+
+        return W;
+    }
+
+    /**
+     * Calculates, over the samples of the next step, v1[i][j] = E[g(w_i'x) x_j] and, if derivative is not null,
+     * derivative[i] = E[1 - g(w_i'x)^2], the derivative term FastIca has always used for deflation.
+     *
+     * @param W          The rows w_i.
+     * @param v1         The first result, rows of W by components.
+     * @param derivative The second result, by row of W, or null.
+     */
+    void contrast(double[][] W, double[][] v1, double[] derivative) {
+        int rows = W.length;
+        List<int[]> blocks = nextBlocks();
+        int numBlocks = blocks.size();
+        double[][] parts = new double[numBlocks][];
+        int size = rows * this.c + (derivative != null ? rows : 0);
+
+        invoke(numBlocks, b -> {
+            int from = blocks.get(b)[0];
+            int len = blocks.get(b)[1];
+            double[] part = new double[size];
+            double[] y = new double[len];
+
+            for (int i = 0; i < rows; i++) {
+                Arrays.fill(y, 0.0);
+
+                for (int j = 0; j < this.c; j++) {
+                    project(y, W[i][j], j, from, len);
+                }
+
+                double d = 0.0;
+
+                for (int k = 0; k < len; k++) {
+                    double g = g(y[k]);
+                    y[k] = g;
+                    d += 1.0 - g * g;
+                }
+
+                for (int j = 0; j < this.c; j++) {
+                    part[i * this.c + j] = weightedSum(y, j, from, len);
+                }
+
+                if (derivative != null) part[rows * this.c + i] = d;
+            }
+
+            parts[b] = part;
+        });
+
+        double[] sum = new double[size];
+        int m = 0;
+
+        for (int b = 0; b < numBlocks; b++) {
+            for (int k = 0; k < size; k++) sum[k] += parts[b][k];
+            m += blocks.get(b)[1];
+        }
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < this.c; j++) v1[i][j] = sum[i * this.c + j] / m;
+            if (derivative != null) derivative[i] = sum[rows * this.c + i] / m;
+        }
+    }
+
+    /**
+     * Returns the blocks of samples for the next step, as {first sample, length}, advancing the batch.
+     */
+    private List<int[]> nextBlocks() {
+        List<int[]> blocks = new ArrayList<>();
+
+        if (this.batchSize < 1 || this.batchSize >= this.n) {
+            addBlocks(blocks, 0, this.n);
+        } else {
+            int end = this.offset + this.batchSize;
+
+            if (end <= this.n) {
+                addBlocks(blocks, this.offset, end);
+            } else {
+                addBlocks(blocks, this.offset, this.n);
+                addBlocks(blocks, 0, end - this.n);
+            }
+
+            this.offset = end % this.n;
+        }
+
+        return blocks;
+    }
+
+    private static void addBlocks(List<int[]> blocks, int from, int to) {
+        for (int k = from; k < to; k += BLOCK_SIZE) {
+            blocks.add(new int[]{k, FastMath.min(BLOCK_SIZE, to - k)});
+        }
+    }
+
+    /**
+     * Adds w times samples from, ..., from + len - 1 of component j to y.
+     */
+    private void project(double[] y, double w, int j, int from, int len) {
+        if (w == 0.0) return;
+
+        if (this.xf != null) {
+            float[] xj = this.xf[j];
+            for (int k = 0; k < len; k++) y[k] += w * xj[from + k];
+        } else {
+            double[] xj = this.x[j];
+            for (int k = 0; k < len; k++) y[k] += w * xj[from + k];
+        }
+    }
+
+    /**
+     * Returns the sum of y weighted by samples from, ..., from + len - 1 of component j.
+     */
+    private double weightedSum(double[] y, int j, int from, int len) {
+        double sum = 0.0;
+
+        if (this.xf != null) {
+            float[] xj = this.xf[j];
+            for (int k = 0; k < len; k++) sum += y[k] * xj[from + k];
+        } else {
+            double[] xj = this.x[j];
+            for (int k = 0; k < len; k++) sum += y[k] * xj[from + k];
+        }
+
+        return sum;
+    }
+
+    private double g(double y) {
+        if (this.function == FastIca.LOGCOSH) {
+            return FastMath.tanh(this.alpha * y);
+        } else if (this.function == FastIca.EXP) {
+            return y * FastMath.exp(-(y * y) / 2.);
+        } else {
+            throw new IllegalArgumentException("That function is not configured.");
+        }
+    }
+
+    /**
+     * Returns (W W')^(-1/2) W, calculated as U D^-1 U' W from the singular value decomposition W = U D V'.
+     */
+    private static double[][] decorrelate(double[][] W) {
+        SingularValueDecomposition svd = new SingularValueDecomposition(new Array2DRowRealMatrix(W, false));
+        double[][] U = svd.getU().getData();
+        double[] s = svd.getSingularValues();
+        int m = W.length;
+
+        double[][] a = new double[m][m];
+
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < m; j++) {
+                double sum = 0.0;
+                for (int k = 0; k < s.length; k++) sum += U[i][k] * U[j][k] / s[k];
+                a[i][j] = sum;
+            }
+        }
+
+        double[][] result = new double[m][W[0].length];
+
+        for (int i = 0; i < m; i++) {
+            for (int k = 0; k < m; k++) {
+                double aik = a[i][k];
+                for (int j = 0; j < W[0].length; j++) result[i][j] += aik * W[k][j];
+            }
+        }
+
+        return result;
+    }
+
+    private static void normalize(double[] w) {
+        double norm = FastMath.sqrt(dot(w, w));
+        for (int j = 0; j < w.length; j++) w[j] /= norm;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int k = 0; k < a.length; k++) sum += a[k] * b[k];
+        return sum;
+    }
+
+    /**
+     * Runs the given action for 0, ..., count - 1 in the pool.
+     */
+    private void invoke(int count, IntConsumer action) {
+        ForkJoinUtils.forRange(this.pool, count, action);
+    }
+}
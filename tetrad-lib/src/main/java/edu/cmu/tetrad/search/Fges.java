@@ -20,6 +20,7 @@
 ///////////////////////////////////////////////////////////////////////////////
 package edu.cmu.tetrad.search;
 
+import edu.cmu.tetrad.data.CompiledKnowledge;
 import edu.cmu.tetrad.data.Knowledge;
 import edu.cmu.tetrad.data.KnowledgeEdge;
 import edu.cmu.tetrad.graph.*;
@@ -120,6 +121,10 @@ public final class Fges implements IGraphSearch, DagScorer {
      * Specification of forbidden and required edges.
      */
     private Knowledge knowledge = new Knowledge();
+    /**
+     * The knowledge compiled against the variables, for the queries made in the search loops.
+     */
+    private CompiledKnowledge compiledKnowledge;
     /**
      * List of variables in the data set, in order.
      */
@@ -233,6 +238,7 @@ public final class Fges implements IGraphSearch, DagScorer {
         topGraphs.clear();
 
         graph = new EdgeListGraph(getVariables());
+        compiledKnowledge = knowledge.compile(getVariables());
 
         if (boundGraph != null) {
             boundGraph = GraphUtils.replaceNodes(boundGraph, getVariables());
@@ -569,7 +575,7 @@ public final class Fges implements IGraphSearch, DagScorer {
      * @return true if knowledge exists, false otherwise.
      */
     private boolean existsKnowledge() {
-        return !knowledge.isEmpty();
+        return !compiledKnowledge.isEmpty();
     }
 
     /**
@@ -680,7 +686,7 @@ public final class Fges implements IGraphSearch, DagScorer {
         if (graph.isAdjacentTo(a, b)) return;
 
         if (existsKnowledge()) {
-            if (getKnowledge().isForbidden(a.getName(), b.getName())) {
+            if (compiledKnowledge.isForbidden(a.getName(), b.getName())) {
                 return;
             }
         }
@@ -906,12 +912,12 @@ public final class Fges implements IGraphSearch, DagScorer {
         boolean violatesKnowledge = false;
 
         if (existsKnowledge()) {
-            if (knowledge.isForbidden(x.getName(), y.getName())) {
+            if (compiledKnowledge.isForbidden(x.getName(), y.getName())) {
                 violatesKnowledge = true;
             }
 
             for (Node t : T) {
-                if (knowledge.isForbidden(t.getName(), y.getName())) {
+                if (compiledKnowledge.isForbidden(t.getName(), y.getName())) {
                     violatesKnowledge = true;
                 }
             }
@@ -963,7 +969,7 @@ public final class Fges implements IGraphSearch, DagScorer {
             final String A = edge.getNode1().getName();
             final String B = edge.getNode2().getName();
 
-            if (knowledge.isForbidden(A, B)) {
+            if (compiledKnowledge.isForbidden(A, B)) {
                 Node nodeA = edge.getNode1();
                 Node nodeB = edge.getNode2();
 
@@ -978,7 +984,7 @@ public final class Fges implements IGraphSearch, DagScorer {
                     }
                 }
 
-                if (!graph.isChildOf(nodeA, nodeB) && getKnowledge().isForbidden(nodeA.getName(), nodeB.getName())) {
+                if (!graph.isChildOf(nodeA, nodeB) && compiledKnowledge.isForbidden(nodeA.getName(), nodeB.getName())) {
                     if (!graph.paths().isAncestorOf(nodeA, nodeB)) {
                         graph.removeEdges(nodeA, nodeB);
                         graph.addDirectedEdge(nodeB, nodeA);
@@ -988,7 +994,7 @@ public final class Fges implements IGraphSearch, DagScorer {
                         }
                     }
                 }
-            } else if (knowledge.isForbidden(B, A)) {
+            } else if (compiledKnowledge.isForbidden(B, A)) {
                 Node nodeA = edge.getNode2();
                 Node nodeB = edge.getNode1();
 
@@ -1002,7 +1008,7 @@ public final class Fges implements IGraphSearch, DagScorer {
                         }
                     }
                 }
-                if (!graph.isChildOf(nodeA, nodeB) && getKnowledge().isForbidden(nodeA.getName(), nodeB.getName())) {
+                if (!graph.isChildOf(nodeA, nodeB) && compiledKnowledge.isForbidden(nodeA.getName(), nodeB.getName())) {
                     if (!graph.paths().isAncestorOf(nodeA, nodeB)) {
                         graph.removeEdges(nodeA, nodeB);
                         graph.addDirectedEdge(nodeB, nodeA);
@@ -1025,7 +1031,7 @@ public final class Fges implements IGraphSearch, DagScorer {
      */
     private boolean invalidSetByKnowledge(Node y, Set<Node> subset) {
         for (Node node : subset) {
-            if (getKnowledge().isForbidden(node.getName(), y.getName())) {
+            if (compiledKnowledge.isForbidden(node.getName(), y.getName())) {
                 return true;
             }
         }
@@ -1135,7 +1141,7 @@ public final class Fges implements IGraphSearch, DagScorer {
      */
     private Set<Node> revertToCpdag() {
         MeekRules rules = new MeekRules();
-        rules.setKnowledge(getKnowledge());
+        rules.setKnowledge(compiledKnowledge);
         rules.setMeekPreventCycles(true);
         rules.setVerbose(verbose);
         return rules.orientImplied(graph);
@@ -1602,7 +1608,7 @@ public final class Fges implements IGraphSearch, DagScorer {
                     Node x = nodes.get(j);
 
                     if (existsKnowledge()) {
-                        if (getKnowledge().isForbidden(x.getName(), y.getName()) && getKnowledge().isForbidden(y.getName(), x.getName())) {
+                        if (compiledKnowledge.isForbidden(x.getName(), y.getName()) && compiledKnowledge.isForbidden(y.getName(), x.getName())) {
                             continue;
                         }
 
@@ -401,7 +401,6 @@ public class Fofc {
         ChoiceGenerator gen = new ChoiceGenerator(allVariables.size(), 3);
         int[] choice;
         Set<Set<Integer>> puretriples = new HashSet<>();
-        CHOICE:
         while ((choice = gen.next()) != null) {
             if (Thread.currentThread().isInterrupted()) {
                 break;
@@ -415,23 +414,18 @@ public class Fofc {
 
             if (zeroCorr(triple)) continue;
 
-            for (int o : allVariables) {
-                if (Thread.currentThread().isInterrupted()) {
-                    break;
-                }
+            List<List<Integer>> quartets = new ArrayList<>();
 
+            for (int o : allVariables) {
                 if (triple.contains(o)) {
                     continue;
                 }
 
-                List<Integer> quartet = quartet(n1, n2, n3, o);
-
-                boolean vanishes = vanishes(quartet);
-
-                if (!vanishes) {
-                    continue CHOICE;
-                }
+                quartets.add(quartet(n1, n2, n3, o));
+            }
 
+            if (!allVanish(quartets)) {
+                continue;
             }
 
             HashSet<Integer> _cluster = new HashSet<>(triple);
@@ -994,6 +988,8 @@ public class Fofc {
         }
 
         if (vanishes(quartet)) {
+            List<List<Integer>> quartets = new ArrayList<>();
+
             for (int o : allVariables()) {
                 if (quartet.contains(o)) continue;
 
@@ -1001,14 +997,11 @@ public class Fofc {
                     List<Integer> _quartet = new ArrayList<>(quartet);
                     _quartet.remove(quartet.get(i));
                     _quartet.add(o);
-
-                    if (!(vanishes(_quartet))) {
-                        return false;
-                    }
+                    quartets.add(_quartet);
                 }
             }
 
-            return true;
+            return allVanish(quartets);
         }
 
         return false;
@@ -1058,6 +1051,46 @@ public class Fofc {
         return triple;
     }
 
+    /**
+     * Determines whether all the given quartets vanish. For the delta test, the quartets are tested in parallel in
+     * batches, stopping at the first batch in which one does not vanish.
+     *
+     * @param quartets The quartets.
+     * @return True if all of them vanish, false otherwise.
+     */
+    private boolean allVanish(List<List<Integer>> quartets) {
+        if (this.testType != BpcTestType.TETRAD_DELTA) {
+            for (List<Integer> quartet : quartets) {
+                if (Thread.currentThread().isInterrupted()) break;
+                if (!vanishes(quartet)) return false;
+            }
+
+            return true;
+        }
+
+        int batchSize = 4 * Runtime.getRuntime().availableProcessors();
+
+        for (int from = 0; from < quartets.size(); from += batchSize) {
+            if (Thread.currentThread().isInterrupted()) break;
+
+            List<Tetrad[]> tests = new ArrayList<>();
+
+            for (List<Integer> quartet : quartets.subList(from, FastMath.min(from + batchSize, quartets.size()))) {
+                Node x = this.variables.get(quartet.get(0));
+                Node y = this.variables.get(quartet.get(1));
+                Node z = this.variables.get(quartet.get(2));
+                Node w = this.variables.get(quartet.get(3));
+                tests.add(new Tetrad[]{new Tetrad(x, y, z, w), new Tetrad(x, y, w, z)});
+            }
+
+            for (double p : this.test.getPValues(tests)) {
+                if (p <= this.alpha) return false;
+            }
+        }
+
+        return true;
+    }
+
     /**
      * Determines if the quartet of variables vanishes based on the test type.
      *
@@ -54,7 +54,9 @@ import static org.apache.commons.math3.util.FastMath.sqrt;
  * Heidelberg.
  * <p>
  * The two-factor version of the algorithm substitutes sextad tests for tetrad tests and searches for clusters of at
- * least 6 variables that can be explained by two latent factors by calculating vanishing sextads.
+ * least 6 variables that can be explained by two latent factors by calculating vanishing sextads. When a sextet is
+ * checked against each of the other variables, the sextad tests are run in parallel in batches, sharing the cache of
+ * fourth moments in DeltaSextadTest.
  *
  * @author peterspirtes
  * @author erichkummerfeld
@@ -235,7 +237,7 @@ public class Ftfc {
         ChoiceGenerator gen = new ChoiceGenerator(variables.size(), 5);
         int[] choice;
         Set<List<Integer>> purePentads = new HashSet<>();
-        CHOICE:
+
         while ((choice = gen.next()) != null) {
             int n1 = variables.get(choice[0]);
             int n2 = variables.get(choice[1]);
@@ -247,6 +249,8 @@ public class Ftfc {
 
             if (zeroCorr(pentad, 4)) continue;
 
+            List<List<Integer>> sextets = new ArrayList<>();
+
             for (int o : variables) {
                 if (pentad.contains(o)) {
                     continue;
@@ -255,12 +259,11 @@ public class Ftfc {
                 List<Integer> sextet = sextet(n1, n2, n3, n4, n5, o);
 
                 Collections.sort(sextet);
+                sextets.add(sextet);
+            }
 
-                boolean vanishes = vanishes(sextet);
-
-                if (!vanishes) {
-                    continue CHOICE;
-                }
+            if (!allVanish(sextets)) {
+                continue;
             }
 
             List<Integer> _cluster = new ArrayList<>(pentad);
@@ -799,6 +802,8 @@ public class Ftfc {
         }
 
         if (vanishes(sextet)) {
+            List<List<Integer>> sextets = new ArrayList<>();
+
             for (int o : allVariables()) {
                 if (sextet.contains(o)) continue;
 
@@ -806,13 +811,14 @@ public class Ftfc {
                     List<Integer> _sextet = new ArrayList<>(sextet);
                     _sextet.remove(sextet.get(i));
                     _sextet.add(i, o);
-
-                    if (!(vanishes(_sextet))) {
-                        return false;
-                    }
+                    sextets.add(_sextet);
                 }
             }
 
+            if (!allVanish(sextets)) {
+                return false;
+            }
+
             System.out.println("PURE: " + variablesForIndices(sextet));
 
             return true;
@@ -928,6 +934,47 @@ public class Ftfc {
      * @return True if the sextet vanishes, false otherwise.
      */
     private boolean vanishes(List<Integer> sextet) {
+        for (Sextad[] sextads : tests(sextet)) {
+            if (!vanishes(sextads)) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Determines whether all the given sextets vanish. The tests of the sextets are run in parallel in batches,
+     * stopping at the first batch in which one does not vanish.
+     *
+     * @param sextets The lists of indices representing variables in the sextets.
+     * @return True if all of them vanish, false otherwise.
+     */
+    private boolean allVanish(List<List<Integer>> sextets) {
+        int batchSize = 4 * Runtime.getRuntime().availableProcessors();
+
+        for (int from = 0; from < sextets.size(); from += batchSize) {
+            if (Thread.currentThread().isInterrupted()) break;
+
+            List<Sextad[]> tests = new ArrayList<>();
+
+            for (List<Integer> sextet : sextets.subList(from, FastMath.min(from + batchSize, sextets.size()))) {
+                tests.addAll(tests(sextet));
+            }
+
+            for (double p : this.test.getPValues(tests)) {
+                if (Double.isNaN(p) || p < this.alpha) return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the tests that must all pass for a sextet to vanish, one for each of four orderings of its variables.
+     *
+     * @param sextet The list of indices representing variables in the sextet.
+     * @return The sextads of each test.
+     */
+    private List<Sextad[]> tests(List<Integer> sextet) {
         int n1 = sextet.get(0);
         int n2 = sextet.get(1);
         int n3 = sextet.get(2);
@@ -935,10 +982,10 @@ public class Ftfc {
         int n5 = sextet.get(4);
         int n6 = sextet.get(5);
 
-        return vanishes(n1, n2, n3, n4, n5, n6)
-               && vanishes(n3, n2, n1, n6, n5, n4)
-               && vanishes(n4, n5, n6, n1, n2, n3)
-               && vanishes(n6, n5, n4, n3, n2, n1);
+        return List.of(sextads(n1, n2, n3, n4, n5, n6),
+                sextads(n3, n2, n1, n6, n5, n4),
+                sextads(n4, n5, n6, n1, n2, n3),
+                sextads(n6, n5, n4, n3, n2, n1));
     }
 
     /**
@@ -966,7 +1013,7 @@ public class Ftfc {
     }
 
     /**
-     * Checks if the given numbers follow the vanishing pattern.
+     * Returns the independent sextads tested together for the given numbers.
      *
      * @param n1 first number
      * @param n2 second number
@@ -974,33 +1021,32 @@ public class Ftfc {
      * @param n4 fourth number
      * @param n5 fifth number
      * @param n6 sixth number
-     * @return true if the numbers follow the vanishing pattern; false otherwise
+     * @return The sextads.
      */
-    private boolean vanishes(int n1, int n2, int n3, int n4, int n5, int n6) {
+    private Sextad[] sextads(int n1, int n2, int n3, int n4, int n5, int n6) {
         Sextad t1 = new Sextad(n1, n2, n3, n4, n5, n6);
         Sextad t2 = new Sextad(n1, n5, n6, n2, n3, n4);
         Sextad t3 = new Sextad(n1, n4, n6, n2, n3, n5);
         Sextad t5 = new Sextad(n1, n3, n4, n2, n5, n6);
         Sextad t6 = new Sextad(n1, n3, n5, n2, n4, n6);
-        Sextad t7 = new Sextad(n1, n3, n6, n2, n4, n5);
-        Sextad t8 = new Sextad(n1, n2, n4, n3, n5, n6);
-        Sextad t9 = new Sextad(n1, n2, n5, n3, n4, n6);
-        Sextad t10 = new Sextad(n1, n2, n6, n3, n4, n5);
-
-        List<Sextad[]> independents = new ArrayList<>();
-        independents.add(new Sextad[]{t1, t2, t3, t5, t6});
 
-        for (Sextad[] sextads : independents) {
-            double p = this.test.getPValue(sextads);
+        return new Sextad[]{t1, t2, t3, t5, t6};
+    }
 
-            if (Double.isNaN(p)) {
-                return false;
-            }
+    /**
+     * Checks if the given sextads vanish together.
+     *
+     * @param sextads The sextads.
+     * @return true if the sextads vanish; false otherwise
+     */
+    private boolean vanishes(Sextad[] sextads) {
+        double p = this.test.getPValue(sextads);
 
-            if (p < this.alpha) return false;
+        if (Double.isNaN(p)) {
+            return false;
         }
 
-        return true;
+        return p >= this.alpha;
     }
 
     /**
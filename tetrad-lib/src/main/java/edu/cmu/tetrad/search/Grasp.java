@@ -9,9 +9,11 @@ import edu.cmu.tetrad.search.utils.TeyssierScorer;
 import edu.cmu.tetrad.util.MillisecondTimes;
 import edu.cmu.tetrad.util.RandomUtil;
 import edu.cmu.tetrad.util.TetradLogger;
+import org.apache.commons.math3.util.FastMath;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import static java.lang.Double.NEGATIVE_INFINITY;
 import static java.util.Collections.shuffle;
@@ -74,10 +76,6 @@ public class Grasp {
      * The scorer to be used.
      */
     private TeyssierScorer scorer;
-    /**
-     * The time at which the algorithm started.
-     */
-    private long start;
     /**
      * Whether to use the score or the test.
      */
@@ -120,6 +118,14 @@ public class Grasp {
      * Represents the seed used for random number generation or shuffling.
      */
     private long seed = -1;
+    /**
+     * The number of threads used for starts and for evaluating tucks.
+     */
+    private int numThreads = 1;
+    /**
+     * The pool for parallelism, while a search is running with more than one thread.
+     */
+    private ForkJoinPool pool;
 
     /**
      * Constructor for a score.
@@ -192,32 +198,68 @@ public class Grasp {
         }
 
         this.scorer.clearBookmarks();
-
-        List<Node> bestPerm = null;
-        double best = NEGATIVE_INFINITY;
-
         this.scorer.score(order);
 
-        for (int r = 0; r < this.numStarts; r++) {
-            if (Thread.currentThread().isInterrupted()) break;
+        // The starting permutations, and seeds for any internal randomness, are drawn here in sequence, so that for a
+        // given seed the result does not depend on the number of threads.
+        List<List<Node>> startOrders = new ArrayList<>();
+        long[] seeds = new long[FastMath.max(this.numStarts, 0)];
 
+        for (int r = 0; r < this.numStarts; r++) {
             if ((r == 0 && !this.useDataOrder) || r > 0) {
                 RandomUtil.shuffle(order);
             }
 
-            this.start = MillisecondTimes.timeMillis();
-
             makeValidKnowledgeOrder(order);
+            startOrders.add(new ArrayList<>(order));
+        }
+
+        if (this.allowInternalRandomness) {
+            for (int r = 0; r < this.numStarts; r++) {
+                seeds[r] = RandomUtil.getInstance().nextLong();
+            }
+        }
 
-            this.scorer.score(order);
+        List<List<Node>> perms = new ArrayList<>(Collections.nCopies(this.numStarts, null));
+        double[] scores = new double[this.numStarts];
+
+        if (this.numThreads > 1) {
+            this.pool = new ForkJoinPool(this.numThreads);
+        }
+
+        try {
+            if (this.pool == null || this.numStarts == 1) {
+                for (int r = 0; r < this.numStarts; r++) {
+                    if (Thread.currentThread().isInterrupted()) break;
+                    scores[r] = runStart(startOrders.get(r), seeds[r], perms, r);
+                }
+            } else {
+                List<Callable<Void>> tasks = new ArrayList<>();
+
+                for (int r = 0; r < this.numStarts; r++) {
+                    int _r = r;
+                    tasks.add(() -> {
+                        scores[_r] = runStart(startOrders.get(_r), seeds[_r], perms, _r);
+                        return null;
+                    });
+                }
 
-            List<Node> perm = grasp(this.scorer);
+                await(this.pool.invokeAll(tasks));
+            }
+        } finally {
+            if (this.pool != null) {
+                this.pool.shutdown();
+                this.pool = null;
+            }
+        }
 
-            this.scorer.score(perm);
+        List<Node> bestPerm = null;
+        double best = NEGATIVE_INFINITY;
 
-            if (this.scorer.score() > best) {
-                best = this.scorer.score();
-                bestPerm = perm;
+        for (int r = 0; r < this.numStarts; r++) {
+            if (perms.get(r) != null && scores[r] > best) {
+                best = scores[r];
+                bestPerm = perms.get(r);
             }
         }
 
@@ -235,6 +277,37 @@ public class Grasp {
         return new ArrayList<>(bestPerm);
     }
 
+    /**
+     * Runs GRaSP from the given starting permutation on a scorer of its own, which shares the cached local scores of
+     * the main scorer, and puts the discovered permutation in perms at index r.
+     *
+     * @return The score of the discovered permutation.
+     */
+    private double runStart(List<Node> order, long seed, List<List<Node>> perms, int r) throws InterruptedException {
+        TeyssierScorer scorer = new TeyssierScorer(this.scorer);
+        scorer.score(order);
+
+        List<Node> perm = grasp(scorer, new Random(seed), new ConcurrentLinkedQueue<>());
+        double score = scorer.score();
+        perms.set(r, perm);
+        return score;
+    }
+
+    /**
+     * Waits for the given tasks, rethrowing any exception thrown by one of them.
+     */
+    private static void await(List<Future<Void>> futures) throws InterruptedException {
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof InterruptedException) throw (InterruptedException) e.getCause();
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
     /**
      * Returns the number of edges in the DAG implied by the discovered permutation.
      *
@@ -411,10 +484,14 @@ public class Grasp {
     /**
      * Implements the GRaSP algorithm to search for a best permutation of variables based on a scorer.
      *
-     * @param scorer The scorer used to evaluate the permutations.
+     * @param scorer  The scorer used to evaluate the permutations.
+     * @param random  The source of internal randomness, if allowed.
+     * @param workers Idle scorers for evaluating tucks in parallel.
      * @return A list of Node objects representing the discovered permutation at the end of the procedure.
      */
-    private List<Node> grasp(@NotNull TeyssierScorer scorer) throws InterruptedException {
+    private List<Node> grasp(@NotNull TeyssierScorer scorer, Random random, Queue<TeyssierScorer> workers)
+            throws InterruptedException {
+        long start = MillisecondTimes.timeMillis();
         scorer.clearBookmarks();
         List<int[]> depths = new ArrayList<>();
 
@@ -440,7 +517,7 @@ public class Grasp {
         for (int[] depth : depths) {
             do {
                 sOld = sNew;
-                graspDfs(scorer, sOld, depth, 1, new HashSet<>(), new HashSet<>());
+                graspDfs(scorer, sOld, depth, 1, new HashSet<>(), new HashSet<>(), random, workers);
                 sNew = scorer.score();
             } while (sNew > sOld);
         }
@@ -449,7 +526,7 @@ public class Grasp {
             TetradLogger.getInstance().log("# Edges = " + scorer.getNumEdges()
                                            + " Score = " + scorer.score()
                                            + " (GRaSP)"
-                                           + " Elapsed " + ((MillisecondTimes.timeMillis() - this.start) / 1000.0 + " s"));
+                                           + " Elapsed " + ((MillisecondTimes.timeMillis() - start) / 1000.0 + " s"));
         }
 
         return scorer.getPi();
@@ -506,98 +583,172 @@ public class Grasp {
      * @param currentDepth the current depth of the DFS traversal
      * @param tucks        a set of sets of nodes representing the tucks performed
      * @param dfsHistory   a set of sets of sets of nodes representing the DFS history
+     * @param random       the source of internal randomness, if allowed
+     * @param workers      idle scorers for evaluating tucks in parallel
      */
     private void graspDfs(@NotNull TeyssierScorer scorer, double sOld, int[] depth, int currentDepth,
-                          Set<Set<Node>> tucks, Set<Set<Set<Node>>> dfsHistory) throws InterruptedException {
+                          Set<Set<Node>> tucks, Set<Set<Set<Node>>> dfsHistory, Random random,
+                          Queue<TeyssierScorer> workers) throws InterruptedException {
         List<Node> vars = scorer.getPi();
 
         if (allowInternalRandomness) {
-            shuffle(vars);
+            shuffle(vars, random);
         }
 
+        // Each tuck starts from the same permutation, so the candidates can be listed up front.
+        List<Node[]> candidates = new ArrayList<>();
+        Map<Node, Set<Node>> ancestors = new HashMap<>();
+
         for (Node y : vars) {
-            Set<Node> ancestors = scorer.getAncestors(y);
             List<Node> parents = new ArrayList<>(scorer.getParents(y));
 
+            if (parents.isEmpty()) continue;
+
+            ancestors.put(y, scorer.getAncestors(y));
+
             if (allowInternalRandomness) {
-                shuffle(parents);
+                shuffle(parents, random);
             }
 
             for (Node x : parents) {
-                if (Thread.currentThread().isInterrupted()) {
-                    return;
-                }
+                candidates.add(new Node[]{x, y});
+            }
+        }
 
-                boolean covered = scorer.coveredEdge(x, y);
-                boolean singular = true;
-                Set<Node> tuck = new HashSet<>();
-                tuck.add(x);
-                tuck.add(y);
-
-                if (covered && tucks.contains(tuck)) continue;
-                if (currentDepth > depth[1] && !covered) continue;
-
-                int[] idcs = new int[]{scorer.index(x), scorer.index(y)};
-
-                int i = idcs[0];
-                scorer.bookmark(currentDepth);
-
-                boolean first = true;
-                List<Node> Z = new ArrayList<>(scorer.getOrderShallow().subList(i + 1, idcs[1]));
-                Iterator<Node> zItr = Z.iterator();
-                do {
-                    if (first) {
-                        scorer.moveTo(y, i);
-                        first = false;
-                    } else {
-                        Node z = zItr.next();
-                        if (ancestors.contains(z)) {
-                            if (scorer.getParents(z).contains(x)) {
-                                singular = false;
-                            }
-                            scorer.moveTo(z, i++);
-                        }
-                    }
-                } while (zItr.hasNext());
-//                scorer.updateScores(idcs[0], idcs[1]);
+        // At the first level, tucks that lower the score are set aside in parallel, a batch at a time; the
+        // rest are tried in order below, just as they would be without threads.
+        boolean parallel = this.pool != null && currentDepth == 1;
+        int batch = 4 * this.numThreads;
+        double[] scores = null;
 
-                if (currentDepth > depth[2] && !singular) {
-                    scorer.goToBookmark(currentDepth);
-                    continue;
-                }
+        for (int c = 0; c < candidates.size(); c++) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
 
-                if (violatesKnowledge(scorer.getPi())) {
-                    scorer.goToBookmark(currentDepth);
-                    continue;
-                }
+            if (parallel && c % batch == 0) {
+                scores = scoreTucks(scorer, candidates.subList(c, FastMath.min(c + batch, candidates.size())),
+                        ancestors, depth, workers);
+            }
 
-                double sNew = scorer.score();
-                if (sNew > sOld) {
-                    if (verbose) {
-                        System.out.printf("Edges: %d \t|\t Score Improvement: %f \t|\t Tucks Performed: %s %s \n",
-                                scorer.getNumEdges(), sNew - sOld, tucks, tuck);
-                    }
-                    return;
+            Node x = candidates.get(c)[0];
+            Node y = candidates.get(c)[1];
+
+            boolean covered = scorer.coveredEdge(x, y);
+            Set<Node> tuck = new HashSet<>();
+            tuck.add(x);
+            tuck.add(y);
+
+            if (covered && tucks.contains(tuck)) continue;
+            if (currentDepth > depth[1] && !covered) continue;
+            if (parallel && !(scores[c % batch] >= sOld)) continue;
+
+            scorer.bookmark(currentDepth);
+
+            if (!tuck(scorer, x, y, ancestors.get(y), currentDepth, depth)) {
+                scorer.goToBookmark(currentDepth);
+                continue;
+            }
+
+            double sNew = scorer.score();
+            if (sNew > sOld) {
+                if (verbose) {
+                    System.out.printf("Edges: %d \t|\t Score Improvement: %f \t|\t Tucks Performed: %s %s \n",
+                            scorer.getNumEdges(), sNew - sOld, tucks, tuck);
                 }
+                return;
+            }
 
-                if (sNew == sOld && currentDepth < depth[0]) {
-                    tucks.add(tuck);
-                    if (currentDepth > depth[1]) {
-                        if (!dfsHistory.contains(tucks)) {
-                            dfsHistory.add(new HashSet<>(tucks));
-                            graspDfs(scorer, sOld, depth, currentDepth + 1, tucks, dfsHistory);
-                        }
-                    } else {
-                        graspDfs(scorer, sOld, depth, currentDepth + 1, tucks, dfsHistory);
+            if (sNew == sOld && currentDepth < depth[0]) {
+                tucks.add(tuck);
+                if (currentDepth > depth[1]) {
+                    if (!dfsHistory.contains(tucks)) {
+                        dfsHistory.add(new HashSet<>(tucks));
+                        graspDfs(scorer, sOld, depth, currentDepth + 1, tucks, dfsHistory, random, workers);
                     }
-                    tucks.remove(tuck);
+                } else {
+                    graspDfs(scorer, sOld, depth, currentDepth + 1, tucks, dfsHistory, random, workers);
                 }
+                tucks.remove(tuck);
+            }
 
-                if (scorer.score() > sOld) return;
+            if (scorer.score() > sOld) return;
 
-                scorer.goToBookmark(currentDepth);
+            scorer.goToBookmark(currentDepth);
+        }
+    }
+
+    /**
+     * Tucks x before y, moving the ancestors of y between them along with it.
+     *
+     * @return false if the tuck is not allowed at this depth, because it is not singular, or because it violates the
+     * knowledge; the scorer should then be returned to its bookmark.
+     */
+    private boolean tuck(TeyssierScorer scorer, Node x, Node y, Set<Node> ancestors, int currentDepth, int[] depth) {
+        boolean singular = true;
+        int i = scorer.index(x);
+        int j = scorer.index(y);
+
+        List<Node> Z = new ArrayList<>(scorer.getOrderShallow().subList(i + 1, j));
+        scorer.moveTo(y, i);
+
+        for (Node z : Z) {
+            if (ancestors.contains(z)) {
+                if (scorer.getParents(z).contains(x)) {
+                    singular = false;
+                }
+                scorer.moveTo(z, i++);
             }
         }
+
+        if (currentDepth > depth[2] && !singular) {
+            return false;
+        }
+
+        return !violatesKnowledge(scorer.getPi());
+    }
+
+    /**
+     * Scores the given first-level tucks in parallel, each on a scorer set to the current permutation of the given
+     * scorer.
+     *
+     * @return The score after each tuck, or NaN if the tuck is not allowed.
+     */
+    private double[] scoreTucks(TeyssierScorer scorer, List<Node[]> candidates, Map<Node, Set<Node>> ancestors,
+                                int[] depth, Queue<TeyssierScorer> workers) throws InterruptedException {
+        List<Node> pi = scorer.getPi();
+        double[] scores = new double[candidates.size()];
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        for (int k = 0; k < candidates.size(); k++) {
+            int _k = k;
+            Node x = candidates.get(k)[0];
+            Node y = candidates.get(k)[1];
+
+            tasks.add(() -> {
+                TeyssierScorer worker = workers.poll();
+                boolean stale = worker == null || !worker.getOrderShallow().equals(pi);
+                if (worker == null) worker = new TeyssierScorer(scorer);
+
+                try {
+                    if (stale) worker.score(pi);
+
+                    scores[_k] = Double.NaN;
+                    if (1 > depth[1] && !worker.coveredEdge(x, y)) return null;
+
+                    worker.bookmark(1);
+                    if (tuck(worker, x, y, ancestors.get(y), 1, depth)) scores[_k] = worker.score();
+                    worker.goToBookmark(1);
+                } finally {
+                    workers.add(worker);
+                }
+
+                return null;
+            });
+        }
+
+        await(this.pool.invokeAll(tasks));
+        return scores;
     }
 
     /**
@@ -608,4 +759,16 @@ public class Grasp {
     public void setSeed(long seed) {
         this.seed = seed;
     }
+
+    /**
+     * Sets the number of threads to use. With more than one thread, starts run in parallel, and the tucks available
+     * at the first level of each depth-first search are scored in parallel before being tried in order. Starts share
+     * cached local scores, and for a given seed the result is the same for any number of threads.
+     *
+     * @param numThreads The number of threads to use. Must be at least 1.
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) throw new IllegalArgumentException("The number of threads must be at least 1.");
+        this.numThreads = numThreads;
+    }
 }
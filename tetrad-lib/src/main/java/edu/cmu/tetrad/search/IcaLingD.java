@@ -95,6 +95,21 @@ public class IcaLingD {
      */
     private double bThreshold = 0.1;
 
+    /**
+     * The number of threads FastICA uses in each fixed-point step.
+     */
+    private int numThreads = 1;
+
+    /**
+     * Whether FastICA holds the whitened data in float precision.
+     */
+    private boolean floatPrecision = false;
+
+    /**
+     * The number of samples FastICA uses in each fixed-point step, or 0 for all of them.
+     */
+    private int batchSize = 0;
+
     /**
      * Constructor.
      */
@@ -125,6 +140,27 @@ public class IcaLingD {
      * @return The estimated W matrix.
      */
     public static Matrix estimateW(DataSet data, int fastIcaMaxIter, double fastIcaTolerance, double fastIcaA, boolean verbose) {
+        return estimateW(data, fastIcaMaxIter, fastIcaTolerance, fastIcaA, verbose, 1, false, 0);
+    }
+
+    /**
+     * Estimates the W matrix using FastICA. Assumes the "parallel" option, using the "exp" function.
+     *
+     * @param data             The dataset to estimate W for.
+     * @param fastIcaMaxIter   Maximum number of iterations of ICA.
+     * @param fastIcaTolerance Tolerance for ICA.
+     * @param fastIcaA         Alpha for ICA.
+     * @param verbose          Whether to print the Anderson-Darling test results.
+     * @param numThreads       The number of threads used in each fixed-point step of ICA.
+     * @param floatPrecision   Whether ICA holds the whitened data in float precision.
+     * @param batchSize        The number of samples used in each fixed-point step of ICA, or 0 for all of them.
+     * @return The estimated W matrix.
+     * @see FastIca#setNumThreads(int)
+     * @see FastIca#setFloatPrecision(boolean)
+     * @see FastIca#setBatchSize(int)
+     */
+    public static Matrix estimateW(DataSet data, int fastIcaMaxIter, double fastIcaTolerance, double fastIcaA,
+                                   boolean verbose, int numThreads, boolean floatPrecision, int batchSize) {
         double[][] _data = data.getDoubleData().transpose().toArray();
 
         if (verbose) {
@@ -153,6 +189,9 @@ public class IcaLingD {
         fastIca.setFunction(FastIca.LOGCOSH);
         fastIca.setRowNorm(false);
         fastIca.setAlpha(fastIcaA);
+        fastIca.setNumThreads(numThreads);
+        fastIca.setFloatPrecision(floatPrecision);
+        fastIca.setBatchSize(batchSize);
         FastIca.IcaResult result = fastIca.findComponents();
 
         return result.getW().transpose();
@@ -356,7 +395,8 @@ public class IcaLingD {
      * @return The BHat matrix, where B[i][j] gives the coefficient of j->i if nonzero.
      */
     public List<Matrix> fit(DataSet D) {
-        Matrix W = IcaLingD.estimateW(D, 10000, 1e-6, 1.1, true);
+        Matrix W = IcaLingD.estimateW(D, 10000, 1e-6, 1.1, true, this.numThreads, this.floatPrecision,
+                this.batchSize);
         return getScaledBHats(W);
     }
 
@@ -422,6 +462,35 @@ public class IcaLingD {
         if (wThreshold < 0) throw new IllegalArgumentException("Expecting a non-negative number: " + wThreshold);
         this.wThreshold = wThreshold;
     }
-}
 
+    /**
+     * Sets the number of threads FastICA uses in each fixed-point step, when W is estimated by fit().
+     *
+     * @param numThreads This number; must be at least 1.
+     * @see FastIca#setNumThreads(int)
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Sets whether FastICA holds the whitened data in float precision, when W is estimated by fit().
+     *
+     * @param floatPrecision True, if so.
+     * @see FastIca#setFloatPrecision(boolean)
+     */
+    public void setFloatPrecision(boolean floatPrecision) {
+        this.floatPrecision = floatPrecision;
+    }
 
+    /**
+     * Sets the number of samples FastICA uses in each fixed-point step, when W is estimated by fit().
+     *
+     * @param batchSize This number, or 0 for all of them.
+     * @see FastIca#setBatchSize(int)
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
@@ -84,6 +84,18 @@ public class IcaLingam {
      * A boolean indicating whether to print verbose output.
      */
     private boolean verbose = false;
+    /**
+     * The number of threads FastICA uses in each fixed-point step.
+     */
+    private int numThreads = 1;
+    /**
+     * Whether FastICA holds the whitened data in float precision.
+     */
+    private boolean floatPrecision = false;
+    /**
+     * The number of samples FastICA uses in each fixed-point step, or 0 for all of them.
+     */
+    private int batchSize = 0;
 
     /**
      * Constructor.
@@ -98,7 +110,8 @@ public class IcaLingam {
      * @return The BHat matrix, where B[i][j] gives the coefficient of j->i if nonzero.
      */
     public Matrix fit(DataSet D) {
-        Matrix W = IcaLingD.estimateW(D, 5000, 1e-6, 1.2, true);
+        Matrix W = IcaLingD.estimateW(D, 5000, 1e-6, 1.2, true, this.numThreads, this.floatPrecision,
+                this.batchSize);
         return getAcyclicTrimmedBHat(W);
     }
 
@@ -216,5 +229,35 @@ public class IcaLingam {
     public void setVerbose(boolean verbose) {
         this.verbose = verbose;
     }
-}
 
+    /**
+     * Sets the number of threads FastICA uses in each fixed-point step, when W is estimated by fit().
+     *
+     * @param numThreads This number; must be at least 1.
+     * @see FastIca#setNumThreads(int)
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Sets whether FastICA holds the whitened data in float precision, when W is estimated by fit().
+     *
+     * @param floatPrecision True, if so.
+     * @see FastIca#setFloatPrecision(boolean)
+     */
+    public void setFloatPrecision(boolean floatPrecision) {
+        this.floatPrecision = floatPrecision;
+    }
+
+    /**
+     * Sets the number of samples FastICA uses in each fixed-point step, when W is estimated by fit().
+     *
+     * @param batchSize This number, or 0 for all of them.
+     * @see FastIca#setBatchSize(int)
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
@@ -6,14 +6,18 @@ import edu.cmu.tetrad.data.ICovarianceMatrix;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.GraphUtils;
 import edu.cmu.tetrad.graph.Node;
-import edu.cmu.tetrad.search.utils.LogUtilsSearch;
+import edu.cmu.tetrad.graph.OrderedPair;
 import edu.cmu.tetrad.util.ChoiceGenerator;
+import edu.cmu.tetrad.util.ForkJoinUtils;
 import edu.cmu.tetrad.util.Matrix;
 import edu.cmu.tetrad.util.SublistGenerator;
 import edu.cmu.tetrad.util.TetradLogger;
 import org.apache.commons.math3.linear.SingularMatrixException;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
 
 import static org.apache.commons.math3.util.FastMath.abs;
 import static org.apache.commons.math3.util.FastMath.min;
@@ -52,6 +56,14 @@ public class Ida {
      * The covariance matrix for the dataset.
      */
     private final ICovarianceMatrix allCovariances;
+    /**
+     * The regressions for each possible cause, computed on first use.
+     */
+    private final Map<Node, List<Regression>> regressions = new ConcurrentHashMap<>();
+    /**
+     * The number of threads used by the batch methods.
+     */
+    private int numThreads = Runtime.getRuntime().availableProcessors();
 
     /**
      * Constructor.
@@ -61,9 +73,21 @@ public class Ida {
      * @param possibleCauses The possible causes to be considered.
      */
     public Ida(DataSet dataSet, Graph graph, List<Node> possibleCauses) {
+        this(covariances(dataSet), graph, possibleCauses);
+    }
+
+    /**
+     * Constructor. Lets the caller share a covariance matrix that has already been computed, e.g., for the search that
+     * produced the graph.
+     *
+     * @param covariances    The covariance matrix of the data being searched over.
+     * @param graph          The graph model. Should be a DAG or a CPDAG.
+     * @param possibleCauses The possible causes to be considered.
+     */
+    public Ida(ICovarianceMatrix covariances, Graph graph, List<Node> possibleCauses) {
         // Check nullity
-        if (dataSet == null) {
-            throw new NullPointerException("Data set must not be null.");
+        if (covariances == null) {
+            throw new NullPointerException("Covariance matrix must not be null.");
         }
 
         if (graph == null) {
@@ -79,22 +103,38 @@ public class Ida {
             throw new IllegalArgumentException("Expecting a DAG or a CPDAG.");
         }
 
-        // Check that the dataset is continuous.
-        if (!dataSet.isContinuous()) {
-            throw new IllegalArgumentException("Expecting a continuous dataset.");
-        }
-
         this.cpdag = graph;
-        possibleCauses = GraphUtils.replaceNodes(possibleCauses, dataSet.getVariables());
+        possibleCauses = GraphUtils.replaceNodes(possibleCauses, covariances.getVariables());
         this.possibleCauses = possibleCauses;
-        this.allCovariances = new CovarianceMatrix(dataSet);
+        this.allCovariances = covariances;
         this.nodeIndices = new HashMap<>();
 
-        for (int i = 0; i < graph.getNodes().size(); i++) {
-            this.nodeIndices.put(graph.getNodes().get(i).getName(), i);
+        List<String> names = this.allCovariances.getVariableNames();
+
+        for (int i = 0; i < names.size(); i++) {
+            this.nodeIndices.put(names.get(i), i);
         }
     }
 
+    /**
+     * Returns the covariance matrix of the given dataset, which must be continuous.
+     *
+     * @param dataSet The dataset.
+     * @return Its covariance matrix.
+     */
+    private static ICovarianceMatrix covariances(DataSet dataSet) {
+        if (dataSet == null) {
+            throw new NullPointerException("Data set must not be null.");
+        }
+
+        // Check that the dataset is continuous.
+        if (!dataSet.isContinuous()) {
+            throw new IllegalArgumentException("Expecting a continuous dataset.");
+        }
+
+        return new CovarianceMatrix(dataSet);
+    }
+
     /**
      * Returns the distance between the effects and the true effect.
      *
@@ -133,65 +173,36 @@ public class Ida {
      * sorted in ascending order.
      */
     public LinkedList<Double> getTotalEffects(Node x, Node y) {
-        List<Node> parents = this.cpdag.getParents(x);
-        List<Node> children = this.cpdag.getChildren(x);
-
-        List<Node> siblings = new ArrayList<>(this.cpdag.getAdjacentNodes(x));
-        siblings.removeAll(parents);
-        siblings.removeAll(children);
-
-        int size = siblings.size();
-        SublistGenerator gen = new SublistGenerator(size, size);
-        int[] choice;
-
+        int yIndex = this.nodeIndices.get(y.getName());
         LinkedList<Double> totalEffects = new LinkedList<>();
 
-        CHOICE:
-        while ((choice = gen.next()) != null) {
-            try {
-                List<Node> siblingsChoice = GraphUtils.asList(choice, siblings);
-
-                if (siblingsChoice.size() > 1) {
-                    ChoiceGenerator gen2 = new ChoiceGenerator(siblingsChoice.size(), 2);
-                    int[] choice2;
-
-                    while ((choice2 = gen2.next()) != null) {
-                        List<Node> adj = GraphUtils.asList(choice2, siblingsChoice);
-                        if (this.cpdag.isAdjacentTo(adj.get(0), adj.get(1))) continue CHOICE;
-                    }
-                }
-
-                if (!siblingsChoice.isEmpty()) {
-                    for (Node p : parents) {
-                        for (Node s : siblingsChoice) {
-                            if (this.cpdag.isAdjacentTo(p, s)) continue CHOICE;
-                        }
-                    }
-                }
-
-                Set<Node> _regressors = new HashSet<>();
-                _regressors.add(x);
-                _regressors.addAll(parents);
-                _regressors.addAll(siblingsChoice);
-                List<Node> regressors = new ArrayList<>(_regressors);
+        for (Regression regression : getRegressions(x)) {
+            totalEffects.add(regression.getBeta(yIndex, this.allCovariances));
+        }
 
-                System.out.println(x + " to " + y + " regressors: " + regressors);
+        Collections.sort(totalEffects);
+        return totalEffects;
+    }
 
-                double beta;
+    /**
+     * Calculates the total effects for each of the given pairs of nodes, running the regressions for different causes
+     * in parallel.
+     *
+     * @param pairs The (x, y) pairs.
+     * @return A map from each pair to the total effects of x on y, sorted in ascending order, as given by
+     * getTotalEffects(x, y).
+     * @see #getTotalEffects(Node, Node)
+     */
+    public Map<OrderedPair<Node>, LinkedList<Double>> getTotalEffects(List<OrderedPair<Node>> pairs) {
+        List<Node> causes = new ArrayList<>(new LinkedHashSet<>(pairs.stream().map(OrderedPair::getFirst).toList()));
+        forEachParallel(causes.size(), i -> getRegressions(causes.get(i)));
 
-                if (regressors.contains(y)) {
-                    beta = 0.0;
-                } else {
-                    beta = getBeta(regressors, x, y);
-                }
+        Map<OrderedPair<Node>, LinkedList<Double>> totalEffects = new LinkedHashMap<>();
 
-                totalEffects.add(beta);
-            } catch (Exception e) {
-                TetradLogger.getInstance().log(e.getMessage());
-            }
+        for (OrderedPair<Node> pair : pairs) {
+            totalEffects.put(pair, getTotalEffects(pair.getFirst(), pair.getSecond()));
         }
 
-        Collections.sort(totalEffects);
         return totalEffects;
     }
 
@@ -233,41 +244,176 @@ public class Ida {
     }
 
     /**
-     * Calculates the beta coefficient for a given set of regressors and a child node.
-     * <p>
-     * Note that x must be the first regressor.
+     * Returns the minimum total effect of each possible cause on each of the given effects, as given by
+     * calculateMinimumTotalEffectsOnY, running the regressions for different causes in parallel. The regressions for
+     * each cause are run once and give its effects on all the given effects at once.
      *
-     * @param regressors The list of regressor nodes.
-     * @param parent     The parent node for which the beta coefficient is calculated.
-     * @param child      The child node for which the beta coefficient is calculated.
-     * @return The beta coefficient for the parent->child regression.
-     * @throws RuntimeException If a singularity is encountered during the regression process.
+     * @param effects The possible effects.
+     * @return The minimum total effects, indexed by possible cause and then effect; 0.0 where either node is not in
+     * the graph.
+     * @see #calculateMinimumTotalEffectsOnY(Node)
      */
-    private double getBeta(List<Node> regressors, Node parent, Node child) {
-        if (!regressors.contains(parent))
-            throw new IllegalArgumentException("The regressors must contain the parent node.");
+    public double[][] calculateMinimumTotalEffects(List<Node> effects) {
+        double[][] minEffects = new double[this.possibleCauses.size()][effects.size()];
 
-        try {
-            int xIndex = regressors.indexOf(parent);
-            int yIndex = this.nodeIndices.get(child.getName());
-            int[] xIndices = new int[regressors.size()];
-            for (int i = 0; i < regressors.size(); i++) xIndices[i] = this.nodeIndices.get(regressors.get(i).getName());
-
-            Matrix rX = this.allCovariances.getSelection(xIndices, xIndices);
-            Matrix rY = this.allCovariances.getSelection(xIndices, new int[]{yIndex});
-            Matrix bStar = null;
-
-            try {
-                bStar = rX.inverse().times(rY);
-            } catch (SingularMatrixException e) {
-                System.out.println("Singularity encountered when regressing " +
-                                   LogUtilsSearch.getScoreFact(child, regressors));
+        forEachParallel(this.possibleCauses.size(), c -> {
+            Node x = this.possibleCauses.get(c);
+            if (!this.cpdag.containsNode(x)) return;
+
+            List<Regression> regressions = getRegressions(x);
+
+            for (int e = 0; e < effects.size(); e++) {
+                Node y = effects.get(e);
+                if (!this.cpdag.containsNode(y)) continue;
+
+                int yIndex = this.nodeIndices.get(y.getName());
+                double min = Double.POSITIVE_INFINITY;
+
+                for (Regression regression : regressions) {
+                    min = min(min, regression.getBeta(yIndex, this.allCovariances));
+                }
+
+                minEffects[c][e] = min;
+            }
+        });
+
+        return minEffects;
+    }
+
+    /**
+     * Sets the number of threads used by the batch methods. By default, this is the number of available processors.
+     *
+     * @param numThreads The number of threads, at least 1.
+     * @throws IllegalArgumentException If numThreads is less than 1.
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+        }
+
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Returns the regressions for x, one for each valid choice of siblings of x taken as its parents, computing them
+     * on first use. They are computed outside the map, so that threads computing regressions for other causes are not
+     * blocked; if two threads compute them for the same cause, the first stored is kept.
+     */
+    private List<Regression> getRegressions(Node x) {
+        List<Regression> regressions = this.regressions.get(x);
+        if (regressions != null) return regressions;
+
+        List<Regression> calculated = calculateRegressions(x);
+        regressions = this.regressions.putIfAbsent(x, calculated);
+        return regressions == null ? calculated : regressions;
+    }
+
+    private List<Regression> calculateRegressions(Node x) {
+        List<Node> parents = this.cpdag.getParents(x);
+        List<Node> children = this.cpdag.getChildren(x);
+
+        List<Node> siblings = new ArrayList<>(this.cpdag.getAdjacentNodes(x));
+        siblings.removeAll(parents);
+        siblings.removeAll(children);
+
+        int size = siblings.size();
+        SublistGenerator gen = new SublistGenerator(size, size);
+        int[] choice;
+
+        List<Regression> regressions = new ArrayList<>();
+
+        CHOICE:
+        while ((choice = gen.next()) != null) {
+            List<Node> siblingsChoice = GraphUtils.asList(choice, siblings);
+
+            if (siblingsChoice.size() > 1) {
+                ChoiceGenerator gen2 = new ChoiceGenerator(siblingsChoice.size(), 2);
+                int[] choice2;
+
+                while ((choice2 = gen2.next()) != null) {
+                    List<Node> adj = GraphUtils.asList(choice2, siblingsChoice);
+                    if (this.cpdag.isAdjacentTo(adj.get(0), adj.get(1))) continue CHOICE;
+                }
             }
 
-            return bStar != null ? bStar.get(xIndex, 0) : 0.0;
+            if (!siblingsChoice.isEmpty()) {
+                for (Node p : parents) {
+                    for (Node s : siblingsChoice) {
+                        if (this.cpdag.isAdjacentTo(p, s)) continue CHOICE;
+                    }
+                }
+            }
+
+            Set<Node> _regressors = new LinkedHashSet<>();
+            _regressors.add(x);
+            _regressors.addAll(parents);
+            _regressors.addAll(siblingsChoice);
+            List<Node> regressors = new ArrayList<>(_regressors);
+
+            regressions.add(getRegression(regressors));
+        }
+
+        return regressions;
+    }
+
+    /**
+     * Returns the regression on the given regressors, the first of which is x, keeping the row of the inverse of their
+     * covariance matrix for x.
+     */
+    private Regression getRegression(List<Node> regressors) {
+        int[] xIndices = new int[regressors.size()];
+        for (int i = 0; i < regressors.size(); i++) xIndices[i] = this.nodeIndices.get(regressors.get(i).getName());
+
+        Matrix rX = this.allCovariances.getSelection(xIndices, xIndices);
+        double[] weights = null;
+
+        try {
+            weights = rX.inverse().getRow(0).toArray();
         } catch (SingularMatrixException e) {
-            throw new RuntimeException("Singularity encountered when regressing " +
-                                       LogUtilsSearch.getScoreFact(child, regressors));
+            TetradLogger.getInstance().log("Singularity encountered when regressing on " + regressors);
+        }
+
+        return new Regression(xIndices, weights);
+    }
+
+    /**
+     * Runs the action for each index in parallel.
+     */
+    private void forEachParallel(int n, IntConsumer action) {
+        ForkJoinPool pool = new ForkJoinPool(this.numThreads);
+
+        try {
+            ForkJoinUtils.forRange(pool, n, action);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * A regression of any variable on a set of regressors, the first of which is x, given by the row for x of the
+     * inverse of the covariance matrix of the regressors, or null if it is singular. The coefficient of x for y is the
+     * dot product of this row with the covariances of the regressors with y.
+     *
+     * @param regressors The indices of the regressors in the covariance matrix.
+     * @param weights    The row for x of the inverse of their covariance matrix.
+     */
+    private record Regression(int[] regressors, double[] weights) {
+
+        /**
+         * Returns the coefficient of x when y is regressed on the regressors, 0.0 if y is one of them or they are
+         * singular.
+         */
+        private double getBeta(int y, ICovarianceMatrix covariances) {
+            if (this.weights == null) return 0.0;
+
+            double beta = 0.0;
+
+            for (int k = 0; k < this.regressors.length; k++) {
+                if (this.regressors[k] == y) return 0.0;
+                beta += this.weights[k] * covariances.getValue(this.regressors[k], y);
+            }
+
+            return beta;
         }
     }
 
@@ -109,9 +109,13 @@ public class IdaCheck {
         this.ida = new Ida(dataSet, graph, nodes);
         this.pairs = calcOrderedPairs();
 
-        for (OrderedPair<Node> pair : calcOrderedPairs()) {
-            LinkedList<Double> totalEffects = ida.getTotalEffects(pair.getFirst(), pair.getSecond());
-            LinkedList<Double> absTotalEffects = ida.getAbsTotalEffects(pair.getFirst(), pair.getSecond());
+        Map<OrderedPair<Node>, LinkedList<Double>> allTotalEffects = ida.getTotalEffects(this.pairs);
+
+        for (OrderedPair<Node> pair : this.pairs) {
+            LinkedList<Double> totalEffects = allTotalEffects.get(pair);
+            LinkedList<Double> absTotalEffects = new LinkedList<>();
+            for (double d : totalEffects) absTotalEffects.add(Math.abs(d));
+            Collections.sort(absTotalEffects);
             this.totalEffects.put(pair, totalEffects);
             this.absTotalEffects.put(pair, absTotalEffects);
         }
@@ -237,9 +237,11 @@ public class MarkovCheck implements EffectiveSampleSizeSettable {
         for (Node p : parents) graphNodes_others.remove(p);
 
         List<IndependenceFact> factList = new ArrayList<>();
+
+        // One MsepTest for all y, so that x _||_ y | parents is answered by a single traversal from x.
+        MsepTest msepTest = new MsepTest(graph);
+
         for (Node y : graphNodes_others) {
-            // Make a new MsepTest based on the true graph.
-            MsepTest msepTest = new MsepTest(graph);
             IndependenceResult testRes = msepTest.checkIndependence(x, y, parents);
             if (testRes.isIndependent()) factList.add(testRes.getFact());
         }
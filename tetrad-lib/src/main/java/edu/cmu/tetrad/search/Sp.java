@@ -3,19 +3,22 @@ package edu.cmu.tetrad.search;
 import edu.cmu.tetrad.data.Knowledge;
 import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.search.score.Score;
+import edu.cmu.tetrad.search.utils.ExactOrderSearch;
 import edu.cmu.tetrad.search.utils.GrowShrinkTree;
 
 import java.util.*;
 
 /**
- * Implements the SP (Sparsest Permutation) algorithm. This procedure goes through every permutation of the variables
- * (so can be slow for more than 11 variables with no knowledge) looking for a permutation such that when a DAG is built
- * it has the fewest number of edges (i.e., is a most 'frugal' or a 'sparsest' DAG). The procedure can in principle
- * return all such sparsest permutations and their corresponding DAGs, but in this version it return one of them, and
- * converts the result into a CPDAG.
+ * Implements the SP (Sparsest Permutation) algorithm. This procedure searches over every permutation of the variables
+ * for one such that when a DAG is built it has the best score, which for a BIC score is a most 'frugal' or a
+ * 'sparsest' DAG. The procedure can in principle return all such sparsest permutations and their corresponding DAGs,
+ * but in this version it return one of them, and converts the result into a CPDAG.
  * <p>
- * Note that SP considers all permutations of the algorithm, which is exponential in the number of variables. So SP
- * without knowledge is limited to about 10 variables per knowledge tier.
+ * Rather than going through the permutations one at a time, SP finds a best one by dynamic programming over subsets of
+ * the variables (see ExactOrderSearch), with the best set of parents for each variable among the variables before it.
+ * The result is a DAG that maximizes the score exactly, but the time and memory needed are exponential in the number
+ * of variables, so SP without knowledge is limited to about 25 to 30 variables per knowledge tier, fewer if the number
+ * of parents is not limited.
  * <p>
  * However, notably, tiered Knowledge can be used with this search. If tiered knowledge is used, then the procedure is
  * carried out for each tier separately, given the variable preceding that tier, which allows the SP algorithm to
@@ -34,7 +37,7 @@ import java.util.*;
  * @author josephramsey
  * @version $Id: $Id
  * @see PermutationSearch
- * @see Knowledge
+ * @see ExactOrderSearch
  * @see Knowledge
  * @see Knowledge
  * @see Knowledge
@@ -65,14 +68,22 @@ public class Sp implements SuborderSearch {
      * The parents of each variable.
      */
     private final Map<Node, Set<Node>> parents;
-    /**
-     * The GrowShrinkTree for each variable.
-     */
-    private Map<Node, GrowShrinkTree> gsts;
     /**
      * The knowledge.
      */
     private Knowledge knowledge = new Knowledge();
+    /**
+     * The maximum number of parents of a variable, or -1 for no limit.
+     */
+    private int maxParents = -1;
+    /**
+     * The number of threads to use.
+     */
+    private int numThreads = 1;
+    /**
+     * The number of bytes of search tables to keep in memory.
+     */
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 2;
 
     /**
      * This algorithm will work with an arbitrary score.
@@ -94,44 +105,29 @@ public class Sp implements SuborderSearch {
      *
      * @param prefix   The prefix of the suborder.
      * @param suborder The suborder.
-     * @param gsts     The GrowShrinkTree being used to do caching of scores.
+     * @param gsts     The GrowShrinkTree being used to do caching of scores; not used, since the exact search chooses
+     *                 parents itself.
      */
     @Override
-    public void searchSuborder(List<Node> prefix, List<Node> suborder, Map<Node, GrowShrinkTree> gsts) {
-        this.gsts = gsts;
-        makeValidKnowledgeOrder(suborder);
-        List<Node> bestSuborder = new ArrayList<>(suborder);
-        double bestScore = update(prefix, suborder);
-
-        Map<Node, Set<Node>> required = new HashMap<>();
-        for (Node y : suborder) {
-            for (Node z : suborder) {
-                if (this.knowledge.isRequired(y.getName(), z.getName())) {
-                    if (!required.containsKey(y)) required.put(y, new HashSet<>());
-                    required.get(y).add(z);
-                }
-            }
-        }
+    public void searchSuborder(List<Node> prefix, List<Node> suborder, Map<Node, GrowShrinkTree> gsts)
+            throws InterruptedException {
+        ExactOrderSearch search = new ExactOrderSearch(this.score, prefix, suborder);
+        search.setKnowledge(this.knowledge);
+        search.setMaxParents(this.maxParents);
+        search.setNumThreads(this.numThreads);
+        search.setMemoryBudget(this.memoryBudget);
 
-        int[] swap;
-        double s;
-        SwapIterator itr = new SwapIterator(suborder.size());
-        while (itr.hasNext()) {
-            swap = itr.next();
-            Node x = suborder.get(swap[0]);
-            suborder.set(swap[0], suborder.get(swap[1]));
-            suborder.set(swap[1], x);
-            s = update(prefix, suborder);
-            if (s > bestScore && !violatesKnowledge(suborder, required)) {
-                bestSuborder = new ArrayList<>(suborder);
-                bestScore = s;
-            }
-        }
+        List<Node> bestSuborder = search.search();
 
         for (int i = 0; i < suborder.size(); i++) {
             suborder.set(i, bestSuborder.get(i));
         }
-        update(prefix, suborder);
+
+        for (Node x : suborder) {
+            Set<Node> parents = this.parents.get(x);
+            parents.clear();
+            parents.addAll(search.getParents().get(x));
+        }
     }
 
     /**
@@ -175,149 +171,33 @@ public class Sp implements SuborderSearch {
     }
 
     /**
-     * Makes the order of nodes valid according to the knowledge rules. The order list will be sorted based on the
-     * knowledge rules if the knowledge is not empty.
+     * Sets the maximum number of parents of a variable, or -1 for no limit, the default.
      *
-     * @param order the list of nodes to be sorted
+     * @param maxParents This number.
      */
-    private void makeValidKnowledgeOrder(List<Node> order) {
-        if (!this.knowledge.isEmpty()) {
-            order.sort((a, b) -> {
-                if (a.getName().equals(b.getName())) return 0;
-                else if (this.knowledge.isRequired(a.getName(), b.getName())) return -1;
-                else if (this.knowledge.isRequired(b.getName(), a.getName())) return 1;
-                else return 0;
-            });
-        }
+    public void setMaxParents(int maxParents) {
+        if (maxParents < -1) throw new IllegalArgumentException("Max parents should be >= -1.");
+        this.maxParents = maxParents;
     }
 
     /**
-     * Checks if the given suborder violates the knowledge rules.
+     * Sets the number of threads to use.
      *
-     * @param suborder The suborder to check.
-     * @param required The mapping of nodes to their required parent nodes.
-     * @return True if the suborder violates the knowledge rules, false otherwise.
+     * @param numThreads The number of threads to use. Must be at least 1.
      */
-    private boolean violatesKnowledge(List<Node> suborder, Map<Node, Set<Node>> required) {
-        for (int i = 0; i < suborder.size(); i++) {
-            Node y = suborder.get(i);
-            if (required.containsKey(y)) {
-                for (Node z : required.get(y)) {
-                    if (suborder.subList(0, i).contains(z)) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) throw new IllegalArgumentException("The number of threads must be at least 1.");
+        this.numThreads = numThreads;
     }
 
     /**
-     * Updates the score of the suborder by adding nodes from the suborder to the prefix one by one and calculating the
-     * score.
+     * Sets the number of bytes of search tables to keep in memory; past this, tables are kept in memory-mapped
+     * temporary files. The default is half the maximum memory of the JVM.
      *
-     * @param prefix   The prefix of the suborder.
-     * @param suborder The suborder.
-     * @return The updated score of the suborder.
+     * @param memoryBudget This number of bytes.
      */
-    private double update(List<Node> prefix, List<Node> suborder) {
-        double score = 0;
-        Set<Node> all = new HashSet<>(suborder);
-        all.addAll(prefix);
-
-        Set<Node> Z = new HashSet<>(prefix);
-
-        for (Node x : suborder) {
-            Set<Node> parents = this.parents.get(x);
-            parents.clear();
-            score += this.gsts.get(x).trace(Z, all, parents);
-            Z.add(x);
-        }
-
-        return score;
-    }
-
-    /**
-     * SwapIterator is an Iterator implementation that generates all possible swaps between two elements in an array. It
-     * can be used to generate all possible permutations of a given array.
-     */
-    private static class SwapIterator implements Iterator<int[]> {
-        private final int n;
-        private final int[] perm;
-        private final int[] dirs;
-        private int[] next;
-
-        public SwapIterator(int size) {
-            this.n = size;
-            if (this.n <= 0) {
-                this.perm = null;
-                this.dirs = null;
-            } else {
-                this.perm = new int[n];
-                this.dirs = new int[n];
-                for (int i = 0; i < n; i++) {
-                    this.perm[i] = i;
-                    this.dirs[i] = -1;
-                }
-                this.dirs[0] = 0;
-            }
-        }
-
-        private static void swap(int i, int j, int[] arr) {
-            int x = arr[i];
-            arr[i] = arr[j];
-            arr[j] = x;
-        }
-
-        @Override
-        public int[] next() {
-            int[] next = makeNext();
-            this.next = null;
-            return next;
-        }
-
-        @Override
-        public boolean hasNext() {
-            return makeNext() != null;
-        }
-
-        @Override
-        public void remove() {
-            throw new UnsupportedOperationException();
-        }
-
-        private int[] makeNext() {
-            if (this.next != null) return this.next;
-            if ((this.dirs == null) || (this.perm == null)) return null;
-
-            int i = -1;
-            int x = -1;
-            for (int j = 0; j < n; j++)
-                if ((this.dirs[j] != 0) && (this.perm[j] > x)) {
-                    x = this.perm[j];
-                    i = j;
-                }
-
-            if (i == -1) return null;
-
-            int k = i + this.dirs[i];
-            this.next = new int[]{i, k};
-
-            swap(i, k, this.dirs);
-            swap(i, k, this.perm);
-
-            if ((k == 0) || (k == n - 1) || (this.perm[k + this.dirs[k]] > x))
-                this.dirs[k] = 0;
-
-            for (int j = 0; j < n; j++)
-                if (this.perm[j] > x)
-                    this.dirs[j] = (j < k) ? +1 : -1;
-
-            return this.next;
-        }
+    public void setMemoryBudget(long memoryBudget) {
+        if (memoryBudget < 0) throw new IllegalArgumentException("The memory budget must be at least 0.");
+        this.memoryBudget = memoryBudget;
     }
 }
-
-
-
-
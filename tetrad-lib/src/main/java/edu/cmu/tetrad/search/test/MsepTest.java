@@ -46,9 +46,9 @@ public class MsepTest implements IndependenceTest {
      */
     private final Map<IndependenceFact, IndependenceResult> facts = new ConcurrentHashMap<>();
     /**
-     * This variable stores a map that maps each node to a set of its ancestors.
+     * Answers m-connection queries for the graph, one traversal per (x, Z) shared by all y.
      */
-    private Map<Node, Set<Node>> ancestorMap;
+    private BayesBall bayesBall;
     /**
      * Represents the independence facts used for direct calculations of m-separation. This variable is of type
      * IndependenceFacts.
@@ -130,7 +130,7 @@ public class MsepTest implements IndependenceTest {
 
         this.graph = graph;
 
-        this.ancestorMap = graph.paths().getDescendantsMap();
+        this.bayesBall = new BayesBall(graph);
         this._observedVars = calcVars(graph.getNodes(), keepLatents);
         this.observedVars = new ArrayList<>(_observedVars);
         this.hasLatents = false;
@@ -259,7 +259,7 @@ public class MsepTest implements IndependenceTest {
         boolean mSeparated;
 
         if (graph != null) {
-            mSeparated = !getGraph().paths().isMConnectedTo(x, y, z, ancestorMap, isPag);
+            mSeparated = !bayesBall.isMConnectedTo(x, y, z);
         } else {
             mSeparated = independenceFacts.isIndependent(x, y, z);
         }
@@ -310,7 +310,7 @@ public class MsepTest implements IndependenceTest {
             }
         }
 
-        return getGraph().paths().isMSeparatedFrom(x, y, z, ancestorMap, hasLatents);
+        return !bayesBall.isMConnectedTo(x, y, z);
     }
 
     /**
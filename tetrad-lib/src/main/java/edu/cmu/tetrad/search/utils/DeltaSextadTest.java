@@ -30,6 +30,7 @@ import org.apache.commons.math3.linear.SingularMatrixException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -45,6 +46,10 @@ public class DeltaSextadTest {
     private final ICovarianceMatrix cov;
     private final List<Node> variables;
     private double[][] data;
+    /**
+     * The fourth moments of the data, if a data set was given.
+     */
+    private FourthMoments fourthMoments;
 
     // As input we require a data set and a list of non-redundant Tetrads.
 
@@ -72,6 +77,7 @@ public class DeltaSextadTest {
 
         Matrix centered = DataTransforms.centerData(dataSet.getDoubleData());
         this.data = centered.transpose().toArray();
+        this.fourthMoments = new FourthMoments(this.data);
         this.N = dataSet.getNumRows();
         this.variables = dataSet.getVariables();
     }
@@ -118,6 +124,17 @@ public class DeltaSextadTest {
         return 1.0 - cdf;
     }
 
+    /**
+     * Returns the p-values for a batch of tests, each of a list of sextads tested together. The tests are evaluated in
+     * parallel, sharing the cache of fourth moments.
+     *
+     * @param tests The tests, each an array of the sextads to be tested together.
+     * @return The p-values, in the order of the tests.
+     */
+    public double[] getPValues(List<Sextad[]> tests) {
+        return tests.parallelStream().mapToDouble(this::getPValue).toArray();
+    }
+
     /**
      * Takes a list of tetrads for the given data set and returns the chi square value for the test. We assume that the
      * tetrads are non-redundant; if not, a matrix exception will be thrown.
@@ -143,6 +160,22 @@ public class DeltaSextadTest {
 
         List<Sigma> boldSigma = new ArrayList<>(boldSigmaSet);
 
+        // The fourth moments, if needed, are calculated together.
+        Map<Long, Double> moments = null;
+
+        if (!(this.cov instanceof CorrelationMatrix) && this.data != null) {
+            List<int[]> quadruples = new ArrayList<>();
+
+            for (int i = 0; i < boldSigma.size(); i++) {
+                for (int j = i; j < boldSigma.size(); j++) {
+                    quadruples.add(new int[]{boldSigma.get(i).getA(), boldSigma.get(i).getB(),
+                            boldSigma.get(j).getA(), boldSigma.get(j).getB()});
+                }
+            }
+
+            moments = this.fourthMoments.getAll(quadruples);
+        }
+
         // Need a matrix of variances and covariances of sample covariances.
         Matrix sigma_ss = new Matrix(boldSigma.size(), boldSigma.size());
 
@@ -182,7 +215,7 @@ public class DeltaSextadTest {
                     sigma_ss.set(i, j, _ss);
                     sigma_ss.set(j, i, _ss);
                 } else {
-                    double _ss = r(e, f, g, h) - r(e, f) * r(g, h);
+                    double _ss = moments.get(FourthMoments.key(e, f, g, h)) - r(e, f) * r(g, h);
                     sigma_ss.set(i, j, _ss);
                     sigma_ss.set(j, i, _ss);
                 }
@@ -231,6 +264,19 @@ public class DeltaSextadTest {
         return chisq;
     }
 
+    /**
+     * Sets the largest number of fourth moments that are cached for reuse across tests; by default 65536. Raising it
+     * helps searches that test many sextads over many variables, at the cost of memory. It has no effect if the test
+     * was constructed from a covariance matrix.
+     *
+     * @param maxCachedMoments The number of moments; zero to cache none.
+     */
+    public void setMaxCachedMoments(int maxCachedMoments) {
+        if (this.fourthMoments != null) {
+            this.fourthMoments.setMaxCached(maxCachedMoments);
+        }
+    }
+
     /**
      * Returns the variables of the data being used.
      *
@@ -307,24 +353,6 @@ public class DeltaSextadTest {
         return 0.0;
     }
 
-    // Assumes data are mean-centered.
-    private double r(int x, int y, int z, int w) {
-        double sxyzw = 0.0;
-
-        double[] _x = this.data[x];
-        double[] _y = this.data[y];
-        double[] _z = this.data[z];
-        double[] _w = this.data[w];
-
-        int N = _x.length;
-
-        for (int j = 0; j < N; j++) {
-            sxyzw += _x[j] * _y[j] * _z[j] * _w[j];
-        }
-
-        return (1.0 / N) * sxyzw;
-    }
-
     // Assumes data are mean-centered.
     private double r(double[] array1, double[] array2, int N) {
         int i;
@@ -32,11 +32,15 @@ import java.util.*;
  * Implements a test for simultaneously zero tetrads in Bollen, K. (1990). "Outlier screening and distribution-free test
  * for vanishing tetrads." Sociological Methods and Research 19, 80-92 and Bollen and Ting, Confirmatory Tetrad
  * Analysis.
+ * <p>
+ * Fourth moments are cached by variable quadruple, and those a test needs that are not yet cached are calculated
+ * together in one pass through the data. A batch of tests can be evaluated in parallel with getPValues.
  *
  * @author josephramsey
  * @version $Id: $Id
  */
 public class DeltaTetradTest {
+
     private final int N;
     private final ICovarianceMatrix cov;
     private final List<Node> variables;
@@ -46,6 +50,11 @@ public class DeltaTetradTest {
     private int df;
     private double chisq;
 
+    /**
+     * The fourth moments of the data, if a data set was given.
+     */
+    private FourthMoments fourthMoments;
+
     // As input we require a data set and a list of non-redundant Tetrads.
 
     // Need a method to remove Tetrads from the input list until what's left is
@@ -77,6 +86,7 @@ public class DeltaTetradTest {
         this.dataSet = data2.get(0);
 
         this.data = this.dataSet.getDoubleData().transpose().toArray();
+        this.fourthMoments = new FourthMoments(this.data);
         this.N = dataSet.getNumRows();
         this.variables = dataSet.getVariables();
 
@@ -121,165 +131,197 @@ public class DeltaTetradTest {
      */
     public double calcChiSquare(Tetrad... tetrads) {
         this.df = tetrads.length;
+        this.chisq = chiSquare(tetrads);
+        return this.chisq;
+    }
+
+    /**
+     * <p>getPValue.</p>
+     *
+     * @return the p value for the most recent test.
+     */
+    public double getPValue() {
+        return pValue(this.chisq, this.df);
+    }
+
+    /**
+     * Returns a p-value for the given list of tetrad.
+     *
+     * @param tetrads The tetrad for which a p-vaue is needed.
+     * @return The p-value.
+     */
+    public double getPValue(Tetrad... tetrads) {
+        calcChiSquare(tetrads);
+        return getPValue();
+    }
+
+    /**
+     * Returns the p-values for a batch of tests, each of a list of tetrads tested together. The tests are evaluated in
+     * parallel, sharing the cache of fourth moments. Unlike getPValue, this does not change the most recent test.
+     *
+     * @param tests The tests, each an array of the tetrads to be tested together.
+     * @return The p-values, in the order of the tests.
+     */
+    public double[] getPValues(List<Tetrad[]> tests) {
+        return tests.parallelStream().mapToDouble(tetrads -> pValue(chiSquare(tetrads), tetrads.length)).toArray();
+    }
+
+    /**
+     * Sets the largest number of fourth moments that are cached for reuse across tests; by default 65536. Raising it
+     * helps searches that test many tetrads over many variables, at the cost of memory. It has no effect if the test
+     * was constructed from a covariance matrix.
+     *
+     * @param maxCachedMoments The number of moments; zero to cache none.
+     */
+    public void setMaxCachedMoments(int maxCachedMoments) {
+        if (this.fourthMoments != null) {
+            this.fourthMoments.setMaxCached(maxCachedMoments);
+        }
+    }
+
+    /**
+     * Returns the variables.
+     *
+     * @return The variables.
+     */
+    public List<Node> getVariables() {
+        return this.variables;
+    }
+
+    /**
+     * Calculates the T statistic for the given tetrads without changing the state of the test, so that it may be called
+     * concurrently.
+     */
+    private double chiSquare(Tetrad[] tetrads) {
+        int[][] t = new int[tetrads.length][];
+
+        for (int i = 0; i < tetrads.length; i++) {
+            Tetrad tetrad = tetrads[i];
+            t[i] = new int[]{index(tetrad.getI()), index(tetrad.getJ()), index(tetrad.getK()), index(tetrad.getL())};
+        }
 
         // Need a list of symbolic covariances--i.e. covariances that appear in tetrads.
-        Set<Sigma> boldSigmaSet = new LinkedHashSet<>();
+        List<int[]> boldSigma = new ArrayList<>();
 
-        for (Tetrad tetrad : tetrads) {
-            boldSigmaSet.add(new Sigma(tetrad.getI(), tetrad.getK()));
-            boldSigmaSet.add(new Sigma(tetrad.getI(), tetrad.getL()));
-            boldSigmaSet.add(new Sigma(tetrad.getJ(), tetrad.getK()));
-            boldSigmaSet.add(new Sigma(tetrad.getJ(), tetrad.getL()));
+        for (int[] tetrad : t) {
+            addSigma(boldSigma, tetrad[0], tetrad[2]);
+            addSigma(boldSigma, tetrad[0], tetrad[3]);
+            addSigma(boldSigma, tetrad[1], tetrad[2]);
+            addSigma(boldSigma, tetrad[1], tetrad[3]);
         }
 
-        List<Sigma> boldSigma = new ArrayList<>(boldSigmaSet);
+        int k = boldSigma.size();
+        boolean fourthMoments = !(this.cov instanceof CorrelationMatrix) && this.dataSet != null;
+        Map<Long, Double> moments = null;
+
+        if (fourthMoments) {
+            List<int[]> quadruples = new ArrayList<>();
+
+            for (int i = 0; i < k; i++) {
+                for (int j = i; j < k; j++) {
+                    quadruples.add(new int[]{boldSigma.get(i)[0], boldSigma.get(i)[1], boldSigma.get(j)[0],
+                            boldSigma.get(j)[1]});
+                }
+            }
+
+            moments = this.fourthMoments.getAll(quadruples);
+        }
 
-        // Need a matrix of variances and covariances of sample covariances.
-        Matrix sigma_ss = new Matrix(boldSigma.size(), boldSigma.size());
+        // Need a matrix of variances and covariances of sample covariances. It is symmetric.
+        Matrix sigma_ss = new Matrix(k, k);
 
-        for (int i = 0; i < boldSigma.size(); i++) {
-            for (int j = 0; j < boldSigma.size(); j++) {
-                Sigma sigmaef = boldSigma.get(i);
-                Sigma sigmagh = boldSigma.get(j);
+        for (int i = 0; i < k; i++) {
+            for (int j = i; j < k; j++) {
+                int e = boldSigma.get(i)[0];
+                int f = boldSigma.get(i)[1];
+                int g = boldSigma.get(j)[0];
+                int h = boldSigma.get(j)[1];
 
-                Node e = sigmaef.getA();
-                Node f = sigmaef.getB();
-                Node g = sigmagh.getA();
-                Node h = sigmagh.getB();
+                double _ss;
 
-                if (this.cov != null && this.cov instanceof CorrelationMatrix) {
+                if (this.cov instanceof CorrelationMatrix) {
 
 //                Assumes multinormality. Using formula 23. (Not implementing formula 22 because that case
 //                does not come up.)
-                    double rr = 0.5 * (sxy(e, f) * sxy(g, h))
-                                * (sxy(e, g) * sxy(e, g) + sxy(e, h) * sxy(e, h) + sxy(f, g) * sxy(f, g) + sxy(f, h) * sxy(f, h))
-                                + sxy(e, g) * sxy(f, h) + sxy(e, h) * sxy(f, g)
-                                - sxy(e, f) * (sxy(f, g) * sxy(f, h) + sxy(e, g) * sxy(e, h))
-                                - sxy(g, h) * (sxy(f, g) * sxy(e, g) + sxy(f, h) * sxy(e, h));
-
-                    sigma_ss.set(i, j, rr);
-                } else if (this.cov != null && this.dataSet == null) {
+                    _ss = 0.5 * (sxy(e, f) * sxy(g, h))
+                          * (sxy(e, g) * sxy(e, g) + sxy(e, h) * sxy(e, h) + sxy(f, g) * sxy(f, g) + sxy(f, h) * sxy(f, h))
+                          + sxy(e, g) * sxy(f, h) + sxy(e, h) * sxy(f, g)
+                          - sxy(e, f) * (sxy(f, g) * sxy(f, h) + sxy(e, g) * sxy(e, h))
+                          - sxy(g, h) * (sxy(f, g) * sxy(e, g) + sxy(f, h) * sxy(e, h));
+                } else if (this.dataSet == null) {
 
                     // Assumes multinormality--see p. 160.
-                    double _ss = sxy(e, g) * sxy(f, h) - sxy(e, h) * sxy(f, g);   // + or -? Different advise. + in the code.
-                    sigma_ss.set(i, j, _ss);
+                    _ss = sxy(e, g) * sxy(f, h) - sxy(e, h) * sxy(f, g);   // + or -? Different advise. + in the code.
                 } else {
-                    double _ss = sxyzw(e, f, g, h) - sxy(e, f) * sxy(g, h);
-                    sigma_ss.set(i, j, _ss);
+                    _ss = moments.get(FourthMoments.key(e, f, g, h)) - sxy(e, f) * sxy(g, h);
                 }
+
+                sigma_ss.set(i, j, _ss);
+                sigma_ss.set(j, i, _ss);
             }
         }
 
         // Need a matrix of of population estimates of partial derivatives of tetrads
-        // with respect to covariances in boldSigma.w
-        Matrix del = new Matrix(boldSigma.size(), tetrads.length);
-
-        for (int i = 0; i < boldSigma.size(); i++) {
-            for (int j = 0; j < tetrads.length; j++) {
-                Sigma sigma = boldSigma.get(i);
-                Tetrad tetrad = tetrads[j];
-
-                Node e = tetrad.getI();
-                Node f = tetrad.getJ();
-                Node g = tetrad.getK();
-                Node h = tetrad.getL();
-
-                double derivative = getDerivative(e, f, g, h, sigma.getA(), sigma.getB());
-                del.set(i, j, derivative);
+        // with respect to covariances in boldSigma.
+        Matrix del = new Matrix(k, t.length);
+
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j < t.length; j++) {
+                int[] sigma = boldSigma.get(i);
+                int[] tetrad = t[j];
+                del.set(i, j, getDerivative(tetrad[0], tetrad[1], tetrad[2], tetrad[3], sigma[0], sigma[1]));
             }
         }
 
         // Need a vector of population estimates of the tetrads.
-        Matrix t = new Matrix(tetrads.length, 1);
+        Matrix tt = new Matrix(t.length, 1);
 
-        for (int i = 0; i < tetrads.length; i++) {
-            Tetrad tetrad = tetrads[i];
-
-            Node e = tetrad.getI();
-            Node f = tetrad.getJ();
-            Node g = tetrad.getK();
-            Node h = tetrad.getL();
-
-            double d1 = sxy(e, f);
-            double d2 = sxy(g, h);
-            double d3 = sxy(e, g);
-            double d4 = sxy(f, h);
+        for (int i = 0; i < t.length; i++) {
+            int e = t[i][0];
+            int f = t[i][1];
+            int g = t[i][2];
+            int h = t[i][3];
 
-            double value = d1 * d2 - d3 * d4;
-            t.set(i, 0, value);
+            tt.set(i, 0, sxy(e, f) * sxy(g, h) - sxy(e, g) * sxy(f, h));
         }
 
         // Now multiply to get Sigma_tt
-        Matrix w1 = del.transpose().times(sigma_ss);
-        Matrix sigma_tt = w1.times(del);
+        Matrix sigma_tt = del.transpose().times(sigma_ss).times(del);
 
         // And now invert and multiply to get T.
         Matrix v0 = sigma_tt.inverse();
-        Matrix v1 = t.transpose().times(v0);
-        Matrix v2 = v1.times(t);
-        double chisq = this.N * v2.get(0, 0);
-
-        this.chisq = chisq;
-
-        return chisq;
+        Matrix v2 = tt.transpose().times(v0).times(tt);
+        return this.N * v2.get(0, 0);
     }
 
     /**
-     * <p>getPValue.</p>
-     *
-     * @return the p value for the most recent test.
+     * Adds the covariance of a and b to the list if it is not already there, in either order.
      */
-    public double getPValue() {
-        double cdf = new ChiSquaredDistribution(this.df).cumulativeProbability(this.chisq);
-        return 1.0 - cdf;
-    }
-
-    /**
-     * Returns a p-value for the given list of tetrad.
-     *
-     * @param tetrads The tetrad for which a p-vaue is needed.
-     * @return The p-value.
-     */
-    public double getPValue(Tetrad... tetrads) {
-        calcChiSquare(tetrads);
-        return getPValue();
-    }
-
-    private double sxyzw(Node e, Node f, Node g, Node h) {
-        if (this.dataSet == null) {
-            throw new IllegalArgumentException("To calculate sxyzw, tabular data is needed.");
+    private static void addSigma(List<int[]> boldSigma, int a, int b) {
+        for (int[] sigma : boldSigma) {
+            if ((sigma[0] == a && sigma[1] == b) || (sigma[0] == b && sigma[1] == a)) return;
         }
 
-        int x = this.variablesHash.get(e);
-        int y = this.variablesHash.get(f);
-        int z = this.variablesHash.get(g);
-        int w = this.variablesHash.get(h);
+        boldSigma.add(new int[]{a, b});
+    }
 
-        return getForthMoment(x, y, z, w);
+    private static double pValue(double chisq, int df) {
+        double cdf = new ChiSquaredDistribution(df).cumulativeProbability(chisq);
+        return 1.0 - cdf;
     }
 
-    private double getForthMoment(int x, int y, int z, int w) {
-        return sxyzw(x, y, z, w);
+    private int index(Node node) {
+        return this.variablesHash.get(node);
     }
 
     /**
-     * If using a covariance matrix or a correlation matrix, just returns the lookups. Otherwise calculates the
-     * covariance.
+     * Returns the covariance lookup.
      */
-    private double sxy(Node _node1, Node _node2) {
-        int i = this.variablesHash.get(_node1);
-        int j = this.variablesHash.get(_node2);
-
-        if (this.cov != null) {
-            return this.cov.getValue(i, j);
-        } else {
-            double[] arr1 = this.data[i];
-            double[] arr2 = this.data[j];
-            return sxy(arr1, arr2, arr1.length);
-        }
+    private double sxy(int i, int j) {
+        return this.cov.getValue(i, j);
     }
 
-    private double getDerivative(Node node1, Node node2, Node node3, Node node4, Node a, Node b) {
+    private double getDerivative(int node1, int node2, int node3, int node4, int a, int b) {
         if (node1 == a && node2 == b) {
             return sxy(node3, node4);
         }
@@ -314,69 +356,4 @@ public class DeltaTetradTest {
 
         return 0.0;
     }
-
-    private double sxyzw(int x, int y, int z, int w) {
-        double sxyzw = 0.0;
-
-        double[] _x = this.data[x];
-        double[] _y = this.data[y];
-        double[] _z = this.data[z];
-        double[] _w = this.data[w];
-
-        int N = _x.length;
-
-        for (int j = 0; j < N; j++) {
-            sxyzw += _x[j] * _y[j] * _z[j] * _w[j];
-        }
-
-        return (1.0 / N) * sxyzw;
-    }
-
-    private double sxy(double[] array1, double[] array2, int N) {
-        int i;
-        double sum = 0.0;
-
-        for (i = 0; i < N; i++) {
-            sum += array1[i] * array2[i];
-        }
-
-        return (1.0 / N) * sum;
-    }
-
-    private static class Sigma {
-        private final Node a;
-        private final Node b;
-
-        public Sigma(Node a, Node b) {
-            this.a = a;
-            this.b = b;
-        }
-
-        public Node getA() {
-            return this.a;
-        }
-
-        public Node getB() {
-            return this.b;
-        }
-
-        public boolean equals(Object o) {
-            if (!(o instanceof Sigma _o)) {
-                throw new IllegalArgumentException();
-            }
-
-            return (_o.getA().equals(getA()) && _o.getB().equals(getB())) || (_o.getB().equals(getA()) && _o.getA().equals(getB()));
-        }
-
-        public int hashCode() {
-            return this.a.hashCode() + this.b.hashCode();
-        }
-
-        public String toString() {
-            return "Sigma(" + getA() + ", " + getB() + ")";
-        }
-    }
 }
-
-
-
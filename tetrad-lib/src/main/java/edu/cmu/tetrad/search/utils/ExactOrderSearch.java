@@ -0,0 +1,616 @@
+package edu.cmu.tetrad.search.utils;
+
+import edu.cmu.tetrad.data.Knowledge;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.score.Score;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Finds an order of a set of variables, following a fixed prefix of other variables, and parents for each of them, that
+ * maximize a decomposable score exactly, by dynamic programming over subsets of the variables. The reference is here:
+ * <p>
+ * Silander, T., &amp; Myllymäki, P. (2006). A simple approach for finding the globally optimal Bayesian network
+ * structure. In Proceedings of the Twenty-Second Conference on Uncertainty in Artificial Intelligence (pp. 445-452).
+ * <p>
+ * The parents of a variable are drawn from the prefix and the variables that precede it. For a variable x and a set C
+ * of the other variables, the best parent set of x within C is either C itself, with the best choice of parents from
+ * the prefix, or the best parent set of x within C minus one variable. For a set S of the variables, the best score of
+ * an order of S is, over the choices of a last variable x in S, the best score of an order of S minus x plus the score
+ * of the best parent set of x within S minus x. Both tables are filled in layers by the size of the set, each layer in
+ * parallel from the one before, so only two layers of each are kept, along with the choice of last variable for each
+ * set. Sets are numbered within a layer by their rank in colexicographic order, so the layers are stored without gaps.
+ * Layers are kept in memory up to a budget, and past that in temporary memory-mapped files.
+ * <p>
+ * For n variables, the search computes n 2^(n - 1) best parent sets and keeps about 2^n records for the choices of
+ * last variables, so it is practical up to 25 to 30 variables. For each variable and set of other variables, every
+ * choice of parents from the prefix is scored if there are at most 4096 of them, given the limit on parents; past
+ * that, parents from the prefix are chosen by growing and shrinking, so the search is exact in the order of the
+ * variables but not in the choice of parents from a long prefix. Forbidden edges are never used, and required edges
+ * are always used, so the order respects required edges among the variables.
+ *
+ * @author josephramsey
+ * @see edu.cmu.tetrad.search.Sp
+ */
+public class ExactOrderSearch {
+
+    /**
+     * A best parent set: its score (double) and the parents it uses among the other variables (int).
+     */
+    private static final int PARENTS_BYTES = 12;
+    /**
+     * The best score of an order of a set (double).
+     */
+    private static final int ORDER_BYTES = 8;
+    /**
+     * The last variable in a best order of a set (byte) and its parents among the other variables (int).
+     */
+    private static final int SINK_BYTES = 5;
+    /**
+     * The number of sets handled by one task.
+     */
+    private static final int TASK_SIZE = 4096;
+    /**
+     * The largest number of choices of parents from the prefix that are all scored for a variable and a set of other
+     * variables; past this, parents from the prefix are chosen by growing and shrinking.
+     */
+    private static final long MAX_PREFIX_CHOICES = 4096;
+
+    private final Score score;
+    private final List<Node> prefix;
+    private final List<Node> variables;
+    private final int n;
+    private final long[][] binomial = new long[33][33];
+    private Knowledge knowledge = new Knowledge();
+    private int maxParents = -1;
+    private int numThreads = 1;
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+
+    // For each variable, the score index of it and of the other variables, by bit.
+    private int[] indices;
+    private int[][] others;
+    // For each variable, the other variables that are forbidden or required as parents, by bit.
+    private int[] forbidden;
+    private int[] required;
+    // For each variable, the score indices of prefix variables that are required or allowed as parents.
+    private int[][] requiredPrefix;
+    private int[][] allowedPrefix;
+
+    private List<Node> order;
+    private Map<Node, Set<Node>> parents;
+    private double bestScore = Double.NaN;
+
+    /**
+     * Constructs a search for an order of the given variables following the given prefix.
+     *
+     * @param score     The score to maximize; all the variables must be variables of the score.
+     * @param prefix    The variables that precede all the others, which may be parents of any of them.
+     * @param variables The variables to order; at most 31.
+     */
+    public ExactOrderSearch(Score score, List<Node> prefix, List<Node> variables) {
+        if (variables.size() > 31) {
+            throw new IllegalArgumentException("Exact search is limited to 31 variables at a time: "
+                                               + variables.size());
+        }
+
+        this.score = score;
+        this.prefix = new ArrayList<>(prefix);
+        this.variables = new ArrayList<>(variables);
+        this.n = variables.size();
+
+        for (int a = 0; a < this.binomial.length; a++) {
+            this.binomial[a][0] = 1;
+
+            for (int b = 1; b <= a; b++) {
+                this.binomial[a][b] = this.binomial[a - 1][b - 1] + this.binomial[a - 1][b];
+            }
+        }
+    }
+
+    /**
+     * Finds a best order of the variables and the parents of each.
+     *
+     * @return The best order.
+     * @throws InterruptedException     If the search is interrupted.
+     * @throws IllegalArgumentException If no order is consistent with the knowledge and the limit on parents.
+     */
+    public List<Node> search() throws InterruptedException {
+        initializeConstraints();
+
+        SubsetTable.Budget budget = new SubsetTable.Budget(this.memoryBudget);
+        SubsetTable[] sinks = new SubsetTable[this.n + 1];
+        SubsetTable previousParents = null;
+        SubsetTable previousOrders = new SubsetTable(1, ORDER_BYTES, budget);
+        previousOrders.putDouble(0, 0, 0.0);
+        ForkJoinPool pool = this.numThreads > 1 ? new ForkJoinPool(this.numThreads) : null;
+
+        try {
+            for (int k = 1; k <= this.n; k++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+
+                // Best parent sets within sets of k - 1 other variables.
+                SubsetTable parentSets = new SubsetTable(this.n * this.binomial[this.n - 1][k - 1], PARENTS_BYTES,
+                        budget);
+                fillParentSets(pool, k - 1, previousParents, parentSets);
+
+                if (previousParents != null) previousParents.close();
+                previousParents = parentSets;
+
+                // Best orders of sets of k variables.
+                SubsetTable orders = new SubsetTable(this.binomial[this.n][k], ORDER_BYTES, budget);
+                sinks[k] = new SubsetTable(this.binomial[this.n][k], SINK_BYTES, budget);
+                fillOrders(pool, k, previousOrders, parentSets, orders, sinks[k]);
+
+                previousOrders.close();
+                previousOrders = orders;
+            }
+
+            this.bestScore = previousOrders.getDouble(0, 0);
+
+            if (this.bestScore == Double.NEGATIVE_INFINITY) {
+                throw new IllegalArgumentException("No order of the variables is consistent with the knowledge and "
+                                                   + "the limit on parents.");
+            }
+
+            reconstruct(sinks);
+        } finally {
+            if (pool != null) pool.shutdown();
+            if (previousParents != null) previousParents.close();
+            previousOrders.close();
+
+            for (SubsetTable sink : sinks) {
+                if (sink != null) sink.close();
+            }
+        }
+
+        return new ArrayList<>(this.order);
+    }
+
+    /**
+     * Returns the best order found by the last search.
+     *
+     * @return This order.
+     */
+    public List<Node> getOrder() {
+        return new ArrayList<>(this.order);
+    }
+
+    /**
+     * Returns the parents of each of the variables in the best order found by the last search.
+     *
+     * @return A map from each variable to its parents.
+     */
+    public Map<Node, Set<Node>> getParents() {
+        return this.parents;
+    }
+
+    /**
+     * Returns the total local score of the variables in the best order found by the last search.
+     *
+     * @return This score.
+     */
+    public double getScore() {
+        return this.bestScore;
+    }
+
+    /**
+     * Sets the knowledge. Forbidden edges are not used, and required edges are used.
+     *
+     * @param knowledge This knowledge.
+     */
+    public void setKnowledge(Knowledge knowledge) {
+        this.knowledge = knowledge;
+    }
+
+    /**
+     * Sets the maximum number of parents of a variable, or -1 for no limit, the default.
+     *
+     * @param maxParents This number.
+     */
+    public void setMaxParents(int maxParents) {
+        if (maxParents < -1) throw new IllegalArgumentException("Max parents should be >= -1.");
+        this.maxParents = maxParents;
+    }
+
+    /**
+     * Sets the number of threads used to fill each layer.
+     *
+     * @param numThreads The number of threads to use. Must be at least 1.
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) throw new IllegalArgumentException("The number of threads must be at least 1.");
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Sets the number of bytes of layers to keep in memory; layers past this are kept in memory-mapped temporary files.
+     * The default is half the maximum memory of the JVM.
+     *
+     * @param memoryBudget This number of bytes.
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        if (memoryBudget < 0) throw new IllegalArgumentException("The memory budget must be at least 0.");
+        this.memoryBudget = memoryBudget;
+    }
+
+    private void initializeConstraints() {
+        Map<Node, Integer> index = new HashMap<>();
+        List<Node> scoreVariables = this.score.getVariables();
+
+        for (int i = 0; i < scoreVariables.size(); i++) {
+            index.put(scoreVariables.get(i), i);
+        }
+
+        this.indices = new int[this.n];
+        this.others = new int[this.n][Math.max(this.n - 1, 0)];
+        this.forbidden = new int[this.n];
+        this.required = new int[this.n];
+        this.requiredPrefix = new int[this.n][];
+        this.allowedPrefix = new int[this.n][];
+
+        for (int x = 0; x < this.n; x++) {
+            String name = this.variables.get(x).getName();
+            this.indices[x] = index.get(this.variables.get(x));
+
+            for (int y = 0; y < this.n; y++) {
+                if (y == x) continue;
+
+                int bit = y < x ? y : y - 1;
+                String parent = this.variables.get(y).getName();
+                this.others[x][bit] = index.get(this.variables.get(y));
+
+                if (this.knowledge.isForbidden(parent, name)) this.forbidden[x] |= 1 << bit;
+                else if (this.knowledge.isRequired(parent, name)) this.required[x] |= 1 << bit;
+            }
+
+            List<Integer> requiredParents = new ArrayList<>();
+            List<Integer> allowedParents = new ArrayList<>();
+
+            for (Node node : this.prefix) {
+                if (this.knowledge.isForbidden(node.getName(), name)) continue;
+                if (this.knowledge.isRequired(node.getName(), name)) requiredParents.add(index.get(node));
+                else allowedParents.add(index.get(node));
+            }
+
+            this.requiredPrefix[x] = requiredParents.stream().mapToInt(Integer::intValue).toArray();
+            this.allowedPrefix[x] = allowedParents.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Fills in the best parent set of each variable within each set of size other variables, from the best parent sets
+     * within sets of size - 1.
+     */
+    private void fillParentSets(ForkJoinPool pool, int size, SubsetTable previous, SubsetTable parentSets) {
+        long count = this.binomial[this.n - 1][size];
+        long previousCount = size > 0 ? this.binomial[this.n - 1][size - 1] : 0;
+
+        forEachSubset(pool, this.n - 1, size, this.n, (x, rank, set) -> {
+            double best = Double.NEGATIVE_INFINITY;
+            int bestSet = set;
+
+            for (int rest = set; rest != 0; rest &= rest - 1) {
+                long record = x * previousCount + rank(set & ~(rest & -rest));
+                double s = previous.getDouble(record, 0);
+
+                if (s > best) {
+                    best = s;
+                    bestSet = previous.getInt(record, 8);
+                }
+            }
+
+            double s = localScore(x, set, null);
+
+            if (s > best) {
+                best = s;
+                bestSet = set;
+            }
+
+            parentSets.putDouble(x * count + rank, 0, best);
+            parentSets.putInt(x * count + rank, 8, bestSet);
+        });
+    }
+
+    /**
+     * Fills in the best score of an order of each set of size variables, and the last variable of that order, from the
+     * best scores of orders of sets of size - 1.
+     */
+    private void fillOrders(ForkJoinPool pool, int size, SubsetTable previous, SubsetTable parentSets,
+                            SubsetTable orders, SubsetTable sinks) {
+        long parentSetCount = this.binomial[this.n - 1][size - 1];
+
+        forEachSubset(pool, this.n, size, 1, (ignored, rank, set) -> {
+            double best = Double.NEGATIVE_INFINITY;
+            int sink = -1;
+            int sinkParents = 0;
+
+            for (int rest = set; rest != 0; rest &= rest - 1) {
+                int x = Integer.numberOfTrailingZeros(rest);
+                int others = set & ~(1 << x);
+                double s = previous.getDouble(rank(others), 0);
+
+                if (s == Double.NEGATIVE_INFINITY) continue;
+
+                // The other variables, numbered without x.
+                int local = (others & ((1 << x) - 1)) | ((others >>> (x + 1)) << x);
+                long record = x * parentSetCount + rank(local);
+                s += parentSets.getDouble(record, 0);
+
+                if (s > best) {
+                    best = s;
+                    sink = x;
+                    sinkParents = parentSets.getInt(record, 8);
+                }
+            }
+
+            orders.putDouble(rank, 0, best);
+            sinks.putByte(rank, 0, (byte) sink);
+            sinks.putInt(rank, 1, sinkParents);
+        });
+    }
+
+    /**
+     * Reads the best order and its parents back from the last variables of best orders.
+     */
+    private void reconstruct(SubsetTable[] sinks) {
+        List<Node> scoreVariables = this.score.getVariables();
+        Node[] order = new Node[this.n];
+        this.parents = new HashMap<>();
+        int set = this.n == 0 ? 0 : -1 >>> (32 - this.n);
+
+        for (int k = this.n; k >= 1; k--) {
+            long rank = rank(set);
+            int x = sinks[k].getByte(rank, 0);
+            List<Integer> parents = new ArrayList<>();
+            localScore(x, sinks[k].getInt(rank, 1), parents);
+
+            Set<Node> nodes = new HashSet<>();
+            for (int parent : parents) nodes.add(scoreVariables.get(parent));
+
+            order[k - 1] = this.variables.get(x);
+            this.parents.put(this.variables.get(x), nodes);
+            set &= ~(1 << x);
+        }
+
+        this.order = Arrays.asList(order);
+    }
+
+    /**
+     * Returns the score of variable x with the given other variables as parents, together with the best choice of
+     * parents from the prefix, or negative infinity if the knowledge or the limit on parents does not allow them. If
+     * best is not null, the score indices of the parents are put in it. If there are too many choices of parents from
+     * the prefix to score them all, they are chosen by growing and shrinking.
+     */
+    private double localScore(int x, int set, List<Integer> best) {
+        if ((set & this.forbidden[x]) != 0 || (set & this.required[x]) != this.required[x]) {
+            return Double.NEGATIVE_INFINITY;
+        }
+
+        int[] requiredParents = this.requiredPrefix[x];
+        int[] allowed = this.allowedPrefix[x];
+        int base = Integer.bitCount(set) + requiredParents.length;
+
+        if (this.maxParents >= 0 && base > this.maxParents) {
+            return Double.NEGATIVE_INFINITY;
+        }
+
+        int maxExtra = this.maxParents < 0 ? allowed.length : Math.min(allowed.length, this.maxParents - base);
+        int[] parents = new int[base + maxExtra];
+        int p = 0;
+
+        for (int rest = set; rest != 0; rest &= rest - 1) {
+            parents[p++] = this.others[x][Integer.numberOfTrailingZeros(rest)];
+        }
+
+        for (int parent : requiredParents) {
+            parents[p++] = parent;
+        }
+
+        if (numChoices(allowed.length, maxExtra) > MAX_PREFIX_CHOICES) {
+            return growShrink(x, parents, base, allowed, maxExtra, best);
+        }
+
+        double bestScore = Double.NEGATIVE_INFINITY;
+
+        for (int extra = 0; extra <= maxExtra; extra++) {
+            int[] choice = new int[extra];
+            for (int i = 0; i < extra; i++) choice[i] = i;
+
+            do {
+                for (int i = 0; i < extra; i++) parents[base + i] = allowed[choice[i]];
+
+                double s = this.score.localScore(this.indices[x], Arrays.copyOf(parents, base + extra));
+
+                if (s > bestScore) {
+                    bestScore = s;
+
+                    if (best != null) {
+                        best.clear();
+                        for (int i = 0; i < base + extra; i++) best.add(parents[i]);
+                    }
+                }
+            } while (nextChoice(choice, allowed.length));
+        }
+
+        return bestScore;
+    }
+
+    /**
+     * Adds the parents from the allowed prefix variables that most improve the score of x, one at a time, up to
+     * maxExtra of them, and then removes those added whose removal improves it, one at a time. The parents array holds
+     * the base parents and has room for maxExtra more.
+     */
+    private double growShrink(int x, int[] parents, int base, int[] allowed, int maxExtra, List<Integer> best) {
+        List<Integer> extra = new ArrayList<>();
+        double bestScore = localScore(x, parents, base, extra);
+
+        while (extra.size() < maxExtra) {
+            int add = -1;
+
+            for (int parent : allowed) {
+                if (extra.contains(parent)) continue;
+
+                extra.add(parent);
+                double s = localScore(x, parents, base, extra);
+                extra.remove(extra.size() - 1);
+
+                if (s > bestScore) {
+                    bestScore = s;
+                    add = parent;
+                }
+            }
+
+            if (add == -1) break;
+            extra.add(add);
+        }
+
+        while (!extra.isEmpty()) {
+            int remove = -1;
+
+            for (int i = 0; i < extra.size(); i++) {
+                int parent = extra.remove(i);
+                double s = localScore(x, parents, base, extra);
+                extra.add(i, parent);
+
+                if (s > bestScore) {
+                    bestScore = s;
+                    remove = i;
+                }
+            }
+
+            if (remove == -1) break;
+            extra.remove(remove);
+        }
+
+        if (best != null) {
+            best.clear();
+            for (int i = 0; i < base; i++) best.add(parents[i]);
+            best.addAll(extra);
+        }
+
+        return bestScore;
+    }
+
+    /**
+     * Returns the score of variable x with the first base of the given parents and the given extra parents.
+     */
+    private double localScore(int x, int[] parents, int base, List<Integer> extra) {
+        int[] all = Arrays.copyOf(parents, base + extra.size());
+        for (int i = 0; i < extra.size(); i++) all[base + i] = extra.get(i);
+        return this.score.localScore(this.indices[x], all);
+    }
+
+    /**
+     * Returns the number of choices of at most maxExtra of n items, or MAX_PREFIX_CHOICES + 1 if it is larger than
+     * MAX_PREFIX_CHOICES.
+     */
+    private static long numChoices(int n, int maxExtra) {
+        long total = 0;
+        long choices = 1;
+
+        for (int k = 0; k <= maxExtra; k++) {
+            total += choices;
+            if (total > MAX_PREFIX_CHOICES) return MAX_PREFIX_CHOICES + 1;
+            choices = choices * (n - k) / (k + 1);
+        }
+
+        return total;
+    }
+
+    /**
+     * Advances choice to the next choice of choice.length of n items in lexicographic order, returning false if there
+     * is none.
+     */
+    private static boolean nextChoice(int[] choice, int n) {
+        int k = choice.length;
+        int i = k - 1;
+
+        while (i >= 0 && choice[i] == n - k + i) i--;
+
+        if (i < 0) return false;
+
+        choice[i]++;
+        for (int j = i + 1; j < k; j++) choice[j] = choice[j - 1] + 1;
+
+        return true;
+    }
+
+    /**
+     * Calls the action for each of the given number of copies and each set of size of numBits bits, with the rank of
+     * the set, in parallel if there is a pool.
+     */
+    private void forEachSubset(ForkJoinPool pool, int numBits, int size, int copies, SubsetAction action) {
+        long count = this.binomial[numBits][size];
+        long tasksPerCopy = (count + TASK_SIZE - 1) / TASK_SIZE;
+        int numTasks = (int) (copies * tasksPerCopy);
+
+        IntConsumer task = t -> {
+            int copy = (int) (t / tasksPerCopy);
+            long from = (t % tasksPerCopy) * TASK_SIZE;
+            long to = Math.min(count, from + TASK_SIZE);
+            int set = unrank(from, size);
+
+            for (long rank = from; rank < to; rank++) {
+                action.accept(copy, rank, set);
+                if (rank + 1 < to) set = nextSet(set);
+            }
+        };
+
+        if (pool == null) {
+            for (int t = 0; t < numTasks; t++) task.accept(t);
+        } else {
+            pool.submit(() -> IntStream.range(0, numTasks).parallel().forEach(task)).join();
+        }
+    }
+
+    /**
+     * Returns the rank of the set in colexicographic order among sets of its size.
+     */
+    private long rank(int set) {
+        long rank = 0;
+        int i = 1;
+
+        for (int rest = set; rest != 0; rest &= rest - 1) {
+            rank += this.binomial[Integer.numberOfTrailingZeros(rest)][i++];
+        }
+
+        return rank;
+    }
+
+    /**
+     * Returns the set of the given size with the given rank in colexicographic order.
+     */
+    private int unrank(long rank, int size) {
+        int set = 0;
+
+        for (int i = size; i >= 1; i--) {
+            int c = i - 1;
+            while (this.binomial[c + 1][i] <= rank) c++;
+            set |= 1 << c;
+            rank -= this.binomial[c][i];
+        }
+
+        return set;
+    }
+
+    /**
+     * Returns the next set of the same size in colexicographic order, which is the next larger integer with the same
+     * number of bits.
+     */
+    private static int nextSet(int set) {
+        int t = set | (set - 1);
+        return (t + 1) | (((~t & -~t) - 1) >>> (Integer.numberOfTrailingZeros(set) + 1));
+    }
+
+    /**
+     * An action on one set in a layer.
+     */
+    private interface SubsetAction {
+        void accept(int copy, long rank, int set);
+    }
+}
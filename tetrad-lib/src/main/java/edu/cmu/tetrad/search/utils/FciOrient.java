@@ -20,6 +20,7 @@
 ///////////////////////////////////////////////////////////////////////////////
 package edu.cmu.tetrad.search.utils;
 
+import edu.cmu.tetrad.data.CompiledKnowledge;
 import edu.cmu.tetrad.data.Knowledge;
 import edu.cmu.tetrad.data.KnowledgeEdge;
 import edu.cmu.tetrad.graph.*;
@@ -35,6 +36,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
 
 /**
  * Performs the final orientation steps of the FCI algorithms, which is a useful tool to use in a variety of FCI-like
@@ -106,6 +108,10 @@ public class FciOrient {
      * Stores knowledge.
      */
     private Knowledge knowledge;
+    /**
+     * The knowledge compiled for the queries made while orienting, or null if it has yet to be compiled.
+     */
+    private CompiledKnowledge compiledKnowledge;
     /**
      * The timeout value (in milliseconds) for tests in the discriminating path step. A value of -1 indicates that there
      * is no timeout.
@@ -154,6 +160,24 @@ public class FciOrient {
      * @return true if an arrowhead is allowed between X and Y, false otherwise.
      */
     public static boolean isArrowheadAllowed(Node x, Node y, Graph graph, Knowledge knowledge) {
+        return isArrowheadAllowed(x, y, graph, knowledge::isForbidden);
+    }
+
+    /**
+     * Determines whether an arrowhead is allowed between two nodes in a graph, as above, using compiled knowledge.
+     *
+     * @param x         The first node.
+     * @param y         The second node.
+     * @param graph     The graph data structure.
+     * @param knowledge The compiled knowledge containing forbidden connections.
+     * @return true if an arrowhead is allowed between X and Y, false otherwise.
+     * @see #isArrowheadAllowed(Node, Node, Graph, Knowledge)
+     */
+    public static boolean isArrowheadAllowed(Node x, Node y, Graph graph, CompiledKnowledge knowledge) {
+        return isArrowheadAllowed(x, y, graph, knowledge::isForbidden);
+    }
+
+    private static boolean isArrowheadAllowed(Node x, Node y, Graph graph, BiPredicate<String, String> forbidden) {
         if (!graph.isAdjacentTo(x, y)) return false;
 
         if (graph.getEndpoint(x, y) == Endpoint.ARROW) {
@@ -165,13 +189,13 @@ public class FciOrient {
         }
 
         if (graph.getEndpoint(y, x) == Endpoint.ARROW && graph.getEndpoint(x, y) == Endpoint.CIRCLE) {
-            if (knowledge.isForbidden(x.getName(), y.getName())) {
+            if (forbidden.test(x.getName(), y.getName())) {
                 return true;
             }
         }
 
         if (graph.getEndpoint(y, x) == Endpoint.TAIL && graph.getEndpoint(x, y) == Endpoint.CIRCLE) {
-            if (knowledge.isForbidden(x.getName(), y.getName())) {
+            if (forbidden.test(x.getName(), y.getName())) {
                 return false;
             }
         }
@@ -374,9 +398,27 @@ public class FciOrient {
         }
 
         this.knowledge = new Knowledge(knowledge);
+        this.compiledKnowledge = null;
         strategy.setKnowledge(knowledge);
     }
 
+    /**
+     * Returns the knowledge compiled against the nodes of the given graph, compiling it the first time it is needed.
+     * Nodes not in that graph are still answered correctly, by the knowledge itself. If no knowledge has been given,
+     * the knowledge is empty.
+     *
+     * @param graph The graph being oriented.
+     * @return The compiled knowledge.
+     */
+    private CompiledKnowledge compiledKnowledge(Graph graph) {
+        if (this.compiledKnowledge == null) {
+            Knowledge knowledge = this.knowledge == null ? new Knowledge() : this.knowledge;
+            this.compiledKnowledge = knowledge.compile(graph.getNodes());
+        }
+
+        return this.compiledKnowledge;
+    }
+
     /**
      * Checks if the complete rule set is being used.
      *
@@ -439,11 +481,11 @@ public class FciOrient {
                 }
 
                 if (strategy.isUnshieldedCollider(graph, a, b, c)) {
-                    if (!FciOrient.isArrowheadAllowed(a, b, graph, knowledge)) {
+                    if (!FciOrient.isArrowheadAllowed(a, b, graph, compiledKnowledge(graph))) {
                         continue;
                     }
 
-                    if (!FciOrient.isArrowheadAllowed(c, b, graph, knowledge)) {
+                    if (!FciOrient.isArrowheadAllowed(c, b, graph, compiledKnowledge(graph))) {
                         continue;
                     }
 
@@ -609,7 +651,7 @@ public class FciOrient {
         }
 
         if (graph.getEndpoint(a, b) == Endpoint.ARROW && graph.getEndpoint(c, b) == Endpoint.CIRCLE) {
-            if (!FciOrient.isArrowheadAllowed(b, c, graph, knowledge)) {
+            if (!FciOrient.isArrowheadAllowed(b, c, graph, compiledKnowledge(graph))) {
                 return;
             }
 
@@ -637,7 +679,7 @@ public class FciOrient {
             if ((graph.getEndpoint(a, b) == Endpoint.ARROW && graph.getEndpoint(b, c) == Endpoint.ARROW) && (graph.getEndpoint(b, a) == Endpoint.TAIL)
                 || (graph.getEndpoint(a, b) == Endpoint.ARROW && graph.getEndpoint(b, c) == Endpoint.ARROW && graph.getEndpoint(c, b) == Endpoint.TAIL)) {
 
-                if (!FciOrient.isArrowheadAllowed(a, c, graph, knowledge)) {
+                if (!FciOrient.isArrowheadAllowed(a, c, graph, compiledKnowledge(graph))) {
                     return;
                 }
 
@@ -682,7 +724,7 @@ public class FciOrient {
                 if (!graph.isAdjacentTo(a, c) && graph.isAdjacentTo(a, d) && graph.isAdjacentTo(c, d)) {
                     if (graph.isDefCollider(a, b, c) && graph.getEndpoint(a, d) == Endpoint.CIRCLE && graph.getEndpoint(c, d) == Endpoint.CIRCLE
                         && graph.getEndpoint(d, b) == Endpoint.CIRCLE) {
-                        if (!FciOrient.isArrowheadAllowed(d, b, graph, knowledge)) {
+                        if (!FciOrient.isArrowheadAllowed(d, b, graph, compiledKnowledge(graph))) {
                             continue;
                         }
 
@@ -1324,7 +1366,7 @@ public class FciOrient {
                 continue;
             }
 
-            if (!FciOrient.isArrowheadAllowed(to, from, graph, knowledge)) {
+            if (!FciOrient.isArrowheadAllowed(to, from, graph, compiledKnowledge(graph))) {
                 return;
             }
 
@@ -1358,7 +1400,7 @@ public class FciOrient {
                 continue;
             }
 
-            if (!FciOrient.isArrowheadAllowed(from, to, graph, knowledge)) {
+            if (!FciOrient.isArrowheadAllowed(from, to, graph, compiledKnowledge(graph))) {
                 return;
             }
 
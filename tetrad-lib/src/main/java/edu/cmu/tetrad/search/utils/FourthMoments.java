@@ -0,0 +1,189 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The fourth moments E(xyzw) of mean-centered data, for the distribution-free tetrad and sextad tests. Moments are
+ * cached by variable quadruple, in any order, so that the many tests that share variables calculate each one once, and
+ * those a test needs that are not yet cached are calculated together in one pass through the data. The cache is
+ * thread-safe and bounded in size. Variable indices must be less than 2^16.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ * @see DeltaTetradTest
+ * @see DeltaSextadTest
+ */
+final class FourthMoments {
+
+    /**
+     * The default largest number of moments that will be cached, a few megabytes.
+     */
+    static final int DEFAULT_MAX_CACHED = 1 << 16;
+
+    /**
+     * The data, by column, mean-centered.
+     */
+    private final double[][] data;
+
+    /**
+     * The moments calculated so far, keyed by sorted quadruple.
+     */
+    private final Map<Long, Double> moments = new ConcurrentHashMap<>();
+
+    /**
+     * The largest number of moments that will be cached.
+     */
+    private volatile int maxCached = DEFAULT_MAX_CACHED;
+
+    /**
+     * Constructs the moments for the given data.
+     *
+     * @param data The data, by column, mean-centered.
+     */
+    FourthMoments(double[][] data) {
+        this.data = data;
+    }
+
+    /**
+     * Sets the largest number of moments that will be cached. Moments already cached are kept.
+     *
+     * @param maxCached The number of moments; zero to cache none.
+     */
+    void setMaxCached(int maxCached) {
+        if (maxCached < 0) {
+            throw new IllegalArgumentException("The number of cached moments must be non-negative: " + maxCached);
+        }
+
+        this.maxCached = maxCached;
+    }
+
+    /**
+     * Returns a key for the moment of the given variables, which does not depend on their order.
+     *
+     * @param a The first variable index.
+     * @param b The second variable index.
+     * @param c The third variable index.
+     * @param d The fourth variable index.
+     * @return The key.
+     */
+    static long key(int a, int b, int c, int d) {
+        int t;
+
+        if (a > b) {
+            t = a;
+            a = b;
+            b = t;
+        }
+
+        if (c > d) {
+            t = c;
+            c = d;
+            d = t;
+        }
+
+        if (a > c) {
+            t = a;
+            a = c;
+            c = t;
+        }
+
+        if (b > d) {
+            t = b;
+            b = d;
+            d = t;
+        }
+
+        if (b > c) {
+            t = b;
+            b = c;
+            c = t;
+        }
+
+        return ((long) a << 48) | ((long) b << 32) | ((long) c << 16) | d;
+    }
+
+    /**
+     * Returns the fourth moments of the given quadruples, keyed as by key(). Those not already cached are calculated
+     * together in one pass through the data.
+     *
+     * @param quadruples The quadruples of variable indices.
+     * @return The moments.
+     */
+    Map<Long, Double> getAll(List<int[]> quadruples) {
+        Map<Long, Double> result = new HashMap<>();
+        List<int[]> missing = new ArrayList<>();
+
+        for (int[] q : quadruples) {
+            long key = key(q[0], q[1], q[2], q[3]);
+            if (result.containsKey(key)) continue;
+
+            Double m = this.moments.get(key);
+            result.put(key, m);
+            if (m == null) missing.add(q);
+        }
+
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        int size = missing.size();
+        double[][] x = new double[size][];
+        double[][] y = new double[size][];
+        double[][] z = new double[size][];
+        double[][] w = new double[size][];
+
+        for (int q = 0; q < size; q++) {
+            x[q] = this.data[missing.get(q)[0]];
+            y[q] = this.data[missing.get(q)[1]];
+            z[q] = this.data[missing.get(q)[2]];
+            w[q] = this.data[missing.get(q)[3]];
+        }
+
+        double[] sums = new double[size];
+        int N = this.data[0].length;
+
+        for (int r = 0; r < N; r++) {
+            for (int q = 0; q < size; q++) {
+                sums[q] += x[q][r] * y[q][r] * z[q][r] * w[q][r];
+            }
+        }
+
+        for (int q = 0; q < size; q++) {
+            int[] m = missing.get(q);
+            long key = key(m[0], m[1], m[2], m[3]);
+            double moment = (1.0 / N) * sums[q];
+            result.put(key, moment);
+
+            if (this.moments.size() < this.maxCached) {
+                this.moments.put(key, moment);
+            }
+        }
+
+        return result;
+    }
+}
@@ -247,7 +247,11 @@ public class GrowShrinkTree {
 
             this.remove = new HashSet<>();
             this.shrinkScore = this.growScore;
-            if (parents.isEmpty()) return;
+
+            if (parents.isEmpty()) {
+                this.shrink.set(true);
+                return;
+            }
 
             Node best;
             do {
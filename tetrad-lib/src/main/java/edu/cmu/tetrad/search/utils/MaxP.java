@@ -26,11 +26,12 @@ import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.search.IndependenceTest;
 import edu.cmu.tetrad.search.test.IndependenceResult;
 import edu.cmu.tetrad.util.ChoiceGenerator;
+import edu.cmu.tetrad.util.ForkJoinUtils;
 import edu.cmu.tetrad.util.SublistGenerator;
 import org.apache.commons.math3.util.FastMath;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * <p>Performs a Max-P orientation of unshielded triples in a graph.</p>
@@ -48,6 +49,8 @@ public final class MaxP {
     private int maxDiscriminatingPathLength = -1;
     private PcCommon.ConflictRule conflictRule = PcCommon.ConflictRule.PRIORITIZE_EXISTING;
     private boolean verbose = false;
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private int batchSize = 100000;
 
     /**
      * Constructor.
@@ -119,34 +122,81 @@ public final class MaxP {
         this.knowledge = knowledge;
     }
 
-    private void addColliders(Graph graph) throws InterruptedException {
-        Map<Triple, Double> scores = new ConcurrentHashMap<>();
+    /**
+     * Sets the number of threads used to run the independence tests. By default, this is the number of available
+     * processors. Results do not depend on the number of threads.
+     *
+     * @param numThreads The number of threads, at least 1.
+     * @throws IllegalArgumentException If numThreads is less than 1.
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+        }
+
+        this.numThreads = numThreads;
+    }
 
+    /**
+     * Sets the number of independence tests run together in a batch; the tests of a batch and their results are held
+     * in memory until the batch is done. A batch may go over this number by the tests of one triple. By default, this
+     * is 100000. Results do not depend on the batch size.
+     *
+     * @param batchSize The batch size, at least 1.
+     * @throws IllegalArgumentException If batchSize is less than 1.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+        }
+
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Finds the unshielded triples to test and the tests each needs, and runs the distinct tests in parallel, in
+     * batches of at most about the batch size of tests, so that the tests and their results are not all held in memory
+     * at once. Tests for the same (a, c, S) are run once in a batch and shared among its triples. The colliders found
+     * are then oriented, most independent first. The colliders are found in the same order whatever the number of
+     * threads or the batch size, so ties in score are broken by the order of the map of scores, as when the tests
+     * were run serially.
+     */
+    private void addColliders(Graph graph) throws InterruptedException {
         List<Node> nodes = graph.getNodes();
+        Map<Node, Integer> indices = new HashMap<>();
+        for (int i = 0; i < nodes.size(); i++) indices.put(nodes.get(i), i);
+
+        Batch batch = new Batch();
+        Map<Triple, Double> scores = new HashMap<>();
+
+        for (Node b : nodes) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
 
-        for (Node node : nodes) {
-            doNode(graph, scores, node);
+            doNode(graph, b, indices, batch, scores);
         }
 
+        runBatch(batch, scores);
+
         List<Triple> tripleList = new ArrayList<>(scores.keySet());
 
         // Most independent ones first.
         tripleList.sort((o1, o2) -> Double.compare(scores.get(o2), scores.get(o1)));
 
-        for (Triple triple : tripleList) {
-            System.out.println(triple + " score = " + scores.get(triple));
+        if (this.verbose) {
+            for (Triple triple : tripleList) {
+                System.out.println(triple + " score = " + scores.get(triple));
+            }
         }
 
         for (Triple triple : tripleList) {
-            Node a = triple.getX();
-            Node b = triple.getY();
-            Node c = triple.getZ();
-
-            orientCollider(graph, a, b, c, this.conflictRule);
+            orientCollider(graph, triple.getX(), triple.getY(), triple.getZ(), this.conflictRule);
         }
     }
 
-    private void doNode(Graph graph, Map<Triple, Double> scores, Node b) throws InterruptedException {
+    private void doNode(Graph graph, Node b, Map<Node, Integer> indices, Batch batch, Map<Triple, Double> scores)
+            throws InterruptedException {
         List<Node> adjacentNodes = new ArrayList<>(graph.getAdjacentNodes(b));
 
         if (adjacentNodes.size() < 2) {
@@ -157,10 +207,6 @@ public final class MaxP {
         int[] combination;
 
         while ((combination = cg.next()) != null) {
-            if (Thread.currentThread().isInterrupted()) {
-                break;
-            }
-
             Node a = adjacentNodes.get(combination[0]);
             Node c = adjacentNodes.get(combination[1]);
 
@@ -169,19 +215,46 @@ public final class MaxP {
                 continue;
             }
 
-            if (this.useHeuristic) {
-                if (existsShortPath(a, c, this.maxDiscriminatingPathLength, graph)) {
-                    testColliderMaxP(graph, scores, a, b, c);
-                } else {
-                    testColliderHeuristic(graph, scores, a, b, c);
-                }
+            Candidate candidate;
+
+            if (this.useHeuristic && !existsShortPath(a, c, this.maxDiscriminatingPathLength, graph)) {
+                candidate = colliderHeuristic(graph, a, b, c, indices, batch);
             } else {
-                testColliderMaxP(graph, scores, a, b, c);
+                candidate = colliderMaxP(graph, a, b, c, indices, batch);
+            }
+
+            if (candidate != null) {
+                batch.candidates.add(candidate);
+            }
+
+            if (batch.facts.size() >= this.batchSize) {
+                runBatch(batch, scores);
             }
         }
     }
 
-    private void testColliderMaxP(Graph graph, Map<Triple, Double> scores, Node a, Node b, Node c) throws InterruptedException {
+    /**
+     * Runs the tests of the batch, puts the colliders among its candidates, in order, in the given map with their
+     * scores, and clears the batch.
+     */
+    private void runBatch(Batch batch, Map<Triple, Double> scores) throws InterruptedException {
+        IndependenceResult[] results = runTests(batch.facts);
+
+        for (Candidate candidate : batch.candidates) {
+            if (candidate.score(results)) scores.put(candidate.triple, candidate.score);
+        }
+
+        batch.candidates.clear();
+        batch.testIndices.clear();
+        batch.facts.clear();
+    }
+
+    /**
+     * Returns the candidate for the Max-P rule, which tests a and c given every subset of adj(a) and every subset of
+     * adj(c) up to the depth, or null if knowledge forbids the collider.
+     */
+    private Candidate colliderMaxP(Graph graph, Node a, Node b, Node c, Map<Node, Integer> indices,
+                                   Batch batch) {
         List<Node> adja = new ArrayList<>(graph.getAdjacentNodes(a));
         List<Node> adjc = new ArrayList<>(graph.getAdjacentNodes(c));
         adja.remove(c);
@@ -189,83 +262,106 @@ public final class MaxP {
 
         if (!(GraphSearchUtils.isArrowheadAllowed(a, b, knowledge)
               && (GraphSearchUtils.isArrowheadAllowed(c, b, knowledge)))) {
-            return;
+            return null;
         }
 
-        double p = 0;
-        Set<Node> S = null;
+        List<Integer> tests = new ArrayList<>();
+        List<Boolean> containsB = new ArrayList<>();
 
-        SublistGenerator cg1 = new SublistGenerator(adja.size(), this.depth);
-        int[] comb2;
+        for (List<Node> adj : List.of(adja, adjc)) {
+            SublistGenerator cg = new SublistGenerator(adj.size(), this.depth);
+            int[] comb;
 
-        while ((comb2 = cg1.next()) != null) {
-            if (Thread.currentThread().isInterrupted()) {
-                break;
+            while ((comb = cg.next()) != null) {
+                Set<Node> s = GraphUtils.asSet(comb, adj);
+                tests.add(getTestIndex(a, c, s, indices, batch));
+                containsB.add(s.contains(b));
             }
+        }
 
-            Set<Node> s = GraphUtils.asSet(comb2, adja);
+        return new Candidate(new Triple(a, b, c), true, tests, containsB);
+    }
 
-            IndependenceResult result = this.independenceTest.checkIndependence(a, c, s);
-            double _p = result.getPValue();
+    /**
+     * Returns the candidate for the heuristic rule, which compares the scores of a and c given nothing and given b, or
+     * null if knowledge forbids the collider or there is more than one edge between a or c and b.
+     */
+    private Candidate colliderHeuristic(Graph graph, Node a, Node b, Node c, Map<Node, Integer> indices,
+                                        Batch batch) {
+        if (this.knowledge.isForbidden(a.getName(), b.getName())) {
+            return null;
+        }
 
-            if (_p > p) {
-                p = _p;
-                S = s;
-            }
+        if (this.knowledge.isForbidden(c.getName(), b.getName())) {
+            return null;
         }
 
-        SublistGenerator cg2 = new SublistGenerator(adjc.size(), this.depth);
-        int[] comb3;
+        if (graph.getEdges(a, b).size() > 1 || graph.getEdges(b, c).size() > 1) {
+            return null;
+        }
 
-        while ((comb3 = cg2.next()) != null) {
-            if (Thread.currentThread().isInterrupted()) {
-                break;
-            }
+        List<Integer> tests = List.of(getTestIndex(a, c, Collections.emptySet(), indices, batch),
+                getTestIndex(a, c, Collections.singleton(b), indices, batch));
 
-            Set<Node> s = GraphUtils.asSet(comb3, adjc);
+        return new Candidate(new Triple(a, b, c), false, tests, List.of(false, true));
+    }
 
-            IndependenceResult result = this.independenceTest.checkIndependence(a, c, s);
-            double _p = result.getPValue();
+    /**
+     * Returns the index in the batch of the test of x and y given z, adding it if it is new. The test is keyed by x, y
+     * and the sorted indices of the conditioning set; x and y are not swapped, since not all tests are symmetric.
+     */
+    private int getTestIndex(Node x, Node y, Set<Node> z, Map<Node, Integer> indices, Batch batch) {
+        int i = indices.get(x);
+        int j = indices.get(y);
 
-            if (_p > p) {
-                p = _p;
-                S = s;
-            }
-        }
+        List<Integer> key = new ArrayList<>();
+        key.add(i);
+        key.add(j);
 
-        if (S != null && !S.contains(b)) {
-            scores.put(new Triple(a, b, c), p);
-        }
-    }
+        List<Integer> _z = new ArrayList<>();
+        for (Node node : z) _z.add(indices.get(node));
+        Collections.sort(_z);
+        key.addAll(_z);
 
-    private void testColliderHeuristic(Graph graph, Map<Triple, Double> colliders, Node a, Node b, Node c) throws InterruptedException {
-        if (this.knowledge.isForbidden(a.getName(), b.getName())) {
-            return;
-        }
+        Integer index = batch.testIndices.get(key);
 
-        if (this.knowledge.isForbidden(c.getName(), b.getName())) {
-            return;
+        if (index == null) {
+            index = batch.facts.size();
+            batch.testIndices.put(key, index);
+            batch.facts.add(new Fact(x, y, z));
         }
 
-        IndependenceResult result1 = this.independenceTest.checkIndependence(a, c);
-        double s1 = result1.getScore();
-        IndependenceResult result2 = this.independenceTest.checkIndependence(a, c, b);
-        double s2 = result2.getScore();
-
-        boolean mycollider2 = s2 > s1;
+        return index;
+    }
 
-        // Skip triples that are shielded.
-        if (graph.isAdjacentTo(a, c)) {
-            return;
+    /**
+     * Runs the given tests in parallel.
+     */
+    private IndependenceResult[] runTests(List<Fact> facts) throws InterruptedException {
+        IndependenceResult[] results = new IndependenceResult[facts.size()];
+        Thread mainThread = Thread.currentThread();
+        ForkJoinPool pool = new ForkJoinPool(this.numThreads);
+
+        try {
+            ForkJoinUtils.forRange(pool, facts.size(), i -> {
+                if (mainThread.isInterrupted()) return;
+                Fact fact = facts.get(i);
+
+                try {
+                    results[i] = this.independenceTest.checkIndependence(fact.x, fact.y, fact.z);
+                } catch (InterruptedException e) {
+                    mainThread.interrupt();
+                }
+            });
+        } finally {
+            pool.shutdown();
         }
 
-        if (graph.getEdges(a, b).size() > 1 || graph.getEdges(b, c).size() > 1) {
-            return;
+        if (mainThread.isInterrupted()) {
+            throw new InterruptedException();
         }
 
-        if (mycollider2) {
-            colliders.put(new Triple(a, b, c), FastMath.abs(s2));
-        }
+        return results;
     }
 
     private void orientCollider(Graph graph, Node a, Node b, Node c, PcCommon.ConflictRule conflictRule) {
@@ -324,9 +420,67 @@ public final class MaxP {
     public void setVerbose(boolean verbose) {
         this.verbose = verbose;
     }
-}
 
+    /**
+     * A test of x and y given z.
+     */
+    private record Fact(Node x, Node y, Set<Node> z) {
+    }
 
+    /**
+     * The candidates of a batch, the distinct tests they need, and the index of each test, by key.
+     */
+    private static final class Batch {
+        private final List<Candidate> candidates = new ArrayList<>();
+        private final Map<List<Integer>, Integer> testIndices = new HashMap<>();
+        private final List<Fact> facts = new ArrayList<>();
+    }
 
+    /**
+     * An unshielded triple with the tests that decide whether it is a collider. For the Max-P rule, the score is the
+     * largest p-value, and the triple is a collider if b is not in the conditioning set that gives it; for the
+     * heuristic rule, the triple is a collider if conditioning on b raises the score, and the score is the absolute
+     * score given b.
+     */
+    private static final class Candidate {
+        private final Triple triple;
+        private final boolean maxP;
+        private final List<Integer> tests;
+        private final List<Boolean> containsB;
+        private double score;
+
+        private Candidate(Triple triple, boolean maxP, List<Integer> tests, List<Boolean> containsB) {
+            this.triple = triple;
+            this.maxP = maxP;
+            this.tests = tests;
+            this.containsB = containsB;
+        }
 
+        /**
+         * Sets the score from the results of the tests and returns true if the triple is a collider.
+         */
+        private boolean score(IndependenceResult[] results) {
+            if (this.maxP) {
+                double p = 0;
+                int best = -1;
+
+                for (int k = 0; k < this.tests.size(); k++) {
+                    double _p = results[this.tests.get(k)].getPValue();
+
+                    if (_p > p) {
+                        p = _p;
+                        best = k;
+                    }
+                }
 
+                this.score = p;
+                return best != -1 && !this.containsB.get(best);
+            } else {
+                double s1 = results[this.tests.get(0)].getScore();
+                double s2 = results[this.tests.get(1)].getScore();
+                this.score = FastMath.abs(s2);
+                return s2 > s1;
+            }
+        }
+    }
+}
@@ -21,6 +21,7 @@
 
 package edu.cmu.tetrad.search.utils;
 
+import edu.cmu.tetrad.data.CompiledKnowledge;
 import edu.cmu.tetrad.data.Knowledge;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.util.TetradLogger;
@@ -56,6 +57,10 @@ public class MeekRules {
      * Represents the variable `knowledge` of type `Knowledge`.
      */
     private Knowledge knowledge = new Knowledge();
+    /**
+     * The knowledge compiled for the queries made while orienting, or null if it has yet to be compiled.
+     */
+    private CompiledKnowledge compiledKnowledge;
     /**
      * True if cycles are to be prevented. Default is true. If true, cycles are prevented adding arbitrary new
      * unshielded colliders to the graph.
@@ -77,7 +82,7 @@ public class MeekRules {
         this.useRule4 = !this.knowledge.isEmpty();
     }
 
-    private static boolean isArrowheadAllowed(Node from, Node to, Knowledge knowledge) {
+    private static boolean isArrowheadAllowed(Node from, Node to, CompiledKnowledge knowledge) {
         if (knowledge.isEmpty()) return true;
         return !knowledge.isRequired(to.toString(), from.toString()) &&
                !knowledge.isForbidden(from.toString(), to.toString());
@@ -112,6 +117,10 @@ public class MeekRules {
 //            }
         }
 
+        if (this.compiledKnowledge == null) {
+            this.compiledKnowledge = this.knowledge.compile(graph.getNodes());
+        }
+
         // The initial list of nodes to visit.
         Set<Node> visited = new HashSet<>();
 
@@ -160,6 +169,19 @@ public class MeekRules {
      */
     public void setKnowledge(Knowledge knowledge) {
         this.knowledge = new Knowledge(knowledge);
+        this.compiledKnowledge = null;
+    }
+
+    /**
+     * Sets the knowledge to be used in the orientation, already compiled. The knowledge is used as is rather than
+     * copied, which saves the copy when the rules are applied repeatedly during a search.
+     *
+     * @param knowledge The compiled knowledge.
+     * @see CompiledKnowledge
+     */
+    public void setKnowledge(CompiledKnowledge knowledge) {
+        this.knowledge = knowledge.getKnowledge();
+        this.compiledKnowledge = knowledge;
     }
 
     /**
@@ -353,7 +375,7 @@ public class MeekRules {
      * @return True if the edge was directed.
      */
     private boolean direct(Node a, Node c, Graph graph, Set<Node> visited) {
-        if (!MeekRules.isArrowheadAllowed(a, c, this.knowledge)) return false;
+        if (!MeekRules.isArrowheadAllowed(a, c, this.compiledKnowledge)) return false;
         if (!Edges.isUndirectedEdge(graph.getEdge(a, c))) return false;
 
         Edge before = graph.getEdge(a, c);
@@ -412,7 +434,7 @@ public class MeekRules {
                 }
             }
 
-            if (this.knowledge.isForbidden(y.getName(), p.getName()) || this.knowledge.isRequired(p.getName(), y.getName()))
+            if (this.compiledKnowledge.isForbidden(y.getName(), p.getName()) || this.compiledKnowledge.isRequired(p.getName(), y.getName()))
                 continue;
 
             graph.removeEdge(p, y);
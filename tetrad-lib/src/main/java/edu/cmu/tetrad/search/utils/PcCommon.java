@@ -345,8 +345,8 @@ public final class PcCommon implements IGraphSearch {
             orientCollidersMaxP.setMaxDiscriminatingPathLength(this.maxDiscriminatingPathLength);
             orientCollidersMaxP.setDepth(this.depth);
             orientCollidersMaxP.setKnowledge(this.knowledge);
-            orientCollidersMaxP.orient(this.graph);
             orientCollidersMaxP.setVerbose(verbose);
+            orientCollidersMaxP.orient(this.graph);
         } else if (this.colliderDiscovery == ColliderDiscovery.CONSERVATIVE) {
             if (this.verbose) {
                 System.out.println("CPC orientation...");
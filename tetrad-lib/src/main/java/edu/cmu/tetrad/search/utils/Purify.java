@@ -52,6 +52,9 @@ import java.util.*;
  * Technical report, Department of Statistics, University of Washington.
  * <p>
  * Wishart, J. (1928). "Sampling errors in the theory of two factors". British Journal of Psychology 19, 180-187.
+ * <p>
+ * Tetrads are tested one at a time through the given TetradTest; they are not batched as in Fofc, though with the delta
+ * test the fourth moments are cached across tests.
  *
  * @author Ricardo Silva
  * @version $Id: $Id
@@ -29,7 +29,8 @@ import edu.cmu.tetrad.util.ChoiceGenerator;
 import java.util.*;
 
 /**
- * Implements a tetrad-based purify method.
+ * Implements a tetrad-based purify method. Tetrads are tested one at a time through the given TetradTest, not in
+ * batches as in Fofc.
  *
  * @author ricardosilva
  * @version $Id: $Id
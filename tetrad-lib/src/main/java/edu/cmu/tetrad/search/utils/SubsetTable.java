@@ -0,0 +1,186 @@
+package edu.cmu.tetrad.search.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A table of fixed-size records indexed by long, for the layers of a dynamic program over subsets. Records are kept in
+ * heap buffers while a shared memory budget allows, and otherwise in a temporary file mapped into memory, so that the
+ * operating system can page them out. Records at distinct indices may be written from different threads.
+ *
+ * @author josephramsey
+ * @see ExactOrderSearch
+ */
+class SubsetTable implements AutoCloseable {
+
+    /**
+     * The largest number of bytes in one buffer.
+     */
+    private static final int MAX_CHUNK_BYTES = 1 << 30;
+
+    private final int recordBytes;
+    private final int recordsPerChunk;
+    private final ByteBuffer[] chunks;
+    private final long heapBytes;
+    private final Budget budget;
+
+    /**
+     * Constructs a table of the given number of records, each of the given number of bytes.
+     *
+     * @param numRecords  The number of records.
+     * @param recordBytes The number of bytes in a record.
+     * @param budget      The memory budget, which is charged for the table if it is kept in heap buffers.
+     */
+    SubsetTable(long numRecords, int recordBytes, Budget budget) {
+        this.recordBytes = recordBytes;
+        this.recordsPerChunk = MAX_CHUNK_BYTES / recordBytes;
+        this.budget = budget;
+
+        int numChunks = (int) ((numRecords + this.recordsPerChunk - 1) / this.recordsPerChunk);
+        this.chunks = new ByteBuffer[numChunks];
+        long bytes = numRecords * recordBytes;
+
+        if (budget.reserve(bytes)) {
+            this.heapBytes = bytes;
+
+            for (int c = 0; c < numChunks; c++) {
+                this.chunks[c] = ByteBuffer.allocate(chunkBytes(c, numRecords));
+            }
+        } else {
+            this.heapBytes = 0;
+
+            try {
+                Path file = Files.createTempFile("tetrad-subsets", ".bin");
+
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE)) {
+                    for (int c = 0; c < numChunks; c++) {
+                        long position = (long) c * this.recordsPerChunk * recordBytes;
+                        this.chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, position, chunkBytes(c, numRecords));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not create a file for subset records.", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the double at the given offset in the given record.
+     *
+     * @param record The record.
+     * @param offset The offset in the record, in bytes.
+     * @return The double.
+     */
+    double getDouble(long record, int offset) {
+        return this.chunks[chunk(record)].getDouble(position(record) + offset);
+    }
+
+    /**
+     * Sets the double at the given offset in the given record.
+     *
+     * @param record The record.
+     * @param offset The offset in the record, in bytes.
+     * @param value  The double.
+     */
+    void putDouble(long record, int offset, double value) {
+        this.chunks[chunk(record)].putDouble(position(record) + offset, value);
+    }
+
+    /**
+     * Returns the int at the given offset in the given record.
+     *
+     * @param record The record.
+     * @param offset The offset in the record, in bytes.
+     * @return The int.
+     */
+    int getInt(long record, int offset) {
+        return this.chunks[chunk(record)].getInt(position(record) + offset);
+    }
+
+    /**
+     * Sets the int at the given offset in the given record.
+     *
+     * @param record The record.
+     * @param offset The offset in the record, in bytes.
+     * @param value  The int.
+     */
+    void putInt(long record, int offset, int value) {
+        this.chunks[chunk(record)].putInt(position(record) + offset, value);
+    }
+
+    /**
+     * Returns the byte at the given offset in the given record.
+     *
+     * @param record The record.
+     * @param offset The offset in the record, in bytes.
+     * @return The byte.
+     */
+    byte getByte(long record, int offset) {
+        return this.chunks[chunk(record)].get(position(record) + offset);
+    }
+
+    /**
+     * Sets the byte at the given offset in the given record.
+     *
+     * @param record The record.
+     * @param offset The offset in the record, in bytes.
+     * @param value  The byte.
+     */
+    void putByte(long record, int offset, byte value) {
+        this.chunks[chunk(record)].put(position(record) + offset, value);
+    }
+
+    /**
+     * Releases the budget held by the table. A mapped table is unmapped when it is garbage collected; its file has
+     * already been deleted.
+     */
+    @Override
+    public void close() {
+        this.budget.release(this.heapBytes);
+    }
+
+    private int chunkBytes(int c, long numRecords) {
+        long records = Math.min(this.recordsPerChunk, numRecords - (long) c * this.recordsPerChunk);
+        return (int) (records * this.recordBytes);
+    }
+
+    private int chunk(long record) {
+        return (int) (record / this.recordsPerChunk);
+    }
+
+    private int position(long record) {
+        return (int) (record % this.recordsPerChunk) * this.recordBytes;
+    }
+
+    /**
+     * A number of bytes that tables may keep in heap buffers, shared by the tables of one search.
+     */
+    static final class Budget {
+        private long available;
+
+        /**
+         * Constructs a budget of the given number of bytes.
+         *
+         * @param bytes The number of bytes.
+         */
+        Budget(long bytes) {
+            this.available = bytes;
+        }
+
+        synchronized boolean reserve(long bytes) {
+            if (bytes > this.available) return false;
+            this.available -= bytes;
+            return true;
+        }
+
+        synchronized void release(long bytes) {
+            this.available += bytes;
+        }
+    }
+}
@@ -545,14 +545,11 @@ public final class TetradTestContinuous implements TetradTest {
         Node ck = getVariables().get(k);
         Node cl = getVariables().get(l);
 
-        this.deltaTest.calcChiSquare(new Tetrad(ci, cj, ck, cl));
-        this.prob[0] = this.deltaTest.getPValue();
+        Tetrad[] tetrads = {new Tetrad(ci, cj, ck, cl), new Tetrad(ci, cj, cl, ck), new Tetrad(ci, ck, cl, cj)};
 
-        this.deltaTest.calcChiSquare(new Tetrad(ci, cj, cl, ck));
-        this.prob[1] = this.deltaTest.getPValue();
-
-        this.deltaTest.calcChiSquare(new Tetrad(ci, ck, cl, cj));
-        this.prob[2] = this.deltaTest.getPValue();
+        for (int t = 0; t < tetrads.length; t++) {
+            this.prob[t] = this.deltaTest.getPValue(tetrads[t]);
+        }
     }
 
     private void bollenEvalTetradDifference(int i, int j, int k, int l) {
@@ -1,5 +1,6 @@
 package edu.cmu.tetrad.search.utils;
 
+import edu.cmu.tetrad.data.CompiledKnowledge;
 import edu.cmu.tetrad.data.Knowledge;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.search.IndependenceTest;
@@ -39,7 +40,7 @@ public class TeyssierScorer {
     private Map<Node, Integer> orderHash = new HashMap<>();
     private ArrayList<Set<Node>> prefixes;
     private ArrayList<Pair> scores;
-    private Knowledge knowledge = new Knowledge();
+    private CompiledKnowledge knowledge;
     private boolean useScore;
     private boolean useRaskuttiUhler = false;
     private double runningScore = 0f;
@@ -58,6 +59,7 @@ public class TeyssierScorer {
 //        NodeEqualityMode.setEqualityMode(NodeEqualityMode.Type.NAME);
 
         this.variables = score.getVariables();
+        this.knowledge = new Knowledge().compile(this.variables);
         this.pi = new ArrayList<>(this.variables);
         Map<Node, Integer> variablesHash = new HashMap<>();
         nodesHash(variablesHash, this.variables);
@@ -74,6 +76,25 @@ public class TeyssierScorer {
         }
     }
 
+    /**
+     * Constructs a scorer with the same test, score, knowledge and settings as the given scorer, starting from the
+     * order of the variables. The two scorers share their grow-shrink trees, so local scores cached by either are
+     * available to both, and each may be used in its own thread. Knowledge should not be set on either after this.
+     *
+     * @param scorer The scorer to copy.
+     */
+    public TeyssierScorer(TeyssierScorer scorer) {
+        this.variables = scorer.variables;
+        this.test = scorer.test;
+        this.score = scorer.score;
+        this.knowledge = scorer.knowledge;
+        this.useScore = scorer.useScore;
+        this.useRaskuttiUhler = scorer.useRaskuttiUhler;
+        this.trees.putAll(scorer.trees);
+        this.pi = new ArrayList<>(this.variables);
+        nodesHash(this.orderHash, this.pi);
+    }
+
     /**
      * <p>Setter for the field <code>useScore</code>.</p>
      *
@@ -90,14 +111,16 @@ public class TeyssierScorer {
      * @param knowledge Knowledge of forbidden edges.
      */
     public void setKnowledge(Knowledge knowledge) {
-        this.knowledge = knowledge;
+        this.knowledge = knowledge.compile(this.variables);
 
-        for (Node node : this.variables) {
+        for (int j = 0; j < this.variables.size(); j++) {
+            Node node = this.variables.get(j);
             List<Node> required = new ArrayList<>();
             List<Node> forbidden = new ArrayList<>();
-            for (Node parent : this.variables) {
-                if (knowledge.isRequired(parent.getName(), node.getName())) required.add(parent);
-                if (knowledge.isForbidden(parent.getName(), node.getName())) forbidden.add(parent);
+            for (int i = 0; i < this.variables.size(); i++) {
+                Node parent = this.variables.get(i);
+                if (this.knowledge.isRequired(i, j)) required.add(parent);
+                if (this.knowledge.isForbidden(i, j)) forbidden.add(parent);
             }
             if (required.isEmpty() && forbidden.isEmpty()) continue;
             this.trees.get(node).setKnowledge(required, forbidden);
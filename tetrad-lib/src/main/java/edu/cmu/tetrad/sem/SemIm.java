@@ -1263,6 +1263,15 @@ public final class SemIm implements Im, ISemIm {
         return simulateDataReducedForm(sampleSize, latentDataSaved);
     }
 
+    /**
+     * <p>Getter for the field <code>scoreType</code>.</p>
+     *
+     * @return the fitting function minimized by optimizers, Fml or Fgls.
+     */
+    public ScoreType getScoreType() {
+        return this.scoreType;
+    }
+
     /**
      * <p>Setter for the field <code>scoreType</code>.</p>
      *
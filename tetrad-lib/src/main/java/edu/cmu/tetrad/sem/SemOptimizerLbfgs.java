@@ -0,0 +1,907 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.sem;
+
+import edu.cmu.tetrad.data.DataUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.graph.SemGraph;
+import edu.cmu.tetrad.util.Matrix;
+import edu.cmu.tetrad.util.RandomUtil;
+import edu.cmu.tetrad.util.TetradLogger;
+import org.apache.commons.math3.util.FastMath;
+
+import java.io.Serial;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Optimizes a SEM using the limited-memory BFGS method, with analytic gradients of the maximum likelihood (Fml) or
+ * generalized least squares (Fgls) fitting function with respect to the free parameters.
+ * <p>
+ * With B the coefficient matrix and Omega the error covariance matrix, the implied covariance matrix is Sigma = A Omega
+ * A', where A = (I - B)^-1, restricted to the measured variables. If W is the derivative of the fitting function with
+ * respect to the measured submatrix of Sigma (for Fml, Sigma^-1 (Sigma - S) Sigma^-1), then the derivative with respect
+ * to the coefficient for X-&gt;Y is 2 (Sigma W A)[X][Y], with respect to the error variance of X is (A' W A)[X][X],
+ * and with respect to the error covariance of X and Y is 2 (A' W A)[X][Y]. One evaluation of the fitting function and
+ * its gradient costs about as much as one evaluation of the fitting function alone, and is done on arrays allocated
+ * once per start rather than on new matrices.
+ * <p>
+ * The first start is from the current parameter values of the SEM; each restart is from random values. Starts are run
+ * in parallel, and the parameter values with the lowest value of the fitting function are kept.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ */
+public class SemOptimizerLbfgs implements SemOptimizer {
+    @Serial
+    private static final long serialVersionUID = 23L;
+
+    // Parameter types, in the order of ParamType.
+    private static final int COEF = 0;
+    private static final int VAR = 1;
+    private static final int COVAR = 2;
+
+    /**
+     * The number of restarts from random parameter values.
+     */
+    private int numRestarts = 0;
+
+    /**
+     * The number of threads used to run starts in parallel.
+     */
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The maximum number of iterations per start.
+     */
+    private int maxIterations = 2000;
+
+    /**
+     * The number of correction pairs kept to approximate the inverse Hessian.
+     */
+    private int numCorrections = 10;
+
+    /**
+     * A start stops when the largest component of the gradient is below this.
+     */
+    private double gradientTolerance = 1e-8;
+
+    /**
+     * Blank constructor.
+     */
+    public SemOptimizerLbfgs() {
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     *
+     * @return a {@link edu.cmu.tetrad.sem.SemOptimizerLbfgs} object
+     */
+    public static SemOptimizerLbfgs serializableInstance() {
+        return new SemOptimizerLbfgs();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Optimizes the fitting function of the given Sem using L-BFGS by adjusting the free parameters of the Sem.
+     */
+    public void optimize(SemIm semIm) {
+        Matrix sampleCovar = semIm.getSampleCovar();
+
+        if (sampleCovar == null) {
+            throw new NullPointerException("Sample covar has not been set.");
+        }
+
+        if (DataUtils.containsMissingValue(sampleCovar)) {
+            throw new IllegalArgumentException("Please remove or impute missing values.");
+        }
+
+        Model model = new Model(semIm, sampleCovar);
+        int numStarts = FastMath.max(this.numRestarts, 0) + 1;
+
+        // Starting points are drawn here, so that they do not depend on the threads the starts run in.
+        double[][] points = new double[numStarts][];
+        double[] values = new double[numStarts];
+        points[0] = semIm.getFreeParamValues();
+
+        for (int k = 1; k < numStarts; k++) {
+            points[k] = model.randomStart();
+        }
+
+        IntConsumer start = k -> values[k] = minimize(new Objective(model), points[k]);
+
+        if (numStarts == 1 || this.numThreads == 1) {
+            for (int k = 0; k < numStarts; k++) {
+                start.accept(k);
+            }
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(FastMath.min(this.numThreads, numStarts));
+
+            try {
+                pool.submit(() -> IntStream.range(0, numStarts).parallel().forEach(start)).join();
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        int best = -1;
+
+        for (int k = 0; k < numStarts; k++) {
+            if (values[k] < Double.POSITIVE_INFINITY && (best == -1 || values[k] < values[best])) {
+                best = k;
+            }
+        }
+
+        if (best == -1) {
+            throw new IllegalArgumentException("The fitting function could not be evaluated at any starting point.");
+        }
+
+        TetradLogger.getInstance().log("L-BFGS: " + semIm.getScoreType() + " = " + values[best]);
+        semIm.setFreeParamValues(points[best]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNumRestarts() {
+        return this.numRestarts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setNumRestarts(int numRestarts) {
+        this.numRestarts = numRestarts;
+    }
+
+    /**
+     * Sets the number of threads used to run starts in parallel. The default is the number of available processors.
+     *
+     * @param numThreads the number of threads, at least 1.
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+        }
+
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Sets the maximum number of iterations per start. The default is 2000.
+     *
+     * @param maxIterations the maximum number of iterations, at least 1.
+     */
+    public void setMaxIterations(int maxIterations) {
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("Max iterations must be at least 1: " + maxIterations);
+        }
+
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Sets the number of correction pairs kept to approximate the inverse Hessian. The default is 10.
+     *
+     * @param numCorrections the number of correction pairs, at least 1.
+     */
+    public void setNumCorrections(int numCorrections) {
+        if (numCorrections < 1) {
+            throw new IllegalArgumentException("Number of corrections must be at least 1: " + numCorrections);
+        }
+
+        this.numCorrections = numCorrections;
+    }
+
+    /**
+     * Sets the tolerance on the largest component of the gradient at which a start stops. The default is 1e-8.
+     *
+     * @param gradientTolerance the tolerance, positive.
+     */
+    public void setGradientTolerance(double gradientTolerance) {
+        if (!(gradientTolerance > 0)) {
+            throw new IllegalArgumentException("Gradient tolerance must be positive: " + gradientTolerance);
+        }
+
+        this.gradientTolerance = gradientTolerance;
+    }
+
+    /**
+     * <p>toString.</p>
+     *
+     * @return a {@link java.lang.String} object
+     */
+    public String toString() {
+        return "Sem Optimizer L-BFGS";
+    }
+
+    /**
+     * Minimizes the objective from the given point, which is replaced by the minimizing point.
+     *
+     * @return the value at the minimizing point, or positive infinity if the objective cannot be evaluated at the
+     * starting point.
+     */
+    private double minimize(Objective f, double[] x) {
+        int n = x.length;
+        double[] g = new double[n];
+        double fx = f.value(x, g);
+
+        if (fx == Double.POSITIVE_INFINITY || n == 0) {
+            return fx;
+        }
+
+        int m = this.numCorrections;
+        double[][] s = new double[m][n];
+        double[][] y = new double[m][n];
+        double[] rho = new double[m];
+        double[] alpha = new double[m];
+        int newest = -1;
+        int count = 0;
+
+        double[] d = new double[n];
+        double[] xNew = new double[n];
+        double[] gNew = new double[n];
+        double[] point = x.clone();
+
+        for (int iteration = 0; iteration < this.maxIterations; iteration++) {
+            if (maxAbs(g) < this.gradientTolerance) {
+                break;
+            }
+
+            // Two-loop recursion for d = -H g.
+            System.arraycopy(g, 0, d, 0, n);
+
+            for (int k = 0; k < count; k++) {
+                int i = Math.floorMod(newest - k, m);
+                alpha[i] = rho[i] * dot(s[i], d);
+                axpy(-alpha[i], y[i], d);
+            }
+
+            double scale = count > 0 ? dot(s[newest], y[newest]) / dot(y[newest], y[newest])
+                    : 1.0 / FastMath.max(1.0, FastMath.sqrt(dot(g, g)));
+
+            for (int j = 0; j < n; j++) {
+                d[j] *= -scale;
+            }
+
+            for (int k = count - 1; k >= 0; k--) {
+                int i = Math.floorMod(newest - k, m);
+                double beta = rho[i] * dot(y[i], d);
+                axpy(-alpha[i] - beta, s[i], d);
+            }
+
+            double slope = dot(d, g);
+
+            if (!(slope < 0)) {
+                count = 0;
+
+                for (int j = 0; j < n; j++) {
+                    d[j] = -g[j] * scale;
+                }
+
+                slope = dot(d, g);
+            }
+
+            // Backtracking line search for sufficient decrease.
+            double step = 1.0;
+            double fNew = Double.POSITIVE_INFINITY;
+            boolean found = false;
+
+            for (int t = 0; t < 60; t++) {
+                for (int j = 0; j < n; j++) {
+                    xNew[j] = point[j] + step * d[j];
+                }
+
+                fNew = f.value(xNew, gNew);
+
+                if (fNew <= fx + 1e-4 * step * slope) {
+                    found = true;
+                    break;
+                }
+
+                if (fNew < Double.POSITIVE_INFINITY) {
+                    // Minimum of the quadratic through f(0), f'(0) and f(step), kept within [0.1, 0.5] step.
+                    double q = -slope * step * step / (2 * (fNew - fx - slope * step));
+                    step = FastMath.max(0.1 * step, FastMath.min(0.5 * step, q));
+                } else {
+                    step *= 0.5;
+                }
+            }
+
+            if (!found) {
+                if (count == 0) {
+                    break;
+                }
+
+                count = 0;
+                continue;
+            }
+
+            int next = (newest + 1) % m;
+            double sy = 0.0;
+            double yy = 0.0;
+
+            for (int j = 0; j < n; j++) {
+                s[next][j] = xNew[j] - point[j];
+                y[next][j] = gNew[j] - g[j];
+                sy += s[next][j] * y[next][j];
+                yy += y[next][j] * y[next][j];
+            }
+
+            if (sy > 1e-12 * yy) {
+                rho[next] = 1.0 / sy;
+                newest = next;
+                count = FastMath.min(count + 1, m);
+            }
+
+            double decrease = fx - fNew;
+
+            double[] temp = point;
+            point = xNew;
+            xNew = temp;
+
+            temp = g;
+            g = gNew;
+            gNew = temp;
+
+            fx = fNew;
+
+            if (decrease <= 1e-14 * FastMath.max(1.0, FastMath.abs(fx))) {
+                break;
+            }
+        }
+
+        System.arraycopy(point, 0, x, 0, n);
+        return fx;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0.0;
+
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+
+        return sum;
+    }
+
+    private static void axpy(double a, double[] x, double[] y) {
+        for (int i = 0; i < x.length; i++) {
+            y[i] += a * x[i];
+        }
+    }
+
+    private static double maxAbs(double[] a) {
+        double max = 0.0;
+
+        for (double v : a) {
+            max = FastMath.max(max, FastMath.abs(v));
+        }
+
+        return max;
+    }
+
+    /**
+     * The structure of a SEM and its sample covariance matrix, shared by the starts.
+     */
+    private static final class Model {
+        private final int numVars;
+        private final int[] measured;
+        private final double[][] sampleCovar;
+        private final double[][] sampleCovarInv;
+        private final double logDetSampleCovar;
+        private final boolean gls;
+
+        // The fixed parameter values; free parameter values are filled in for each evaluation.
+        private final double[][] coefs;
+        private final double[][] errCovar;
+
+        // For free parameter k, its type and the variables it relates, as for the mappings of the SemIm.
+        private final int[] types;
+        private final int[] nodeA;
+        private final int[] nodeB;
+
+        // The cells of the error covariance matrix that may be nonzero, as {row, column}.
+        private final int[][] errCovarCells;
+
+        Model(SemIm semIm, Matrix sampleCovar) {
+            List<Node> variables = semIm.getVariableNodes();
+            List<Node> measuredNodes = semIm.getMeasuredNodes();
+            List<Parameter> parameters = semIm.getFreeParameters();
+            SemGraph graph = semIm.getSemPm().getGraph();
+
+            this.numVars = variables.size();
+            this.measured = new int[measuredNodes.size()];
+
+            for (int a = 0; a < this.measured.length; a++) {
+                this.measured[a] = variables.indexOf(measuredNodes.get(a));
+            }
+
+            this.sampleCovar = sampleCovar.toArray();
+            this.sampleCovarInv = sampleCovar.inverse().toArray();
+            this.logDetSampleCovar = FastMath.log(sampleCovar.det());
+            if (semIm.getScoreType() != ScoreType.Fml && semIm.getScoreType() != ScoreType.Fgls) {
+                throw new IllegalStateException("Unrecognized score type; " + semIm.getScoreType());
+            }
+
+            this.gls = semIm.getScoreType() == ScoreType.Fgls;
+
+            this.coefs = semIm.getEdgeCoef().toArray();
+            this.errCovar = semIm.getErrCovar().toArray();
+
+            this.types = new int[parameters.size()];
+            this.nodeA = new int[parameters.size()];
+            this.nodeB = new int[parameters.size()];
+
+            for (int k = 0; k < parameters.size(); k++) {
+                Parameter parameter = parameters.get(k);
+                this.nodeA[k] = variables.indexOf(graph.getVarNode(parameter.getNodeA()));
+                this.nodeB[k] = variables.indexOf(graph.getVarNode(parameter.getNodeB()));
+
+                if (parameter.getType() == ParamType.COEF) {
+                    this.types[k] = COEF;
+                } else if (parameter.getType() == ParamType.VAR) {
+                    this.types[k] = VAR;
+                    this.nodeB[k] = this.nodeA[k];
+                } else if (parameter.getType() == ParamType.COVAR) {
+                    this.types[k] = COVAR;
+                } else {
+                    throw new IllegalArgumentException("Unexpected free parameter: " + parameter);
+                }
+            }
+
+            Set<List<Integer>> cells = new LinkedHashSet<>();
+
+            for (int i = 0; i < this.numVars; i++) {
+                for (int j = 0; j < this.numVars; j++) {
+                    if (this.errCovar[i][j] != 0.0) {
+                        cells.add(List.of(i, j));
+                    }
+                }
+            }
+
+            for (int k = 0; k < this.types.length; k++) {
+                if (this.types[k] != COEF) {
+                    cells.add(List.of(this.nodeA[k], this.nodeB[k]));
+                    cells.add(List.of(this.nodeB[k], this.nodeA[k]));
+                }
+            }
+
+            this.errCovarCells = new int[cells.size()][];
+            int c = 0;
+
+            for (List<Integer> cell : cells) {
+                this.errCovarCells[c++] = new int[]{cell.get(0), cell.get(1)};
+            }
+        }
+
+        /**
+         * Random starting values: coefficients uniform in [-1, 1], error covariances zero, and error variances
+         * between a quarter and all of the sample variance for measured variables, or uniform in [0.5, 1.5] for
+         * latents.
+         */
+        double[] randomStart() {
+            double[] x = new double[this.types.length];
+            RandomUtil random = RandomUtil.getInstance();
+
+            for (int k = 0; k < x.length; k++) {
+                if (this.types[k] == COEF) {
+                    x[k] = random.nextUniform(-1, 1);
+                } else if (this.types[k] == VAR) {
+                    int a = indexOf(this.measured, this.nodeA[k]);
+                    x[k] = a == -1 ? random.nextUniform(0.5, 1.5)
+                            : random.nextUniform(0.25, 1.0) * this.sampleCovar[a][a];
+                }
+            }
+
+            return x;
+        }
+
+        private static int indexOf(int[] array, int value) {
+            for (int i = 0; i < array.length; i++) {
+                if (array[i] == value) return i;
+            }
+
+            return -1;
+        }
+    }
+
+    /**
+     * The fitting function and its gradient, with the arrays used to compute them. Not thread safe; each start has
+     * its own.
+     */
+    private static final class Objective {
+        private final Model model;
+        private final int p;
+        private final int q;
+
+        private final double[][] coefs;
+        private final double[][] errCovar;
+        private final double[][] iMinusB;
+        private final double[][] inverse;
+        private final double[][] inverseTimesErrCovar;
+        private final double[][] sigmaToMeasured;
+        private final double[][] sigma;
+        private final double[][] factor;
+        private final double[][] sigmaInv;
+        private final double[][] temp;
+        private final double[][] w;
+        private final double[][] wTimesInverse;
+
+        Objective(Model model) {
+            this.model = model;
+            this.p = model.numVars;
+            this.q = model.measured.length;
+
+            this.coefs = new double[this.p][this.p];
+            this.errCovar = new double[this.p][this.p];
+            this.iMinusB = new double[this.p][this.p];
+            this.inverse = new double[this.p][this.p];
+            this.inverseTimesErrCovar = new double[this.p][this.p];
+            this.sigmaToMeasured = new double[this.p][this.q];
+            this.sigma = new double[this.q][this.q];
+            this.factor = new double[this.q][this.q];
+            this.sigmaInv = new double[this.q][this.q];
+            this.temp = new double[this.q][this.q];
+            this.w = new double[this.q][this.q];
+            this.wTimesInverse = new double[this.q][this.p];
+        }
+
+        /**
+         * Returns the fitting function at x and puts its gradient in grad, or returns positive infinity if the
+         * function cannot be evaluated at x, as when an error variance is not positive.
+         */
+        double value(double[] x, double[] grad) {
+            Model model = this.model;
+            int p = this.p;
+            int q = this.q;
+            int[] measured = model.measured;
+
+            for (int i = 0; i < p; i++) {
+                System.arraycopy(model.coefs[i], 0, this.coefs[i], 0, p);
+                System.arraycopy(model.errCovar[i], 0, this.errCovar[i], 0, p);
+            }
+
+            for (int k = 0; k < x.length; k++) {
+                int a = model.nodeA[k];
+                int b = model.nodeB[k];
+
+                if (Double.isNaN(x[k]) || Double.isInfinite(x[k])) {
+                    return Double.POSITIVE_INFINITY;
+                }
+
+                if (model.types[k] == COEF) {
+                    this.coefs[a][b] = x[k];
+                } else {
+                    if (model.types[k] == VAR && x[k] <= 0.0) {
+                        return Double.POSITIVE_INFINITY;
+                    }
+
+                    this.errCovar[a][b] = x[k];
+                    this.errCovar[b][a] = x[k];
+                }
+            }
+
+            // A = (I - B)^-1, where B is the transpose of the coefficient matrix.
+            for (int i = 0; i < p; i++) {
+                for (int j = 0; j < p; j++) {
+                    this.iMinusB[i][j] = (i == j ? 1.0 : 0.0) - this.coefs[j][i];
+                }
+            }
+
+            if (!invert(this.iMinusB, this.inverse)) {
+                return Double.POSITIVE_INFINITY;
+            }
+
+            double[][] a = this.inverse;
+
+            // A Omega, over the cells of Omega that may be nonzero.
+            for (double[] row : this.inverseTimesErrCovar) {
+                Arrays.fill(row, 0.0);
+            }
+
+            for (int[] cell : model.errCovarCells) {
+                double omega = this.errCovar[cell[0]][cell[1]];
+
+                if (omega == 0.0) continue;
+
+                for (int i = 0; i < p; i++) {
+                    this.inverseTimesErrCovar[i][cell[1]] += a[i][cell[0]] * omega;
+                }
+            }
+
+            // The columns of Sigma = A Omega A' for the measured variables.
+            for (int i = 0; i < p; i++) {
+                double[] row = this.inverseTimesErrCovar[i];
+
+                for (int c = 0; c < q; c++) {
+                    double[] aRow = a[measured[c]];
+                    double sum = 0.0;
+
+                    for (int j = 0; j < p; j++) {
+                        sum += row[j] * aRow[j];
+                    }
+
+                    this.sigmaToMeasured[i][c] = sum;
+                }
+            }
+
+            for (int r = 0; r < q; r++) {
+                System.arraycopy(this.sigmaToMeasured[measured[r]], 0, this.sigma[r], 0, q);
+            }
+
+            double f;
+            double[][] s = model.sampleCovar;
+
+            if (model.gls) {
+                // D = I - Sigma S^-1; F = tr(D D) / 2; W = sym(-S^-1 D).
+                multiply(this.sigma, model.sampleCovarInv, this.temp, q);
+
+                for (int i = 0; i < q; i++) {
+                    for (int j = 0; j < q; j++) {
+                        this.temp[i][j] = (i == j ? 1.0 : 0.0) - this.temp[i][j];
+                    }
+                }
+
+                f = 0.0;
+
+                for (int i = 0; i < q; i++) {
+                    for (int j = 0; j < q; j++) {
+                        f += this.temp[i][j] * this.temp[j][i];
+                    }
+                }
+
+                f *= 0.5;
+                multiply(model.sampleCovarInv, this.temp, this.sigmaInv, q);
+
+                for (int i = 0; i < q; i++) {
+                    for (int j = 0; j < q; j++) {
+                        this.w[i][j] = -0.5 * (this.sigmaInv[i][j] + this.sigmaInv[j][i]);
+                    }
+                }
+            } else {
+                // F = log |Sigma| + tr(S Sigma^-1) - log |S| - q; W = Sigma^-1 (Sigma - S) Sigma^-1.
+                if (!cholesky(this.sigma, this.factor, q)) {
+                    return Double.POSITIVE_INFINITY;
+                }
+
+                double logDet = 0.0;
+
+                for (int i = 0; i < q; i++) {
+                    logDet += 2.0 * FastMath.log(this.factor[i][i]);
+                }
+
+                invertFromCholesky(this.factor, this.sigmaInv, this.temp, q);
+
+                double trace = 0.0;
+
+                for (int i = 0; i < q; i++) {
+                    for (int j = 0; j < q; j++) {
+                        trace += s[i][j] * this.sigmaInv[j][i];
+                    }
+                }
+
+                f = logDet + trace - model.logDetSampleCovar - q;
+
+                multiply(s, this.sigmaInv, this.temp, q);
+                multiply(this.sigmaInv, this.temp, this.w, q);
+
+                for (int i = 0; i < q; i++) {
+                    for (int j = 0; j < q; j++) {
+                        this.w[i][j] = this.sigmaInv[i][j] - this.w[i][j];
+                    }
+                }
+            }
+
+            if (Double.isNaN(f) || Double.isInfinite(f)) {
+                return Double.POSITIVE_INFINITY;
+            }
+
+            if (grad != null) {
+                // W A[measured, :].
+                for (int r = 0; r < q; r++) {
+                    double[] out = this.wTimesInverse[r];
+                    Arrays.fill(out, 0.0);
+
+                    for (int c = 0; c < q; c++) {
+                        double wrc = this.w[r][c];
+
+                        if (wrc == 0.0) continue;
+
+                        double[] aRow = a[measured[c]];
+
+                        for (int j = 0; j < p; j++) {
+                            out[j] += wrc * aRow[j];
+                        }
+                    }
+                }
+
+                for (int k = 0; k < x.length; k++) {
+                    int i = model.nodeA[k];
+                    int j = model.nodeB[k];
+                    double sum = 0.0;
+
+                    if (model.types[k] == COEF) {
+                        for (int r = 0; r < q; r++) {
+                            sum += this.sigmaToMeasured[i][r] * this.wTimesInverse[r][j];
+                        }
+
+                        grad[k] = 2.0 * sum;
+                    } else {
+                        for (int r = 0; r < q; r++) {
+                            sum += a[measured[r]][i] * this.wTimesInverse[r][j];
+                        }
+
+                        grad[k] = model.types[k] == VAR ? sum : 2.0 * sum;
+                    }
+                }
+            }
+
+            return f;
+        }
+
+        /**
+         * Inverts m into inverse by Gauss-Jordan elimination with partial pivoting; m is overwritten.
+         *
+         * @return false if m is singular.
+         */
+        private static boolean invert(double[][] m, double[][] inverse) {
+            int n = m.length;
+
+            for (int i = 0; i < n; i++) {
+                Arrays.fill(inverse[i], 0.0);
+                inverse[i][i] = 1.0;
+            }
+
+            for (int col = 0; col < n; col++) {
+                int pivot = col;
+
+                for (int r = col + 1; r < n; r++) {
+                    if (FastMath.abs(m[r][col]) > FastMath.abs(m[pivot][col])) pivot = r;
+                }
+
+                if (FastMath.abs(m[pivot][col]) < 1e-12) {
+                    return false;
+                }
+
+                double[] t = m[pivot];
+                m[pivot] = m[col];
+                m[col] = t;
+                t = inverse[pivot];
+                inverse[pivot] = inverse[col];
+                inverse[col] = t;
+
+                double d = 1.0 / m[col][col];
+
+                for (int j = 0; j < n; j++) {
+                    m[col][j] *= d;
+                    inverse[col][j] *= d;
+                }
+
+                for (int r = 0; r < n; r++) {
+                    double factor = m[r][col];
+
+                    if (r == col || factor == 0.0) continue;
+
+                    double[] mr = m[r];
+                    double[] ir = inverse[r];
+                    double[] mc = m[col];
+                    double[] ic = inverse[col];
+
+                    for (int j = 0; j < n; j++) {
+                        mr[j] -= factor * mc[j];
+                        ir[j] -= factor * ic[j];
+                    }
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Puts the lower Cholesky factor of the symmetric matrix m in l.
+         *
+         * @return false if m is not positive definite.
+         */
+        private static boolean cholesky(double[][] m, double[][] l, int n) {
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j <= i; j++) {
+                    double sum = m[i][j];
+
+                    for (int k = 0; k < j; k++) {
+                        sum -= l[i][k] * l[j][k];
+                    }
+
+                    if (i == j) {
+                        if (!(sum > 0.0)) return false;
+                        l[i][i] = FastMath.sqrt(sum);
+                    } else {
+                        l[i][j] = sum / l[j][j];
+                    }
+                }
+
+                for (int j = i + 1; j < n; j++) {
+                    l[i][j] = 0.0;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Puts (L L')^-1 in inverse, using work for L^-1.
+         */
+        private static void invertFromCholesky(double[][] l, double[][] inverse, double[][] work, int n) {
+            for (int j = 0; j < n; j++) {
+                for (int i = 0; i < n; i++) {
+                    double sum = i == j ? 1.0 : 0.0;
+
+                    for (int k = j; k < i; k++) {
+                        sum -= l[i][k] * work[k][j];
+                    }
+
+                    work[i][j] = i < j ? 0.0 : sum / l[i][i];
+                }
+            }
+
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j <= i; j++) {
+                    double sum = 0.0;
+
+                    for (int k = i; k < n; k++) {
+                        sum += work[k][i] * work[k][j];
+                    }
+
+                    inverse[i][j] = sum;
+                    inverse[j][i] = sum;
+                }
+            }
+        }
+
+        private static void multiply(double[][] a, double[][] b, double[][] out, int n) {
+            for (int i = 0; i < n; i++) {
+                double[] row = out[i];
+                Arrays.fill(row, 0.0);
+
+                for (int k = 0; k < n; k++) {
+                    double aik = a[i][k];
+
+                    if (aik == 0.0) continue;
+
+                    double[] bRow = b[k];
+
+                    for (int j = 0; j < n; j++) {
+                        row[j] += aik * bRow[j];
+                    }
+                }
+            }
+        }
+    }
+}
@@ -26,10 +26,15 @@ import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.util.Matrix;
 import edu.cmu.tetrad.util.RandomUtil;
 import edu.cmu.tetrad.util.TetradLogger;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well44497b;
 import org.apache.commons.math3.util.FastMath;
 
 import java.io.Serial;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * Optimizes a SEM by randomly selecting points in cubes of decreasing size about a given point.
@@ -46,6 +51,11 @@ public class SemOptimizerScattershot implements SemOptimizer {
      */
     private int numRestarts;
 
+    /**
+     * The number of threads used to run trials in parallel.
+     */
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
     /**
      * Blank constructor.
      */
@@ -87,16 +97,42 @@ public class SemOptimizerScattershot implements SemOptimizer {
         TetradLogger.getInstance().log("Trying EM...");
         TetradLogger.getInstance().log("Trying scattershot...");
 
+        // With local search on points in the width 1 iteration, multiple iterations of the whole search
+        // doesn't seem necessary. Each trial searches its own copy of the SEM, so trials run in parallel; the copies
+        // are made here, since copying goes through serialization of the shared SemPm. Each trial also draws from its
+        // own generator, seeded here, so that the result does not depend on the threads the trials run in.
+        int numTrials = this.numRestarts + 1;
+        SemIm[] trials = new SemIm[numTrials];
+        long[] seeds = new long[numTrials];
+
+        for (int i = 0; i < numTrials; i++) {
+            trials[i] = new SemIm(semIm);
+            seeds[i] = RandomUtil.getInstance().nextLong();
+        }
+
+        IntConsumer trial = i -> {
+            TetradLogger.getInstance().log("Trial " + (i + 1));
+            optimize2(trials[i], new Well44497b(seeds[i]));
+        };
+
+        if (this.numThreads <= 1) {
+            for (int i = 0; i < numTrials; i++) {
+                trial.accept(i);
+            }
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(FastMath.min(this.numThreads, numTrials));
+
+            try {
+                pool.submit(() -> IntStream.range(0, numTrials).parallel().forEach(trial)).join();
+            } finally {
+                pool.shutdown();
+            }
+        }
+
         double min = Double.POSITIVE_INFINITY;
         SemIm _sem = null;
 
-        // With local search on points in the width 1 iteration, multiple iterations of the whole search
-        // doesn't seem necessary.
-        for (int i = 0; i < this.numRestarts + 1; i++) {
-            TetradLogger.getInstance().log("Trial " + (i + 1));
-            //            System.out.println("Trial " + (i + 1));
-            SemIm _sem2 = new SemIm(semIm);
-            optimize2(_sem2);
+        for (SemIm _sem2 : trials) {
             double chisq = _sem2.getChiSquare();
 
             if (FastMath.abs(chisq) < min) {
@@ -142,6 +178,19 @@ public class SemOptimizerScattershot implements SemOptimizer {
         this.numRestarts = numRestarts;
     }
 
+    /**
+     * Sets the number of threads used to run trials in parallel. The default is the number of available processors.
+     *
+     * @param numThreads the number of threads, at least 1.
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+        }
+
+        this.numThreads = numThreads;
+    }
+
     /**
      * <p>toString.</p>
      *
@@ -151,28 +200,28 @@ public class SemOptimizerScattershot implements SemOptimizer {
         return "Sem Optimizer Scattershot";
     }
 
-    private void optimize2(SemIm semIm) {
+    private void optimize2(SemIm semIm, RandomGenerator random) {
         FittingFunction f = new SemFittingFunction(semIm);
 
         double[] p = semIm.getFreeParamValues();
 
         f.setAvoidNegativeVariances(true);
-        iterateFindLowerRandom(f, p, 1.0, 1500);
-        iterateFindLowerRandom(f, p, 0.5, 500);
-        iterateFindLowerRandom(f, p, 0.25, 500);
-        iterateFindLowerRandom(f, p, 0.1, 500);
-        iterateFindLowerRandom(f, p, 0.1, 500);
-        iterateFindLowerRandom(f, p, 0.05, 500);
-        iterateFindLowerRandom(f, p, 0.01, 500);
-        iterateFindLowerRandom(f, p, 0.005, 50);
-        iterateFindLowerRandom(f, p, 0.001, 50);
-        iterateFindLowerRandom(f, p, 0.0005, 50);
-        iterateFindLowerRandom(f, p, 0.0001, 50);
+        iterateFindLowerRandom(f, p, random, 1.0, 1500);
+        iterateFindLowerRandom(f, p, random, 0.5, 500);
+        iterateFindLowerRandom(f, p, random, 0.25, 500);
+        iterateFindLowerRandom(f, p, random, 0.1, 500);
+        iterateFindLowerRandom(f, p, random, 0.1, 500);
+        iterateFindLowerRandom(f, p, random, 0.05, 500);
+        iterateFindLowerRandom(f, p, random, 0.01, 500);
+        iterateFindLowerRandom(f, p, random, 0.005, 50);
+        iterateFindLowerRandom(f, p, random, 0.001, 50);
+        iterateFindLowerRandom(f, p, random, 0.0005, 50);
+        iterateFindLowerRandom(f, p, random, 0.0001, 50);
 
         semIm.setFreeParamValues(p);
     }
 
-    private void iterateFindLowerRandom(FittingFunction fcn, double[] p,
+    private void iterateFindLowerRandom(FittingFunction fcn, double[] p, RandomGenerator random,
                                         double range, int iterations) {
         int t = 0;
 
@@ -180,7 +229,7 @@ public class SemOptimizerScattershot implements SemOptimizer {
             boolean found;
 
             try {
-                found = findLowerRandom(fcn, p, range, iterations);
+                found = findLowerRandom(fcn, p, random, range, iterations);
             } catch (Exception e) {
                 return;
             }
@@ -194,7 +243,7 @@ public class SemOptimizerScattershot implements SemOptimizer {
     /**
      * @return true iff a new point was found with a lower score.
      */
-    private boolean findLowerRandom(FittingFunction fcn, double[] p,
+    private boolean findLowerRandom(FittingFunction fcn, double[] p, RandomGenerator random,
                                     double width, int numPoints) {
         double fP = fcn.evaluate(p);
 
@@ -212,7 +261,7 @@ public class SemOptimizerScattershot implements SemOptimizer {
         System.arraycopy(p, 0, pTemp, 0, p.length);
 
         for (int i = 0; i < numPoints; i++) {
-            randomPointAboutCenter(pTemp, fixedP, width);
+            randomPointAboutCenter(pTemp, fixedP, random, width);
             double f = fcn.evaluate(pTemp);
 
             if (f == Double.POSITIVE_INFINITY) {
@@ -224,7 +273,7 @@ public class SemOptimizerScattershot implements SemOptimizer {
             if (width == 1) {
                 int t = 0;
                 while (++t < 2000) {
-                    if (!findLowerRandomLocal(fcn, pTemp)) break;
+                    if (!findLowerRandomLocal(fcn, pTemp, random)) break;
                 }
             }
 
@@ -238,7 +287,7 @@ public class SemOptimizerScattershot implements SemOptimizer {
         return false;
     }
 
-    private boolean findLowerRandomLocal(FittingFunction fcn, double[] p) {
+    private boolean findLowerRandomLocal(FittingFunction fcn, double[] p, RandomGenerator random) {
         double fP = fcn.evaluate(p);
 
         if (Double.isNaN(fP)) {
@@ -255,7 +304,7 @@ public class SemOptimizerScattershot implements SemOptimizer {
         System.arraycopy(p, 0, pTemp, 0, p.length);
 
         for (int i = 0; i < 10; i++) {
-            randomPointAboutCenter(pTemp, fixedP, 0.2);
+            randomPointAboutCenter(pTemp, fixedP, random, 0.2);
             double f = fcn.evaluate(pTemp);
 
             if (f == Double.POSITIVE_INFINITY) {
@@ -273,17 +322,13 @@ public class SemOptimizerScattershot implements SemOptimizer {
         return false;
     }
 
-    private void randomPointAboutCenter(double[] pTemp, double[] fixedP, double width) {
+    private void randomPointAboutCenter(double[] pTemp, double[] fixedP, RandomGenerator random, double width) {
         for (int j = 0; j < pTemp.length; j++) {
-            double v = getRandom().nextDouble();
+            double v = random.nextDouble();
             pTemp[j] = fixedP[j] + (-width / 2.0 + width * v);
         }
     }
 
-    private RandomUtil getRandom() {
-        return RandomUtil.getInstance();
-    }
-
     /**
      * Evaluates a fitting function for an array of freeParameters.
      *
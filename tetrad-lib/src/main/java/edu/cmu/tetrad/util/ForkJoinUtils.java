@@ -0,0 +1,85 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs loops over a range of indices in a ForkJoinPool.
+ *
+ * @author josephramsey
+ */
+public class ForkJoinUtils {
+
+    /**
+     * Prevents instantiation.
+     */
+    private ForkJoinUtils() {
+    }
+
+    /**
+     * Runs the given action for 0, ..., n - 1 in the given pool, splitting the range among its threads, and returns
+     * once every index has been done. The action may be run for different indices at the same time.
+     *
+     * @param pool   The pool to run the action in.
+     * @param n      The number of indices.
+     * @param action The action to run for each index.
+     */
+    public static void forRange(ForkJoinPool pool, int n, IntConsumer action) {
+        if (n > 0) pool.invoke(new RangeAction(0, n, action));
+    }
+
+    /**
+     * Runs an action for each index in a range, splitting the range in half until each piece has one index.
+     */
+    private static class RangeAction extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        private RangeAction(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= 1) {
+                for (int i = this.from; i < this.to; i++) {
+                    this.action.accept(i);
+                }
+            } else {
+                int mid = (this.to + this.from) / 2;
+
+                RangeAction left = new RangeAction(this.from, mid, this.action);
+                RangeAction right = new RangeAction(mid, this.to, this.action);
+
+                left.fork();
+                right.compute();
+                left.join();
+            }
+        }
+    }
+}
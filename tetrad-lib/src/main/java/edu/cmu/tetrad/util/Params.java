@@ -204,6 +204,14 @@ public final class Params {
      * Constant <code>FAST_ICA_TOLERANCE="fastIcaTolerance"</code>
      */
     public static final String FAST_ICA_TOLERANCE = "fastIcaTolerance";
+    /**
+     * Constant <code>FAST_ICA_FLOAT_PRECISION="fastIcaFloatPrecision"</code>
+     */
+    public static final String FAST_ICA_FLOAT_PRECISION = "fastIcaFloatPrecision";
+    /**
+     * Constant <code>FAST_ICA_BATCH_SIZE="fastIcaBatchSize"</code>
+     */
+    public static final String FAST_ICA_BATCH_SIZE = "fastIcaBatchSize";
     /**
      * Constant <code>THRESHOLD_B="thresholdBHat"</code>
      */
@@ -0,0 +1,513 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.util;
+
+import edu.cmu.tetrad.data.*;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.LazyGraphList;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Saves objects such as Tetrad sessions to a zip archive, storing large payloads apart from the object graph so that
+ * they can be read back only when they are needed. The archive holds
+ * <ul>
+ *     <li>a "format" entry giving the format version;</li>
+ *     <li>one "data/i" entry per large data box, written column by column;</li>
+ *     <li>"graphs/i" entries holding the graphs of each LazyGraphList (e.g., bootstrap graphs) in chunks of
+ *     GRAPH_CHUNK_SIZE; and</li>
+ *     <li>an "objects" entry holding the serialized objects themselves, with each of these payloads replaced by a
+ *     small reference.</li>
+ * </ul>
+ * Every entry is compressed. Reading an archive reads only the "objects" entry; data boxes come back as LazyDataBox's
+ * and graph lists as chunked LazyGraphList's, which read their entries the first time they are used, for instance
+ * when the editor for a session node is opened.
+ * <p>
+ * Saving a session read from an archive copies the payloads that have not been loaded from the old archive without
+ * decoding them. The archive is written to a temporary file and moved into place, so saving over the archive a session
+ * was read from is safe.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ * @see LazyDataBox
+ * @see LazyGraphList
+ */
+public final class SessionArchive {
+
+    /**
+     * The version of the archive format.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * Data boxes with fewer cells than this are kept with the objects.
+     */
+    public static final int MIN_PAYLOAD_CELLS = 10000;
+
+    /**
+     * The number of graphs stored together in one entry.
+     */
+    public static final int GRAPH_CHUNK_SIZE = 50;
+
+    private static final String FORMAT_ENTRY = "format";
+    private static final String OBJECTS_ENTRY = "objects";
+
+    // Layouts of data box entries.
+    private static final byte VERTICAL_DOUBLE = 0;
+    private static final byte DOUBLE = 1;
+    private static final byte VERTICAL_INT = 2;
+    private static final byte SERIALIZED = 3;
+
+    private SessionArchive() {
+    }
+
+    /**
+     * Returns whether the given file is an archive, as opposed to a session saved as a plain object stream.
+     *
+     * @param file the file.
+     * @return true if it starts with the zip signature.
+     * @throws IOException if the file cannot be read.
+     */
+    public static boolean isArchive(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] signature = in.readNBytes(4);
+            return signature.length == 4 && signature[0] == 'P' && signature[1] == 'K' && signature[2] == 3
+                   && signature[3] == 4;
+        }
+    }
+
+    /**
+     * Writes the given objects to an archive, replacing the file if it exists.
+     *
+     * @param file    the file.
+     * @param objects the objects, which must be serializable.
+     * @throws IOException if the archive cannot be written; the file is then left as it was.
+     */
+    public static void write(Path file, Object... objects) throws IOException {
+        file = file.toAbsolutePath();
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        Path objectsTemp = Files.createTempFile("session", ".objects");
+        List<Relocation> relocations = new ArrayList<>();
+
+        try {
+            try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                zip.setLevel(Deflater.BEST_SPEED);
+
+                zip.putNextEntry(new ZipEntry(FORMAT_ENTRY));
+                zip.write(Integer.toString(FORMAT_VERSION).getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+
+                // Payloads are written to the zip as they are met, so the objects go to a file until the end.
+                try (ArchiveOutputStream out = new ArchiveOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(objectsTemp)), zip, relocations)) {
+                    for (Object object : objects) {
+                        out.writeObject(object);
+                    }
+                }
+
+                zip.putNextEntry(new ZipEntry(OBJECTS_ENTRY));
+                Files.copy(objectsTemp, zip);
+                zip.closeEntry();
+            }
+
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+            Files.deleteIfExists(objectsTemp);
+        }
+
+        // Payloads copied from an old archive are now read from the new one.
+        for (Relocation relocation : relocations) {
+            relocation.source.file = file;
+            relocation.source.name = relocation.name;
+        }
+    }
+
+    /**
+     * Reads the objects from an archive. Large payloads are not read until they are used.
+     *
+     * @param file the file.
+     * @return the objects, in the order written.
+     * @throws IOException            if the archive cannot be read or is of a later format.
+     * @throws ClassNotFoundException if the class of an object cannot be found.
+     */
+    public static List<Object> read(Path file) throws IOException, ClassNotFoundException {
+        Path path = file.toAbsolutePath();
+
+        try (ZipFile zip = new ZipFile(path.toFile())) {
+            ZipEntry format = zip.getEntry(FORMAT_ENTRY);
+            ZipEntry objectsEntry = zip.getEntry(OBJECTS_ENTRY);
+
+            if (format == null || objectsEntry == null) {
+                throw new IOException("Not a session archive: " + path);
+            }
+
+            try (InputStream in = zip.getInputStream(format)) {
+                int version = Integer.parseInt(new String(in.readAllBytes(), StandardCharsets.UTF_8).trim());
+
+                if (version > FORMAT_VERSION) {
+                    throw new IOException("This session was saved in a later archive format (" + version
+                                          + ") than this version of Tetrad can read (" + FORMAT_VERSION + ").");
+                }
+            }
+
+            List<Object> objects = new ArrayList<>();
+
+            try (ArchiveInputStream in = new ArchiveInputStream(
+                    new BufferedInputStream(zip.getInputStream(objectsEntry)), path)) {
+                while (true) {
+                    try {
+                        objects.add(in.readObject());
+                    } catch (EOFException e) {
+                        break;
+                    }
+                }
+            }
+
+            return objects;
+        }
+    }
+
+    /**
+     * Writes a data box column by column, or as a serialized object if it is not one of the common layouts.
+     */
+    private static void writeDataBox(DataBox dataBox, OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        int numRows = dataBox.numRows();
+        int numCols = dataBox.numCols();
+        ByteBuffer buffer;
+
+        if (dataBox instanceof VerticalDoubleDataBox box) {
+            out.writeByte(VERTICAL_DOUBLE);
+            out.writeInt(numRows);
+            out.writeInt(numCols);
+            buffer = ByteBuffer.allocate(8 * numRows);
+
+            for (double[] column : box.getVariableVectors()) {
+                buffer.clear();
+                buffer.asDoubleBuffer().put(column);
+                out.write(buffer.array());
+            }
+        } else if (dataBox instanceof DoubleDataBox box) {
+            out.writeByte(DOUBLE);
+            out.writeInt(numRows);
+            out.writeInt(numCols);
+            buffer = ByteBuffer.allocate(8 * numRows);
+            double[][] rows = box.getData();
+
+            for (int j = 0; j < numCols; j++) {
+                buffer.clear();
+
+                for (double[] row : rows) {
+                    buffer.putDouble(row[j]);
+                }
+
+                out.write(buffer.array());
+            }
+        } else if (dataBox instanceof VerticalIntDataBox box) {
+            out.writeByte(VERTICAL_INT);
+            out.writeInt(numRows);
+            out.writeInt(numCols);
+            buffer = ByteBuffer.allocate(4 * numRows);
+
+            for (int[] column : box.getVariableVectors()) {
+                buffer.clear();
+                buffer.asIntBuffer().put(column);
+                out.write(buffer.array());
+            }
+        } else {
+            out.writeByte(SERIALIZED);
+            out.writeInt(numRows);
+            out.writeInt(numCols);
+            ObjectOutputStream objOut = new ObjectOutputStream(out);
+            objOut.writeObject(dataBox);
+            objOut.flush();
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Reads a data box written by writeDataBox.
+     */
+    private static DataBox readDataBox(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        byte layout = in.readByte();
+        int numRows = in.readInt();
+        int numCols = in.readInt();
+
+        switch (layout) {
+            case VERTICAL_DOUBLE:
+            case DOUBLE: {
+                byte[] bytes = new byte[8 * numRows];
+                double[][] columns = new double[numCols][numRows];
+
+                for (double[] column : columns) {
+                    in.readFully(bytes);
+                    ByteBuffer.wrap(bytes).asDoubleBuffer().get(column);
+                }
+
+                if (layout == VERTICAL_DOUBLE) {
+                    return new VerticalDoubleDataBox(columns);
+                }
+
+                double[][] rows = new double[numRows][numCols];
+
+                for (int j = 0; j < numCols; j++) {
+                    for (int i = 0; i < numRows; i++) {
+                        rows[i][j] = columns[j][i];
+                    }
+                }
+
+                return new DoubleDataBox(rows);
+            }
+            case VERTICAL_INT: {
+                byte[] bytes = new byte[4 * numRows];
+                int[][] columns = new int[numCols][numRows];
+
+                for (int[] column : columns) {
+                    in.readFully(bytes);
+                    ByteBuffer.wrap(bytes).asIntBuffer().get(column);
+                }
+
+                return new VerticalIntDataBox(columns);
+            }
+            case SERIALIZED:
+                try {
+                    return (DataBox) new ObjectInputStream(in).readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException(e);
+                }
+            default:
+                throw new IOException("Unknown data layout: " + layout);
+        }
+    }
+
+    private static void writeGraphs(List<Graph> graphs, OutputStream stream) throws IOException {
+        ObjectOutputStream out = new ObjectOutputStream(stream);
+        out.writeObject(new ArrayList<>(graphs));
+        out.flush();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Graph> readGraphs(InputStream stream) throws IOException {
+        try {
+            return (List<Graph>) new ObjectInputStream(stream).readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Reads a payload from an archive entry.
+     */
+    private interface Decoder<T> {
+        T decode(InputStream in) throws IOException;
+    }
+
+    /**
+     * A payload stored in an entry of an archive. The file and entry name change if the payload is copied to a new
+     * archive.
+     */
+    private static final class EntrySource<T> implements PayloadSource<T> {
+        private final Decoder<T> decoder;
+        private Path file;
+        private String name;
+
+        private EntrySource(Path file, String name, Decoder<T> decoder) {
+            this.file = file;
+            this.name = name;
+            this.decoder = decoder;
+        }
+
+        @Override
+        public synchronized T load() throws IOException {
+            try (ZipFile zip = new ZipFile(this.file.toFile())) {
+                ZipEntry entry = zip.getEntry(this.name);
+
+                if (entry == null) {
+                    throw new IOException("Missing entry " + this.name + " in " + this.file);
+                }
+
+                try (InputStream in = new BufferedInputStream(zip.getInputStream(entry))) {
+                    return this.decoder.decode(in);
+                }
+            }
+        }
+
+        /**
+         * Copies the entry, as stored, to the current entry of the given archive.
+         */
+        private synchronized void copyTo(OutputStream out) throws IOException {
+            try (ZipFile zip = new ZipFile(this.file.toFile())) {
+                ZipEntry entry = zip.getEntry(this.name);
+
+                if (entry == null) {
+                    throw new IOException("Missing entry " + this.name + " in " + this.file);
+                }
+
+                try (InputStream in = zip.getInputStream(entry)) {
+                    in.transferTo(out);
+                }
+            }
+        }
+    }
+
+    /**
+     * A payload copied to a new entry, whose source is to be pointed at it once the new archive is in place.
+     */
+    private record Relocation(EntrySource<?> source, String name) {
+    }
+
+    /**
+     * Stands in for a data box in the objects entry.
+     */
+    private record DataReference(String name, int numRows, int numCols) implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 23L;
+    }
+
+    /**
+     * Stands in for a graph list in the objects entry.
+     */
+    private record GraphListReference(int size, int chunkSize, List<String> names) implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 23L;
+    }
+
+    /**
+     * Writes objects, sending large payloads to their own entries of the archive.
+     */
+    private static final class ArchiveOutputStream extends ObjectOutputStream {
+        private final ZipOutputStream zip;
+        private final List<Relocation> relocations;
+        private int numEntries = 0;
+
+        private ArchiveOutputStream(OutputStream out, ZipOutputStream zip, List<Relocation> relocations)
+                throws IOException {
+            super(out);
+            this.zip = zip;
+            this.relocations = relocations;
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj instanceof LazyDataBox box) {
+                String name = "data/" + this.numEntries++;
+
+                if (box.getSource() instanceof EntrySource<?> source) {
+                    copy(source, name);
+                } else {
+                    this.zip.putNextEntry(new ZipEntry(name));
+                    writeDataBox(box.load(), this.zip);
+                    this.zip.closeEntry();
+                }
+
+                return new DataReference(name, box.numRows(), box.numCols());
+            } else if (obj instanceof DataBox box && (long) box.numRows() * box.numCols() >= MIN_PAYLOAD_CELLS) {
+                String name = "data/" + this.numEntries++;
+                this.zip.putNextEntry(new ZipEntry(name));
+                writeDataBox(box, this.zip);
+                this.zip.closeEntry();
+                return new DataReference(name, box.numRows(), box.numCols());
+            } else if (obj instanceof LazyGraphList list && !list.isEmpty()) {
+                boolean stored = list.getNumChunks() > 0;
+                int chunkSize = stored ? list.getChunkSize() : GRAPH_CHUNK_SIZE;
+                List<String> names = new ArrayList<>();
+
+                for (int from = 0; from < list.size(); from += chunkSize) {
+                    String name = "graphs/" + this.numEntries++;
+                    PayloadSource<List<Graph>> chunk = stored ? list.getChunkSource(from / chunkSize) : null;
+
+                    if (chunk instanceof EntrySource<?> source) {
+                        copy(source, name);
+                    } else {
+                        this.zip.putNextEntry(new ZipEntry(name));
+                        writeGraphs(list.subList(from, Math.min(from + chunkSize, list.size())), this.zip);
+                        this.zip.closeEntry();
+                    }
+
+                    names.add(name);
+                }
+
+                return new GraphListReference(list.size(), chunkSize, names);
+            }
+
+            return obj;
+        }
+
+        private void copy(EntrySource<?> source, String name) throws IOException {
+            this.zip.putNextEntry(new ZipEntry(name));
+            source.copyTo(this.zip);
+            this.zip.closeEntry();
+            this.relocations.add(new Relocation(source, name));
+        }
+    }
+
+    /**
+     * Reads objects, standing in lazily loaded payloads for their references.
+     */
+    private static final class ArchiveInputStream extends ObjectInputStream {
+        private final Path file;
+
+        private ArchiveInputStream(InputStream in, Path file) throws IOException {
+            super(in);
+            this.file = file;
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) {
+            if (obj instanceof DataReference ref) {
+                return new LazyDataBox(ref.numRows(), ref.numCols(),
+                        new EntrySource<>(this.file, ref.name(), SessionArchive::readDataBox));
+            } else if (obj instanceof GraphListReference ref) {
+                List<PayloadSource<List<Graph>>> chunks = new ArrayList<>();
+
+                for (String name : ref.names()) {
+                    chunks.add(new EntrySource<>(this.file, name, SessionArchive::readGraphs));
+                }
+
+                return LazyGraphList.ofChunks(ref.size(), ref.chunkSize(), chunks);
+            }
+
+            return obj;
+        }
+    }
+}
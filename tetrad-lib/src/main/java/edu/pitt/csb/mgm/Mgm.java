@@ -145,6 +145,16 @@ public class Mgm extends ConvexProximal implements IGraphSearch {
      */
     private MGMParams params;
 
+    /**
+     * The number of threads to learn with.
+     */
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The engine learning is done with, created when first needed.
+     */
+    private MgmEngine engine;
+
     /**
      * <p>Constructor for Mgm.</p>
      *
@@ -1295,8 +1305,7 @@ public class Mgm extends ConvexProximal implements IGraphSearch {
      * @param iterLimit iteration limit
      */
     public void learn(double epsilon, int iterLimit) {
-        ProximalGradient pg = new ProximalGradient();
-        setParams(new MGMParams(pg.learnBackTrack(this, this.params.toMatrix1D(), epsilon, iterLimit), this.p, this.lsum));
+        learnParams(epsilon, iterLimit, false, 3);
     }
 
     /**
@@ -1306,8 +1315,7 @@ public class Mgm extends ConvexProximal implements IGraphSearch {
      * @param iterLimit a int
      */
     public void learnEdges(int iterLimit) {
-        ProximalGradient pg = new ProximalGradient(.5, .9, true);
-        setParams(new MGMParams(pg.learnBackTrack(this, this.params.toMatrix1D(), 0.0, iterLimit), this.p, this.lsum));
+        learnParams(0.0, iterLimit, true, 3);
     }
 
     /**
@@ -1318,9 +1326,62 @@ public class Mgm extends ConvexProximal implements IGraphSearch {
      * @param edgeChangeTol a int
      */
     public void learnEdges(int iterLimit, int edgeChangeTol) {
-        ProximalGradient pg = new ProximalGradient(.5, .9, true);
-        pg.setEdgeChangeTol(edgeChangeTol);
-        setParams(new MGMParams(pg.learnBackTrack(this, this.params.toMatrix1D(), 0.0, iterLimit), this.p, this.lsum));
+        learnParams(0.0, iterLimit, true, edgeChangeTol);
+    }
+
+    /**
+     * Sets the penalties for cc, cd and dd edges. Learning starts from the current parameters, so a path of
+     * decreasing penalties can be followed by setting each in turn and learning again, each run warm started from the
+     * solution for the one before.
+     *
+     * @param lambda the three penalties
+     */
+    public void setLambda(double[] lambda) {
+        if (lambda.length != 3)
+            throw new IllegalArgumentException("Lambda should have three values for cc, cd, and dd edges respectively");
+
+        this.lambda.assign(lambda);
+    }
+
+    /**
+     * Sets the number of threads to learn with. By default, the number of available processors.
+     *
+     * @param numThreads the number of threads; must be at least 1
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+        }
+
+        this.numThreads = numThreads;
+        this.engine = null;
+    }
+
+    /**
+     * Learns the parameters from the current ones with MgmEngine, which runs the same proximal gradient method as
+     * ProximalGradient on primitive arrays.
+     */
+    private void learnParams(double epsilon, int iterLimit, boolean edgeConverge, int edgeChangeTol) {
+        if (this.engine == null) {
+            double[][] x = new double[this.p][];
+            int[][] y = new int[this.q][this.n];
+
+            for (int i = 0; i < this.p; i++) {
+                x[i] = this.xDat.viewColumn(i).toArray();
+            }
+
+            for (int j = 0; j < this.q; j++) {
+                for (int k = 0; k < this.n; k++) {
+                    y[j][k] = (int) this.yDat.getQuick(k, j) - 1;
+                }
+            }
+
+            this.engine = new MgmEngine(x, y, this.l, this.weights.toArray(), this.numThreads);
+        }
+
+        double[] learned = this.engine.learn(this.params.toMatrix1D().toArray(), this.lambda.toArray(), epsilon,
+                iterLimit, edgeConverge, edgeChangeTol);
+        setParams(new MGMParams(this.factory1D.make(learned), this.p, this.lsum));
     }
 
     /**
@@ -0,0 +1,712 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.pitt.csb.mgm;
+
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import cern.colt.matrix.linalg.Algebra;
+import edu.cmu.tetrad.util.ForkJoinUtils;
+import edu.cmu.tetrad.util.TetradLogger;
+import org.apache.commons.math3.util.FastMath;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+
+/**
+ * The MGM pseudolikelihood and its proximal gradient optimization (Beck and Teboulle's FISTA with the step size
+ * backtracking of Becker et al., as in ProximalGradient) on primitive arrays. Parameters are kept in the flattened
+ * layout of Mgm.MGMParams, so results can be passed back and forth. The data are held by column, the discrete data as
+ * category indices rather than dummy columns, and all work buffers are allocated once and reused from one iteration to
+ * the next. An engine is used by one thread at a time.
+ * <p>
+ * The smooth part and its gradient are calculated in parallel: the residuals of the continuous variables and the
+ * continuous-continuous and continuous-discrete gradient blocks by continuous variable, the linear predictors of the
+ * discrete levels and the discrete-discrete gradient block by level, and the softmax terms by discrete variable. Edge
+ * parameters that are zero, which after a few iterations with a penalty are most of them, are skipped in the products.
+ * Since learning starts from given parameters, a path of penalties can be followed with warm starts.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ * @see Mgm
+ * @see ProximalGradient
+ */
+final class MgmEngine {
+
+    /**
+     * Factor to increase the Lipschitz constant estimate L by when it is violated, L = L_old / BETA.
+     */
+    private static final double BETA = .5;
+
+    /**
+     * Factor to decrease L by otherwise, L = L_old * ALPHA.
+     */
+    private static final double ALPHA = .9;
+
+    /**
+     * Number of samples, continuous variables, discrete variables and discrete levels.
+     */
+    private final int n, p, q, lsum;
+
+    /**
+     * Levels of the discrete variables and their cumulative sums.
+     */
+    private final int[] l, lcumsum;
+
+    /**
+     * The discrete variable of each level.
+     */
+    private final int[] varOf;
+
+    /**
+     * The continuous data, by column, standardized.
+     */
+    private final double[][] x;
+
+    /**
+     * The discrete data, by column, as zero-based category indices.
+     */
+    private final int[][] y;
+
+    /**
+     * The parameter weights, continuous variables first.
+     */
+    private final double[] w;
+
+    /**
+     * Offsets of beta, betad, theta, phi, alpha1 and alpha2 in the parameter vector, and its length.
+     */
+    private final int oBeta, oBetad, oTheta, oPhi, oAlpha1, oAlpha2, size;
+
+    /**
+     * Symmetrized beta and phi, column major.
+     */
+    private final double[] betaSym, phiSym;
+
+    /**
+     * X * beta * diag(1 / betad), D * theta * diag(1 / betad) and the residuals, by continuous variable.
+     */
+    private final double[][] xBeta, dTheta, res;
+
+    /**
+     * The linear predictors of the discrete levels, replaced by the softmax residuals, by level.
+     */
+    private final double[][] wx;
+
+    /**
+     * D' * wx, column major.
+     */
+    private final double[] dWx;
+
+    /**
+     * Per-variable parts of the losses and penalties, summed in order so that results do not depend on scheduling.
+     */
+    private final double[] sqParts, catParts, penParts;
+
+    /**
+     * The number of threads.
+     */
+    private final int numThreads;
+
+    /**
+     * The pool running the parallel steps, while learning.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * The penalties for cc, cd and dd edges.
+     */
+    private double[] lambda;
+
+    /**
+     * Constructs the engine.
+     *
+     * @param x          The continuous data, by column, standardized.
+     * @param y          The discrete data, by column, as zero-based category indices.
+     * @param l          The levels of the discrete variables.
+     * @param w          The parameter weights, continuous variables first.
+     * @param numThreads The number of threads.
+     */
+    MgmEngine(double[][] x, int[][] y, int[] l, double[] w, int numThreads) {
+        this.x = x;
+        this.y = y;
+        this.l = l;
+        this.w = w;
+        this.p = x.length;
+        this.q = y.length;
+        this.n = this.p > 0 ? x[0].length : y[0].length;
+
+        this.lcumsum = new int[this.q + 1];
+        for (int i = 0; i < this.q; i++) this.lcumsum[i + 1] = this.lcumsum[i] + l[i];
+        this.lsum = this.lcumsum[this.q];
+
+        this.varOf = new int[this.lsum];
+        for (int i = 0; i < this.q; i++) Arrays.fill(this.varOf, this.lcumsum[i], this.lcumsum[i + 1], i);
+
+        this.oBeta = 0;
+        this.oBetad = this.p * this.p;
+        this.oTheta = this.oBetad + this.p;
+        this.oPhi = this.oTheta + this.lsum * this.p;
+        this.oAlpha1 = this.oPhi + this.lsum * this.lsum;
+        this.oAlpha2 = this.oAlpha1 + this.p;
+        this.size = this.oAlpha2 + this.lsum;
+
+        this.betaSym = new double[this.p * this.p];
+        this.phiSym = new double[this.lsum * this.lsum];
+        this.xBeta = new double[this.p][this.n];
+        this.dTheta = new double[this.p][this.n];
+        this.res = new double[this.p][this.n];
+        this.wx = new double[this.lsum][this.n];
+        this.dWx = new double[this.lsum * this.lsum];
+        this.sqParts = new double[this.p];
+        this.catParts = new double[this.q];
+        this.penParts = new double[FastMath.max(this.p, this.q)];
+
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Minimizes the penalized negative pseudolikelihood from the given parameters, as ProximalGradient.learnBackTrack
+     * does.
+     *
+     * @param start         The starting parameters; not modified.
+     * @param lambda        The penalties for cc, cd and dd edges.
+     * @param epsilon       The tolerance for the relative change in parameters, if not converging on edges.
+     * @param iterLimit     The iteration limit.
+     * @param edgeConverge  True if the optimization should stop when the edges stop changing.
+     * @param edgeChangeTol The edge change tolerance; see ProximalGradient.setEdgeChangeTol.
+     * @return The learned parameters.
+     */
+    double[] learn(double[] start, double[] lambda, double epsilon, int iterLimit, boolean edgeConverge,
+                   int edgeChangeTol) {
+        if (start.length != this.size) {
+            throw new IllegalArgumentException("Param vector dimension doesn't match: Found " + start.length
+                                               + " need " + this.size);
+        }
+
+        this.lambda = lambda.clone();
+        this.pool = new ForkJoinPool(this.numThreads);
+
+        try {
+            return learn(start, epsilon, iterLimit, edgeConverge, edgeChangeTol);
+        } finally {
+            this.pool.shutdown();
+            this.pool = null;
+        }
+    }
+
+    private double[] learn(double[] start, double epsilon, int iterLimit, boolean edgeConverge, int edgeChangeTol) {
+        double[] X = new double[this.size];
+        prox(1.0, start, X);
+
+        double[] Y = X.clone();
+        double[] Z = X.clone();
+        double[] Xold = new double[this.size];
+        double[] temp = new double[this.size];
+        double[] GrY = new double[this.size];
+        double[] GrX = new double[this.size];
+        evaluate(Y, GrY);
+        evaluate(X, GrX);
+
+        int iterCount = 0;
+        int noEdgeChangeCount = 0;
+
+        double theta = Double.POSITIVE_INFINITY;
+        double thetaOld;
+        double L = 1.0;
+        double Lold;
+
+        boolean backtrackSwitch = true;
+        double dx;
+        double Fx = Double.POSITIVE_INFINITY;
+        double Gx = Double.POSITIVE_INFINITY;
+        double Fy;
+        double obj;
+
+        while (!Thread.currentThread().isInterrupted()) {
+            Lold = L;
+            L = L * ALPHA;
+            thetaOld = theta;
+            System.arraycopy(X, 0, Xold, 0, this.size);
+            obj = Fx + Gx;
+
+            while (true) {
+                theta = 2.0 / (1.0 + FastMath.sqrt(1.0 + (4.0 * L) / (Lold * FastMath.pow(thetaOld, 2))));
+
+                if (theta < 1) {
+                    for (int i = 0; i < this.size; i++) Y[i] = (1 - theta) * Xold[i] + theta * Z[i];
+                }
+
+                Fy = evaluate(Y, GrY);
+
+                for (int i = 0; i < this.size; i++) temp[i] = Y[i] - GrY[i] * (1.0 / L);
+                Gx = prox(1.0 / L, temp, X);
+
+                Fx = evaluate(X, backtrackSwitch ? null : GrX);
+
+                double normXY = 0;
+                for (int i = 0; i < this.size; i++) normXY += (X[i] - Y[i]) * (X[i] - Y[i]);
+                if (normXY == 0) break;
+
+                double LocalL;
+
+                if (backtrackSwitch) {
+                    double dot = 0;
+                    for (int i = 0; i < this.size; i++) dot += (X[i] - Y[i]) * GrY[i];
+                    double Qx = Fy + dot + (L / 2.0) * normXY;
+                    LocalL = L + 2 * FastMath.max(Fx - Qx, 0) / normXY;
+                    double backtrackTol = 1e-10;
+                    backtrackSwitch = FastMath.abs(Fy - Fx) >= backtrackTol * FastMath.max(FastMath.abs(Fx), FastMath.abs(Fy));
+                } else {
+                    double dot = 0;
+
+                    for (int i = 0; i < this.size; i++) {
+                        GrX[i] -= GrY[i];
+                        dot += (X[i] - Y[i]) * GrX[i];
+                    }
+
+                    LocalL = 2 * dot / normXY;
+                }
+
+                if (LocalL <= L) {
+                    break;
+                } else if (LocalL != Double.POSITIVE_INFINITY) {
+                    L = LocalL;
+                } else {
+                    LocalL = L;
+                }
+
+                L = FastMath.max(LocalL, L / BETA);
+            }
+
+            int diffEdges = 0;
+            double normDx = 0;
+            double normX = 0;
+
+            for (int i = 0; i < this.size; i++) {
+                double a = X[i];
+                double b = Xold[i];
+                if ((a != 0) != (b != 0)) diffEdges++;
+                normDx += (a - b) * (a - b);
+                normX += a * a;
+            }
+
+            dx = FastMath.sqrt(normDx) / FastMath.max(1, FastMath.sqrt(normX));
+
+            if (diffEdges == 0 && edgeConverge) {
+                noEdgeChangeCount++;
+                if (noEdgeChangeCount >= edgeChangeTol) {
+                    TetradLogger.getInstance().log("Edges converged at iter: " + iterCount + " with |dx|/|x|: " + dx);
+                    break;
+                }
+                // negative edgeChangeTol stops when diffEdges <= |edgeChangeTol|
+            } else if (edgeChangeTol < 0 && diffEdges <= FastMath.abs(edgeChangeTol)) {
+                TetradLogger.getInstance().log("Edges converged at iter: " + iterCount + " with |dx|/|x|: " + dx);
+                break;
+            } else {
+                noEdgeChangeCount = 0;
+            }
+
+            if (dx < epsilon && !edgeConverge) {
+                TetradLogger.getInstance().log("Converged at iter: " + iterCount + " with |dx|/|x|: " + dx
+                                               + " < epsilon: " + epsilon);
+                break;
+            }
+
+            // restart acceleration if objective got worse
+            if (Fx + Gx > obj) {
+                theta = Double.POSITIVE_INFINITY;
+                System.arraycopy(X, 0, Y, 0, this.size);
+                System.arraycopy(X, 0, Z, 0, this.size);
+            } else if (theta == 1) {
+                System.arraycopy(X, 0, Z, 0, this.size);
+            } else {
+                for (int i = 0; i < this.size; i++) Z[i] = X[i] * (1 / theta) + Xold[i] * (1 - (1.0 / theta));
+            }
+
+            iterCount++;
+            if (iterCount >= iterLimit) {
+                TetradLogger.getInstance().log("Iter limit reached");
+                break;
+            }
+        }
+
+        return X;
+    }
+
+    /**
+     * Calculates the smooth part of the objective, the negative log pseudolikelihood over n, and optionally its
+     * gradient.
+     *
+     * @param par  The parameters.
+     * @param grad The array to put the gradient in, or null if it is not needed. Not touched if the value is
+     *             infinite.
+     * @return The value.
+     */
+    double evaluate(double[] par, double[] grad) {
+        int n = this.n, p = this.p, lsum = this.lsum;
+
+        for (int s = 0; s < p; s++) {
+            if (par[this.oBetad + s] < 0) return Double.POSITIVE_INFINITY;
+        }
+
+        // beta = triu(beta, 1) + triu(beta, 1)'; phi likewise, without the blocks on the diagonal.
+        for (int j = 0; j < p; j++) {
+            for (int i = 0; i < p; i++) {
+                this.betaSym[j * p + i] = i < j ? par[this.oBeta + j * p + i]
+                        : i > j ? par[this.oBeta + i * p + j] : 0;
+            }
+        }
+
+        for (int c = 0; c < lsum; c++) {
+            for (int r = 0; r < lsum; r++) {
+                this.phiSym[c * lsum + r] = this.varOf[r] == this.varOf[c] ? 0
+                        : r < c ? par[this.oPhi + c * lsum + r] : par[this.oPhi + r * lsum + c];
+            }
+        }
+
+        // Residuals of the continuous variables, res = X * beta * diag(1 / betad) - X + e * alpha1' + D * theta
+        // * diag(1 / betad), with their part of the squared loss.
+        invoke(p, j -> {
+            double betad = par[this.oBetad + j];
+            double[] xb = this.xBeta[j];
+            double[] dt = this.dTheta[j];
+            double[] r = this.res[j];
+
+            Arrays.fill(xb, 0);
+            Arrays.fill(dt, 0);
+
+            for (int s = 0; s < p; s++) {
+                double b = this.betaSym[j * p + s];
+                if (b == 0) continue;
+                double[] xs = this.x[s];
+                for (int k = 0; k < n; k++) xb[k] += b * xs[k];
+            }
+
+            int col = this.oTheta + j * lsum;
+
+            for (int v = 0; v < this.q; v++) {
+                int from = col + this.lcumsum[v];
+                if (isZero(par, from, this.l[v])) continue;
+                int[] yv = this.y[v];
+                for (int k = 0; k < n; k++) dt[k] += par[from + yv[k]];
+            }
+
+            double alpha1 = par[this.oAlpha1 + j];
+            double[] xj = this.x[j];
+            double sq = 0;
+
+            for (int k = 0; k < n; k++) {
+                xb[k] /= betad;
+                dt[k] /= betad;
+                r[k] = xb[k] - xj[k] + alpha1 + dt[k];
+                sq += r[k] * r[k];
+            }
+
+            this.sqParts[j] = sq;
+        });
+
+        // Linear predictors of the discrete levels, wx = X * theta' + D * phi + e * alpha2'.
+        invoke(lsum, c -> {
+            double[] wc = this.wx[c];
+            Arrays.fill(wc, par[this.oAlpha2 + c]);
+
+            for (int s = 0; s < p; s++) {
+                double t = par[this.oTheta + s * lsum + c];
+                if (t == 0) continue;
+                double[] xs = this.x[s];
+                for (int k = 0; k < n; k++) wc[k] += t * xs[k];
+            }
+
+            int col = c * lsum;
+
+            for (int v = 0; v < this.q; v++) {
+                int from = col + this.lcumsum[v];
+                if (isZero(this.phiSym, from, this.l[v])) continue;
+                int[] yv = this.y[v];
+                for (int k = 0; k < n; k++) wc[k] += this.phiSym[from + yv[k]];
+            }
+        });
+
+        // Categorical loss; wx is replaced by softmax(wx) minus the indicators of the observed levels.
+        invoke(this.q, v -> {
+            int from = this.lcumsum[v];
+            int to = this.lcumsum[v + 1];
+            int[] yv = this.y[v];
+            double cat = 0;
+
+            for (int k = 0; k < n; k++) {
+                double max = Double.NEGATIVE_INFINITY;
+                for (int c = from; c < to; c++) max = FastMath.max(max, this.wx[c][k]);
+
+                double sum = 0;
+                for (int c = from; c < to; c++) sum += FastMath.exp(this.wx[c][k] - max);
+                double logSum = FastMath.log(sum) + max;
+
+                cat += logSum - this.wx[from + yv[k]][k];
+
+                if (grad != null) {
+                    for (int c = from; c < to; c++) this.wx[c][k] = FastMath.exp(this.wx[c][k] - logSum);
+                    this.wx[from + yv[k]][k] -= 1;
+                }
+            }
+
+            this.catParts[v] = cat;
+        });
+
+        double logBetad = 0;
+        double sq = 0;
+        double cat = 0;
+
+        for (int j = 0; j < p; j++) {
+            double betad = par[this.oBetad + j];
+            logBetad += FastMath.log(betad);
+            sq += betad * this.sqParts[j];
+        }
+
+        for (int v = 0; v < this.q; v++) cat += this.catParts[v];
+
+        double value = (-n / 2.0 * logBetad + .5 * sq + cat) / n;
+
+        if (grad == null) return value;
+
+        // Continuous-continuous and continuous-discrete blocks, by continuous variable.
+        invoke(p, j -> {
+            double[] rj = this.res[j];
+            double[] xj = this.x[j];
+
+            // gradbeta = X' * res, folded onto the upper triangle.
+            for (int i = 0; i < p; i++) {
+                grad[this.oBeta + j * p + i] = i < j ? (dot(this.x[i], rj) + dot(xj, this.res[i])) / n : 0;
+            }
+
+            // gradtheta = D' * res + (X' * wx)'
+            int col = this.oTheta + j * lsum;
+            Arrays.fill(grad, col, col + lsum, 0);
+
+            for (int v = 0; v < this.q; v++) {
+                int from = col + this.lcumsum[v];
+                int[] yv = this.y[v];
+                for (int k = 0; k < n; k++) grad[from + yv[k]] += rj[k];
+            }
+
+            for (int c = 0; c < lsum; c++) {
+                grad[col + c] = (grad[col + c] + dot(xj, this.wx[c])) / n;
+            }
+
+            double betad = par[this.oBetad + j];
+            double[] xb = this.xBeta[j];
+            double[] dt = this.dTheta[j];
+            double sum = 0;
+            double cross = 0;
+
+            for (int k = 0; k < n; k++) {
+                sum += rj[k];
+                cross += rj[k] * (xb[k] + dt[k]);
+            }
+
+            grad[this.oAlpha1 + j] = betad * sum / n;
+            grad[this.oBetad + j] = (-n / (2.0 * betad) + this.sqParts[j] / 2.0 - cross) / n;
+        });
+
+        // Discrete-discrete block, by level: gradphi = D' * wx, folded onto the upper triangle.
+        invoke(lsum, c -> {
+            double[] wc = this.wx[c];
+            int col = c * lsum;
+            Arrays.fill(this.dWx, col, col + lsum, 0);
+
+            for (int v = 0; v < this.q; v++) {
+                int from = col + this.lcumsum[v];
+                int[] yv = this.y[v];
+                for (int k = 0; k < n; k++) this.dWx[from + yv[k]] += wc[k];
+            }
+
+            double sum = 0;
+            for (int k = 0; k < n; k++) sum += wc[k];
+            grad[this.oAlpha2 + c] = sum / n;
+        });
+
+        for (int c = 0; c < lsum; c++) {
+            for (int r = 0; r < lsum; r++) {
+                grad[this.oPhi + c * lsum + r] = r < c && this.varOf[r] != this.varOf[c]
+                        ? (this.dWx[c * lsum + r] + this.dWx[r * lsum + c]) / n : 0;
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Applies the proximal operator of the group lasso penalty, prox_t, to the given parameters.
+     *
+     * @param t   The step size; must be positive.
+     * @param in  The parameters.
+     * @param out The array to put the result in.
+     * @return The penalty of the result.
+     */
+    double prox(double t, double[] in, double[] out) {
+        if (t <= 0) throw new IllegalArgumentException("t must be positive: " + t);
+
+        int p = this.p, lsum = this.lsum;
+        double tlam0 = this.lambda[0] * t;
+        double tlam1 = this.lambda[1] * t;
+        double tlam2 = this.lambda[2] * t;
+
+        System.arraycopy(in, 0, out, 0, this.size);
+
+        // Soft threshold each beta and each theta group, by continuous variable.
+        invoke(p, j -> {
+            double betaNorms = 0;
+
+            for (int i = 0; i < p; i++) {
+                int idx = this.oBeta + j * p + i;
+                double curVal = in[idx];
+
+                if (curVal != 0) {
+                    double weight = this.w[i] * this.w[j];
+                    curVal *= FastMath.max(0, weight * -tlam0 / FastMath.abs(curVal) + 1);
+                    out[idx] = curVal;
+                    betaNorms += FastMath.abs(weight * curVal);
+                }
+            }
+
+            double thetaNorms = 0;
+
+            for (int v = 0; v < this.q; v++) {
+                int from = this.oTheta + j * lsum + this.lcumsum[v];
+                int to = from + this.l[v];
+                double weight = this.w[j] * this.w[p + v];
+                double norm = 0;
+
+                for (int i = from; i < to; i++) norm += in[i] * in[i];
+                if (norm == 0) continue;
+
+                double scale = FastMath.max(0, 1 - tlam1 * weight / FastMath.sqrt(norm));
+                norm = 0;
+
+                for (int i = from; i < to; i++) {
+                    out[i] = in[i] * scale;
+                    norm += out[i] * out[i];
+                }
+
+                thetaNorms += weight * FastMath.sqrt(norm);
+            }
+
+            this.penParts[j] = this.lambda[0] * betaNorms + this.lambda[1] * thetaNorms;
+        });
+
+        double penalty = 0;
+        for (int j = 0; j < p; j++) penalty += this.penParts[j];
+
+        // Shrink each phi block by its spectral norm, by discrete variable.
+        invoke(this.q, a -> {
+            double phiNorms = 0;
+
+            for (int b = a + 1; b < this.q; b++) {
+                double weight = this.w[p + a] * this.w[p + b];
+                double spectral = spectralNorm(in, a, b);
+                if (spectral == 0) continue;
+
+                double scale = FastMath.max(0, 1 - tlam2 * weight / spectral);
+                double norm = 0;
+
+                for (int c = this.lcumsum[b]; c < this.lcumsum[b + 1]; c++) {
+                    for (int r = this.lcumsum[a]; r < this.lcumsum[a + 1]; r++) {
+                        int idx = this.oPhi + c * lsum + r;
+                        out[idx] = in[idx] * scale;
+                        norm += out[idx] * out[idx];
+                    }
+                }
+
+                phiNorms += weight * FastMath.sqrt(norm);
+            }
+
+            this.penParts[a] = this.lambda[2] * phiNorms;
+        });
+
+        for (int a = 0; a < this.q; a++) penalty += this.penParts[a];
+        return penalty;
+    }
+
+    /**
+     * Returns the spectral norm of the block of phi for discrete variables a and b, directly for blocks with a side of
+     * at most two levels.
+     */
+    private double spectralNorm(double[] par, int a, int b) {
+        int rows = this.l[a];
+        int cols = this.l[b];
+        int r0 = this.oPhi + this.lcumsum[b] * this.lsum + this.lcumsum[a];
+
+        if (FastMath.min(rows, cols) > 2) {
+            DenseDoubleMatrix2D block = new DenseDoubleMatrix2D(rows, cols);
+
+            for (int c = 0; c < cols; c++) {
+                for (int r = 0; r < rows; r++) block.setQuick(r, c, par[r0 + c * this.lsum + r]);
+            }
+
+            Algebra alg = new Algebra();
+            return rows < cols ? alg.norm2(alg.transpose(block)) : alg.norm2(block);
+        }
+
+        // The largest eigenvalue of the smaller Gram matrix, [g00 g01; g01 g11].
+        boolean byRows = rows <= cols;
+        int m = byRows ? rows : cols;
+        int len = byRows ? cols : rows;
+        double g00 = 0, g01 = 0, g11 = 0;
+
+        for (int k = 0; k < len; k++) {
+            double u = byRows ? par[r0 + k * this.lsum] : par[r0 + k];
+            g00 += u * u;
+
+            if (m == 2) {
+                double v = byRows ? par[r0 + k * this.lsum + 1] : par[r0 + this.lsum + k];
+                g01 += u * v;
+                g11 += v * v;
+            }
+        }
+
+        if (m == 1) return FastMath.sqrt(g00);
+
+        double half = (g00 - g11) / 2.0;
+        return FastMath.sqrt((g00 + g11) / 2.0 + FastMath.sqrt(half * half + g01 * g01));
+    }
+
+    /**
+     * Runs the given action for 0, ..., count - 1 in the pool.
+     */
+    private void invoke(int count, IntConsumer action) {
+        ForkJoinUtils.forRange(this.pool, count, action);
+    }
+
+    private static boolean isZero(double[] a, int from, int length) {
+        for (int i = from; i < from + length; i++) {
+            if (a[i] != 0) return false;
+        }
+
+        return true;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int k = 0; k < a.length; k++) sum += a[k] * b[k];
+        return sum;
+    }
+}
@@ -0,0 +1,55 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.pitt.csb.stability;
+
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Graph;
+
+import java.util.List;
+
+/**
+ * A search run over a path of penalties on the same data, as for StARS. The statistics the search needs from the data
+ * (a covariance matrix, say) are calculated once for the path, and the penalties are visited in the order given, each
+ * search being warm started from the result of the one before.
+ *
+ * @author josephramsey
+ * @version $Id: $Id
+ * @see StabilityUtils#StabilityPathSearch(DataSet, DataGraphPathSearch, double[], int, int, int)
+ */
+public abstract class DataGraphPathSearch {
+
+    /**
+     * <p>Constructor for DataGraphPathSearch.</p>
+     */
+    public DataGraphPathSearch() {
+    }
+
+    /**
+     * Searches the data at each of the given penalties in turn.
+     *
+     * @param data      a {@link edu.cmu.tetrad.data.DataSet} object
+     * @param penalties the penalties, in the order they should be visited
+     * @return the graphs, one for each penalty, in the same order
+     * @throws InterruptedException if the search is interrupted
+     */
+    public abstract List<Graph> searchPath(DataSet data, double[] penalties) throws InterruptedException;
+}
@@ -24,13 +24,19 @@ package edu.pitt.csb.stability;
 import edu.cmu.tetrad.data.CovarianceMatrix;
 import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.Boss;
 import edu.cmu.tetrad.search.Fges;
 import edu.cmu.tetrad.search.Pc;
+import edu.cmu.tetrad.search.PermutationSearch;
 import edu.cmu.tetrad.search.score.SemBicScore;
 import edu.cmu.tetrad.search.work_in_progress.IndTestMultinomialLogisticRegression;
 import edu.pitt.csb.mgm.Mgm;
 import edu.pitt.csb.mgm.MixedUtils;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Created by ajsedgewick on 9/4/15.
  *
@@ -145,5 +151,112 @@ public class SearchWrappers {
             return fg.search();
         }
     }
-}
 
+    /**
+     * MGM over a path of penalties, used for all three edge types, each run warm started from the parameters learned
+     * for the penalty before.
+     */
+    public static class MGMPathWrapper extends DataGraphPathSearch {
+
+        /**
+         * Constructor.
+         */
+        public MGMPathWrapper() {
+        }
+
+        /**
+         * Search method.
+         *
+         * @param ds        data set
+         * @param penalties the penalties
+         * @return the graphs
+         */
+        public List<Graph> searchPath(DataSet ds, double[] penalties) {
+            List<Graph> graphs = new ArrayList<>();
+            if (penalties.length == 0) return graphs;
+
+            Mgm m = new Mgm(ds, new double[]{penalties[0], penalties[0], penalties[0]});
+            m.setNumThreads(1);
+
+            for (double penalty : penalties) {
+                m.setLambda(new double[]{penalty, penalty, penalty});
+                m.learnEdges(1000);
+                graphs.add(m.graphFromMGM());
+            }
+
+            return graphs;
+        }
+    }
+
+    /**
+     * Fges over a path of penalty discounts, scoring from one covariance matrix, each search started from the graph
+     * found for the penalty discount before.
+     */
+    public static class FgesPathWrapper extends DataGraphPathSearch {
+
+        /**
+         * Constructor.
+         */
+        public FgesPathWrapper() {
+        }
+
+        /**
+         * Search method.
+         *
+         * @param ds        data set
+         * @param penalties the penalty discounts
+         * @return the graphs
+         */
+        public List<Graph> searchPath(DataSet ds, double[] penalties) throws InterruptedException {
+            SemBicScore score = new SemBicScore(new CovarianceMatrix(MixedUtils.makeContinuousData(ds)));
+            List<Graph> graphs = new ArrayList<>();
+            Graph previous = null;
+
+            for (double penalty : penalties) {
+                score.setPenaltyDiscount(penalty);
+                Fges fg = new Fges(score);
+                fg.setInitialGraph(previous);
+                previous = fg.search();
+                graphs.add(previous);
+            }
+
+            return graphs;
+        }
+    }
+
+    /**
+     * Boss over a path of penalty discounts, scoring from one covariance matrix, each search started from the order
+     * found for the penalty discount before.
+     */
+    public static class BossPathWrapper extends DataGraphPathSearch {
+
+        /**
+         * Constructor.
+         */
+        public BossPathWrapper() {
+        }
+
+        /**
+         * Search method.
+         *
+         * @param ds        data set
+         * @param penalties the penalty discounts
+         * @return the graphs
+         */
+        public List<Graph> searchPath(DataSet ds, double[] penalties) throws InterruptedException {
+            SemBicScore score = new SemBicScore(new CovarianceMatrix(MixedUtils.makeContinuousData(ds)));
+            List<Graph> graphs = new ArrayList<>();
+            List<Node> order = null;
+
+            for (double penalty : penalties) {
+                score.setPenaltyDiscount(penalty);
+                PermutationSearch search = new PermutationSearch(new Boss(score));
+                if (order != null) search.setOrder(order);
+                graphs.add(search.search());
+                order = new ArrayList<>(search.getOrder());
+            }
+
+            return graphs;
+        }
+    }
+}
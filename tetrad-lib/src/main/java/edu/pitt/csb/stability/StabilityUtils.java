@@ -26,6 +26,7 @@ import cern.colt.matrix.DoubleMatrix2D;
 import cern.colt.matrix.linalg.Algebra;
 import cern.jet.math.Functions;
 import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Edge;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.GraphSaveLoadUtils;
 import edu.cmu.tetrad.graph.Node;
@@ -37,7 +38,9 @@ import edu.pitt.csb.mgm.MixedUtils;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.TimeUnit;
@@ -176,6 +179,121 @@ public class StabilityUtils {
         return thetaMat;
     }
 
+    /**
+     * Runs a search over a path of penalties on each of N subsamples of size b, returning for each penalty the
+     * fraction of subsamples in which each pair of variables is adjacent, as StabilitySearch does for one penalty. Each
+     * subsample is searched over the whole path at once, so that the statistics the search needs are calculated once
+     * per subsample and each penalty is warm started from the one before; penalties are best given from the sparsest
+     * graphs to the densest. Subsamples are searched in parallel, and only as many are held in memory at once as there
+     * are threads.
+     *
+     * @param data        a {@link edu.cmu.tetrad.data.DataSet} object
+     * @param gs          a {@link edu.pitt.csb.stability.DataGraphPathSearch} object
+     * @param penalties   the penalties, in the order they should be visited
+     * @param N           the number of subsamples
+     * @param b           the subsample size
+     * @param parallelism the number of subsamples to search at once
+     * @return an array of {@link cern.colt.matrix.DoubleMatrix2D} objects, one for each penalty, indexed like the
+     * variables of the data
+     */
+    public static DoubleMatrix2D[] StabilityPathSearch(DataSet data, DataGraphPathSearch gs, double[] penalties,
+                                                       int N, int b, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+
+        int numVars = data.getNumColumns();
+        DoubleMatrix2D[] thetaMats = new DoubleMatrix2D[penalties.length];
+
+        for (int k = 0; k < penalties.length; k++) {
+            thetaMats[k] = DoubleFactory2D.dense.make(numVars, numVars, 0.0);
+        }
+
+        Map<String, Integer> indices = new HashMap<>();
+
+        for (int i = 0; i < numVars; i++) {
+            indices.put(data.getVariable(i).getName(), i);
+        }
+
+        int[][] samps = StabilityUtils.subSampleNoReplacement(data.getNumRows(), b, N);
+
+        class StabilityPathAction extends RecursiveAction {
+            private final int from;
+            private final int to;
+
+            public StabilityPathAction(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (this.to - this.from <= 1) {
+                    for (int s = this.from; s < this.to; s++) {
+                        List<Graph> graphs;
+
+                        try {
+                            graphs = gs.searchPath(data.subsetRows(samps[s]).copy(), penalties);
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+
+                        for (int k = 0; k < penalties.length; k++) {
+                            DoubleMatrix2D thetaMat = thetaMats[k];
+
+                            synchronized (thetaMat) {
+                                for (Edge edge : graphs.get(k).getEdges()) {
+                                    Integer i = indices.get(edge.getNode1().getName());
+                                    Integer j = indices.get(edge.getNode2().getName());
+
+                                    // Latent nodes the search introduces are not counted.
+                                    if (i == null || j == null) continue;
+
+                                    thetaMat.setQuick(i, j, thetaMat.getQuick(i, j) + 1);
+                                    thetaMat.setQuick(j, i, thetaMat.getQuick(j, i) + 1);
+                                }
+                            }
+                        }
+                    }
+                } else {
+                    int mid = (this.to + this.from) / 2;
+                    invokeAll(new StabilityPathAction(this.from, mid), new StabilityPathAction(mid, this.to));
+                }
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try {
+            pool.invoke(new StabilityPathAction(0, N));
+        } finally {
+            pool.shutdown();
+        }
+
+        for (DoubleMatrix2D thetaMat : thetaMats) {
+            thetaMat.assign(Functions.mult(1.0 / N));
+        }
+
+        return thetaMats;
+    }
+
+    /**
+     * Runs a search over a path of penalties on N subsamples of size b, with as many subsamples searched at once as
+     * there are processors.
+     *
+     * @param data      a {@link edu.cmu.tetrad.data.DataSet} object
+     * @param gs        a {@link edu.pitt.csb.stability.DataGraphPathSearch} object
+     * @param penalties the penalties, in the order they should be visited
+     * @param N         the number of subsamples
+     * @param b         the subsample size
+     * @return an array of {@link cern.colt.matrix.DoubleMatrix2D} objects, one for each penalty
+     * @see #StabilityPathSearch(DataSet, DataGraphPathSearch, double[], int, int, int)
+     */
+    public static DoubleMatrix2D[] StabilityPathSearch(DataSet data, DataGraphPathSearch gs, double[] penalties,
+                                                       int N, int b) {
+        return StabilityPathSearch(data, gs, penalties, N, b, Runtime.getRuntime().availableProcessors());
+    }
+
     //needs a symmetric matrix
     //array of averages of instability matrix over [all, cc, cd, dd] edges
 
@@ -0,0 +1,91 @@
+package edu.cmu.tetrad.algcomparison;
+
+import edu.cmu.tetrad.algcomparison.statistic.AdjacencyPrecision;
+import edu.cmu.tetrad.algcomparison.statistic.Statistics;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.RandomGraph;
+import edu.cmu.tetrad.util.Parameters;
+import edu.cmu.tetrad.util.Params;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that checkpointed comparison tasks are read back only once completed.
+ */
+public class TestComparisonResultStore {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCompletedTasksAreRestored() throws Exception {
+        RandomUtil.getInstance().setSeed(2938423L);
+        File dir = new File(folder.getRoot(), "checkpoints");
+        ComparisonResultStore store = new ComparisonResultStore(dir);
+
+        String key = "algorithm: PC\nalpha = [0.01]\nrun: 1";
+        Graph graph = RandomGraph.randomGraph(6, 0, 6, 100, 100, 100, false);
+
+        assertNull(store.load(key));
+
+        ComparisonResultStore.TaskWriter writer = store.begin(key);
+        writer.writeGraph(graph);
+        writer.writeStat(0, 0, 0.75);
+        writer.writeStat(0, 2, Double.NaN);
+
+        // Not yet complete, so it would be run again.
+        assertNull(new ComparisonResultStore(dir).load(key));
+
+        writer.writeStat(1, 0, 3.0);
+        writer.complete();
+
+        ComparisonResultStore.TaskResult result = new ComparisonResultStore(dir).load(key);
+        assertNotNull(result);
+        assertTrue(result.hasGraphType(0));
+        assertTrue(result.hasGraphType(1));
+        assertFalse(result.hasGraphType(2));
+        assertEquals(0.75, result.getValue(0, 0), 0.0);
+        assertFalse(result.hasValue(0, 1));
+        assertTrue(Double.isNaN(result.getValue(0, 2)));
+        assertEquals(3.0, result.getValue(1, 0), 0.0);
+        assertEquals(graph.getNumEdges(), result.getGraph().getNumEdges());
+
+        double[][][][] allStats = new double[3][1][3][2];
+        boolean[] graphTypeUsed = new boolean[3];
+        result.copyTo(allStats, graphTypeUsed, 0, 1);
+        assertArrayEquals(new boolean[]{true, true, false}, graphTypeUsed);
+        assertEquals(0.75, allStats[0][0][0][1], 0.0);
+        assertEquals(0.0, allStats[0][0][1][1], 0.0);
+        assertTrue(Double.isNaN(allStats[0][0][2][1]));
+        assertEquals(3.0, allStats[1][0][0][1], 0.0);
+        assertEquals(0.0, allStats[0][0][0][0], 0.0);
+
+        assertNull(store.load(key + "\nrun: 2"));
+
+        // Keys depend on parameter values and the run.
+        Parameters parameters = new Parameters();
+        parameters.set(Params.ALPHA, 0.01);
+        Statistics statistics = new Statistics();
+        statistics.add(new AdjacencyPrecision());
+        String taskKey = ComparisonResultStore.taskKey("PC", List.of(Params.ALPHA), parameters, "Linear",
+                List.of(), parameters, "true_DAG", statistics, 0);
+        assertEquals(taskKey, ComparisonResultStore.taskKey("PC", List.of(Params.ALPHA), parameters, "Linear",
+                List.of(), parameters, "true_DAG", statistics, 0));
+        assertNotEquals(taskKey, ComparisonResultStore.taskKey("PC", List.of(Params.ALPHA), parameters, "Linear",
+                List.of(), parameters, "true_DAG", statistics, 1));
+        parameters.set(Params.ALPHA, 0.05);
+        assertNotEquals(taskKey, ComparisonResultStore.taskKey("PC", List.of(Params.ALPHA), parameters, "Linear",
+                List.of(), parameters, "true_DAG", statistics, 0));
+
+        // Starting the task again discards the earlier results until it completes.
+        store.begin(key).close();
+        assertNull(store.load(key));
+    }
+}
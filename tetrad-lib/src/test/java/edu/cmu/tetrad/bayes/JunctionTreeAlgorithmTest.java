@@ -39,6 +39,7 @@ import java.text.DecimalFormat;
 import java.util.Arrays;
 import java.util.Objects;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Jan 16, 2020 4:59:57 PM
@@ -183,6 +184,43 @@ public class JunctionTreeAlgorithmTest {
         }
     }
 
+    @Test
+    public void testBatchMarginals() throws IOException {
+        String graphFile = Objects.requireNonNull(this.getClass().getResource("/jta/graph2.txt")).getFile();
+        String dataFile = Objects.requireNonNull(this.getClass().getResource("/jta/data2.txt")).getFile();
+
+        JunctionTreeAlgorithm jta = getJunctionTreeAlgorithm(graphFile, dataFile);
+        int numNodes = jta.getNumberOfNodes();
+
+        // Every combination of the nodes being unobserved (-1) or observed.
+        int numRows = (int) Math.pow(3, numNodes);
+        int[][] evidence = new int[numRows][numNodes];
+
+        for (int r = 0; r < numRows; r++) {
+            for (int i = 0, k = r; i < numNodes; i++, k /= 3) {
+                evidence[r][i] = k % 3 - 1;
+            }
+        }
+
+        for (int target = 0; target < numNodes; target++) {
+            double[][] marginals = jta.getMarginalProbabilities(target, evidence, 2);
+
+            for (int r = 0; r < numRows; r++) {
+                int finalTarget = target;
+                int[] row = evidence[r];
+                int[] parents = IntStream.range(0, numNodes)
+                        .filter(i -> i != finalTarget && row[i] >= 0).toArray();
+                int[] parentValues = Arrays.stream(parents).map(i -> row[i]).toArray();
+
+                double[] expected = parents.length == 0
+                        ? jta.getMarginalProbability(target)
+                        : jta.getConditionalProbabilities(target, parents, parentValues);
+
+                Assert.assertArrayEquals(expected, marginals[r], 1e-12);
+            }
+        }
+    }
+
     private JunctionTreeAlgorithm getJunctionTreeAlgorithm(String graphFile, String dataFile) throws IOException {
         Graph graph = readInGraph(Paths.get(graphFile));
         DataModel dataModel = readInDiscreteData(Paths.get(dataFile));
@@ -0,0 +1,108 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.graph.*;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the Barnes-Hut layout.
+ *
+ * @author josephramsey
+ */
+public final class TestBarnesHutLayout {
+
+    @Test
+    public void testLayout() {
+        Dag dag = new Dag();
+
+        GraphNode x1 = new GraphNode("X1");
+        GraphNode x2 = new GraphNode("X2");
+        GraphNode x3 = new GraphNode("X3");
+        GraphNode x4 = new GraphNode("X4");
+        GraphNode x5 = new GraphNode("X5");
+        GraphNode x6 = new GraphNode("X6");
+        GraphNode x7 = new GraphNode("X7");
+
+        dag.addNode(x1);
+        dag.addNode(x2);
+        dag.addNode(x3);
+        dag.addNode(x4);
+        dag.addNode(x5);
+        dag.addNode(x6);
+        dag.addNode(x7);
+
+        dag.addDirectedEdge(x1, x2);
+        dag.addDirectedEdge(x2, x3);
+        dag.addDirectedEdge(x4, x5);
+        dag.addDirectedEdge(x5, x6);
+
+        Dag dag2 = new Dag(dag);
+
+        LayoutUtil.barnesHutLayout(dag);
+
+        assertEquals(dag, dag2);
+
+        Set<String> centers = new HashSet<>();
+
+        for (Node node : dag.getNodes()) {
+            assertTrue(node.getCenterX() >= 0 && node.getCenterY() >= 0);
+            centers.add(node.getCenterX() + "," + node.getCenterY());
+        }
+
+        assertEquals(7, centers.size());
+    }
+
+    @Test
+    public void testThreadsAgree() {
+        RandomUtil.getInstance().setSeed(28304L);
+        Graph graph = RandomGraph.randomGraph(1500, 0, 3000, 30, 15, 15, false);
+        List<List<Integer>> layouts = new ArrayList<>();
+
+        for (int numThreads : new int[]{1, 4}) {
+            RandomUtil.getInstance().setSeed(1923L);
+            LayoutUtil.BarnesHutLayout layout = new LayoutUtil.BarnesHutLayout(graph);
+            layout.setNumThreads(numThreads);
+            layout.doLayout();
+
+            List<Integer> centers = new ArrayList<>();
+
+            for (Node node : graph.getNodes()) {
+                centers.add(node.getCenterX());
+                centers.add(node.getCenterY());
+            }
+
+            layouts.add(centers);
+        }
+
+        assertEquals(layouts.get(0), layouts.get(1));
+    }
+}
@@ -0,0 +1,75 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.graph.*;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that batched m-separation agrees with the per-fact m-connection check in Paths.
+ *
+ * @author josephramsey
+ */
+public final class TestBayesBall {
+
+    @Test
+    public void testAgreesWithPathsOnDag() {
+        RandomUtil.getInstance().setSeed(3948293L);
+        checkAgreement(RandomGraph.randomGraph(15, 0, 25, 100, 100, 100, false));
+    }
+
+    @Test
+    public void testAgreesWithPathsOnPag() {
+        RandomUtil.getInstance().setSeed(2938472L);
+        Graph dag = RandomGraph.randomGraph(15, 3, 25, 100, 100, 100, false);
+        checkAgreement(GraphTransforms.dagToPag(dag));
+    }
+
+    private void checkAgreement(Graph graph) {
+        BayesBall bayesBall = new BayesBall(graph);
+        Map<Node, Set<Node>> descendants = graph.paths().getDescendantsMap();
+        List<Node> nodes = graph.getNodes();
+
+        for (int trial = 0; trial < 50; trial++) {
+            Node x = nodes.get(RandomUtil.getInstance().nextInt(nodes.size()));
+            Set<Node> z = new HashSet<>();
+
+            for (Node node : nodes) {
+                if (node != x && RandomUtil.getInstance().nextDouble() < 0.2) z.add(node);
+            }
+
+            Set<Node> connected = bayesBall.getMConnectedNodes(x, z);
+
+            for (Node y : nodes) {
+                if (z.contains(y)) continue;
+                boolean expected = graph.paths().isMConnectedTo(x, y, z, descendants, false);
+                assertEquals(expected, connected.contains(y));
+                assertEquals(expected, bayesBall.isMConnectedTo(x, y, z));
+            }
+        }
+    }
+}
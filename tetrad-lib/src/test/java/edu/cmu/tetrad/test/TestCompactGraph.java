@@ -0,0 +1,107 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.graph.*;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the compact graph representations against EdgeListGraph.
+ *
+ * @author josephramsey
+ */
+public final class TestCompactGraph {
+
+    @Test
+    public void testSnapshotAgreesWithGraph() {
+        RandomUtil.getInstance().setSeed(38482934L);
+
+        Graph graph = RandomGraph.randomGraph(30, 0, 60, 100, 100, 100, false);
+        graph.addUndirectedEdge(graph.getNodes().get(0), graph.getNodes().get(29));
+        CompactGraph compact = new CsrGraph(graph);
+
+        assertEquals(graph.getNumNodes(), compact.getNumNodes());
+        assertEquals(graph.getNumEdges(), compact.getNumEdges());
+
+        for (Node x : graph.getNodes()) {
+            int i = compact.getIndex(x);
+
+            assertEquals(new HashSet<>(graph.getParents(x)), toSet(compact, compact.getParents(i)));
+            assertEquals(new HashSet<>(graph.getChildren(x)), toSet(compact, compact.getChildren(i)));
+            assertEquals(new HashSet<>(graph.getAdjacentNodes(x)), toSet(compact, compact.getAdjacent(i)));
+
+            for (Node y : graph.getNodes()) {
+                int j = compact.getIndex(y);
+                assertEquals(graph.getEndpoint(x, y), compact.getEndpoint(i, j));
+                assertEquals(graph.paths().existsDirectedPath(x, y), compact.existsDirectedPath(i, j));
+            }
+        }
+
+        assertEquals(graph, compact.toGraph());
+        assertFalse(compact.existsDirectedCycle());
+    }
+
+    @Test
+    public void testMutableEdits() {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 5; i++) nodes.add(new GraphNode("X" + (i + 1)));
+
+        MutableCompactGraph graph = new MutableCompactGraph(nodes);
+
+        assertTrue(graph.addDirectedEdge(0, 1));
+        assertTrue(graph.addDirectedEdge(1, 2));
+        assertTrue(graph.addUndirectedEdge(2, 3));
+        assertFalse(graph.addDirectedEdge(1, 0));
+
+        assertTrue(graph.isParentOf(0, 1));
+        assertTrue(graph.isUndirected(3, 2));
+        assertArrayEquals(new int[]{1}, graph.getCommonAdjacents(0, 2));
+
+        BitSet target = new BitSet();
+        target.set(2);
+        assertEquals(3, graph.getAncestors(target).cardinality());
+
+        assertTrue(graph.setMark(3, 2, CompactGraph.ARROW));
+        assertTrue(graph.isParentOf(3, 2));
+        assertTrue(graph.isDefCollider(1, 2, 3));
+
+        assertTrue(graph.addDirectedEdge(2, 0));
+        assertTrue(graph.existsDirectedCycle());
+        assertTrue(graph.removeEdge(0, 2));
+        assertFalse(graph.existsDirectedCycle());
+
+        Graph copy = graph.toGraph();
+        assertEquals(copy, new MutableCompactGraph(new CsrGraph(copy)).toCsrGraph().toGraph());
+        assertTrue(copy.paths().getAncestors(nodes.get(2)).containsAll(List.of(nodes.get(0), nodes.get(1))));
+    }
+
+    private Set<Node> toSet(CompactGraph graph, int[] indices) {
+        Set<Node> set = new HashSet<>();
+        for (int i : indices) set.add(graph.getNode(i));
+        return set;
+    }
+}
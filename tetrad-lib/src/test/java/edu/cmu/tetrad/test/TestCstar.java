@@ -0,0 +1,194 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.algcomparison.graph.RandomForward;
+import edu.cmu.tetrad.algcomparison.independence.FisherZ;
+import edu.cmu.tetrad.algcomparison.score.SemBicScore;
+import edu.cmu.tetrad.algcomparison.simulation.SemSimulation;
+import edu.cmu.tetrad.data.BootstrapSampler;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.Cstar;
+import edu.cmu.tetrad.search.Ida;
+import edu.cmu.tetrad.search.Pc;
+import edu.cmu.tetrad.util.Parameters;
+import edu.cmu.tetrad.util.Params;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the in-memory mode of CStaR.
+ *
+ * @author josephramsey
+ */
+public class TestCstar {
+    private static final int NUM_SUBSAMPLES = 20;
+
+    @Test
+    public void testInMemoryDoesNotDependOnScheduling() {
+        DataSet data = simulate();
+        List<String> serial = records(data, false, Long.MAX_VALUE, false);
+
+        // One subsample at a time, and several at once.
+        assertEquals(serial, records(data, true, 1, false));
+        assertEquals(serial, records(data, true, Long.MAX_VALUE, false));
+    }
+
+    @Test
+    public void testInMemorySharesCovariance() {
+        DataSet data = simulate();
+
+        // With the pseudoinverse, PC gets the subsample rather than its covariance matrix.
+        assertEquals(records(data, false, Long.MAX_VALUE, true), records(data, false, Long.MAX_VALUE, false));
+    }
+
+    @Test
+    public void testInMemoryMatchesSubsampleBySubsample() throws InterruptedException {
+        DataSet data = simulate();
+        List<Node> causes = causes(data);
+        List<Node> effects = effects(data);
+        int q = 3;
+
+        // Each subsample is drawn from its own seed, and its minimum effects are found one effect at a time, as
+        // before the in-memory mode.
+        RandomUtil.getInstance().setSeed(3829L);
+        long[] seeds = new long[NUM_SUBSAMPLES];
+        for (int s = 0; s < NUM_SUBSAMPLES; s++) seeds[s] = RandomUtil.getInstance().nextLong();
+
+        int[][] topCounts = new int[causes.size()][effects.size()];
+        double[][] sums = new double[causes.size()][effects.size()];
+
+        for (long seed : seeds) {
+            RandomUtil.getInstance().setSeed(seed);
+            BootstrapSampler sampler = new BootstrapSampler();
+            sampler.setWithoutReplacements(true);
+            DataSet sample = sampler.sample(data, data.getNumRows() / 2);
+
+            Pc pc = new Pc(new FisherZ().getTest(sample, parameters(false)));
+            pc.setStable(true);
+            Ida ida = new Ida(new CovarianceMatrix(sample), pc.search(), causes);
+
+            double[][] minEffects = new double[causes.size()][effects.size()];
+            double[] sorted = new double[causes.size() * effects.size()];
+
+            for (int e = 0; e < effects.size(); e++) {
+                Map<Node, Double> onY = ida.calculateMinimumTotalEffectsOnY(effects.get(e));
+
+                for (int c = 0; c < causes.size(); c++) {
+                    minEffects[c][e] = onY.get(causes.get(c));
+                    sorted[c * effects.size() + e] = minEffects[c][e];
+                }
+            }
+
+            Arrays.sort(sorted);
+            double cutoff = sorted[sorted.length - q * effects.size()];
+
+            for (int c = 0; c < causes.size(); c++) {
+                for (int e = 0; e < effects.size(); e++) {
+                    if (minEffects[c][e] >= cutoff) topCounts[c][e]++;
+                    sums[c][e] += minEffects[c][e];
+                }
+            }
+        }
+
+        List<double[]> tuples = new ArrayList<>();
+
+        for (int e = 0; e < effects.size(); e++) {
+            for (int c = 0; c < causes.size(); c++) {
+                double pi = topCounts[c][e] / (double) NUM_SUBSAMPLES;
+                double avg = sums[c][e] / NUM_SUBSAMPLES;
+                if (pi > 0 && avg > 0) tuples.add(new double[]{c, e, pi, avg});
+            }
+        }
+
+        tuples.sort((o1, o2) -> o1[2] == o2[2] ? Double.compare(o2[3], o1[3]) : Double.compare(o2[2], o1[2]));
+        List<String> expected = new ArrayList<>();
+
+        for (double[] tuple : tuples) {
+            expected.add(causes.get((int) tuple[0]) + " " + effects.get((int) tuple[1]) + " " + tuple[2]);
+        }
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, records(data, false, Long.MAX_VALUE, false));
+    }
+
+    /**
+     * Returns the records, cause, effect and pi, of an in-memory run.
+     */
+    private static List<String> records(DataSet data, boolean parallelized, long memoryBudget,
+                                        boolean usePseudoinverse) {
+        RandomUtil.getInstance().setSeed(3829L);
+        Cstar cstar = new Cstar(new FisherZ(), new SemBicScore(), parameters(usePseudoinverse));
+        cstar.setNumSubsamples(NUM_SUBSAMPLES);
+        cstar.setParallelized(parallelized);
+        cstar.setMemoryBudget(memoryBudget);
+
+        LinkedList<LinkedList<Cstar.Record>> allRecords = cstar.getRecords(data, causes(data), effects(data), 3);
+
+        // Nothing is written to disk.
+        assertNull(cstar.getDir());
+
+        List<String> records = new ArrayList<>();
+
+        for (List<Cstar.Record> list : allRecords) {
+            for (Cstar.Record record : list) {
+                records.add(record.getCauseNode() + " " + record.getEffectNode() + " " + record.getPi());
+            }
+        }
+
+        return records;
+    }
+
+    private static Parameters parameters(boolean usePseudoinverse) {
+        Parameters parameters = new Parameters();
+        parameters.set(Params.ALPHA, 0.01);
+        parameters.set(Params.USE_PSEUDOINVERSE, usePseudoinverse);
+        return parameters;
+    }
+
+    private static List<Node> causes(DataSet data) {
+        return data.getVariables().subList(0, 8);
+    }
+
+    private static List<Node> effects(DataSet data) {
+        return data.getVariables().subList(8, 10);
+    }
+
+    private static DataSet simulate() {
+        RandomUtil.getInstance().setSeed(48293L);
+
+        Parameters parameters = new Parameters();
+        parameters.set(Params.NUM_MEASURES, 10);
+        parameters.set(Params.AVG_DEGREE, 3);
+        parameters.set(Params.SAMPLE_SIZE, 1000);
+
+        SemSimulation simulation = new SemSimulation(new RandomForward());
+        simulation.createData(parameters, true);
+        return (DataSet) simulation.getDataModel(0);
+    }
+}
@@ -0,0 +1,96 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.algcomparison.graph.RandomForward;
+import edu.cmu.tetrad.algcomparison.simulation.SemSimulation;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Edge;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.search.Dagma;
+import edu.cmu.tetrad.util.Parameters;
+import edu.cmu.tetrad.util.Params;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests DAGMA on small simulated DAGs.
+ *
+ * @author josephramsey
+ */
+public class TestDagma {
+
+    @Test
+    public void testAdjacenciesAreTrue() {
+        SemSimulation simulation = simulate(5678L);
+        Graph trueGraph = simulation.getTrueGraph(0);
+        Graph graph = new Dagma((DataSet) simulation.getDataModel(0)).search();
+
+        assertEquals(5, graph.getNumEdges());
+
+        for (Edge edge : graph.getEdges()) {
+            assertTrue(edge.toString(), trueGraph.isAdjacentTo(trueGraph.getNode(edge.getNode1().getName()),
+                    trueGraph.getNode(edge.getNode2().getName())));
+        }
+    }
+
+    @Test
+    public void testMatchesEarlierResults() {
+
+        // The CPDAGs found before the optimizer was moved to EJML; please don't change these seeds.
+        long[] seeds = {1234L, 5678L, 91011L};
+        String[] expected = {
+                "X3---X1,X2---X3,X2---X4,X6---X1,X6---X2,X1-->X8,X6---X3,X2-->X8",
+                "X1---X2,X1---X4,X2---X6,X2---X8,X6---X7",
+                "X4---X2,X6---X2,X6---X4,X8---X3,X4---X8,X8---X7"
+        };
+
+        for (int s = 0; s < seeds.length; s++) {
+            Graph graph = new Dagma((DataSet) simulate(seeds[s]).getDataModel(0)).search();
+            Graph earlier = GraphUtils.replaceNodes(GraphUtils.convert(expected[s]), graph.getNodes());
+            assertEquals(new HashSet<>(earlier.getEdges()), new HashSet<>(graph.getEdges()));
+        }
+    }
+
+    private SemSimulation simulate(long seed) {
+        RandomUtil.getInstance().setSeed(seed);
+
+        Parameters parameters = new Parameters();
+        parameters.set(Params.NUM_MEASURES, 8);
+        parameters.set(Params.AVG_DEGREE, 2);
+        parameters.set(Params.SAMPLE_SIZE, 1000);
+
+        // Exp(1) errors.
+        parameters.set(Params.SIMULATION_ERROR_TYPE, 3);
+        parameters.set(Params.SIMULATION_PARAM1, 1);
+
+        SemSimulation simulation = new SemSimulation(new RandomForward());
+        simulation.createData(parameters, true);
+        return simulation;
+    }
+}
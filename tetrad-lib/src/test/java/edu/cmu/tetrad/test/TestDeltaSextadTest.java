@@ -242,6 +242,29 @@ public class TestDeltaSextadTest {
         assertEquals(a, b, 1e-7);
     }
 
+    @Test
+    public void testPValues() {
+        RandomUtil.getInstance().setSeed(3829482L);
+        DataSet data = getSem1().simulateData(1000, false);
+        DeltaSextadTest test = new DeltaSextadTest(data);
+
+        List<Sextad[]> tests = new ArrayList<>();
+        ChoiceGenerator gen = new ChoiceGenerator(8, 6);
+        int[] c;
+
+        while ((c = gen.next()) != null) {
+            tests.add(new Sextad[]{new Sextad(c[0], c[1], c[2], c[3], c[4], c[5]),
+                    new Sextad(c[0], c[4], c[5], c[1], c[2], c[3])});
+        }
+
+        double[] p = test.getPValues(tests);
+        DeltaSextadTest serial = new DeltaSextadTest(data);
+
+        for (int i = 0; i < tests.size(); i++) {
+            assertEquals(serial.getPValue(tests.get(i)), p[i], 1e-12);
+        }
+    }
+
     private SemIm getSem1() {
         Graph graph = new EdgeListGraph();
 
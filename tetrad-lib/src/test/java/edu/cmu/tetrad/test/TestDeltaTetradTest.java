@@ -255,6 +255,36 @@ public class TestDeltaTetradTest {
         double chiSq2 = test2.calcChiSquare(t1234, t1342);
     }
 
+    @Test
+    public void testBatchAgreesWithSingleTests() {
+        RandomUtil.getInstance().setSeed(38482934L);
+
+        DataSet data = getFigure4aSem().simulateData(1000, false);
+        List<Node> v = data.getVariables();
+
+        List<Tetrad[]> tests = new ArrayList<>();
+
+        for (int i = 0; i + 3 < v.size(); i++) {
+            Tetrad t1 = new Tetrad(v.get(i), v.get(i + 1), v.get(i + 2), v.get(i + 3));
+            Tetrad t2 = new Tetrad(v.get(i), v.get(i + 1), v.get(i + 3), v.get(i + 2));
+            tests.add(new Tetrad[]{t1});
+            tests.add(new Tetrad[]{t1, t2});
+        }
+
+        // Fourth moments come from the data here, and are shared through the cache by the batch.
+        double[] batch = new DeltaTetradTest(data).getPValues(tests);
+        DeltaTetradTest test = new DeltaTetradTest(data);
+
+        // Without caching, each test calculates its own moments.
+        DeltaTetradTest uncached = new DeltaTetradTest(data);
+        uncached.setMaxCachedMoments(0);
+
+        for (int i = 0; i < tests.size(); i++) {
+            assertEquals(test.getPValue(tests.get(i)), batch[i], 1e-12);
+            assertEquals(uncached.getPValue(tests.get(i)), batch[i], 1e-12);
+        }
+    }
+
     private SemPm makePm() {
         List<Node> variableNodes = new ArrayList<>();
         ContinuousVariable x1 = new ContinuousVariable("X1");
@@ -0,0 +1,122 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.algcomparison.graph.RandomForward;
+import edu.cmu.tetrad.algcomparison.simulation.SemSimulation;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Edge;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.DirectLingam;
+import edu.cmu.tetrad.search.score.SemBicScore;
+import edu.cmu.tetrad.util.Parameters;
+import edu.cmu.tetrad.util.Params;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests DirectLiNGAM on small simulated DAGs with non-Gaussian errors.
+ *
+ * @author josephramsey
+ */
+public class TestDirectLingam {
+
+    @Test
+    public void testOrderAgreesWithTrueGraph() {
+        for (long seed : new long[]{1234L, 5678L, 91011L}) {
+            SemSimulation simulation = simulate(seed);
+            Graph trueGraph = simulation.getTrueGraph(0);
+            DataSet data = (DataSet) simulation.getDataModel(0);
+            Graph graph = new DirectLingam(data, new SemBicScore(data, true)).search();
+
+            // Each edge of the true graph is found, pointing the same way.
+            for (Edge edge : trueGraph.getEdges()) {
+                Node x = graph.getNode(edge.getNode1().getName());
+                Node y = graph.getNode(edge.getNode2().getName());
+                assertTrue("Seed " + seed + ": " + edge, graph.isParentOf(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesEarlierResults() {
+
+        // The causal orders found before the ordering search was parallelized; please don't change these seeds.
+        long[] seeds = {1234L, 5678L, 91011L};
+        String[][] orders = {
+                {"X1", "X3", "X2", "X4", "X7", "X8", "X5", "X6"},
+                {"X1", "X2", "X8", "X5", "X6", "X7", "X3", "X4"},
+                {"X2", "X1", "X5", "X3", "X4", "X6", "X7", "X8"}
+        };
+
+        for (int s = 0; s < seeds.length; s++) {
+            DataSet data = (DataSet) simulate(seeds[s]).getDataModel(0);
+            Graph graph = new DirectLingam(data, new SemBicScore(data, true)).search();
+            assertEquals(28, graph.getNumEdges());
+
+            for (int i = 0; i < orders[s].length; i++) {
+                for (int j = i + 1; j < orders[s].length; j++) {
+                    assertTrue(graph.isParentOf(graph.getNode(orders[s][i]), graph.getNode(orders[s][j])));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNumThreads() {
+        DataSet data = (DataSet) simulate(5678L).getDataModel(0);
+        List<Graph> graphs = new ArrayList<>();
+
+        for (int numThreads : new int[]{1, 4}) {
+            DirectLingam search = new DirectLingam(data, new SemBicScore(data, true));
+            search.setNumThreads(numThreads);
+            graphs.add(search.search());
+        }
+
+        assertEquals(graphs.get(0), graphs.get(1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new DirectLingam(data, new SemBicScore(data, true)).setNumThreads(0));
+    }
+
+    private SemSimulation simulate(long seed) {
+        RandomUtil.getInstance().setSeed(seed);
+
+        Parameters parameters = new Parameters();
+        parameters.set(Params.NUM_MEASURES, 8);
+        parameters.set(Params.AVG_DEGREE, 2);
+        parameters.set(Params.SAMPLE_SIZE, 1000);
+
+        // Exp(1) errors.
+        parameters.set(Params.SIMULATION_ERROR_TYPE, 3);
+        parameters.set(Params.SIMULATION_PARAM1, 1);
+
+        SemSimulation simulation = new SemSimulation(new RandomForward());
+        simulation.createData(parameters, true);
+        return simulation;
+    }
+}
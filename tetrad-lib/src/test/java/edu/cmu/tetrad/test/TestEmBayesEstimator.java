@@ -0,0 +1,208 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.bayes.*;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DiscreteVariable;
+import edu.cmu.tetrad.graph.*;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the EM estimator of Bayes IMs, and the engine it computes expected counts with, on a small network with a
+ * latent variable and missing values.
+ *
+ * @author josephramsey
+ */
+public class TestEmBayesEstimator {
+
+    @Test
+    public void testExpectationMatchesExactUpdater() {
+        BayesPm pm = bayesPm();
+        DataSet data = data(pm, 0.15);
+
+        EmBayesEstimator estimator = new EmBayesEstimator(pm, data);
+        BayesIm initial = new MlBayesIm(estimator.getEstimatedIm());
+        estimator.setMaxIterations(1);
+        BayesIm estimated = estimator.maximization(0.0);
+
+        // One step, case by case with the row summing exact updater, as the estimator did before.
+        assertProbabilities(expectation(initial, data), estimated, 1e-10);
+    }
+
+    @Test
+    public void testCompleteData() {
+        BayesPm observedPm = observedPm();
+        DataSet data = data(observedPm, 0.0);
+
+        // With all variables observed, EM converges in one step to the maximum likelihood estimate.
+        BayesIm estimated = new EmBayesEstimator(observedPm, data).maximization(1e-8);
+        assertProbabilities(new MlBayesEstimator(0.0).estimate(observedPm, data), estimated, 1e-10);
+    }
+
+    @Test
+    public void testNumThreadsAndMaxIterations() {
+
+        // Without a latent variable, the initial IM does not depend on the random initialization of MlBayesIm.
+        BayesPm pm = observedPm();
+        DataSet data = data(pm, 0.15);
+        List<BayesIm> ims = new ArrayList<>();
+
+        for (int numThreads : new int[]{1, 4}) {
+            EmBayesEstimator estimator = new EmBayesEstimator(pm, data);
+            estimator.setNumThreads(numThreads);
+            estimator.setMaxIterations(20);
+            ims.add(estimator.maximization(0.0));
+        }
+
+        assertProbabilities(ims.get(0), ims.get(1), 0.0);
+        assertThrows(IllegalArgumentException.class, () -> new EmBayesEstimator(pm, data).setMaxIterations(0));
+    }
+
+    private static void assertProbabilities(BayesIm expected, BayesIm actual, double tolerance) {
+        for (int i = 0; i < expected.getNumNodes(); i++) {
+            int j = actual.getNodeIndex(actual.getNode(expected.getNode(i).getName()));
+
+            for (int row = 0; row < expected.getNumRows(i); row++) {
+                for (int col = 0; col < expected.getNumColumns(i); col++) {
+                    assertEquals(expected.getProbability(i, row, col), actual.getProbability(j, row, col), tolerance);
+                }
+            }
+        }
+    }
+
+    /**
+     * Expected counts for one EM step, computed case by case with a row summing exact updater, and the probabilities
+     * they give; rows with no expected count keep the probabilities of the given IM.
+     */
+    private static BayesIm expectation(BayesIm im, DataSet data) {
+        double[][][] counts = new double[im.getNumNodes()][][];
+
+        for (int i = 0; i < im.getNumNodes(); i++) {
+            counts[i] = new double[im.getNumRows(i)][im.getNumColumns(i)];
+        }
+
+        RowSummingExactUpdater updater = new RowSummingExactUpdater(im);
+
+        for (int c = 0; c < data.getNumRows(); c++) {
+            Evidence evidence = Evidence.tautology(im);
+
+            for (int k = 0; k < data.getNumColumns(); k++) {
+                int value = data.getInt(c, k);
+                if (value == DiscreteVariable.MISSING_VALUE) continue;
+                int index = im.getNodeIndex(im.getNode(data.getVariable(k).getName()));
+                evidence.getProposition().setCategory(index, value);
+            }
+
+            updater.setEvidence(evidence);
+
+            for (int i = 0; i < im.getNumNodes(); i++) {
+                int[] parents = im.getParents(i);
+                int[] family = new int[parents.length + 1];
+                System.arraycopy(parents, 0, family, 0, parents.length);
+                family[parents.length] = i;
+
+                for (int row = 0; row < im.getNumRows(i); row++) {
+                    int[] values = new int[family.length];
+                    System.arraycopy(im.getParentValues(i, row), 0, values, 0, parents.length);
+
+                    for (int col = 0; col < im.getNumColumns(i); col++) {
+                        values[parents.length] = col;
+                        counts[i][row][col] += updater.getJointMarginal(family, values);
+                    }
+                }
+            }
+        }
+
+        BayesIm expected = new MlBayesIm(im);
+
+        for (int i = 0; i < im.getNumNodes(); i++) {
+            for (int row = 0; row < im.getNumRows(i); row++) {
+                double sum = 0.0;
+                for (double count : counts[i][row]) sum += count;
+                if (sum == 0.0) continue;
+
+                for (int col = 0; col < im.getNumColumns(i); col++) {
+                    expected.setProbability(i, row, col, counts[i][row][col] / sum);
+                }
+            }
+        }
+
+        return expected;
+    }
+
+    /**
+     * L -> X1, L -> X2, X1 -> X3, X2 -> X3, X3 -> X4, with L latent.
+     */
+    private static BayesPm bayesPm() {
+        Node l = new GraphNode("L");
+        l.setNodeType(NodeType.LATENT);
+        Node x1 = new GraphNode("X1");
+        Node x2 = new GraphNode("X2");
+        Node x3 = new GraphNode("X3");
+        Node x4 = new GraphNode("X4");
+
+        Dag dag = new Dag(List.of(l, x1, x2, x3, x4));
+        dag.addDirectedEdge(l, x1);
+        dag.addDirectedEdge(l, x2);
+        dag.addDirectedEdge(x1, x3);
+        dag.addDirectedEdge(x2, x3);
+        dag.addDirectedEdge(x3, x4);
+
+        RandomUtil.getInstance().setSeed(4823L);
+        return new BayesPm(dag, 2, 3);
+    }
+
+    /**
+     * The PM of bayesPm() without L.
+     */
+    private static BayesPm observedPm() {
+        BayesPm pm = bayesPm();
+        Dag dag = new Dag(pm.getDag());
+        dag.removeNode(dag.getNode("L"));
+        return new BayesPm(dag, pm);
+    }
+
+    /**
+     * Data for the measured variables of the given PM, with each value missing with the given probability.
+     */
+    private static DataSet data(BayesPm pm, double missing) {
+        RandomUtil.getInstance().setSeed(9230L);
+        DataSet data = new MlBayesIm(pm, MlBayesIm.InitializationMethod.RANDOM).simulateData(300, false);
+
+        for (int c = 0; c < data.getNumRows(); c++) {
+            for (int k = 0; k < data.getNumColumns(); k++) {
+                if (RandomUtil.getInstance().nextDouble() < missing) {
+                    data.setInt(c, k, DiscreteVariable.MISSING_VALUE);
+                }
+            }
+        }
+
+        return data;
+    }
+}
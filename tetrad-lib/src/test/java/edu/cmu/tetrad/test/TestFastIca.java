@@ -0,0 +1,122 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.search.FastIca;
+import edu.cmu.tetrad.util.Matrix;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests FastIca against the un-mixing matrices found before its iterations were moved to primitive arrays.
+ *
+ * @author josephramsey
+ */
+public class TestFastIca {
+
+    // The W matrices found before; please don't change the data or initial matrix.
+    private static final double[][] PARALLEL_LOGCOSH = {
+            {-0.4695397345694411, 1.1638789458502738, -0.3695917298557428},
+            {1.995352994048735, -0.6281059354744947, -0.4929324909694363},
+            {0.18584785535814016, -2.1245545499037033, 3.4036679005176387}};
+    private static final double[][] PARALLEL_EXP = {
+            {0.7906400167052436, -1.2814705536915083, 0.3341105887529765},
+            {-1.8965925349163162, 0.4911386986463556, 0.4478267048694692},
+            {-0.11943901801354742, 2.092720550145648, -3.413554895022803}};
+    private static final double[][] DEFLATION_LOGCOSH = {
+            {0.27146875140485277, -1.1088107647255334, 0.4366106375617335},
+            {2.037420933883539, -1.03492210022107, 0.03657485352904055},
+            {0.1079870998028225, 1.9905622916128867, -3.4311177618529083}};
+    private static final double[][] DEFLATION_EXP = {
+            {-0.2757562563725086, 1.1070599146890732, -0.43009819278431916},
+            {-0.05256682935571838, -2.0197778804295057, 3.4316661335941228},
+            {-2.0390281444999507, 0.9786618217263175, 0.05673408633327626}};
+
+    @Test
+    public void testMatchesEarlierResults() {
+        assertW(DEFLATION_LOGCOSH, w(FastIca.DEFLATION, FastIca.LOGCOSH, false, 1), 1e-10);
+        assertW(DEFLATION_EXP, w(FastIca.DEFLATION, FastIca.EXP, false, 1), 1e-10);
+        assertW(PARALLEL_LOGCOSH, w(FastIca.PARALLEL, FastIca.LOGCOSH, false, 1), 1e-10);
+        assertW(PARALLEL_EXP, w(FastIca.PARALLEL, FastIca.EXP, false, 1), 1e-10);
+    }
+
+    @Test
+    public void testNumThreadsAndFloatPrecision() {
+        Matrix serial = w(FastIca.PARALLEL, FastIca.LOGCOSH, false, 1);
+        assertW(serial.toArray(), w(FastIca.PARALLEL, FastIca.LOGCOSH, false, 3), 0.0);
+
+        // Float precision changes the data by about one part in 1e7.
+        assertW(DEFLATION_LOGCOSH, w(FastIca.DEFLATION, FastIca.LOGCOSH, true, 3), 1e-6);
+        assertW(PARALLEL_EXP, w(FastIca.PARALLEL, FastIca.EXP, true, 3), 1e-6);
+    }
+
+    private static Matrix w(int algorithmType, int function, boolean floatPrecision, int numThreads) {
+        FastIca ica = new FastIca(data(), 3);
+        ica.setAlgorithmType(algorithmType);
+        ica.setFunction(function);
+        ica.setWInit(new Matrix(new double[][]{{1, .2, -.3}, {.1, -1, .4}, {.5, .3, 1}}));
+        ica.setTolerance(1e-10);
+        ica.setMaxIterations(500);
+        ica.setFloatPrecision(floatPrecision);
+        ica.setNumThreads(numThreads);
+        return ica.findComponents().getW();
+    }
+
+    private static void assertW(double[][] expected, Matrix actual, double tolerance) {
+        for (int i = 0; i < expected.length; i++) {
+            for (int j = 0; j < expected[i].length; j++) {
+                assertEquals(expected[i][j], actual.get(i, j), tolerance);
+            }
+        }
+    }
+
+    /**
+     * Three non-Gaussian sources, mixed, as variables by samples.
+     */
+    private static Matrix data() {
+        RandomUtil random = RandomUtil.getInstance();
+        random.setSeed(3829L);
+        int n = 2000;
+        double[][] s = new double[3][n];
+
+        for (int t = 0; t < n; t++) {
+            s[0][t] = random.nextUniform(-1, 1);
+            s[1][t] = random.nextExponential(1) - random.nextExponential(1);
+            s[2][t] = Math.pow(random.nextUniform(-1, 1), 3);
+        }
+
+        double[][] a = {{1, .5, .2}, {.3, 1, .4}, {.2, .6, 1}};
+        double[][] x = new double[3][n];
+
+        for (int i = 0; i < 3; i++) {
+            for (int t = 0; t < n; t++) {
+                for (int j = 0; j < 3; j++) {
+                    x[i][t] += a[i][j] * s[j][t];
+                }
+            }
+        }
+
+        return new Matrix(x);
+    }
+}
@@ -30,6 +30,7 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.*;
 
@@ -95,6 +96,100 @@ public final class TestGraph {
         }
     }
 
+    @Test
+    public void testTxt() throws IOException {
+        Graph graph = annotatedGraph();
+        Graph _graph = GraphSaveLoadUtils.readerToGraphTxt(graph.toString());
+
+        assertEquals(graph, _graph);
+        assertEquals(GraphUtils.graphEdgesToText(graph, null), GraphUtils.graphEdgesToText(_graph, null));
+
+        for (Node node : graph.getNodes()) {
+            assertEquals(node.getNodeType(), _graph.getNode(node.getName()).getNodeType());
+        }
+    }
+
+    @Test
+    public void testBinary() throws IOException {
+        List<Graph> graphs = new ArrayList<>();
+        graphs.add(annotatedGraph());
+
+        for (int i = 0; i < 20; i++) {
+            graphs.add(RandomGraph.randomGraph(30, 3, 40, 10, 10, 10, false));
+        }
+
+        File file = File.createTempFile("graphs", ".bin");
+
+        try {
+            GraphSaveLoadUtils.saveGraphsBinary(graphs, file);
+            List<Graph> _graphs = GraphSaveLoadUtils.loadGraphsBinary(file);
+
+            assertEquals(graphs, _graphs);
+
+            for (int i = 0; i < graphs.size(); i++) {
+                Graph graph = graphs.get(i);
+                Graph _graph = _graphs.get(i);
+
+                assertEquals(graph.toString(), _graph.toString());
+                assertEquals(graph.getAmbiguousTriples().toString(), _graph.getAmbiguousTriples().toString());
+                assertEquals(graph.getUnderLines().toString(), _graph.getUnderLines().toString());
+                assertEquals(graph.getAllAttributes(), _graph.getAllAttributes());
+
+                for (Node node : graph.getNodes()) {
+                    Node _node = _graph.getNode(node.getName());
+                    assertEquals(node.getNodeType(), _node.getNodeType());
+                    assertEquals(node.getCenterX(), _node.getCenterX());
+                    assertEquals(node.getCenterY(), _node.getCenterY());
+                }
+            }
+
+            assertEquals(graphs.get(0), GraphSaveLoadUtils.loadGraphBinary(file));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * A graph with each kind of endpoint, latent and selection nodes, and the edge annotations of a bootstrap search.
+     */
+    private static Graph annotatedGraph() {
+        Node x1 = new GraphNode("X1");
+        Node x2 = new GraphNode("X2");
+        Node x3 = new GraphNode("X3");
+        Node l1 = new GraphNode("L1");
+        Node s1 = new GraphNode("S1");
+        l1.setNodeType(NodeType.LATENT);
+        s1.setNodeType(NodeType.SELECTION);
+        x2.setCenter(-40, 125);
+
+        Graph graph = new EdgeListGraph(List.of(x1, x2, x3, l1, s1));
+
+        Edge e1 = Edges.directedEdge(x1, x2);
+        e1.addEdgeTypeProbability(new EdgeTypeProbability(EdgeTypeProbability.EdgeType.ta,
+                List.of(Edge.Property.dd, Edge.Property.nl), 0.6));
+        e1.addEdgeTypeProbability(new EdgeTypeProbability(EdgeTypeProbability.EdgeType.at, 0.25));
+        e1.addEdgeTypeProbability(new EdgeTypeProbability(EdgeTypeProbability.EdgeType.nil, 0.15));
+        e1.setProbability(0.85);
+        e1.addProperty(Edge.Property.dd);
+        e1.addProperty(Edge.Property.nl);
+        graph.addEdge(e1);
+
+        Edge e2 = Edges.partiallyOrientedEdge(x2, x3);
+        e2.addEdgeTypeProbability(new EdgeTypeProbability(EdgeTypeProbability.EdgeType.ca, 1.0));
+        graph.addEdge(e2);
+
+        graph.addEdge(Edges.bidirectedEdge(x3, l1));
+        graph.addEdge(Edges.nondirectedEdge(x1, s1));
+        graph.addEdge(Edges.undirectedEdge(x1, x3));
+
+        graph.addAmbiguousTriple(x1, x2, x3);
+        graph.addUnderlineTriple(x1, x2, x3);
+        graph.addAttribute("BIC", 123.5);
+        graph.addAttribute("search", "fges");
+
+        return graph;
+    }
+
     @Test
     public void testTripleCode() {
         Graph graph = new EdgeListGraph();
@@ -0,0 +1,90 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.algcomparison.statistic.*;
+import edu.cmu.tetrad.algcomparison.statistic.utils.AdjacencyConfusion;
+import edu.cmu.tetrad.algcomparison.statistic.utils.ArrowConfusion;
+import edu.cmu.tetrad.algcomparison.statistic.utils.GraphComparison;
+import edu.cmu.tetrad.graph.*;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that statistics read from a shared graph comparison agree with computing them from the graphs directly.
+ *
+ * @author josephramsey
+ */
+public final class TestGraphComparison {
+
+    @Test
+    public void testSharedComparisonAgreesWithGraphs() {
+        RandomUtil.getInstance().setSeed(58392834L);
+
+        Graph trueGraph = RandomGraph.randomGraph(20, 0, 30, 100, 100, 100, false);
+        Graph estGraph = GraphUtils.replaceNodes(RandomGraph.randomGraph(20, 0, 30, 100, 100, 100, false),
+                trueGraph.getNodes());
+
+        List<Statistic> statistics = List.of(new AdjacencyPrecision(), new AdjacencyRecall(),
+                new ArrowheadPrecision(), new ArrowheadRecall(), new F1Adj(), new AncestorPrecision(),
+                new AncestorRecall(), new AncestralPrecision(), new NonancestorRecall(),
+                new TrueDagPrecisionArrow());
+
+        double[] unshared = new double[statistics.size()];
+
+        for (int i = 0; i < statistics.size(); i++) {
+            unshared[i] = statistics.get(i).getValue(trueGraph, estGraph, null);
+        }
+
+        GraphComparison.Scope scope = GraphComparison.open(trueGraph, estGraph);
+
+        try (scope) {
+            GraphComparison comparison = GraphComparison.of(trueGraph, estGraph);
+            assertSame(comparison, GraphComparison.of(trueGraph, estGraph));
+            assertNotSame(comparison, GraphComparison.of(estGraph, trueGraph));
+
+            for (int i = 0; i < statistics.size(); i++) {
+                assertEquals(unshared[i], statistics.get(i).getValue(trueGraph, estGraph, null), 0.0);
+            }
+
+            AdjacencyConfusion adj = new AdjacencyConfusion(trueGraph, estGraph);
+            assertEquals(adj.getTp(), comparison.getAdjacencyConfusion().getTp());
+            assertEquals(adj.getFn(), comparison.getAdjacencyConfusion().getFn());
+
+            ArrowConfusion arrows = new ArrowConfusion(trueGraph, estGraph);
+            assertEquals(arrows.getFp(), comparison.getArrowConfusion().getFp());
+
+            for (Node x : trueGraph.getNodes()) {
+                for (Node y : trueGraph.getNodes()) {
+                    assertEquals(trueGraph.paths().isAncestorOf(x, y), comparison.isTrueAncestorOf(x, y));
+                    assertEquals(estGraph.paths().isAncestorOf(x, y), comparison.isEstAncestorOf(x, y));
+                }
+            }
+        }
+
+        assertNotSame(GraphComparison.of(trueGraph, estGraph), GraphComparison.of(trueGraph, estGraph));
+    }
+}
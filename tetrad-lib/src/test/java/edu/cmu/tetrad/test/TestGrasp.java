@@ -76,6 +76,7 @@ import java.text.NumberFormat;
 import java.util.*;
 
 import static edu.cmu.tetrad.util.RandomUtil.shuffle;
+import static org.junit.Assert.assertEquals;
 
 
 /**
@@ -954,6 +955,39 @@ public final class TestGrasp {
                 simulations, algorithms, statistics, params);
     }
 
+    @Test
+    public void testNumThreads() throws InterruptedException {
+        RandomUtil.getInstance().setSeed(38482L);
+
+        Graph graph = RandomGraph.randomGraph(20, 0, 40, 100, 100, 100, false);
+        DataSet data = new SemIm(new SemPm(graph)).simulateData(1000, false);
+        SemBicScore score = new SemBicScore(new CovarianceMatrix(data));
+
+        for (boolean allowInternalRandomness : new boolean[]{false, true}) {
+            List<Node> order = null;
+            Graph cpdag = null;
+
+            for (int numThreads : new int[]{1, 4}) {
+                edu.cmu.tetrad.search.Grasp grasp = new edu.cmu.tetrad.search.Grasp(score);
+                grasp.setSeed(29384L);
+                grasp.setNumStarts(4);
+                grasp.setAllowInternalRandomness(allowInternalRandomness);
+                grasp.setNumThreads(numThreads);
+
+                List<Node> _order = grasp.bestOrder(score.getVariables());
+                Graph _cpdag = grasp.getGraph(true);
+
+                if (order == null) {
+                    order = _order;
+                    cpdag = _cpdag;
+                } else {
+                    assertEquals(order, _order);
+                    assertEquals(cpdag, _cpdag);
+                }
+            }
+        }
+    }
+
     @Test
     public void name() {
     }
@@ -0,0 +1,119 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.algcomparison.graph.RandomForward;
+import edu.cmu.tetrad.algcomparison.simulation.SemSimulation;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.*;
+import edu.cmu.tetrad.search.Ida;
+import edu.cmu.tetrad.util.Parameters;
+import edu.cmu.tetrad.util.Params;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the batch methods of IDA give the effects found one effect at a time.
+ *
+ * @author josephramsey
+ */
+public class TestIda {
+
+    // The minimum total effects on X10 found before the regressions were batched; please don't change the seed.
+    private static final Map<String, Double> MIN_EFFECTS_ON_X10 = Map.of("X1", 0.030945384374905287,
+            "X2", -0.0996565939882994, "X3", -0.17728541800888098, "X4", -0.6557972591583728,
+            "X5", -0.3385097765718408, "X6", -0.0541663122768172, "X7", 0.3350935102645705,
+            "X8", 0.619406565252275, "X9", 0.038018726131114206, "X10", 0.0);
+
+    @Test
+    public void testMatchesEarlierEffects() {
+        SemSimulation simulation = simulate();
+        DataSet data = (DataSet) simulation.getDataModel(0);
+        Graph cpdag = cpdag(simulation, data);
+        List<Node> variables = data.getVariables();
+        Node y = data.getVariable("X10");
+
+        Map<Node, Double> minEffects = new Ida(data, cpdag, variables).calculateMinimumTotalEffectsOnY(y);
+        double[][] batch = new Ida(data, cpdag, variables).calculateMinimumTotalEffects(List.of(y));
+
+        for (int c = 0; c < variables.size(); c++) {
+            double expected = MIN_EFFECTS_ON_X10.get(variables.get(c).getName());
+            assertEquals(expected, minEffects.get(variables.get(c)), 1e-12);
+            assertEquals(expected, batch[c][0], 1e-12);
+        }
+    }
+
+    @Test
+    public void testBatchMatchesOneEffectAtATime() {
+        SemSimulation simulation = simulate();
+        DataSet data = (DataSet) simulation.getDataModel(0);
+        Graph cpdag = cpdag(simulation, data);
+        List<Node> variables = data.getVariables();
+
+        // Siblings give more than one regression for some causes.
+        assertTrue(cpdag.getEdges().stream().anyMatch(Edges::isUndirectedEdge));
+
+        Ida ida = new Ida(data, cpdag, variables);
+        ida.setNumThreads(4);
+        double[][] batch = ida.calculateMinimumTotalEffects(variables);
+
+        List<OrderedPair<Node>> pairs = new ArrayList<>();
+        for (Node x : variables) for (Node y : variables) pairs.add(new OrderedPair<>(x, y));
+        Map<OrderedPair<Node>, ?> totalEffects = ida.getTotalEffects(pairs);
+
+        for (int e = 0; e < variables.size(); e++) {
+            Node y = variables.get(e);
+            Ida single = new Ida(data, cpdag, variables);
+            Map<Node, Double> minEffects = single.calculateMinimumTotalEffectsOnY(y);
+
+            for (int c = 0; c < variables.size(); c++) {
+                Node x = variables.get(c);
+                assertEquals(minEffects.get(x), batch[c][e], 1e-12);
+                assertEquals(single.getTotalEffects(x, y), totalEffects.get(new OrderedPair<>(x, y)));
+            }
+        }
+    }
+
+    private static Graph cpdag(SemSimulation simulation, DataSet data) {
+        return GraphTransforms.dagToCpdag(GraphUtils.replaceNodes(simulation.getTrueGraph(0), data.getVariables()));
+    }
+
+    private static SemSimulation simulate() {
+        RandomUtil.getInstance().setSeed(4829L);
+
+        Parameters parameters = new Parameters();
+        parameters.set(Params.NUM_MEASURES, 10);
+        parameters.set(Params.AVG_DEGREE, 3);
+        parameters.set(Params.SAMPLE_SIZE, 500);
+
+        SemSimulation simulation = new SemSimulation(new RandomForward());
+        simulation.createData(parameters, true);
+        return simulation;
+    }
+}
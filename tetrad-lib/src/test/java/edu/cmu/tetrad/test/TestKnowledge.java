@@ -21,6 +21,7 @@
 
 package edu.cmu.tetrad.test;
 
+import edu.cmu.tetrad.data.CompiledKnowledge;
 import edu.cmu.tetrad.data.ContinuousVariable;
 import edu.cmu.tetrad.data.Knowledge;
 import edu.cmu.tetrad.data.KnowledgeEdge;
@@ -33,6 +34,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -163,9 +165,45 @@ public final class TestKnowledge {
             assertTrue(knowledge.isForbidden("X11", "X22"));
         }
     }
-}
 
+    @Test
+    public void testCompiledKnowledgeAgrees() {
+        List<Node> nodes = new ArrayList<>();
+        List<String> vars = new ArrayList<>();
 
+        for (int i = 0; i < 12; i++) {
+            nodes.add(new ContinuousVariable("X" + (i + 1)));
+            vars.add("X" + (i + 1));
+        }
 
+        Knowledge knowledge = new Knowledge(vars);
 
+        knowledge.addToTier(0, "X1");
+        knowledge.addToTier(0, "X2");
+        knowledge.addToTier(1, "X3");
+        knowledge.addToTier(1, "X4");
+        knowledge.addToTier(2, "X5");
+        knowledge.setTierForbiddenWithin(1, true);
+        knowledge.setOnlyCanCauseNextTier(0, true);
+
+        knowledge.setForbidden("X6", "X7");
+        knowledge.setRequired("X8", "X9");
+        knowledge.setRequired("X1*", "X10");
+
+        // Compile against some of the variables, so that the others fall back to the knowledge.
+        CompiledKnowledge compiled = knowledge.compile(nodes.subList(0, 9));
+
+        for (String x : vars) {
+            for (String y : vars) {
+                assertEquals(knowledge.isForbidden(x, y), compiled.isForbidden(x, y));
+                assertEquals(knowledge.isRequired(x, y), compiled.isRequired(x, y));
+                assertEquals(knowledge.noEdgeRequired(x, y), compiled.noEdgeRequired(x, y));
+            }
+        }
 
+        assertEquals(knowledge.isInWhichTier(nodes.get(3)), compiled.getTier(compiled.getIndex("X4")));
+        assertEquals(-1, compiled.getTier(compiled.getIndex("X6")));
+        assertEquals(-1, compiled.getIndex("X12"));
+        assertTrue(new Knowledge().compile(nodes).isEmpty());
+    }
+}
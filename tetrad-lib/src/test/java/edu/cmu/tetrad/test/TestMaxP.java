@@ -0,0 +1,169 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.algcomparison.graph.RandomForward;
+import edu.cmu.tetrad.algcomparison.simulation.LeeHastieSimulation;
+import edu.cmu.tetrad.algcomparison.simulation.SemSimulation;
+import edu.cmu.tetrad.algcomparison.simulation.Simulation;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Edge;
+import edu.cmu.tetrad.graph.EdgeListGraph;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.search.IndependenceTest;
+import edu.cmu.tetrad.search.test.IndTestConditionalGaussianLrt;
+import edu.cmu.tetrad.search.test.IndTestFisherZ;
+import edu.cmu.tetrad.search.utils.MaxP;
+import edu.cmu.tetrad.util.Parameters;
+import edu.cmu.tetrad.util.Params;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * Tests the Max-P collider orientation against the orientations found when its tests were run serially, one triple at
+ * a time, on continuous and mixed data.
+ *
+ * @author josephramsey
+ */
+public class TestMaxP {
+
+    // The edges the serial Max-P oriented on the true skeletons; please don't change the seeds.
+    private static final Set<String> MAX_P_1 = Set.of("X9 --> X7", "X8 --- X9", "X1 --> X11", "X2 --> X12",
+            "X3 --> X10", "X12 --> X1", "X11 --> X12", "X4 --> X11", "X4 --> X1", "X11 --> X7", "X8 --> X10",
+            "X5 --> X1", "X6 --> X11", "X2 --- X6", "X8 --> X12", "X2 --- X7", "X9 --> X1", "X5 --- X8");
+    private static final Set<String> HEURISTIC_1 = Set.of("X9 --> X7", "X8 --- X9", "X1 --- X11", "X12 --> X2",
+            "X3 --- X10", "X12 --> X1", "X12 --> X11", "X4 --> X1", "X4 --> X11", "X8 --- X10", "X1 --- X5",
+            "X11 --> X7", "X11 --> X6", "X8 --> X12", "X2 --> X6", "X7 --> X2", "X1 --- X9", "X5 --- X8");
+    private static final Set<String> MAX_P_2 = Set.of("X1 --> X11", "X10 --- X12", "X12 --> X2", "X12 --> X11",
+            "X2 --> X11", "X2 --> X1", "X5 --> X11", "X3 --> X1", "X4 --> X11", "X12 --> X3", "X6 --> X11",
+            "X5 --> X3", "X9 --> X11", "X7 --> X2", "X4 --- X6", "X7 --> X3", "X9 --> X2", "X9 --> X3");
+    private static final Set<String> HEURISTIC_2 = Set.of("X1 --> X11", "X10 --> X12", "X12 --> X2", "X12 --> X11",
+            "X1 --> X2", "X2 --> X11", "X1 --> X3", "X11 --> X5", "X4 --> X11", "X12 --> X3", "X6 --> X11",
+            "X9 --> X11", "X3 --> X5", "X7 --> X2", "X4 --- X6", "X7 --> X3", "X2 --- X9", "X3 --- X9");
+
+    // The same, for mixed data with the conditional Gaussian test, which is not symmetric in x and y.
+    private static final Set<String> MIXED_MAX_P_3 = Set.of("X7 --> X11", "X1 --> X9", "X5 --> X9", "X7 --> X9",
+            "X1 --> X2", "X3 --> X2", "X8 --> X10", "X8 --> X11", "X8 --> X5", "X6 --> X1", "X11 --> X9", "X12 --> X9",
+            "X4 --> X1", "X3 --- X4", "X2 --- X6", "X1 --- X5", "X6 --> X10", "X10 --> X2");
+    private static final Set<String> MIXED_HEURISTIC_3 = Set.of("X7 --> X11", "X1 --> X9", "X3 --> X4", "X5 --> X9",
+            "X7 --> X9", "X1 --> X2", "X3 --> X2", "X1 --> X4", "X8 --> X10", "X8 --> X11", "X8 --> X5", "X6 --> X1",
+            "X11 --> X9", "X12 --> X9", "X2 --- X6", "X1 --- X5", "X6 --> X10", "X10 --> X2");
+
+    @Test
+    public void testMatchesSerialMaxP() throws InterruptedException {
+        assertEquals(MAX_P_1, orient(1L, false, 1, 100000));
+        assertEquals(HEURISTIC_1, orient(1L, true, 1, 100000));
+        assertEquals(MAX_P_2, orient(2L, false, 1, 100000));
+        assertEquals(HEURISTIC_2, orient(2L, true, 1, 100000));
+    }
+
+    @Test
+    public void testThreadsAndBatches() throws InterruptedException {
+
+        // Small batches split the tests of the graph into many batches, and the tests of some triples between them.
+        for (int batchSize : new int[]{1, 7, 100}) {
+            assertEquals(MAX_P_1, orient(1L, false, 4, batchSize));
+            assertEquals(HEURISTIC_2, orient(2L, true, 4, batchSize));
+        }
+
+        DataSet data = (DataSet) data(1L).getDataModel(0);
+        assertThrows(IllegalArgumentException.class, () -> new MaxP(new IndTestFisherZ(data, 0.01)).setBatchSize(0));
+    }
+
+    @Test
+    public void testMixedData() throws InterruptedException {
+        for (int numThreads : new int[]{1, 4}) {
+            assertEquals(MIXED_MAX_P_3, orientMixed(3L, false, numThreads, 100000));
+            assertEquals(MIXED_HEURISTIC_3, orientMixed(3L, true, numThreads, 7));
+        }
+    }
+
+    /**
+     * Orients the true skeleton of a simulated graph with Max-P and returns its edges.
+     */
+    private static Set<String> orient(long seed, boolean useHeuristic, int numThreads, int batchSize)
+            throws InterruptedException {
+        SemSimulation simulation = data(seed);
+        DataSet data = (DataSet) simulation.getDataModel(0);
+        return orient(simulation, new IndTestFisherZ(data, 0.01), useHeuristic, numThreads, batchSize);
+    }
+
+    /**
+     * Orients the true skeleton of a simulated mixed graph with Max-P, using the conditional Gaussian test, and returns
+     * its edges.
+     */
+    private static Set<String> orientMixed(long seed, boolean useHeuristic, int numThreads, int batchSize)
+            throws InterruptedException {
+        RandomUtil.getInstance().setSeed(seed);
+
+        Parameters parameters = new Parameters();
+        parameters.set(Params.NUM_MEASURES, 12);
+        parameters.set(Params.AVG_DEGREE, 3);
+        parameters.set(Params.SAMPLE_SIZE, 500);
+        parameters.set(Params.PERCENT_DISCRETE, 50);
+        parameters.set(Params.MIN_CATEGORIES, 3);
+        parameters.set(Params.MAX_CATEGORIES, 3);
+
+        LeeHastieSimulation simulation = new LeeHastieSimulation(new RandomForward());
+        simulation.createData(parameters, true);
+        DataSet data = (DataSet) simulation.getDataModel(0);
+        return orient(simulation, new IndTestConditionalGaussianLrt(data, 0.01, false), useHeuristic, numThreads,
+                batchSize);
+    }
+
+    private static Set<String> orient(Simulation simulation, IndependenceTest test, boolean useHeuristic,
+                                      int numThreads, int batchSize) throws InterruptedException {
+        DataSet data = (DataSet) simulation.getDataModel(0);
+        Graph graph = GraphUtils.replaceNodes(GraphUtils.undirectedGraph(simulation.getTrueGraph(0)),
+                data.getVariables());
+        graph = new EdgeListGraph(graph);
+
+        MaxP maxP = new MaxP(test);
+        maxP.setUseHeuristic(useHeuristic);
+        maxP.setDepth(3);
+        maxP.setNumThreads(numThreads);
+        maxP.setBatchSize(batchSize);
+        maxP.orient(graph);
+
+        return graph.getEdges().stream().map(Edge::toString).collect(Collectors.toSet());
+    }
+
+    private static SemSimulation data(long seed) {
+        RandomUtil.getInstance().setSeed(seed);
+
+        Parameters parameters = new Parameters();
+        parameters.set(Params.NUM_MEASURES, 12);
+        parameters.set(Params.AVG_DEGREE, 3);
+        parameters.set(Params.SAMPLE_SIZE, 500);
+
+        SemSimulation simulation = new SemSimulation(new RandomForward());
+        simulation.createData(parameters, true);
+        return simulation;
+    }
+}
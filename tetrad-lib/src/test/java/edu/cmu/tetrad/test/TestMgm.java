@@ -0,0 +1,153 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix1D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import edu.cmu.tetrad.algcomparison.graph.RandomForward;
+import edu.cmu.tetrad.algcomparison.simulation.LeeHastieSimulation;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DiscreteVariable;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.Parameters;
+import edu.cmu.tetrad.util.Params;
+import edu.cmu.tetrad.util.RandomUtil;
+import edu.pitt.csb.mgm.Mgm;
+import edu.pitt.csb.mgm.ProximalGradient;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that MGM, which learns with MgmEngine, finds the parameters that ProximalGradient finds on the Colt version of
+ * the problem.
+ *
+ * @author josephramsey
+ */
+public class TestMgm {
+
+    @Test
+    public void testMatchesProximalGradient() {
+        DataSet data = simulate();
+        double[] lambda = {.2, .2, .2};
+
+        Mgm mgm = new Mgm(data, lambda);
+        mgm.setNumThreads(2);
+        mgm.learn(1e-5, 500);
+
+        Mgm colt = new Mgm(data, lambda);
+        DoubleMatrix1D learned = new ProximalGradient().learnBackTrack(colt, initialParams(data).toMatrix1D(), 1e-5,
+                500);
+        colt.setParams(new Mgm.MGMParams(learned, numContinuous(data), numLevels(data)));
+
+        assertClose(colt.adjMatFromMGM(), mgm.adjMatFromMGM(), 1e-8);
+        assertEquals(colt.graphFromMGM(), mgm.graphFromMGM());
+        assertTrue(mgm.graphFromMGM().getNumEdges() > 0);
+
+        // Converging on edges.
+        mgm = new Mgm(data, lambda);
+        mgm.learnEdges(500);
+
+        colt = new Mgm(data, lambda);
+        learned = new ProximalGradient(.5, .9, true).learnBackTrack(colt, initialParams(data).toMatrix1D(), 0.0, 500);
+        colt.setParams(new Mgm.MGMParams(learned, numContinuous(data), numLevels(data)));
+
+        assertClose(colt.adjMatFromMGM(), mgm.adjMatFromMGM(), 1e-8);
+        assertEquals(colt.graphFromMGM(), mgm.graphFromMGM());
+    }
+
+    @Test
+    public void testWarmStart() {
+        DataSet data = simulate();
+
+        // Following a path of penalties, each learned from the solution for the one before, ends at the solution
+        // learned from the start for the last penalty, since the problem is convex.
+        Mgm path = new Mgm(data, new double[]{.5, .5, .5});
+        path.setNumThreads(1);
+
+        for (double lambda : new double[]{.5, .35, .2}) {
+            path.setLambda(new double[]{lambda, lambda, lambda});
+            path.learn(1e-8, 5000);
+        }
+
+        Mgm cold = new Mgm(data, new double[]{.2, .2, .2});
+        cold.learn(1e-8, 5000);
+
+        assertClose(cold.adjMatFromMGM(), path.adjMatFromMGM(), 1e-4);
+        assertEquals(cold.graphFromMGM(), path.graphFromMGM());
+    }
+
+    private static DataSet simulate() {
+        RandomUtil.getInstance().setSeed(2904820L);
+
+        Parameters parameters = new Parameters();
+        parameters.set(Params.NUM_MEASURES, 10);
+        parameters.set(Params.AVG_DEGREE, 2);
+        parameters.set(Params.SAMPLE_SIZE, 500);
+        parameters.set(Params.PERCENT_DISCRETE, 40);
+        parameters.set(Params.MIN_CATEGORIES, 3);
+        parameters.set(Params.MAX_CATEGORIES, 3);
+        parameters.set(Params.NUM_RUNS, 1);
+
+        LeeHastieSimulation simulation = new LeeHastieSimulation(new RandomForward());
+        simulation.createData(parameters, false);
+        return (DataSet) simulation.getDataModel(0);
+    }
+
+    /**
+     * The parameters MGM starts from: all zero but the continuous node potentials, which are one.
+     */
+    private static Mgm.MGMParams initialParams(DataSet data) {
+        int p = numContinuous(data);
+        int lsum = numLevels(data);
+        return new Mgm.MGMParams(new DenseDoubleMatrix2D(p, p), new DenseDoubleMatrix1D(p).assign(1.0),
+                new DenseDoubleMatrix2D(lsum, p), new DenseDoubleMatrix2D(lsum, lsum), new DenseDoubleMatrix1D(p),
+                new DenseDoubleMatrix1D(lsum));
+    }
+
+    private static int numContinuous(DataSet data) {
+        int p = 0;
+        for (Node node : data.getVariables()) if (!(node instanceof DiscreteVariable)) p++;
+        return p;
+    }
+
+    private static int numLevels(DataSet data) {
+        int lsum = 0;
+        for (Node node : data.getVariables()) {
+            if (node instanceof DiscreteVariable) lsum += ((DiscreteVariable) node).getNumCategories();
+        }
+        return lsum;
+    }
+
+    private static void assertClose(DoubleMatrix2D expected, DoubleMatrix2D actual, double tolerance) {
+        assertEquals(expected.rows(), actual.rows());
+
+        for (int i = 0; i < expected.rows(); i++) {
+            for (int j = 0; j < expected.columns(); j++) {
+                assertEquals(expected.getQuick(i, j), actual.getQuick(i, j), tolerance);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.graph.*;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the incrementally maintained reachability index agrees with search under random edits.
+ *
+ * @author josephramsey
+ */
+public final class TestReachabilityIndex {
+
+    @Test
+    public void testIncrementalUpdates() {
+        RandomUtil.getInstance().setSeed(28394829L);
+
+        Graph graph = RandomGraph.randomGraph(20, 0, 30, 100, 100, 100, false);
+        ReachabilityIndex index = new ReachabilityIndex(graph);
+        List<Node> nodes = graph.getNodes();
+
+        for (int step = 0; step < 200; step++) {
+            Node x = nodes.get(RandomUtil.getInstance().nextInt(nodes.size()));
+            Node y = nodes.get(RandomUtil.getInstance().nextInt(nodes.size()));
+            if (x == y) continue;
+
+            Edge edge = graph.getEdge(x, y);
+
+            if (edge != null) {
+                graph.removeEdge(edge);
+                if (Edges.isDirectedEdge(edge)) {
+                    index.removeDirectedEdge(Edges.getDirectedEdgeTail(edge), Edges.getDirectedEdgeHead(edge));
+                }
+            } else if (step % 5 == 0) {
+                graph.addUndirectedEdge(x, y);
+            } else {
+                // Cycles are allowed here; the index must stay exact for them as well.
+                graph.addDirectedEdge(x, y);
+                index.addDirectedEdge(x, y);
+            }
+
+            assertAgrees(graph, index);
+        }
+    }
+
+    @Test
+    public void testGraphMaintainedIndex() {
+        RandomUtil.getInstance().setSeed(49283742L);
+
+        Graph graph = RandomGraph.randomGraph(15, 0, 20, 100, 100, 100, false);
+        Graph copy = new EdgeListGraph(graph);
+        List<Node> nodes = new ArrayList<>(graph.getNodes());
+
+        for (int step = 0; step < 100; step++) {
+            Node x = nodes.get(RandomUtil.getInstance().nextInt(nodes.size()));
+            Node y = nodes.get(RandomUtil.getInstance().nextInt(nodes.size()));
+            if (x == y) continue;
+
+            if (graph.isAdjacentTo(x, y)) {
+                graph.removeEdges(x, y);
+            } else if (!graph.paths().existsDirectedPath(y, x)) {
+                graph.addDirectedEdge(x, y);
+            }
+
+            copy = new EdgeListGraph(copy.getNodes());
+            for (Edge edge : graph.getEdges()) copy.addEdge(edge);
+
+            for (Node a : nodes) {
+                assertEquals(copy.paths().getDescendants(a), graph.paths().getDescendantsMap().get(a));
+                for (Node b : nodes) {
+                    assertEquals(new CsrGraph(graph).existsDirectedPath(nodes.indexOf(a), nodes.indexOf(b)),
+                            graph.paths().existsDirectedPath(a, b));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReaddedEdge() {
+        Node x0 = new GraphNode("X0");
+        Node x1 = new GraphNode("X1");
+        Node x2 = new GraphNode("X2");
+
+        Graph graph = new EdgeListGraph(List.of(x0, x1, x2));
+        graph.addDirectedEdge(x0, x1);
+        graph.addDirectedEdge(x1, x2);
+
+        // Enough queries for the graph to build its index.
+        for (int i = 0; i < 10; i++) {
+            assertTrue(graph.paths().existsDirectedPath(x0, x2));
+        }
+
+        graph.addEdge(Edges.directedEdge(x0, x1));
+        graph.removeEdge(Edges.directedEdge(x0, x1));
+
+        assertFalse(graph.paths().existsDirectedPath(x0, x2));
+        assertFalse(graph.paths().isAncestorOf(x0, x1));
+    }
+
+    private void assertAgrees(Graph graph, ReachabilityIndex index) {
+        CompactGraph compact = new CsrGraph(graph);
+
+        for (int i = 0; i < compact.getNumNodes(); i++) {
+            for (int j = 0; j < compact.getNumNodes(); j++) {
+                assertEquals(compact.existsDirectedPath(i, j),
+                        index.existsDirectedPath(compact.getNode(i), compact.getNode(j)));
+            }
+        }
+    }
+}
@@ -26,11 +26,16 @@ import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.sem.*;
 import edu.cmu.tetrad.util.Matrix;
 import edu.cmu.tetrad.util.MatrixUtils;
+import edu.cmu.tetrad.util.RandomUtil;
 import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 /**
  * Tests the MeasurementSimulator class using diagnostics devised by Richard Scheines. The diagnostics are described in
  * the Javadocs, below.
@@ -185,6 +190,93 @@ public class TestSemEstimator {
         opt.optimize(im2);
     }
 
+    @Test
+    public void testLbfgsMatchesRegression() {
+        SemPm pm = new SemPm(constructGraph2());
+        ICovarianceMatrix covMatrix = constructCovMatrix2();
+
+        SemIm regression = new SemIm(pm, covMatrix);
+        new SemOptimizerRegression().optimize(regression);
+
+        SemIm lbfgs = new SemIm(pm, covMatrix);
+        new SemOptimizerLbfgs().optimize(lbfgs);
+
+        assertEquals(regression.getScore(), lbfgs.getScore(), 1e-8);
+
+        double[] expected = regression.getFreeParamValues();
+        double[] actual = lbfgs.getFreeParamValues();
+
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], 1e-4);
+        }
+    }
+
+    @Test
+    public void testLbfgsLatent() {
+        RandomUtil.getInstance().setSeed(2938482L);
+
+        Graph graph = new EdgeListGraph();
+        Node latent = new GraphNode("L");
+        latent.setNodeType(NodeType.LATENT);
+        graph.addNode(latent);
+
+        for (int i = 1; i <= 5; i++) {
+            Node x = new GraphNode("X" + i);
+            graph.addNode(x);
+            graph.addDirectedEdge(latent, x);
+        }
+
+        graph.addBidirectedEdge(graph.getNode("X1"), graph.getNode("X2"));
+
+        SemPm pm = new SemPm(graph);
+        SemIm trueIm = new SemIm(pm);
+        DataSet data = trueIm.simulateData(1000, false);
+
+        for (ScoreType scoreType : new ScoreType[]{ScoreType.Fml, ScoreType.Fgls}) {
+            SemIm truth = new SemIm(trueIm);
+            truth.setDataSet(data);
+            truth.setScoreType(scoreType);
+
+            SemIm scattershot = new SemIm(pm);
+            scattershot.setDataSet(data);
+            scattershot.setScoreType(scoreType);
+            new SemOptimizerScattershot().optimize(scattershot);
+
+            SemIm lbfgs = new SemIm(pm);
+            lbfgs.setDataSet(data);
+            lbfgs.setScoreType(scoreType);
+            SemOptimizerLbfgs optimizer = new SemOptimizerLbfgs();
+            optimizer.setNumRestarts(4);
+            optimizer.optimize(lbfgs);
+
+            assertTrue(lbfgs.getScore() <= truth.getScore());
+            assertTrue(lbfgs.getScore() <= scattershot.getScore() + 1e-6);
+        }
+    }
+
+    @Test
+    public void testScattershotThreads() {
+        SemPm pm = new SemPm(constructGraph2());
+        ICovarianceMatrix covMatrix = constructCovMatrix2();
+        double[] expected = null;
+
+        for (int numThreads : new int[]{1, 4}) {
+            RandomUtil.getInstance().setSeed(3928483L);
+
+            SemIm im = new SemIm(pm, covMatrix);
+            SemOptimizerScattershot optimizer = new SemOptimizerScattershot();
+            optimizer.setNumRestarts(3);
+            optimizer.setNumThreads(numThreads);
+            optimizer.optimize(im);
+
+            if (expected == null) {
+                expected = im.getFreeParamValues();
+            } else {
+                assertArrayEquals(expected, im.getFreeParamValues(), 0.0);
+            }
+        }
+    }
+
     private ICovarianceMatrix constructCovMatrix2() {
         String[] vars = {"X1", "X2", "X3", "X4", "X5", "X6"};
 
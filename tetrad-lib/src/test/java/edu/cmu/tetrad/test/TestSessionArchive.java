@@ -0,0 +1,189 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.*;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.LazyGraphList;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.graph.RandomGraph;
+import edu.cmu.tetrad.util.RandomUtil;
+import edu.cmu.tetrad.util.SessionArchive;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests saving and reading session archives.
+ *
+ * @author josephramsey
+ */
+public final class TestSessionArchive {
+
+    @Test
+    public void testRoundTrip() throws IOException, ClassNotFoundException {
+        RandomUtil.getInstance().setSeed(48290342L);
+
+        List<DataSet> dataSets = dataSets();
+        LazyGraphList graphs = graphs(120);
+        Path file = Files.createTempFile("session", ".tet");
+
+        try {
+            SessionArchive.write(file, dataSets, graphs);
+            assertTrue(SessionArchive.isArchive(file));
+
+            List<Object> objects = SessionArchive.read(file);
+            assertEquals(2, objects.size());
+
+            List<DataSet> dataSets2 = dataSets(objects.get(0));
+            LazyGraphList graphs2 = (LazyGraphList) objects.get(1);
+
+            // Large boxes are read when used; small ones are kept with the objects.
+            for (int i = 0; i < 3; i++) {
+                DataBox box = ((BoxDataSet) dataSets2.get(i)).getDataBox();
+                assertEquals(((BoxDataSet) dataSets.get(i)).getDataBox().getClass(), box.getClass());
+            }
+
+            assertFalse(((BoxDataSet) dataSets2.get(3)).getDataBox() instanceof LazyDataBox);
+
+            for (int i = 0; i < dataSets.size(); i++) {
+                assertSameData(dataSets.get(i), dataSets2.get(i));
+            }
+
+            assertEquals(graphs.size(), graphs2.size());
+            assertEquals(3, graphs2.getNumChunks());
+
+            assertEquals(graphs.get(70), graphs2.get(70));
+            assertNotNull(graphs2.getChunkSource(0));
+            assertNull(graphs2.getChunkSource(1));
+
+            assertEquals(graphs, graphs2);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testResaveUnloaded() throws IOException, ClassNotFoundException {
+        RandomUtil.getInstance().setSeed(48290342L);
+
+        List<DataSet> dataSets = dataSets();
+        LazyGraphList graphs = graphs(75);
+        Path file = Files.createTempFile("session", ".tet");
+
+        try {
+            SessionArchive.write(file, dataSets, graphs);
+            List<Object> objects = SessionArchive.read(file);
+
+            // Save over the archive the objects were read from, without loading anything.
+            SessionArchive.write(file, objects.toArray());
+
+            List<DataSet> dataSets2 = dataSets(objects.get(0));
+            LazyGraphList graphs2 = (LazyGraphList) objects.get(1);
+
+            for (int i = 0; i < dataSets.size(); i++) {
+                assertSameData(dataSets.get(i), dataSets2.get(i));
+            }
+
+            assertEquals(graphs, graphs2);
+
+            List<Object> objects3 = SessionArchive.read(file);
+            List<DataSet> dataSets3 = dataSets(objects3.get(0));
+
+            for (int i = 0; i < dataSets.size(); i++) {
+                assertSameData(dataSets.get(i), dataSets3.get(i));
+            }
+
+            assertEquals(graphs, objects3.get(1));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<DataSet> dataSets() {
+        int numRows = 1000;
+        int numCols = 20;
+
+        List<Node> continuous = new ArrayList<>();
+        List<Node> discrete = new ArrayList<>();
+
+        for (int j = 0; j < numCols; j++) {
+            continuous.add(new ContinuousVariable("X" + (j + 1)));
+            discrete.add(new DiscreteVariable("D" + (j + 1), 3));
+        }
+
+        double[][] columns = new double[numCols][numRows];
+        double[][] rows = new double[numRows][numCols];
+        int[][] categories = new int[numCols][numRows];
+
+        for (int j = 0; j < numCols; j++) {
+            for (int i = 0; i < numRows; i++) {
+                columns[j][i] = RandomUtil.getInstance().nextNormal(0, 1);
+                rows[i][j] = RandomUtil.getInstance().nextNormal(0, 1);
+                categories[j][i] = RandomUtil.getInstance().nextInt(3);
+            }
+        }
+
+        columns[3][7] = Double.NaN;
+        categories[5][9] = -99;
+
+        List<DataSet> dataSets = new ArrayList<>();
+        dataSets.add(new BoxDataSet(new VerticalDoubleDataBox(columns), continuous));
+        dataSets.add(new BoxDataSet(new DoubleDataBox(rows), continuous));
+        dataSets.add(new BoxDataSet(new VerticalIntDataBox(categories), discrete));
+        dataSets.add(new BoxDataSet(new VerticalDoubleDataBox(10, numCols), continuous));
+        return dataSets;
+    }
+
+    private static LazyGraphList graphs(int numGraphs) {
+        LazyGraphList graphs = new LazyGraphList();
+
+        for (int i = 0; i < numGraphs; i++) {
+            graphs.add(RandomGraph.randomGraph(10, 0, 12, 100, 100, 100, false));
+        }
+
+        return graphs;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<DataSet> dataSets(Object object) {
+        return (List<DataSet>) object;
+    }
+
+    private static void assertSameData(DataSet expected, DataSet actual) {
+        assertEquals(expected.getVariableNames(), actual.getVariableNames());
+        assertEquals(expected.getNumRows(), actual.getNumRows());
+        assertEquals(expected.getNumColumns(), actual.getNumColumns());
+
+        for (int i = 0; i < expected.getNumRows(); i++) {
+            for (int j = 0; j < expected.getNumColumns(); j++) {
+                assertEquals(expected.getObject(i, j), actual.getObject(i, j));
+            }
+        }
+    }
+}
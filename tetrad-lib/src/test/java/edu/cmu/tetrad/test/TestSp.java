@@ -0,0 +1,213 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.Knowledge;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.graph.RandomGraph;
+import edu.cmu.tetrad.search.PermutationSearch;
+import edu.cmu.tetrad.search.Sp;
+import edu.cmu.tetrad.search.score.SemBicScore;
+import edu.cmu.tetrad.search.utils.ExactOrderSearch;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the exact search used by SP.
+ *
+ * @author josephramsey
+ */
+public class TestSp {
+
+    @Test
+    public void testExactScore() throws InterruptedException {
+        SemBicScore score = score(7, 10);
+        List<Node> nodes = score.getVariables();
+        List<Node> prefix = nodes.subList(0, 2);
+        List<Node> suborder = nodes.subList(2, 7);
+
+        ExactOrderSearch search = new ExactOrderSearch(score, prefix, suborder);
+        List<Node> order = search.search();
+
+        // The best score over all orders of the suborder, each variable with its best parents from the prefix and
+        // the variables before it.
+        double best = Double.NEGATIVE_INFINITY;
+
+        for (List<Node> permutation : permutations(suborder)) {
+            double total = 0;
+            List<Node> candidates = new ArrayList<>(prefix);
+
+            for (Node x : permutation) {
+                double max = Double.NEGATIVE_INFINITY;
+
+                for (int set = 0; set < 1 << candidates.size(); set++) {
+                    max = Math.max(max, score.localScore(nodes.indexOf(x), indices(nodes, candidates, set)));
+                }
+
+                total += max;
+                candidates.add(x);
+            }
+
+            best = Math.max(best, total);
+        }
+
+        assertEquals(best, search.getScore(), 1e-9);
+
+        // The parents found score that much and precede their children.
+        double total = 0;
+
+        for (Node x : order) {
+            Set<Node> parents = search.getParents().get(x);
+            int[] indices = parents.stream().mapToInt(nodes::indexOf).toArray();
+            total += score.localScore(nodes.indexOf(x), indices);
+
+            for (Node parent : parents) {
+                assertTrue(prefix.contains(parent) || order.indexOf(parent) < order.indexOf(x));
+            }
+        }
+
+        assertEquals(search.getScore(), total, 1e-9);
+    }
+
+    @Test
+    public void testThreadsAndMemoryBudget() throws InterruptedException {
+        SemBicScore score = score(12, 18);
+        List<Node> nodes = score.getVariables();
+
+        ExactOrderSearch inMemory = new ExactOrderSearch(score, Collections.emptyList(), nodes);
+        List<Node> order = inMemory.search();
+
+        ExactOrderSearch mapped = new ExactOrderSearch(score, Collections.emptyList(), nodes);
+        mapped.setNumThreads(3);
+        mapped.setMemoryBudget(0);
+
+        assertEquals(order, mapped.search());
+        assertEquals(inMemory.getParents(), mapped.getParents());
+        assertEquals(inMemory.getScore(), mapped.getScore(), 0.0);
+    }
+
+    @Test
+    public void testKnowledge() throws InterruptedException {
+        SemBicScore score = score(8, 10);
+
+        Knowledge knowledge = new Knowledge();
+        knowledge.setRequired("X8", "X1");
+        knowledge.setForbidden("X1", "X2");
+        knowledge.setForbidden("X2", "X1");
+
+        Sp sp = new Sp(score);
+        sp.setMaxParents(3);
+        PermutationSearch search = new PermutationSearch(sp);
+        search.setKnowledge(knowledge);
+        Graph dag = search.search(false);
+
+        Node x1 = dag.getNode("X1");
+        Node x2 = dag.getNode("X2");
+        Node x8 = dag.getNode("X8");
+
+        assertTrue(dag.isParentOf(x8, x1));
+        assertFalse(dag.isAdjacentTo(x1, x2));
+
+        for (Node node : dag.getNodes()) {
+            assertTrue(dag.getParents(node).size() <= 3);
+        }
+    }
+
+    @Test
+    public void testLongPrefix() throws InterruptedException {
+        SemBicScore score = score(24, 36);
+        List<Node> nodes = score.getVariables();
+        List<Node> prefix = nodes.subList(0, 20);
+        List<Node> suborder = nodes.subList(20, 24);
+
+        // Too many choices of parents from the prefix to score them all, so they are grown and shrunk.
+        ExactOrderSearch search = new ExactOrderSearch(score, prefix, suborder);
+        List<Node> order = search.search();
+
+        double total = 0;
+
+        for (Node x : order) {
+            Set<Node> parents = search.getParents().get(x);
+            int[] indices = parents.stream().mapToInt(nodes::indexOf).toArray();
+            total += score.localScore(nodes.indexOf(x), indices);
+
+            for (Node parent : parents) {
+                assertTrue(prefix.contains(parent) || order.indexOf(parent) < order.indexOf(x));
+            }
+        }
+
+        assertEquals(search.getScore(), total, 1e-9);
+
+        // Parents from the prefix never make the score worse than no parents from the prefix.
+        ExactOrderSearch withoutPrefix = new ExactOrderSearch(score, Collections.emptyList(), suborder);
+        withoutPrefix.search();
+
+        assertTrue(search.getScore() >= withoutPrefix.getScore());
+    }
+
+    private static SemBicScore score(int numNodes, int numEdges) {
+        RandomUtil.getInstance().setSeed(4829384L);
+        Graph graph = RandomGraph.randomGraph(numNodes, 0, numEdges, 100, 100, 100, false);
+        DataSet data = new SemIm(new SemPm(graph)).simulateData(500, false);
+        return new SemBicScore(new CovarianceMatrix(data));
+    }
+
+    private static int[] indices(List<Node> nodes, List<Node> candidates, int set) {
+        int[] indices = new int[Integer.bitCount(set)];
+        int i = 0;
+
+        for (int j = 0; j < candidates.size(); j++) {
+            if ((set & (1 << j)) != 0) indices[i++] = nodes.indexOf(candidates.get(j));
+        }
+
+        return indices;
+    }
+
+    private static List<List<Node>> permutations(List<Node> nodes) {
+        if (nodes.isEmpty()) return List.of(List.of());
+
+        List<List<Node>> permutations = new ArrayList<>();
+
+        for (Node first : nodes) {
+            List<Node> rest = new ArrayList<>(nodes);
+            rest.remove(first);
+
+            for (List<Node> permutation : permutations(rest)) {
+                List<Node> extended = new ArrayList<>();
+                extended.add(first);
+                extended.addAll(permutation);
+                permutations.add(extended);
+            }
+        }
+
+        return permutations;
+    }
+}
@@ -0,0 +1,324 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import cern.colt.matrix.DoubleMatrix2D;
+import edu.cmu.tetrad.algcomparison.algorithm.Algorithm;
+import edu.cmu.tetrad.algcomparison.algorithm.StARS;
+import edu.cmu.tetrad.algcomparison.algorithm.TakesCovarianceMatrix;
+import edu.cmu.tetrad.algcomparison.graph.RandomForward;
+import edu.cmu.tetrad.algcomparison.independence.FisherZ;
+import edu.cmu.tetrad.algcomparison.independence.IndependenceWrapper;
+import edu.cmu.tetrad.algcomparison.independence.Kci;
+import edu.cmu.tetrad.algcomparison.simulation.LeeHastieSimulation;
+import edu.cmu.tetrad.algcomparison.simulation.SemSimulation;
+import edu.cmu.tetrad.algcomparison.utils.TakesIndependenceWrapper;
+import edu.cmu.tetrad.data.*;
+import edu.cmu.tetrad.graph.*;
+import edu.cmu.tetrad.util.Parameters;
+import edu.cmu.tetrad.util.Params;
+import edu.cmu.tetrad.util.RandomUtil;
+import edu.pitt.csb.stability.DataGraphPathSearch;
+import edu.pitt.csb.stability.DataGraphSearch;
+import edu.pitt.csb.stability.SearchWrappers;
+import edu.pitt.csb.stability.StabilityUtils;
+import org.junit.Test;
+
+import java.io.Serial;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests stability searches over paths of penalties against searches at each penalty separately, and StARS.
+ *
+ * @author josephramsey
+ */
+public class TestStARS {
+
+    private static final int N = 10;
+    private static final int B = 250;
+
+    @Test
+    public void testFgesPath() throws InterruptedException {
+        DataSet data = continuousData();
+        double[] penalties = {4, 2, 1, 0.5};
+        DataGraphSearch[] separate = new DataGraphSearch[penalties.length];
+
+        for (int k = 0; k < penalties.length; k++) {
+            separate[k] = new SearchWrappers.FgesWrapper(penalties[k]);
+        }
+
+        assertPathMatches(data, new SearchWrappers.FgesPathWrapper(), penalties, separate, data.getVariables());
+    }
+
+    @Test
+    public void testBossPath() {
+        DataSet data = continuousData();
+        double[] penalties = {4, 2, 1, 0.5};
+
+        RandomUtil.getInstance().setSeed(1L);
+        DoubleMatrix2D[] path = StabilityUtils.StabilityPathSearch(data, new SearchWrappers.BossPathWrapper(),
+                penalties, N, B, 2);
+
+        // A path of one penalty is not warm started. A warm started BOSS may land on a different optimum for some
+        // subsample, so after the first penalty only the total instability is compared.
+        for (int k = 0; k < penalties.length; k++) {
+            RandomUtil.getInstance().setSeed(1L);
+            DoubleMatrix2D cold = StabilityUtils.StabilityPathSearch(data, new SearchWrappers.BossPathWrapper(),
+                    new double[]{penalties[k]}, N, B, 2)[0];
+
+            if (k == 0) {
+                assertClose(cold, path[k], data.getVariables(), data.getVariables(), 0.0);
+            } else {
+                assertEquals(StabilityUtils.totalInstabilityUndir(cold, data.getVariables())[0],
+                        StabilityUtils.totalInstabilityUndir(path[k], data.getVariables())[0], 0.02);
+            }
+        }
+    }
+
+    @Test
+    public void testMgmPath() throws InterruptedException {
+        DataSet data = mixedData();
+        double[] penalties = {.5, .3, .2, .1};
+        DataGraphSearch[] separate = new DataGraphSearch[penalties.length];
+
+        for (int k = 0; k < penalties.length; k++) {
+            separate[k] = new SearchWrappers.MGMWrapper(penalties[k], penalties[k], penalties[k]);
+        }
+
+        // StabilitySearch indexes its matrix like the graphs MGM returns, continuous variables first.
+        List<Node> mgmOrder = new ArrayList<>();
+        for (Node node : data.getVariables()) if (node instanceof ContinuousVariable) mgmOrder.add(node);
+        for (Node node : data.getVariables()) if (node instanceof DiscreteVariable) mgmOrder.add(node);
+
+        assertPathMatches(data, new SearchWrappers.MGMPathWrapper(), penalties, separate, mgmOrder);
+    }
+
+    @Test
+    public void testPathParallelism() {
+        DataSet data = continuousData();
+        double[] penalties = {2, 1};
+
+        RandomUtil.getInstance().setSeed(1L);
+        DoubleMatrix2D[] serial = StabilityUtils.StabilityPathSearch(data, new SearchWrappers.FgesPathWrapper(),
+                penalties, N, B, 1);
+        RandomUtil.getInstance().setSeed(1L);
+        DoubleMatrix2D[] parallel = StabilityUtils.StabilityPathSearch(data, new SearchWrappers.FgesPathWrapper(),
+                penalties, N, B, 3);
+
+        for (int k = 0; k < penalties.length; k++) {
+            assertClose(serial[k], parallel[k], data.getVariables(), data.getVariables(), 0.0);
+        }
+    }
+
+    @Test
+    public void testPathLatents() {
+        DataSet data = continuousData();
+        DoubleMatrix2D[] path = StabilityUtils.StabilityPathSearch(data, new LatentPathSearch(), new double[]{2, 1},
+                N, B, 2);
+
+        // Only the edge between measured variables is counted.
+        for (DoubleMatrix2D thetaMat : path) {
+            assertEquals(1.0, thetaMat.getQuick(0, 1), 0.0);
+            assertEquals(1.0, thetaMat.getQuick(1, 0), 0.0);
+            assertEquals(2.0, thetaMat.zSum(), 0.0);
+        }
+    }
+
+    @Test
+    public void testStARSDataAndLatents() throws InterruptedException {
+        DataSet data = continuousData();
+
+        Parameters parameters = new Parameters();
+        parameters.set("percentSubsampleSize", 0.5);
+        parameters.set("StARS.cutoff", 0.05);
+        parameters.set("numSubsamples", 4);
+        parameters.set("logScale", false);
+        parameters.set(Params.USE_PSEUDOINVERSE, false);
+
+        // A test that needs the data gets the data; one that takes a covariance matrix gets one.
+        for (IndependenceWrapper test : List.of(new Kci(), new FisherZ())) {
+            LatentAlgorithm algorithm = new LatentAlgorithm(test);
+            Graph graph = new StARS(algorithm, Params.ALPHA, 0.0, 1.0).search(data, parameters);
+
+            Node x = graph.getNode(data.getVariable(0).getName());
+            Node y = graph.getNode(data.getVariable(1).getName());
+            assertTrue(graph.isAdjacentTo(x, y));
+            assertEquals(!(test instanceof Kci), algorithm.inputTypes.contains(CovarianceMatrix.class));
+        }
+    }
+
+    /**
+     * Checks that the path search gives the frequencies of separate searches at each penalty: exactly at the first,
+     * which is not warm started, and closely after.
+     */
+    private static void assertPathMatches(DataSet data, DataGraphPathSearch pathSearch, double[] penalties,
+                                          DataGraphSearch[] separate, List<Node> separateOrder)
+            throws InterruptedException {
+        RandomUtil.getInstance().setSeed(1L);
+        DoubleMatrix2D[] path = StabilityUtils.StabilityPathSearch(data, pathSearch, penalties, N, B, 2);
+
+        for (int k = 0; k < penalties.length; k++) {
+            RandomUtil.getInstance().setSeed(1L);
+            DoubleMatrix2D single = StabilityUtils.StabilitySearch(data, separate[k], N, B);
+            assertClose(single, path[k], separateOrder, data.getVariables(), k == 0 ? 0.0 : 0.2);
+        }
+    }
+
+    private static void assertClose(DoubleMatrix2D expected, DoubleMatrix2D actual, List<Node> expectedOrder,
+                                    List<Node> actualOrder, double tolerance) {
+        for (int i = 0; i < expectedOrder.size(); i++) {
+            for (int j = 0; j < expectedOrder.size(); j++) {
+                if (i == j) continue;
+                int a = actualOrder.indexOf(expectedOrder.get(i));
+                int b = actualOrder.indexOf(expectedOrder.get(j));
+                assertEquals(expected.getQuick(i, j), actual.getQuick(a, b), tolerance + 1e-12);
+            }
+        }
+    }
+
+    private static DataSet continuousData() {
+        RandomUtil.getInstance().setSeed(4928L);
+
+        Parameters parameters = new Parameters();
+        parameters.set(Params.NUM_MEASURES, 12);
+        parameters.set(Params.AVG_DEGREE, 3);
+        parameters.set(Params.SAMPLE_SIZE, 500);
+
+        SemSimulation simulation = new SemSimulation(new RandomForward());
+        simulation.createData(parameters, true);
+        return (DataSet) simulation.getDataModel(0);
+    }
+
+    private static DataSet mixedData() {
+        RandomUtil.getInstance().setSeed(2904820L);
+
+        Parameters parameters = new Parameters();
+        parameters.set(Params.NUM_MEASURES, 10);
+        parameters.set(Params.AVG_DEGREE, 2);
+        parameters.set(Params.SAMPLE_SIZE, 500);
+        parameters.set(Params.PERCENT_DISCRETE, 40);
+        parameters.set(Params.MIN_CATEGORIES, 3);
+        parameters.set(Params.MAX_CATEGORIES, 3);
+        parameters.set(Params.NUM_RUNS, 1);
+
+        LeeHastieSimulation simulation = new LeeHastieSimulation(new RandomForward());
+        simulation.createData(parameters, false);
+        return (DataSet) simulation.getDataModel(0);
+    }
+
+    /**
+     * Returns, at each penalty, one edge between the first two variables and a latent parent of the first three.
+     */
+    private static class LatentPathSearch extends DataGraphPathSearch {
+
+        @Override
+        public List<Graph> searchPath(DataSet data, double[] penalties) {
+            List<Graph> graphs = new ArrayList<>();
+
+            for (int k = 0; k < penalties.length; k++) {
+                List<Node> nodes = data.getVariables();
+                Graph graph = new EdgeListGraph(nodes);
+                graph.addUndirectedEdge(nodes.get(0), nodes.get(1));
+
+                Node latent = new GraphNode("L");
+                latent.setNodeType(NodeType.LATENT);
+                graph.addNode(latent);
+
+                for (int i = 0; i < 3; i++) {
+                    graph.addDirectedEdge(latent, nodes.get(i));
+                }
+
+                graphs.add(graph);
+            }
+
+            return graphs;
+        }
+    }
+
+    /**
+     * Returns one edge between the first two variables, and a latent parent of the first three, recording the types
+     * of data it is given.
+     */
+    private static class LatentAlgorithm implements Algorithm, TakesCovarianceMatrix, TakesIndependenceWrapper {
+
+        @Serial
+        private static final long serialVersionUID = 23L;
+
+        private final Set<Class<?>> inputTypes = Collections.synchronizedSet(new HashSet<>());
+        private IndependenceWrapper test;
+
+        private LatentAlgorithm(IndependenceWrapper test) {
+            this.test = test;
+        }
+
+        @Override
+        public Graph search(DataModel dataModel, Parameters parameters) {
+            this.inputTypes.add(dataModel.getClass());
+
+            List<Node> nodes = dataModel.getVariables();
+            Graph graph = new EdgeListGraph(nodes);
+            graph.addUndirectedEdge(nodes.get(0), nodes.get(1));
+
+            Node latent = new GraphNode("L");
+            latent.setNodeType(NodeType.LATENT);
+            graph.addNode(latent);
+
+            for (int i = 0; i < 3; i++) {
+                graph.addDirectedEdge(latent, nodes.get(i));
+            }
+
+            return graph;
+        }
+
+        @Override
+        public Graph getComparisonGraph(Graph graph) {
+            return graph;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Latent";
+        }
+
+        @Override
+        public DataType getDataType() {
+            return DataType.Continuous;
+        }
+
+        @Override
+        public List<String> getParameters() {
+            return new ArrayList<>(List.of(Params.ALPHA));
+        }
+
+        @Override
+        public IndependenceWrapper getIndependenceWrapper() {
+            return this.test;
+        }
+
+        @Override
+        public void setIndependenceWrapper(IndependenceWrapper test) {
+            this.test = test;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015, 2022 by Peter Spirtes, Richard        //
+// Scheines, Joseph Ramsey, and Clark Glymour.                               //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.bayes.*;
+import edu.cmu.tetrad.graph.Dag;
+import edu.cmu.tetrad.graph.RandomGraph;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the variable elimination updater against the row summing updater.
+ *
+ * @author josephramsey
+ */
+public final class TestVariableEliminationUpdater {
+
+    @Test
+    public void testMarginals() {
+        RandomUtil.getInstance().setSeed(382938L);
+
+        for (int trial = 0; trial < 5; trial++) {
+            BayesIm bayesIm = randomBayesIm();
+            int numNodes = bayesIm.getNumNodes();
+
+            Evidence evidence = Evidence.tautology(bayesIm);
+            evidence.getProposition().setCategory(1, 0);
+            evidence.getProposition().setCategory(numNodes - 1, 1);
+            evidence.getProposition().removeCategory(numNodes / 2, 0);
+
+            if (trial % 2 == 1) {
+                evidence.setManipulated(1, true);
+            }
+
+            ManipulatingBayesUpdater expected = new RowSummingExactUpdater(bayesIm, evidence);
+            ManipulatingBayesUpdater updater = new VariableEliminationUpdater(bayesIm, evidence);
+
+            for (int i = 0; i < numNodes; i++) {
+                for (int j = 0; j < bayesIm.getNumColumns(i); j++) {
+                    assertEquals(expected.getMarginal(i, j), updater.getMarginal(i, j), 1e-10);
+                }
+            }
+
+            int[] variables = {numNodes - 2, 0, 2};
+            int[] values = {1, 0, 1};
+            assertEquals(expected.getJointMarginal(variables, values),
+                    updater.getJointMarginal(variables, values), 1e-10);
+        }
+    }
+
+    @Test
+    public void testUpdatedBayesIm() {
+        RandomUtil.getInstance().setSeed(93842L);
+
+        BayesIm bayesIm = randomBayesIm();
+        int numNodes = bayesIm.getNumNodes();
+
+        Evidence evidence = Evidence.tautology(bayesIm);
+        evidence.getProposition().setCategory(numNodes - 1, 0);
+        evidence.getProposition().setCategory(2, 1);
+
+        BayesIm expected = new RowSummingExactUpdater(bayesIm, evidence).getUpdatedBayesIm();
+        BayesIm updated = new VariableEliminationUpdater(bayesIm, evidence).getUpdatedBayesIm();
+
+        for (int i = 0; i < numNodes; i++) {
+            for (int row = 0; row < bayesIm.getNumRows(i); row++) {
+                for (int col = 0; col < bayesIm.getNumColumns(i); col++) {
+                    double p = expected.getProbability(i, row, col);
+                    double q = updated.getProbability(i, row, col);
+
+                    if (Double.isNaN(p)) {
+                        assertEquals(Double.NaN, q, 0.0);
+                    } else {
+                        assertEquals(p, q, 1e-10);
+                    }
+                }
+            }
+        }
+    }
+
+    private BayesIm randomBayesIm() {
+        Dag dag = new Dag(RandomGraph.randomGraph(10, 0, 15, 4, 4, 4, false));
+        BayesPm bayesPm = new BayesPm(dag, 2, 3);
+        return new MlBayesIm(bayesPm, MlBayesIm.InitializationMethod.RANDOM);
+    }
+}